@@ -0,0 +1,144 @@
+package com.aliya.player;
+
+import android.content.Context;
+import android.media.AudioManager;
+
+import com.aliya.player.ui.PlayerView;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+
+/**
+ * 音频焦点：出声播放时申请，暂停、静音、停止时释放
+ * <p>
+ * 短暂失去焦点时暂停，重新获得后恢复；可降低音量时（eg: 导航播报）降到 {@link #DUCK_VOLUME}；
+ * 永久失去焦点时暂停，不再自动恢复。回调均在主线程
+ *
+ * @author a_liYa
+ * @date 2018/3/23 16:30.
+ */
+public class AudioFocusHelper implements AudioManager.OnAudioFocusChangeListener {
+
+    /**
+     * 其它应用短暂出声时的音量
+     */
+    public static final float DUCK_VOLUME = 0.2f;
+
+    private AudioManager audioManager;
+    private boolean enabled = true;
+
+    // 持有焦点的 PlayerView
+    private PlayerView focused;
+    // 因短暂失去焦点而暂停，重新获得后恢复
+    private boolean pausedByLoss;
+
+    public void setContext(Context context) {
+        if (audioManager == null && context != null) {
+            audioManager = (AudioManager) context.getApplicationContext()
+                    .getSystemService(Context.AUDIO_SERVICE);
+        }
+    }
+
+    /**
+     * @param enabled false: 不管理音频焦点，已持有的焦点立即释放
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            abandon();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * PlayerView 开始／停止出声时调用
+     *
+     * @param view    .
+     * @param audible true: 播放中且未静音
+     */
+    public void onAudibleChanged(PlayerView view, boolean audible) {
+        if (audible) {
+            request(view);
+        } else if (focused == view && !pausedByLoss) {
+            abandon();
+        }
+    }
+
+    /**
+     * PlayerView 停止播放时调用，短暂失去焦点而暂停的也释放
+     *
+     * @param view .
+     */
+    public void abandon(PlayerView view) {
+        if (focused == view) {
+            abandon();
+        }
+    }
+
+    private void request(PlayerView view) {
+        if (!enabled || audioManager == null) return;
+
+        pausedByLoss = false;
+        if (focused == view) return;
+
+        PlayerView old = focused;
+        focused = view;
+        if (old != null) { // 焦点在本应用内转交，不需要重新申请
+            old.setDucked(false);
+            return;
+        }
+        int result = audioManager.requestAudioFocus(this, AudioManager.STREAM_MUSIC,
+                AudioManager.AUDIOFOCUS_GAIN);
+        if (result != AudioManager.AUDIOFOCUS_REQUEST_GRANTED) {
+            focused = null;
+        }
+    }
+
+    private void abandon() {
+        if (focused == null) return;
+
+        focused.setDucked(false);
+        focused = null;
+        pausedByLoss = false;
+        if (audioManager != null) {
+            audioManager.abandonAudioFocus(this);
+        }
+    }
+
+    @Override
+    public void onAudioFocusChange(int focusChange) {
+        PlayerView view = focused;
+        if (view == null) return;
+
+        SimpleExoPlayer player = view.getPlayer();
+        switch (focusChange) {
+            case AudioManager.AUDIOFOCUS_GAIN:
+                view.setDucked(false);
+                if (pausedByLoss) {
+                    pausedByLoss = false;
+                    if (player != null) {
+                        player.setPlayWhenReady(true);
+                    }
+                }
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                view.setDucked(true);
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+                if (player != null && player.getPlayWhenReady()) {
+                    pausedByLoss = true;
+                    player.setPlayWhenReady(false);
+                }
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS:
+                pausedByLoss = false;
+                if (player != null) {
+                    player.setPlayWhenReady(false);
+                }
+                abandon();
+                break;
+        }
+    }
+
+}
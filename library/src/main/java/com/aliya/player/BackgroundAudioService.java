@@ -0,0 +1,117 @@
+package com.aliya.player;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+import android.support.annotation.Nullable;
+import android.support.v4.app.NotificationCompat;
+
+import com.aliya.player.ui.PlayerView;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * 后台播放音频时的前台服务，用于提升进程优先级，播放仍由 PlayerView 持有的 player 完成；
+ * 通知栏提供播放/暂停、停止按钮
+ *
+ * @author a_liYa
+ * @date 2018/3/16 10:12.
+ */
+public class BackgroundAudioService extends Service {
+
+    private static final int NOTIFICATION_ID = 0x7f0a1001;
+
+    private static final String ACTION_PLAY_PAUSE = "com.aliya.player.action.PLAY_PAUSE";
+    private static final String ACTION_STOP = "com.aliya.player.action.STOP";
+
+    // 后台播放中的 PlayerView, 不持有
+    private static WeakReference<PlayerView> sPlayerViewRef;
+
+    /**
+     * 开始后台播放，或刷新通知
+     *
+     * @param playerView 后台播放中的 PlayerView
+     */
+    public static void start(PlayerView playerView) {
+        if (playerView == null) return;
+
+        sPlayerViewRef = new WeakReference<>(playerView);
+        Context context = playerView.getContext();
+        context.startService(new Intent(context, BackgroundAudioService.class));
+    }
+
+    public static void stop(Context context) {
+        if (context == null) return;
+        sPlayerViewRef = null;
+        context.stopService(new Intent(context, BackgroundAudioService.class));
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        PlayerView playerView = sPlayerViewRef != null ? sPlayerViewRef.get() : null;
+        SimpleExoPlayer player = playerView != null ? playerView.getPlayer() : null;
+        String action = intent != null ? intent.getAction() : null;
+        if (player == null || ACTION_STOP.equals(action)) {
+            if (playerView != null) {
+                playerView.stop(); // 会退出后台播放并停止服务
+            }
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        if (ACTION_PLAY_PAUSE.equals(action)) {
+            player.setPlayWhenReady(!player.getPlayWhenReady());
+        }
+        startForeground(NOTIFICATION_ID, buildNotification(player.getPlayWhenReady()));
+        return START_NOT_STICKY; // 进程被杀后 player 已不存在，无需重启
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        stopForeground(true);
+        super.onDestroy();
+    }
+
+    private Notification buildNotification(boolean playing) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this)
+                .setSmallIcon(getApplicationInfo().icon)
+                .setContentTitle(getApplicationInfo().loadLabel(getPackageManager()))
+                .setContentText(getString(R.string.player_background_audio))
+                .setOngoing(true);
+
+        if (playing) {
+            builder.addAction(android.R.drawable.ic_media_pause,
+                    getString(R.string.player_background_pause), actionIntent(ACTION_PLAY_PAUSE));
+        } else {
+            builder.addAction(android.R.drawable.ic_media_play,
+                    getString(R.string.player_background_play), actionIntent(ACTION_PLAY_PAUSE));
+        }
+        builder.addAction(android.R.drawable.ic_menu_close_clear_cancel,
+                getString(R.string.player_background_stop), actionIntent(ACTION_STOP));
+
+        // 点击回到应用
+        Intent launch = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        if (launch != null) {
+            launch.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+            builder.setContentIntent(PendingIntent.getActivity(this, 0, launch,
+                    PendingIntent.FLAG_UPDATE_CURRENT));
+        }
+        return builder.build();
+    }
+
+    private PendingIntent actionIntent(String action) {
+        Intent intent = new Intent(this, BackgroundAudioService.class).setAction(action);
+        return PendingIntent.getService(this, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+}
@@ -0,0 +1,341 @@
+package com.aliya.player;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.aliya.player.utils.LatencyStats;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 视频类型解析：url 没有扩展名时（eg: http://api.zjol.com.cn/api/video/140270?avaliable=hd），
+ * 在子线程发 HEAD 请求（不支持时退化为 Range 0-0 的 GET），跟随重定向，
+ * 按 Content-Type 和最终 url 确定类型，结果按输入 url 缓存 {@link #TTL_MS}
+ * <p>
+ * 最多等待 {@link #MAX_RESOLVE_MS}，超时、失败时按 url 推断类型，不阻塞起播；
+ * 失败的 url 在 {@link #FAILURE_TTL_MS} 内不再请求，超时后仍在完成的结果照常缓存
+ *
+ * @author a_liYa
+ * @date 2018/3/16 15:30.
+ */
+public class ContentTypeResolver implements MemoryGovernor.OnTrimListener {
+
+    public static final long TTL_MS = 10 * 60 * 1000;
+    public static final long FAILURE_TTL_MS = 30 * 1000;
+    public static final long MAX_RESOLVE_MS = 3000;
+
+    private static final int MAX_CACHE_SIZE = 64;
+    private static final int MAX_REDIRECTS = 5;
+    private static final int TIMEOUT_MS = 5000;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private static volatile ContentTypeResolver sInstance;
+
+    private final Map<String, Result> cache =
+            new LinkedHashMap<String, Result>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                    return size() > MAX_CACHE_SIZE;
+                }
+            };
+    // url -> 失败时间, 与 cache 共用锁
+    private final Map<String, Long> failures =
+            new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_CACHE_SIZE;
+                }
+            };
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor;
+    private String userAgent;
+
+    private ContentTypeResolver() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+        MemoryGovernor.get().addOnTrimListener(this);
+    }
+
+    public static ContentTypeResolver get() {
+        if (sInstance == null) {
+            synchronized (ContentTypeResolver.class) {
+                if (sInstance == null) {
+                    sInstance = new ContentTypeResolver();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * 是否需要解析：http(s) 且路径没有扩展名
+     *
+     * @param url a video url
+     * @return true: 需要解析
+     */
+    public static boolean needsResolve(String url) {
+        if (TextUtils.isEmpty(url)) return false;
+
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+            return false;
+        }
+        String segment = uri.getLastPathSegment();
+        return segment == null || segment.indexOf('.') < 0;
+    }
+
+    /**
+     * @param url a video url
+     * @return 未过期的解析结果，没有时返回 null
+     */
+    public Result getCached(String url) {
+        if (url == null) return null;
+
+        synchronized (cache) {
+            Result result = cache.get(url);
+            if (result != null && SystemClock.elapsedRealtime() - result.resolvedAtMs > TTL_MS) {
+                cache.remove(url);
+                result = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param url a video url
+     * @return true: {@link #FAILURE_TTL_MS} 内解析失败过
+     */
+    public boolean isFailedRecently(String url) {
+        if (url == null) return false;
+
+        synchronized (cache) {
+            Long failedAtMs = failures.get(url);
+            if (failedAtMs != null
+                    && SystemClock.elapsedRealtime() - failedAtMs > FAILURE_TTL_MS) {
+                failures.remove(url);
+                failedAtMs = null;
+            }
+            return failedAtMs != null;
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+            failures.clear();
+        }
+    }
+
+    /**
+     * 异步解析，回调在主线程，最多等待 {@link #MAX_RESOLVE_MS}；
+     * 失败、超时或最近失败过时回调 null, 由调用方按 url 推断
+     *
+     * @param url      a video url
+     * @param callback .
+     */
+    public void resolve(final String url, final Callback callback) {
+        Result cached = getCached(url);
+        if (cached != null || isFailedRecently(url)) {
+            callback.onResolved(url, cached);
+            return;
+        }
+        final Delivery delivery = new Delivery(url, callback);
+        mainHandler.postDelayed(delivery, MAX_RESOLVE_MS);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startMs = SystemClock.elapsedRealtime();
+                Result result = resolveSync(url, startMs + MAX_RESOLVE_MS);
+                LatencyStats.get().record(LatencyStats.RESOLVE,
+                        SystemClock.elapsedRealtime() - startMs);
+                synchronized (cache) {
+                    if (result != null) {
+                        cache.put(url, result);
+                    } else {
+                        failures.put(url, SystemClock.elapsedRealtime());
+                    }
+                }
+                delivery.result = result;
+                mainHandler.removeCallbacks(delivery);
+                mainHandler.post(delivery);
+            }
+        });
+    }
+
+    /**
+     * @param deadlineMs 截止时间 {@link SystemClock#elapsedRealtime()}
+     */
+    private Result resolveSync(String url, long deadlineMs) {
+        try {
+            return request(url, "HEAD", deadlineMs);
+        } catch (IOException e) {
+            // 部分服务器不支持 HEAD
+        }
+        try {
+            return request(url, "GET", deadlineMs);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Result request(String url, String method, long deadlineMs) throws IOException {
+        String location = url;
+        for (int i = 0; i <= MAX_REDIRECTS; i++) {
+            int timeoutMs = (int) Math.min(TIMEOUT_MS, deadlineMs - SystemClock.elapsedRealtime());
+            if (timeoutMs <= 0) throw new IOException("Resolve timeout");
+
+            HttpURLConnection connection = (HttpURLConnection) new URL(location).openConnection();
+            try {
+                // 手动处理重定向，HttpURLConnection 不跟随 http <-> https 的重定向
+                connection.setInstanceFollowRedirects(false);
+                connection.setConnectTimeout(timeoutMs);
+                connection.setReadTimeout(timeoutMs);
+                connection.setRequestMethod(method);
+                if ("GET".equals(method)) {
+                    connection.setRequestProperty("Range", "bytes=0-0");
+                }
+                if (userAgent != null) {
+                    connection.setRequestProperty("User-Agent", userAgent);
+                }
+                int code = connection.getResponseCode();
+                if (code >= 300 && code < 400) {
+                    String redirect = connection.getHeaderField("Location");
+                    if (redirect == null) throw new IOException("Redirect without location");
+
+                    location = new URL(new URL(location), redirect).toString();
+                    continue;
+                }
+                if (code >= 400) throw new IOException("Response code " + code);
+
+                return new Result(location, extensionOf(connection.getContentType(), location));
+            } finally {
+                connection.disconnect();
+            }
+        }
+        throw new IOException("Too many redirects");
+    }
+
+    /**
+     * @return 用于 {@link PlayerHelper#buildMediaSource} 的 overrideExtension，无法判断时返回 null
+     */
+    static String extensionOf(String contentType, String finalUrl) {
+        if (contentType != null) {
+            String type = contentType.toLowerCase(Locale.US);
+            if (type.contains("mpegurl")) {
+                return "m3u8";
+            } else if (type.contains("dash+xml")) {
+                return "mpd";
+            } else if (type.contains("ms-sstr+xml")) {
+                return "ism";
+            } else if (type.contains("x-flv")) {
+                return "flv";
+            }
+        }
+        // 重定向后的 url 可能带扩展名
+        int type = Util.inferContentType(Uri.parse(finalUrl));
+        switch (type) {
+            case C.TYPE_HLS:
+                return "m3u8";
+            case C.TYPE_DASH:
+                return "mpd";
+            case C.TYPE_SS:
+                return "ism";
+        }
+        return null;
+    }
+
+    @Override
+    public void onTrim(int tier) {
+        if (tier >= MemoryGovernor.TIER_MODERATE) {
+            clear();
+        }
+    }
+
+    /**
+     * 解析结果
+     */
+    public static final class Result {
+
+        private final String url;
+        private final String extension;
+        private final long resolvedAtMs;
+
+        Result(String url, String extension) {
+            this.url = url;
+            this.extension = extension;
+            this.resolvedAtMs = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * @return 重定向后的最终 url
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return 类型扩展名 eg: m3u8; 普通文件返回 null
+         */
+        public String getExtension() {
+            return extension;
+        }
+
+    }
+
+    /**
+     * 在主线程只回调一次：解析完成，或超时（result 为 null）
+     */
+    private static final class Delivery implements Runnable {
+
+        final String url;
+        final Callback callback;
+        volatile Result result;
+        private boolean delivered;
+
+        Delivery(String url, Callback callback) {
+            this.url = url;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            if (delivered) return;
+
+            delivered = true;
+            callback.onResolved(url, result);
+        }
+    }
+
+    public interface Callback {
+
+        /**
+         * @param url    输入 url
+         * @param result 解析结果，失败时为 null
+         */
+        void onResolved(String url, Result result);
+
+    }
+
+}
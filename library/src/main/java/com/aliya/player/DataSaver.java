@@ -0,0 +1,118 @@
+package com.aliya.player;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+/**
+ * 省流量模式：计费网络（移动网络、计费热点）下限制码率、缩小缓冲、禁止预加载，可选只播放音频
+ * <p>
+ * 网络变化时由 PlayerView 即时应用，无需重新 prepare
+ *
+ * @author a_liYa
+ * @date 2018/3/12 11:05.
+ */
+public class DataSaver {
+
+    public static final int DEFAULT_MAX_VIDEO_BITRATE = 600 * 1000; // 600kbps
+    public static final long DEFAULT_MAX_BUFFER_MS = 8 * 1000;
+
+    private static volatile DataSaver sInstance;
+
+    private boolean enabled;
+    private boolean audioOnly;
+    private int maxVideoBitrate = DEFAULT_MAX_VIDEO_BITRATE;
+    private long maxBufferMs = DEFAULT_MAX_BUFFER_MS;
+
+    private DataSaver() {
+    }
+
+    public static DataSaver get() {
+        if (sInstance == null) {
+            synchronized (DataSaver.class) {
+                if (sInstance == null) {
+                    sInstance = new DataSaver();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isAudioOnly() {
+        return audioOnly;
+    }
+
+    /**
+     * 计费网络下是否只播放音频（禁用视频轨道）
+     *
+     * @param audioOnly true: 只播放音频
+     */
+    public void setAudioOnly(boolean audioOnly) {
+        this.audioOnly = audioOnly;
+    }
+
+    public int getMaxVideoBitrate() {
+        return maxVideoBitrate;
+    }
+
+    /**
+     * @param maxVideoBitrate 计费网络下视频码率上限 单位：bps
+     */
+    public void setMaxVideoBitrate(int maxVideoBitrate) {
+        this.maxVideoBitrate = maxVideoBitrate;
+    }
+
+    public long getMaxBufferMs() {
+        return maxBufferMs;
+    }
+
+    /**
+     * @param maxBufferMs 计费网络下缓冲上限 单位：ms
+     */
+    public void setMaxBufferMs(long maxBufferMs) {
+        this.maxBufferMs = maxBufferMs;
+    }
+
+    /**
+     * 当前是否需要省流量：已开启且处于计费网络
+     *
+     * @param context .
+     * @return true: 需要省流量
+     */
+    public boolean isActive(Context context) {
+        return enabled && isMetered(context);
+    }
+
+    /**
+     * 是否允许预加载
+     *
+     * @param context .
+     * @return 省流量生效时不允许
+     */
+    public boolean isPrefetchAllowed(Context context) {
+        return !isActive(context);
+    }
+
+    /**
+     * 当前网络是否计费
+     *
+     * @param context .
+     * @return true: 计费网络
+     */
+    public static boolean isMetered(Context context) {
+        if (context == null) return false;
+
+        ConnectivityManager cm = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return cm != null && ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+    }
+
+}
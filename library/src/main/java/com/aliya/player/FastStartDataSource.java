@@ -0,0 +1,284 @@
+package com.aliya.player;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.aliya.player.utils.PerfCounters;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * MP4 快速起播：moov 在文件末尾时，Mp4Extractor 读完 ftyp、mdat 头后才跳到末尾请求 moov,
+ * 再跳回 mdat, 起播前有三次串行请求
+ * <p>
+ * 这里请求头部的同时推测地请求文件末尾 {@link TailRequest}, 并从头部数据中解析顶层 box:
+ * moov 在前或不是 MP4 时立即取消；Extractor 跳到末尾时接着读已打开的尾部连接。
+ * 读过的尾部按 url 缓存到 {@link MoovCache}, 同一视频再次播放时从内存读取
+ *
+ * @author a_liYa
+ * @date 2018/3/27 10:50.
+ */
+public class FastStartDataSource implements DataSource {
+
+    /**
+     * 头部只解析这个范围内的顶层 box
+     */
+    private static final long MAX_SCAN_BYTES = 64 * 1024;
+    private static final int SKIP_BUFFER_SIZE = 4 * 1024;
+
+    private static final int TYPE_FTYP = 0x66747970;
+    private static final int TYPE_MOOV = 0x6d6f6f76;
+    private static final int TYPE_MDAT = 0x6d646174;
+
+    private final DataSource upstream;
+    private final HttpDataSource.Factory tailFactory;
+    private final boolean prefetchAllowed;
+
+    private Uri uri;
+    private String key;
+    // 下一个读取的字节在文件中的位置，及读取的结束位置（不含）
+    private long position;
+    private long limit;
+
+    // 从内存读取缓存的尾部，读完后其余部分向上游请求
+    private MoovCache.Entry entry;
+    // 认领的尾部请求
+    private TailRequest tail;
+    private boolean upstreamOpened;
+
+    // 解析头部顶层 box, 决定是否保留推测的尾部请求
+    private TailRequest speculation;
+    private boolean scanning;
+    private long boxStart;
+    private long contentLength;
+    private final byte[] header = new byte[16];
+    private int headerSize;
+
+    /**
+     * @param upstream        实际的数据源
+     * @param tailFactory     推测请求尾部使用
+     * @param prefetchAllowed false: 不推测请求（eg: 省流量），已缓存的尾部仍从内存读取
+     */
+    public FastStartDataSource(DataSource upstream, HttpDataSource.Factory tailFactory,
+                               boolean prefetchAllowed) {
+        this.upstream = upstream;
+        this.tailFactory = tailFactory;
+        this.prefetchAllowed = prefetchAllowed;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        uri = dataSpec.uri;
+        key = dataSpec.key != null ? dataSpec.key : uri.toString();
+        position = dataSpec.position;
+
+        MoovCache.Entry entry = MoovCache.get().getEntry(key);
+        if (entry != null && entry.contains(position)) {
+            this.entry = entry;
+            limit = end(dataSpec, entry.end);
+            PerfCounters.increment(PerfCounters.MOOV_CACHE_HIT);
+            return limit - position;
+        }
+        if (position > 0) {
+            TailRequest tail = MoovCache.get().takeTail(key);
+            if (tail != null && claim(tail, dataSpec)) {
+                return limit - position;
+            }
+        }
+
+        TailRequest speculation = null;
+        if (position == 0 && entry == null && prefetchAllowed) {
+            speculation = MoovCache.get().startTail(key, uri, tailFactory);
+        }
+        long startNs = System.nanoTime();
+        long length;
+        try {
+            length = upstream.open(dataSpec);
+        } catch (IOException e) {
+            if (speculation != null) {
+                MoovCache.get().cancelTail(key, speculation);
+            }
+            throw e;
+        }
+        upstreamOpened = true;
+        limit = length == C.LENGTH_UNSET ? C.LENGTH_UNSET : position + length;
+        if (speculation != null) {
+            speculation.setHeadOpenMs((System.nanoTime() - startNs) / 1000000);
+            this.speculation = speculation;
+            scanning = true;
+            boxStart = 0;
+            headerSize = 0;
+            contentLength = length;
+        }
+        return length;
+    }
+
+    /**
+     * 接着读推测的尾部请求：先读过 position 之前的部分，失败时放弃，由上游请求
+     */
+    private boolean claim(TailRequest tail, DataSpec dataSpec) {
+        if (!tail.claim(position)) {
+            MoovCache.get().cancel(tail);
+            return false;
+        }
+        try {
+            byte[] skipBuffer = new byte[SKIP_BUFFER_SIZE];
+            long skip = position - tail.getOffset();
+            while (skip > 0) {
+                int read = tail.read(skipBuffer, 0, (int) Math.min(skip, SKIP_BUFFER_SIZE));
+                if (read == C.RESULT_END_OF_INPUT) throw new EOFException();
+
+                skip -= read;
+            }
+        } catch (IOException e) {
+            tail.close();
+            return false;
+        }
+        this.tail = tail;
+        limit = end(dataSpec, tail.getEnd());
+        PerfCounters.increment(PerfCounters.MOOV_TAIL_HIT);
+        return true;
+    }
+
+    private long end(DataSpec dataSpec, long end) {
+        return dataSpec.length == C.LENGTH_UNSET ? end : Math.min(end, position + dataSpec.length);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int read;
+        if (entry != null && !upstreamOpened) {
+            if (position >= limit) return C.RESULT_END_OF_INPUT;
+
+            int available = (int) (entry.offset + entry.data.length - position);
+            if (available > 0) {
+                read = (int) Math.min(Math.min(readLength, available), limit - position);
+                System.arraycopy(entry.data, (int) (position - entry.offset), buffer, offset, read);
+            } else {
+                upstream.open(new DataSpec(uri, position, limit - position, key));
+                upstreamOpened = true;
+                read = upstream.read(buffer, offset, readLength);
+            }
+        } else if (tail != null) {
+            if (position >= limit) return C.RESULT_END_OF_INPUT;
+
+            read = tail.read(buffer, offset, (int) Math.min(readLength, limit - position));
+        } else {
+            read = upstream.read(buffer, offset, readLength);
+            if (scanning && read > 0) {
+                scan(buffer, offset, read);
+            }
+        }
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    /**
+     * 解析读到的数据中的顶层 box 头：第一个必须是 ftyp; 在 moov 之前遇到 mdat 时保留尾部请求，
+     * 其他情况取消
+     */
+    private void scan(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        while (scanning && i < end) {
+            long position = this.position + (i - offset);
+            if (position < boxStart) { // 跳过 box 内容
+                i += (int) Math.min(end - i, boxStart - position);
+                continue;
+            }
+            header[headerSize++] = buffer[i++];
+            if (headerSize < 8 || headerSize < 16 && readInt(header, 0) == 1) continue;
+
+            long size = readInt(header, 0) & 0xFFFFFFFFL;
+            int type = readInt(header, 4);
+            if (size == 1) { // 64 位 size
+                size = ((long) readInt(header, 8) << 32) | (readInt(header, 12) & 0xFFFFFFFFL);
+            }
+            if (boxStart == 0 && type != TYPE_FTYP || size < headerSize) {
+                endScan(false); // 不是 MP4, 或 size 为 0（延伸到文件结束）
+            } else if (type == TYPE_MOOV) {
+                endScan(false); // 已是快速起播格式
+            } else if (type == TYPE_MDAT) {
+                long tailOffset = boxStart + size;
+                endScan(contentLength == C.LENGTH_UNSET || tailOffset < contentLength);
+            } else { // ftyp, free 等
+                boxStart += size;
+                headerSize = 0;
+                if (boxStart >= MAX_SCAN_BYTES) {
+                    endScan(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param keep true: moov 在 mdat 之后，尾部请求留给 Extractor 认领
+     */
+    private void endScan(boolean keep) {
+        scanning = false;
+        if (!keep) {
+            MoovCache.get().cancelTail(key, speculation);
+        }
+        speculation = null;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (scanning) {
+            endScan(false);
+        }
+        entry = null;
+        TailRequest tail = this.tail;
+        if (tail != null) {
+            this.tail = null;
+            MoovCache.get().put(key, tail.getOffset(), tail.getData(), tail.getEnd());
+            tail.close();
+        }
+        if (upstreamOpened) {
+            upstreamOpened = false;
+            upstream.close();
+        }
+    }
+
+    /**
+     * 创建 {@link FastStartDataSource}, 创建时按 {@link DataSaver#isPrefetchAllowed(Context)}
+     * 决定是否推测请求尾部
+     */
+    public static final class Factory implements DataSource.Factory {
+
+        private final Context context;
+        private final DataSource.Factory upstreamFactory;
+        private final HttpDataSource.Factory tailFactory;
+
+        public Factory(Context context, DataSource.Factory upstreamFactory,
+                       HttpDataSource.Factory tailFactory) {
+            this.context = context;
+            this.upstreamFactory = upstreamFactory;
+            this.tailFactory = tailFactory;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new FastStartDataSource(upstreamFactory.createDataSource(), tailFactory,
+                    DataSaver.get().isPrefetchAllowed(context));
+        }
+    }
+
+}
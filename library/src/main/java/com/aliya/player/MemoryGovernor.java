@@ -0,0 +1,216 @@
+package com.aliya.player;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.C;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存管家：监听 {@link ComponentCallbacks2#onTrimMemory(int)}，按级别分档释放资源
+ * <p>
+ * {@link #TIER_LIGHT} 释放预加载、平滑切换备用的 player;
+ * {@link #TIER_MODERATE} 另外缩小缓冲上限、释放暂停保留的 player;
+ * {@link #TIER_CRITICAL} 另外裁剪记录缓存
+ * <p>
+ * 缓冲上限在最后一次裁剪 {@link #RECOVER_MS} 后恢复。回调均在主线程
+ *
+ * @author a_liYa
+ * @date 2018/3/15 10:20.
+ */
+public class MemoryGovernor implements ComponentCallbacks2 {
+
+    public static final int TIER_NONE = 0;
+    public static final int TIER_LIGHT = 1;
+    public static final int TIER_MODERATE = 2;
+    public static final int TIER_CRITICAL = 3;
+
+    /**
+     * 内存紧张时的缓冲上限
+     */
+    public static final long TRIM_MAX_BUFFER_MS = 10 * 1000;
+    /**
+     * 最后一次裁剪后，恢复缓冲上限的时长
+     */
+    public static final long RECOVER_MS = 60 * 1000;
+
+    private static volatile MemoryGovernor sInstance;
+
+    private final List<OnTrimListener> listeners = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final int[] trimCounts = new int[TIER_CRITICAL + 1];
+
+    private Context registeredContext;
+    private int tier = TIER_NONE;
+    private long lastTrimMs;
+    private int releasedPlayers;
+
+    private final Runnable recoverAction = new Runnable() {
+        @Override
+        public void run() {
+            tier = TIER_NONE;
+            dispatch(TIER_NONE);
+        }
+    };
+
+    private MemoryGovernor() {
+    }
+
+    public static MemoryGovernor get() {
+        if (sInstance == null) {
+            synchronized (MemoryGovernor.class) {
+                if (sInstance == null) {
+                    sInstance = new MemoryGovernor();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 注册到 Application，重复调用无副作用
+     *
+     * @param context .
+     */
+    public void register(Context context) {
+        if (context == null || registeredContext != null) return;
+
+        registeredContext = context.getApplicationContext();
+        registeredContext.registerComponentCallbacks(this);
+    }
+
+    public void addOnTrimListener(OnTrimListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeOnTrimListener(OnTrimListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return 当前裁剪档位，恢复后为 {@link #TIER_NONE}
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * @return 内存紧张时的缓冲上限 单位：ms; 无限制时返回 {@link C#TIME_UNSET}
+     */
+    public long getMaxBufferMs() {
+        return tier >= TIER_MODERATE ? TRIM_MAX_BUFFER_MS : C.TIME_UNSET;
+    }
+
+    /**
+     * 记录因内存裁剪释放的 player 个数
+     */
+    public void countReleasedPlayer() {
+        releasedPlayers++;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trim(tierOf(level));
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(TIER_CRITICAL);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // no-op
+    }
+
+    /**
+     * 按档位裁剪，可由外部主动调用
+     *
+     * @param trimTier 裁剪档位
+     */
+    public void trim(int trimTier) {
+        if (trimTier <= TIER_NONE) return;
+
+        trimCounts[trimTier]++;
+        lastTrimMs = SystemClock.elapsedRealtime();
+        tier = Math.max(tier, trimTier);
+        handler.removeCallbacks(recoverAction);
+        handler.postDelayed(recoverAction, RECOVER_MS);
+        dispatch(trimTier);
+    }
+
+    private void dispatch(int trimTier) {
+        // 回调中可能移除监听
+        OnTrimListener[] array = listeners.toArray(new OnTrimListener[listeners.size()]);
+        for (OnTrimListener listener : array) {
+            listener.onTrim(trimTier);
+        }
+    }
+
+    /**
+     * UI_HIDDEN 只表示界面不可见（eg: 切换应用），不裁剪；BACKGROUND 数值较大但并不紧急，归为轻度
+     *
+     * @param level {@link ComponentCallbacks2} TRIM_MEMORY_*
+     * @return 裁剪档位
+     */
+    static int tierOf(int level) {
+        switch (level) {
+            case TRIM_MEMORY_UI_HIDDEN:
+                return TIER_NONE;
+            case TRIM_MEMORY_RUNNING_MODERATE:
+            case TRIM_MEMORY_BACKGROUND:
+                return TIER_LIGHT;
+            case TRIM_MEMORY_RUNNING_LOW:
+            case TRIM_MEMORY_MODERATE:
+                return TIER_MODERATE;
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+            case TRIM_MEMORY_COMPLETE:
+                return TIER_CRITICAL;
+        }
+        return level >= TRIM_MEMORY_COMPLETE ? TIER_CRITICAL : TIER_NONE;
+    }
+
+    public void reset() {
+        for (int i = 0; i < trimCounts.length; i++) {
+            trimCounts[i] = 0;
+        }
+        releasedPlayers = 0;
+    }
+
+    /**
+     * @return 各档位裁剪次数、释放的 player 个数、距上次裁剪的时长
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("tier=").append(tier)
+                .append(" light=").append(trimCounts[TIER_LIGHT])
+                .append(" moderate=").append(trimCounts[TIER_MODERATE])
+                .append(" critical=").append(trimCounts[TIER_CRITICAL])
+                .append(" released=").append(releasedPlayers);
+        if (lastTrimMs > 0) {
+            sb.append(" last=").append(SystemClock.elapsedRealtime() - lastTrimMs).append("ms");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 内存裁剪监听
+     */
+    public interface OnTrimListener {
+
+        /**
+         * @param tier 裁剪档位，{@link #TIER_NONE} 表示已恢复
+         */
+        void onTrim(int tier);
+
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.aliya.player;
+
+import android.net.Uri;
+
+import com.aliya.player.utils.PerfCounters;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * moov 在文件末尾的 MP4: 管理推测的尾部请求 {@link TailRequest}, 并按 url 缓存读过的尾部数据
+ * <p>
+ * 尾部请求由 {@link FastStartDataSource} 在请求头部时发起，与头部并行；
+ * 缓存总大小不超过 {@link #MAX_CACHE_BYTES}，内存紧张时清空
+ *
+ * @author a_liYa
+ * @date 2018/3/27 10:20.
+ */
+public class MoovCache implements MemoryGovernor.OnTrimListener {
+
+    /**
+     * 单个文件尾部的上限，超过时不缓存
+     */
+    public static final int MAX_TAIL_BYTES = 4 * 1024 * 1024;
+    public static final int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+    /**
+     * 尾部请求打开后没有被认领的最长时间，超时关闭连接
+     */
+    static final long TAIL_EXPIRE_MS = 10 * 1000;
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private static volatile MoovCache sInstance;
+
+    private final Map<String, Entry> cache = new LinkedHashMap<>(8, 0.75f, true);
+    private final Map<String, TailRequest> tails = new HashMap<>();
+    private final ScheduledThreadPoolExecutor executor;
+    private long cacheBytes;
+
+    private MoovCache() {
+        executor = new ScheduledThreadPoolExecutor(2);
+        executor.setKeepAliveTime(THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        MemoryGovernor.get().addOnTrimListener(this);
+    }
+
+    public static MoovCache get() {
+        if (sInstance == null) {
+            synchronized (MoovCache.class) {
+                if (sInstance == null) {
+                    sInstance = new MoovCache();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param key url
+     * @return 已缓存的尾部，没有时返回 null
+     */
+    Entry getEntry(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * 缓存从 offset 开始读到的尾部数据
+     *
+     * @param key    url
+     * @param offset 数据在文件中的起点
+     * @param data   读到的数据
+     * @param end    文件长度
+     */
+    void put(String key, long offset, byte[] data, long end) {
+        if (data == null || data.length > MAX_TAIL_BYTES) return;
+
+        synchronized (cache) {
+            Entry old = cache.put(key, new Entry(offset, data, end));
+            if (old != null) {
+                cacheBytes -= old.data.length;
+            }
+            cacheBytes += data.length;
+            trimToSize(MAX_CACHE_BYTES);
+        }
+    }
+
+    /**
+     * 在子线程打开后缀 Range 请求，同一 url 之前没有被认领的请求被取消
+     *
+     * @param key     url
+     * @param uri     .
+     * @param factory 创建请求用的 DataSource, 与播放共用传输监听
+     * @return 尾部请求，{@link #takeTail(String)} 认领
+     */
+    TailRequest startTail(final String key, Uri uri, HttpDataSource.Factory factory) {
+        final TailRequest tail = new TailRequest(uri, key, factory.createDataSource());
+        TailRequest old;
+        synchronized (tails) {
+            old = tails.put(key, tail);
+        }
+        if (old != null) {
+            cancel(old);
+        }
+        PerfCounters.increment(PerfCounters.MOOV_PREFETCH);
+        executor.execute(tail);
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancelTail(key, tail);
+            }
+        }, TAIL_EXPIRE_MS, TimeUnit.MILLISECONDS);
+        return tail;
+    }
+
+    /**
+     * @param key url
+     * @return 等待认领的尾部请求，没有时返回 null
+     */
+    TailRequest takeTail(String key) {
+        synchronized (tails) {
+            return tails.remove(key);
+        }
+    }
+
+    /**
+     * 取消 key 对应的请求（eg: 头部显示已是快速起播格式）
+     */
+    void cancelTail(String key, TailRequest tail) {
+        synchronized (tails) {
+            if (tails.get(key) == tail) {
+                tails.remove(key);
+            }
+        }
+        cancel(tail);
+    }
+
+    /**
+     * 放弃没有被认领的请求，在子线程关闭连接，不阻塞调用的加载线程
+     */
+    void cancel(final TailRequest tail) {
+        if (tail.cancel()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    tail.close();
+                }
+            });
+        }
+    }
+
+    private void trimToSize(long maxBytes) {
+        Iterator<Entry> iterator = cache.values().iterator();
+        while (cacheBytes > maxBytes && iterator.hasNext()) {
+            cacheBytes -= iterator.next().data.length;
+            iterator.remove();
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            trimToSize(0);
+        }
+    }
+
+    @Override
+    public void onTrim(int tier) {
+        if (tier >= MemoryGovernor.TIER_MODERATE) {
+            clear();
+        }
+    }
+
+    /**
+     * 一个文件尾部读过的部分：[offset, offset + data.length), 之后到 end 的部分向上游请求
+     */
+    static final class Entry {
+
+        final long offset;
+        final byte[] data;
+        final long end;
+
+        Entry(long offset, byte[] data, long end) {
+            this.offset = offset;
+            this.data = data;
+            this.end = end;
+        }
+
+        boolean contains(long position) {
+            return position >= offset && position < offset + data.length;
+        }
+    }
+
+}
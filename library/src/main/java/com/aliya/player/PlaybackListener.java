@@ -0,0 +1,46 @@
+package com.aliya.player;
+
+import com.aliya.player.ui.PlayerView;
+import com.google.android.exoplayer2.ExoPlaybackException;
+
+/**
+ * 播放事件监听，注册在 {@link PlayerSession} 上，回调在主线程
+ *
+ * @author a_liYa
+ * @date 2018/3/21 15:10.
+ */
+public interface PlaybackListener {
+
+    /**
+     * 缓冲开始／结束
+     *
+     * @param isBuffering true : 开始缓冲
+     * @param view        current player view
+     */
+    void onBufferingChange(boolean isBuffering, PlayerView view);
+
+    /**
+     * 首帧渲染，每个会话只回调一次
+     *
+     * @param view current player view
+     */
+    void onFirstFrame(PlayerView view);
+
+    /**
+     * 播放出错
+     *
+     * @param error .
+     * @param view  current player view
+     */
+    void onError(ExoPlaybackException error, PlayerView view);
+
+    /**
+     * 播放进度，暂停时不回调，间隔由 {@link PlayerSession#setProgressInterval(long)} 设置
+     *
+     * @param positionMs 当前位置 单位：ms
+     * @param durationMs 时长 单位：ms, 未知时为 {@link com.google.android.exoplayer2.C#TIME_UNSET}
+     * @param view       current player view
+     */
+    void onProgress(long positionMs, long durationMs, PlayerView view);
+
+}
@@ -7,8 +7,20 @@ import android.net.Uri;
 import android.os.Handler;
 import android.text.TextUtils;
 
+import com.aliya.player.codec.CodecCapabilities;
+import com.aliya.player.codec.CodecRenderersFactory;
+import com.aliya.player.download.DownloadManager;
+import com.aliya.player.subtitle.SubtitleLoader;
+import com.aliya.player.utils.Recorder;
+import com.aliya.player.utils.Tracer;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.flv.FlvExtractor;
 import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
@@ -16,16 +28,20 @@ import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.source.smoothstreaming.DefaultSsChunkSource;
 import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.util.Util;
 
-import java.lang.ref.SoftReference;
+import java.io.File;
+import java.util.Locale;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Player 助手
@@ -43,10 +59,18 @@ public class PlayerHelper {
         if (context == null) return;
 
         this.context = context.getApplicationContext();
+        MemoryGovernor.get().register(this.context);
+        // 进度先于解码器探测加载，首次起播等待的只是读取进度
+        Recorder.get().load(this.context);
+        CodecCapabilities.get().load(this.context);
 
         if (userAgent == null) {
             userAgent = Util.getUserAgent(context, getAppName());
+            ContentTypeResolver.get().setUserAgent(userAgent);
+            SubtitleLoader.get().setUserAgent(userAgent);
         }
+        // 与播放共用同一套 HttpDataSource (User-Agent、超时、重定向)
+        DownloadManager.get().init(this.context, buildHttpDataSourceFactory(null));
     }
 
     public Context getContext() {
@@ -57,39 +81,124 @@ public class PlayerHelper {
         return userAgent;
     }
 
-    public MediaSource buildMediaSource(Uri uri, String overrideExtension, DefaultBandwidthMeter
-            bandwidthMeter) {
+    /**
+     * 已离线下载的视频直接播放本地文件
+     *
+     * @param url      a video url
+     * @param resolved {@link ContentTypeResolver} 的解析结果，为 null 时按 url 推断
+     * @param bandwidthMeter 传输监听
+     * @return .
+     */
+    public MediaSource buildMediaSource(String url, ContentTypeResolver.Result resolved,
+                                        TransferListener<? super DataSource> bandwidthMeter) {
+        Tracer.begin(Tracer.BUILD_MEDIA_SOURCE);
+        try {
+            File local = DownloadManager.get().getLocalFile(url);
+            if (local != null) {
+                return buildMediaSource(Uri.fromFile(local),
+                        local.getName().endsWith(".m3u8") ? "m3u8" : null, bandwidthMeter);
+            }
+            if (resolved != null) {
+                return buildMediaSource(Uri.parse(resolved.getUrl()), resolved.getExtension(),
+                        bandwidthMeter);
+            }
+            return buildMediaSource(Uri.parse(url), null, bandwidthMeter);
+        } finally {
+            Tracer.end();
+        }
+    }
+
+    public MediaSource buildMediaSource(Uri uri, String overrideExtension,
+                                        TransferListener<? super DataSource> bandwidthMeter) {
         int type = TextUtils.isEmpty(overrideExtension) ? Util.inferContentType(uri)
                 : Util.inferContentType("." + overrideExtension);
         switch (type) {
-            case C.TYPE_SS:
-                return new SsMediaSource(uri, buildDataSourceFactory(bandwidthMeter),
-                        new DefaultSsChunkSource.Factory(buildDataSourceFactory(bandwidthMeter)),
-                        mainHandler, null);
-            case C.TYPE_DASH:
-                return new DashMediaSource(uri, buildDataSourceFactory(bandwidthMeter),
-                        new DefaultDashChunkSource.Factory(buildDataSourceFactory(bandwidthMeter)),
-                        mainHandler,
-                        null);
+            case C.TYPE_SS: {
+                DataSource.Factory factory = buildDataSourceFactory(bandwidthMeter);
+                return new SsMediaSource(uri, factory,
+                        new DefaultSsChunkSource.Factory(factory), mainHandler, null);
+            }
+            case C.TYPE_DASH: {
+                DataSource.Factory factory = buildDataSourceFactory(bandwidthMeter);
+                return new DashMediaSource(uri, factory,
+                        new DefaultDashChunkSource.Factory(factory), mainHandler, null);
+            }
             case C.TYPE_HLS:
                 return new HlsMediaSource(uri, buildDataSourceFactory(bandwidthMeter), mainHandler,
                         null);
-            case C.TYPE_OTHER:
-                return new ExtractorMediaSource(uri, buildDataSourceFactory(bandwidthMeter), new
-                        DefaultExtractorsFactory(),
-                        mainHandler, null);
+            case C.TYPE_OTHER: {
+                DataSource.Factory factory = buildDataSourceFactory(bandwidthMeter);
+                if (isRemoteMp4(uri, overrideExtension)) {
+                    factory = new FastStartDataSource.Factory(context, factory,
+                            buildHttpDataSourceFactory(bandwidthMeter));
+                }
+                return new ExtractorMediaSource(uri, factory,
+                        buildExtractorsFactory(uri, overrideExtension), mainHandler, null);
+            }
             default: {
                 throw new IllegalStateException("Unsupported type: " + type);
             }
         }
     }
 
-    public DataSource.Factory buildDataSourceFactory(DefaultBandwidthMeter bandwidthMeter) {
+    /**
+     * FLV（直播）直接使用 FlvExtractor，不再逐个 Extractor 嗅探
+     */
+    private static final ExtractorsFactory FLV_EXTRACTORS_FACTORY = new ExtractorsFactory() {
+        @Override
+        public Extractor[] createExtractors() {
+            return new Extractor[]{new FlvExtractor()};
+        }
+    };
+
+    // 无状态，每次 createExtractors 都创建新的 Extractor, 可以共用
+    private static final ExtractorsFactory DEFAULT_EXTRACTORS_FACTORY =
+            new DefaultExtractorsFactory();
+
+    /**
+     * 网络 MP4 可能 moov 在末尾，使用 {@link FastStartDataSource}
+     */
+    private static boolean isRemoteMp4(Uri uri, String overrideExtension) {
+        String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)
+                || overrideExtension != null) return false;
+
+        String path = uri.getPath();
+        if (path == null) return false;
+
+        path = path.toLowerCase(Locale.US);
+        return path.endsWith(".mp4") || path.endsWith(".m4v") || path.endsWith(".mov");
+    }
+
+    private static ExtractorsFactory buildExtractorsFactory(Uri uri, String overrideExtension) {
+        String path = uri.getPath();
+        if ("flv".equals(overrideExtension)
+                || path != null && path.toLowerCase(Locale.US).endsWith(".flv")) {
+            return FLV_EXTRACTORS_FACTORY;
+        }
+        return DEFAULT_EXTRACTORS_FACTORY;
+    }
+
+    /**
+     * 创建 player, 解码器按 {@link CodecRenderersFactory} 选择；测试中替换为不解码的 player
+     *
+     * @param trackSelector .
+     * @param loadControl   .
+     * @return a new player
+     */
+    public SimpleExoPlayer newPlayer(TrackSelector trackSelector, LoadControl loadControl) {
+        return ExoPlayerFactory.newSimpleInstance(new CodecRenderersFactory(context),
+                trackSelector, loadControl);
+    }
+
+    public DataSource.Factory buildDataSourceFactory(
+            TransferListener<? super DataSource> bandwidthMeter) {
         return new DefaultDataSourceFactory(context, bandwidthMeter,
                 buildHttpDataSourceFactory(bandwidthMeter));
     }
 
-    public HttpDataSource.Factory buildHttpDataSourceFactory(DefaultBandwidthMeter bandwidthMeter) {
+    public HttpDataSource.Factory buildHttpDataSourceFactory(
+            TransferListener<? super DataSource> bandwidthMeter) {
         return new DefaultHttpDataSourceFactory(getUserAgent(), bandwidthMeter);
     }
 
@@ -108,16 +217,31 @@ public class PlayerHelper {
     }
 
 
-    private static SoftReference<ExecutorService> threadExecutorSoft;
+    /**
+     * 空闲超过该时长后回收线程
+     */
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
 
+    private static volatile ExecutorService threadExecutor;
+
+    /**
+     * 单线程执行器，常驻持有；空闲时线程自动回收，有任务时再创建
+     *
+     * @return .
+     */
     public static ExecutorService getThreadExecutor() {
-        ExecutorService service;
-        if (threadExecutorSoft == null || (service = threadExecutorSoft.get()) == null) {
-            service = Executors.newSingleThreadExecutor();
-            threadExecutorSoft = new SoftReference<>(service);
+        if (threadExecutor == null) {
+            synchronized (PlayerHelper.class) {
+                if (threadExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                            THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>());
+                    executor.allowCoreThreadTimeOut(true);
+                    threadExecutor = executor;
+                }
+            }
         }
-        return service;
+        return threadExecutor;
     }
 
-
 }
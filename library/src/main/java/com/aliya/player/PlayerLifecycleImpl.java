@@ -2,8 +2,11 @@ package com.aliya.player;
 
 import com.aliya.player.lifecycle.LifecycleListener;
 import com.aliya.player.ui.PlayerView;
+import com.aliya.player.utils.LatencyStats;
+import com.aliya.player.utils.PerfCounters;
+import com.google.android.exoplayer2.SimpleExoPlayer;
 
-import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 
 /**
  * Player的生命周期实现类
@@ -12,37 +15,80 @@ import java.lang.ref.SoftReference;
  */
 public class PlayerLifecycleImpl implements LifecycleListener {
 
-    private SoftReference<PlayerView> playerViewSoft;
+    /**
+     * 默认策略：onPause、隐藏时释放 player
+     */
+    public static final int POLICY_RELEASE = 0;
+    /**
+     * onPause、隐藏时只暂停，保留 player 和缓冲，宽限期后或 onStop 时释放
+     */
+    public static final int POLICY_PAUSE = 1;
+    /**
+     * onStop（应用退到后台、跳转其它页面）时只继续播放音频，禁用视频渲染器；
+     * 未在播放时，或应用仍在前台时隐藏，同 {@link #POLICY_RELEASE}
+     */
+    public static final int POLICY_BACKGROUND_AUDIO = 2;
+
+    public static final long DEFAULT_GRACE_PERIOD_MS = 30 * 1000;
+
+    private WeakReference<PlayerView> playerViewRef;
     private boolean lifecycleFollowFlag = true; // true:表示跟随生命周期
+    private int policy = POLICY_RELEASE;
+    private long gracePeriodMs = DEFAULT_GRACE_PERIOD_MS;
+    private boolean pausedByLifecycle; // 由生命周期暂停，恢复时继续播放
+    private boolean retained; // 暂停后保留 player, 等待恢复或宽限期结束
+
+    private final Runnable releaseAction = new Runnable() {
+        @Override
+        public void run() {
+            stopPlayer();
+        }
+    };
 
     public PlayerLifecycleImpl(PlayerView playerManager) {
-        playerViewSoft = new SoftReference<>(playerManager);
+        playerViewRef = new WeakReference<>(playerManager);
     }
 
     @Override
     public void onStart() {
-
+        exitBackgroundAudio();
     }
 
     @Override
     public void onResume() {
-
+        exitBackgroundAudio();
+        resumePlayer();
     }
 
     @Override
     public void onPause() {
-        stopPlayer();
+        if (policy == POLICY_PAUSE) {
+            pausePlayer();
+        } else if (policy != POLICY_BACKGROUND_AUDIO) {
+            stopPlayer();
+        }
     }
 
     @Override
     public void onStop() {
-
+        if (policy == POLICY_PAUSE) {
+            stopPlayer();
+        } else if (policy == POLICY_BACKGROUND_AUDIO) {
+            enterBackgroundAudio();
+        }
     }
 
     @Override
     public void onHiddenChanged(boolean hidden) {
         if (hidden) {
-            stopPlayer();
+            if (policy == POLICY_BACKGROUND_AUDIO) {
+                stopPlayer(); // 应用仍在前台，不进入后台播放
+            } else {
+                onPause();
+            }
+        } else {
+            exitBackgroundAudio();
+            resumePlayer();
         }
     }
 
@@ -54,10 +100,134 @@ public class PlayerLifecycleImpl implements LifecycleListener {
         this.lifecycleFollowFlag = lifecycleFollowFlag;
     }
 
+    public int getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 设置生命周期策略
+     *
+     * @param policy {@link #POLICY_RELEASE}, {@link #POLICY_PAUSE} or
+     *               {@link #POLICY_BACKGROUND_AUDIO}
+     */
+    public void setPolicy(int policy) {
+        this.policy = policy;
+    }
+
+    public long getGracePeriodMs() {
+        return gracePeriodMs;
+    }
+
+    /**
+     * @param gracePeriodMs {@link #POLICY_PAUSE} 策略下，暂停后保留 player 的时长
+     */
+    public void setGracePeriodMs(long gracePeriodMs) {
+        this.gracePeriodMs = gracePeriodMs;
+    }
+
+    /**
+     * 同步策略(从另外一个对象中)
+     *
+     * @param synced 被同步的对象
+     */
+    public void syncRegime(PlayerLifecycleImpl synced) {
+        if (synced == null || synced == this) return;
+
+        lifecycleFollowFlag = synced.lifecycleFollowFlag;
+        policy = synced.policy;
+        gracePeriodMs = synced.gracePeriodMs;
+    }
+
+    /**
+     * 是否由生命周期暂停，恢复时继续播放
+     *
+     * @return true: 暂停前正在播放
+     */
+    public boolean isPausedByLifecycle() {
+        return pausedByLifecycle;
+    }
+
+    /**
+     * 是否处于暂停保留状态（等待恢复或宽限期结束），包括暂停前已被用户暂停的 player
+     *
+     * @return true: player 已暂停并保留
+     */
+    public boolean isRetained() {
+        return retained;
+    }
+
+    /**
+     * 立即释放暂停保留的 player, eg: 内存不足时
+     */
+    public void releaseIfRetained() {
+        if (retained) {
+            stopPlayer();
+        }
+    }
+
+    private void pausePlayer() {
+        if (!lifecycleFollowFlag) return;
+
+        PlayerView playerView = playerViewRef != null ? playerViewRef.get() : null;
+        SimpleExoPlayer player = playerView != null ? playerView.getPlayer() : null;
+        if (player == null) return;
+
+        if (player.getPlayWhenReady()) {
+            pausedByLifecycle = true;
+            player.setPlayWhenReady(false);
+        }
+        retained = true;
+        playerView.removeCallbacks(releaseAction);
+        PerfCounters.increment(PerfCounters.MAIN_POST);
+        playerView.postDelayed(releaseAction, gracePeriodMs);
+    }
+
+    private void enterBackgroundAudio() {
+        if (!lifecycleFollowFlag) return;
+
+        PlayerView playerView = playerViewRef != null ? playerViewRef.get() : null;
+        SimpleExoPlayer player = playerView != null ? playerView.getPlayer() : null;
+        if (player != null && player.getPlayWhenReady()) {
+            playerView.setBackgroundAudio(true);
+        } else {
+            stopPlayer();
+        }
+    }
+
+    private void exitBackgroundAudio() {
+        PlayerView playerView = playerViewRef != null ? playerViewRef.get() : null;
+        if (playerView != null) {
+            playerView.setBackgroundAudio(false);
+        }
+    }
+
+    private void resumePlayer() {
+        PlayerView playerView = playerViewRef != null ? playerViewRef.get() : null;
+        if (playerView == null) return;
+
+        playerView.removeCallbacks(releaseAction);
+        SimpleExoPlayer player = playerView.getPlayer();
+        if (pausedByLifecycle && player != null) {
+            // 画面仍在时恢复没有等待；Surface 重建后从恢复到首帧才是用户等待的时长
+            if (playerView.isVideoSurfaceValid()) {
+                LatencyStats.get().record(LatencyStats.WARM_RESUME, 0);
+            } else {
+                playerView.markStarting(LatencyStats.WARM_RESUME);
+            }
+            player.setPlayWhenReady(true);
+        }
+        pausedByLifecycle = false;
+        retained = false;
+    }
+
     private void stopPlayer() {
+        pausedByLifecycle = false;
+        retained = false;
         if (lifecycleFollowFlag) {
-            if (playerViewSoft != null && playerViewSoft.get() != null) {
-                playerViewSoft.get().release();
+            PlayerView playerView = playerViewRef != null ? playerViewRef.get() : null;
+            if (playerView != null) {
+                playerView.removeCallbacks(releaseAction);
+                playerView.release();
             }
         }
     }
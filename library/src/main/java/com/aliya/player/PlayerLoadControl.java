@@ -0,0 +1,100 @@
+package com.aliya.player;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+
+/**
+ * 可在播放中调整缓冲上限的 {@link LoadControl}, 调整后无需重新 prepare
+ * <p>
+ * 达到上限后停止加载，缓冲降到低水位（上限减去 {@link DefaultLoadControl#DEFAULT_MIN_BUFFER_MS},
+ * 至少为上限的一半）以下才继续，避免在上限附近每个分片都启停一次加载；其余逻辑由
+ * {@link DefaultLoadControl} 处理
+ *
+ * @author a_liYa
+ * @date 2018/3/12 10:30.
+ */
+public class PlayerLoadControl implements LoadControl {
+
+    private final DefaultLoadControl delegate;
+    private volatile long maxBufferUs = C.TIME_UNSET;
+    // 加载线程读写：已达到上限，等待降到低水位
+    private boolean capReached;
+
+    public PlayerLoadControl() {
+        delegate = new DefaultLoadControl();
+    }
+
+    /**
+     * 设置缓冲上限，加载线程读取
+     *
+     * @param maxBufferMs 缓冲上限 单位：ms; {@link C#TIME_UNSET} 表示使用默认值
+     */
+    public void setMaxBufferMs(long maxBufferMs) {
+        maxBufferUs = maxBufferMs == C.TIME_UNSET ? C.TIME_UNSET : C.msToUs(maxBufferMs);
+    }
+
+    public long getMaxBufferMs() {
+        long maxUs = maxBufferUs;
+        return maxUs == C.TIME_UNSET ? C.TIME_UNSET : C.usToMs(maxUs);
+    }
+
+    @Override
+    public void onPrepared() {
+        capReached = false;
+        delegate.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 TrackSelectionArray trackSelections) {
+        delegate.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        capReached = false;
+        delegate.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        capReached = false;
+        delegate.onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return delegate.getAllocator();
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
+        long maxUs = maxBufferUs;
+        // 缓冲上限低于起播阈值时，达到上限即可起播
+        return delegate.shouldStartPlayback(bufferedDurationUs, rebuffering)
+                || (maxUs != C.TIME_UNSET && bufferedDurationUs >= maxUs);
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs) {
+        long maxUs = maxBufferUs;
+        if (maxUs == C.TIME_UNSET) {
+            capReached = false;
+        } else if (bufferedDurationUs >= maxUs) {
+            capReached = true;
+        } else if (capReached && bufferedDurationUs < getLowWaterUs(maxUs)) {
+            capReached = false;
+        }
+        return !capReached && delegate.shouldContinueLoading(bufferedDurationUs);
+    }
+
+    private static long getLowWaterUs(long maxUs) {
+        return Math.max(maxUs - C.msToUs(DefaultLoadControl.DEFAULT_MIN_BUFFER_MS), maxUs / 2);
+    }
+
+}
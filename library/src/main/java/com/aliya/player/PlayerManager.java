@@ -13,9 +13,14 @@ import android.widget.FrameLayout;
 
 import com.aliya.player.gravity.OrientationHelper;
 import com.aliya.player.gravity.OrientationListener;
+import com.aliya.player.ui.Controller;
 import com.aliya.player.ui.PlayerView;
+import com.aliya.player.ui.control.DebugHudControl;
+import com.aliya.player.utils.PerfCounters;
+import com.aliya.player.utils.Recorder;
+import com.aliya.player.utils.Tracer;
 
-import java.lang.ref.SoftReference;
+import java.util.List;
 
 import static android.view.ViewGroup.LayoutParams.MATCH_PARENT;
 
@@ -25,7 +30,7 @@ import static android.view.ViewGroup.LayoutParams.MATCH_PARENT;
  * @author a_liYa
  * @date 2017/8/13 21:37.
  */
-public class PlayerManager {
+public class PlayerManager implements MemoryGovernor.OnTrimListener {
 
     private PlayerView mPlayerView;
     private PlayerView mSmoothPlayerView;
@@ -34,29 +39,31 @@ public class PlayerManager {
     private String mBackupUrl;
     private PlayerHelper mHelper;
     private OrientationHelper mOrientationHelper;
+    private AudioFocusHelper mAudioFocusHelper;
 
     private GroupListener mGroupListener;
+    private int mControlProfile = Controller.PROFILE_FULL;
 
-    private volatile static SoftReference<PlayerManager> sSoftInstance;
+    private volatile static PlayerManager sInstance;
 
     private PlayerManager() {
         mHelper = new PlayerHelper();
         mOrientationHelper = new OrientationHelper();
+        mAudioFocusHelper = new AudioFocusHelper();
         mPlayerLayoutParams = new LayoutParams(MATCH_PARENT, MATCH_PARENT);
         mGroupListener = new GroupListener();
-
+        MemoryGovernor.get().addOnTrimListener(this);
     }
 
     public static PlayerManager get() {
-        PlayerManager manager;
-        if (sSoftInstance == null || (manager = sSoftInstance.get()) == null) {
+        if (sInstance == null) {
             synchronized (PlayerManager.class) {
-                if (sSoftInstance == null || (manager = sSoftInstance.get()) == null) {
-                    sSoftInstance = new SoftReference<>(manager = new PlayerManager());
+                if (sInstance == null) {
+                    sInstance = new PlayerManager();
                 }
             }
         }
-        return manager;
+        return sInstance;
     }
 
     public void play(FrameLayout parent, String url) {
@@ -72,68 +79,212 @@ public class PlayerManager {
     }
 
     public void play(FrameLayout parent, String url, int childIndex, Object extraData) {
-        if (TextUtils.isEmpty(url) || parent == null) return;
-        mHelper.setContext(parent.getContext());
-
-        if (TextUtils.equals(mBackupUrl, url) && mPlayerView != null && !mPlayerView.isStop()) {
-            // 同一个url, 且没释放; eg:全屏
-            if (mSmoothPlayerView == null) {
-                mSmoothPlayerView = new PlayerView(mHelper.getContext());
-                mSmoothPlayerView.setPlayerHelper(mHelper);
-                mSmoothPlayerView.setId(R.id.player_view);
-            }
+        Tracer.begin(Tracer.MANAGER_PLAY);
+        try {
+            if (TextUtils.isEmpty(url) || parent == null) return;
+            mHelper.setContext(parent.getContext());
+            mAudioFocusHelper.setContext(parent.getContext());
+
+            if (TextUtils.equals(mBackupUrl, url) && mPlayerView != null && !mPlayerView.isStop()) {
+                // 同一个url, 且没释放; eg:全屏
+                // 全屏等切换后的 View 使用全部控件
+                if (mSmoothPlayerView != null
+                        && mSmoothPlayerView.getControlProfile() != Controller.PROFILE_FULL) {
+                    mSmoothPlayerView.release();
+                    mSmoothPlayerView.removeOnAttachStateChangeListener(mGroupListener);
+                    mSmoothPlayerView = null;
+                }
+                if (mSmoothPlayerView == null) {
+                    mSmoothPlayerView = new PlayerView(mHelper.getContext(),
+                            Controller.PROFILE_FULL);
+                    mSmoothPlayerView.setPlayerHelper(mHelper);
+                    mSmoothPlayerView.setAudioFocusHelper(mAudioFocusHelper);
+                    mSmoothPlayerView.setId(R.id.player_view);
+                }
 
-            mSmoothPlayerView.removeOnAttachStateChangeListener(mGroupListener);
-            mSmoothPlayerView.addOnAttachStateChangeListener(mGroupListener);
+                mSmoothPlayerView.removeOnAttachStateChangeListener(mGroupListener);
+                mSmoothPlayerView.addOnAttachStateChangeListener(mGroupListener);
 
-            if (childIndex < 0 || childIndex > parent.getChildCount()) { // 在最后一个位置插入
-                parent.addView(mSmoothPlayerView, mPlayerLayoutParams);
-            } else {
-                parent.addView(mSmoothPlayerView, childIndex, mPlayerLayoutParams);
-            }
-            mSmoothPlayerView.post(mSmoothSwitchRunnable);
-            if (extraData == null) { // 取复用View的数据
-                extraData = Extra.getExtraData(mPlayerView);
-            }
-            Extra.setExtra(mSmoothPlayerView, url, extraData);
-
-            setPlayerCallback(parent, getPlayerCallback((View) mPlayerView.getParent()));
-        } else { // 不同url
-            if (mPlayerView == null) {
-                mPlayerView = new PlayerView(mHelper.getContext());
-                mPlayerView.setPlayerHelper(mHelper);
-                mPlayerView.setId(R.id.player_view);
-            }
+                if (childIndex < 0 || childIndex > parent.getChildCount()) { // 在最后一个位置插入
+                    parent.addView(mSmoothPlayerView, mPlayerLayoutParams);
+                } else {
+                    parent.addView(mSmoothPlayerView, childIndex, mPlayerLayoutParams);
+                }
+                PerfCounters.increment(PerfCounters.MAIN_POST);
+                mSmoothPlayerView.post(mSmoothSwitchRunnable);
+                if (extraData == null) { // 取复用View的数据
+                    extraData = Extra.getExtraData(mPlayerView);
+                }
+                Extra.setExtra(mSmoothPlayerView, url, extraData);
+
+                // 回调随会话转交，这里只保留 tag 供 getPlayerCallback(parent) 读取
+                PlayerSession session = mPlayerView.getSession();
+                setPlayerCallback(parent, session != null ? session.getCallback() : null);
+            } else { // 不同url
+                if (mPlayerView != null && mPlayerView.getControlProfile() != mControlProfile) {
+                    mPlayerView.release();
+                    mPlayerView.removeOnAttachStateChangeListener(mGroupListener);
+                    mPlayerView = null;
+                }
+                if (mPlayerView == null) {
+                    mPlayerView = new PlayerView(mHelper.getContext(), mControlProfile);
+                    mPlayerView.setPlayerHelper(mHelper);
+                    mPlayerView.setAudioFocusHelper(mAudioFocusHelper);
+                    mPlayerView.setId(R.id.player_view);
+                }
 
-            mPlayerView.stop();
+                mPlayerView.stop();
 
-            mPlayerView.removeOnAttachStateChangeListener(mGroupListener);
-            mPlayerView.addOnAttachStateChangeListener(mGroupListener);
+                mPlayerView.removeOnAttachStateChangeListener(mGroupListener);
+                mPlayerView.addOnAttachStateChangeListener(mGroupListener);
 
-            if (mPlayerView.getParent() != parent) {
-                if (mPlayerView.getParent() instanceof ViewGroup) { // 从上一个依附控件中删除
-                    ((ViewGroup) mPlayerView.getParent()).removeView(mPlayerView);
-                }
-                if (childIndex < 0) {
-                    parent.addView(mPlayerView, mPlayerLayoutParams);
-                } else {
-                    if (childIndex > parent.getChildCount()) {
-                        childIndex = parent.getChildCount();
+                if (mPlayerView.getParent() != parent) {
+                    if (mPlayerView.getParent() instanceof ViewGroup) { // 从上一个依附控件中删除
+                        ((ViewGroup) mPlayerView.getParent()).removeView(mPlayerView);
+                    }
+                    if (childIndex < 0) {
+                        parent.addView(mPlayerView, mPlayerLayoutParams);
+                    } else {
+                        if (childIndex > parent.getChildCount()) {
+                            childIndex = parent.getChildCount();
+                        }
+                        parent.addView(mPlayerView, childIndex, mPlayerLayoutParams);
                     }
-                    parent.addView(mPlayerView, childIndex, mPlayerLayoutParams);
                 }
+
+                mBackupUrl = url;
+                // 先设置 Extra, 播放时按 Extra url 读取记录
+                Extra.setExtra(mPlayerView, url, extraData);
+                mPlayerView.play(url);
             }
+        } finally {
+            Tracer.end();
+        }
+    }
 
-            mBackupUrl = url;
-            mPlayerView.play(url);
+    public PlayerView getPlayerView() {
+        return mPlayerView;
+    }
 
-            Extra.setExtra(mPlayerView, url, extraData);
+    /**
+     * 当前播放会话，播放其它 url 时结束，注册在上面的 {@link PlaybackListener} 随之失效
+     *
+     * @return 未播放时为 null
+     */
+    public PlayerSession getSession() {
+        return mPlayerView != null ? mPlayerView.getSession() : null;
+    }
+
+    /**
+     * 设置当前视频的播放速度
+     *
+     * @param speed 播放速度 [0.5, 3]
+     */
+    public void setPlaybackSpeed(float speed) {
+        if (mPlayerView != null && !mPlayerView.isStop()) {
+            mPlayerView.setPlaybackSpeed(speed);
         }
+    }
 
+    public float getPlaybackSpeed() {
+        return mPlayerView != null ? mPlayerView.getPlaybackSpeed() : 1f;
     }
 
-    public PlayerView getPlayerView() {
-        return mPlayerView;
+    /**
+     * 设置当前视频的备选清晰度（渐进式视频），需在 play 之后调用
+     *
+     * @param qualities 清晰度列表，其中之一应为当前播放的 url
+     */
+    public void setQualities(List<Quality> qualities) {
+        if (mPlayerView != null && !mPlayerView.isStop()) {
+            mPlayerView.setQualities(qualities);
+        }
+    }
+
+    /**
+     * 静音／取消静音，对之后播放的视频同样生效；静音起播时不创建音频解码器
+     *
+     * @param mute true: 静音
+     */
+    public void setMute(boolean mute) {
+        if (mPlayerView != null) {
+            mPlayerView.setMute(mute);
+        } else {
+            PlayerView.setDefaultMute(mute);
+        }
+    }
+
+    /**
+     * 开启/关闭音频焦点管理，默认开启
+     *
+     * @param enabled false: 不申请音频焦点，不随其它应用暂停、降低音量
+     */
+    public void setAudioFocusEnabled(boolean enabled) {
+        mAudioFocusHelper.setEnabled(enabled);
+    }
+
+    /**
+     * 设置当前视频的外挂字幕（SRT/WebVTT），需在 play 之后调用
+     *
+     * @param url 字幕 url, null 时清除
+     */
+    public void setSubtitleUrl(String url) {
+        if (mPlayerView != null && !mPlayerView.isStop()) {
+            mPlayerView.setSubtitleUrl(url);
+        }
+    }
+
+    /**
+     * 开启/关闭省流量模式，立即应用到当前视频
+     *
+     * @param enabled true: 开启
+     * @see DataSaver
+     */
+    public void setDataSaverEnabled(boolean enabled) {
+        DataSaver.get().setEnabled(enabled);
+        if (mPlayerView != null) {
+            mPlayerView.updateDataSaver();
+        }
+    }
+
+    /**
+     * 开启/关闭调试浮层（码率、超前缓冲、丢帧、下载速度），立即应用到当前视频，可用于线上排查
+     *
+     * @param enabled true: 开启
+     * @see DebugHudControl
+     */
+    public void setDebugHudEnabled(boolean enabled) {
+        DebugHudControl.setEnabled(enabled);
+        setDebugHudEnabled(mPlayerView, enabled);
+        if (mSmoothPlayerView != mPlayerView) {
+            setDebugHudEnabled(mSmoothPlayerView, enabled);
+        }
+    }
+
+    private static void setDebugHudEnabled(PlayerView playerView, boolean enabled) {
+        if (playerView != null && playerView.getController() != null) {
+            playerView.getController().setDebugHudEnabled(enabled);
+        }
+    }
+
+    @Override
+    public void onTrim(int tier) {
+        if (mPlayerView != null) {
+            mPlayerView.onTrimMemory(tier);
+        }
+        if (tier >= MemoryGovernor.TIER_LIGHT && mSmoothPlayerView != null
+                && mSmoothPlayerView.getParent() == null) {
+            // 未使用的平滑切换 View, 下次全屏时重建
+            if (!mSmoothPlayerView.isStop()) {
+                mSmoothPlayerView.release();
+                MemoryGovernor.get().countReleasedPlayer();
+            }
+            mSmoothPlayerView.removeOnAttachStateChangeListener(mGroupListener);
+            mSmoothPlayerView = null;
+        }
+        if (tier >= MemoryGovernor.TIER_CRITICAL) {
+            Recorder.get().trimMemory();
+        }
     }
 
     public OrientationHelper getOrientationHelper() {
@@ -178,15 +329,62 @@ public class PlayerManager {
 
     }
 
+    /**
+     * 订阅播放进度，对所有视频有效，暂停时不回调
+     *
+     * @param listener   .
+     * @param intervalMs 进度回调的最小间隔 单位：ms
+     * @param milestones 百分比节点 [1, 99], eg: 25, 50, 75; 每个视频每个节点回调一次
+     */
+    public void addProgressListener(ProgressListener listener, long intervalMs,
+                                    int... milestones) {
+        ProgressDispatcher.get().add(listener, intervalMs, milestones);
+    }
+
+    public void removeProgressListener(ProgressListener listener) {
+        ProgressDispatcher.get().remove(listener);
+    }
+
+    /**
+     * 设置列表内播放使用的控件，下次 {@link #play(FrameLayout, String)} 时生效；全屏始终使用全部控件
+     *
+     * @param profile {@link Controller#PROFILE_FULL} or {@link Controller#PROFILE_BARE}
+     */
+    public void setControlProfile(int profile) {
+        mControlProfile = profile;
+    }
+
     public void setLifecycleFollow(boolean lifecycleFollow) {
         if (mPlayerView != null && mPlayerView.playerLifecycle != null) {
             mPlayerView.playerLifecycle.setLifecycleFollowFlag(lifecycleFollow);
         }
     }
 
+    /**
+     * 设置生命周期策略
+     *
+     * @param policy        {@link PlayerLifecycleImpl#POLICY_RELEASE},
+     *                      {@link PlayerLifecycleImpl#POLICY_PAUSE} or
+     *                      {@link PlayerLifecycleImpl#POLICY_BACKGROUND_AUDIO}
+     * @param gracePeriodMs {@link PlayerLifecycleImpl#POLICY_PAUSE} 策略下暂停后保留 player 的时长
+     */
+    public void setLifecyclePolicy(int policy, long gracePeriodMs) {
+        if (mPlayerView != null && mPlayerView.playerLifecycle != null) {
+            mPlayerView.playerLifecycle.setPolicy(policy);
+            mPlayerView.playerLifecycle.setGracePeriodMs(gracePeriodMs);
+        }
+    }
+
     public static void setPlayerCallback(View parent, PlayerCallback callback) {
         if (parent != null) {
             parent.setTag(R.id.player_tag_callback, callback);
+            // 播放之后设置的，同步到当前会话
+            PlayerManager manager = sInstance;
+            PlayerView playerView = manager != null ? manager.mPlayerView : null;
+            if (playerView != null && playerView.getParent() == parent
+                    && playerView.getSession() != null) {
+                playerView.getSession().setCallback(callback);
+            }
         }
     }
 
@@ -229,9 +427,6 @@ public class PlayerManager {
                 parent.removeOnAttachStateChangeListener(this);
                 parent.addOnAttachStateChangeListener(this);
 
-                // 持有PlayerManager引用，防止软引用回收
-                parent.setTag(R.id.player_tag_reference, PlayerManager.this);
-
                 Object tag = parent.getTag(R.id.player_tag_attach_listener);
                 if (tag instanceof View.OnAttachStateChangeListener) {
                     ((View.OnAttachStateChangeListener) tag).onViewAttachedToWindow(v);
@@ -251,7 +446,7 @@ public class PlayerManager {
                 mSmoothPlayerView.release();
             } else if (v.getId() == R.id.player_view) {
                 final View parent = (View) v.getParent();
-                parent.setTag(R.id.player_tag_reference, null); // 释放PlayerManager引用
+                PerfCounters.increment(PerfCounters.MAIN_POST);
                 v.post(new Runnable() {
                     @Override
                     public void run() {
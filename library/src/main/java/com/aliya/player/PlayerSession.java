@@ -0,0 +1,157 @@
+package com.aliya.player;
+
+import com.aliya.player.ui.PlayerView;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+
+/**
+ * 播放会话 - 一个视频从开始播放到换成其它视频为止，全屏切换时随 player 转交；
+ * 按原始 url（{@link com.aliya.player.Extra} url）区分，切换清晰度不算换视频
+ * <p>
+ * 持有本次播放的 {@link PlayerCallback} 和 {@link PlaybackListener}，事件统一由
+ * {@link com.aliya.player.ui.Controller} 分发，不再逐次从父容器 View tag 中查找；
+ * 监听写时复制，分发时不分配对象
+ *
+ * @author a_liYa
+ * @date 2018/3/21 15:20.
+ */
+public class PlayerSession {
+
+    public static final long DEFAULT_PROGRESS_INTERVAL_MS = 1000;
+
+    private static final PlaybackListener[] EMPTY = new PlaybackListener[0];
+
+    private final String url;
+    private volatile PlaybackListener[] listeners = EMPTY;
+    private PlayerCallback callback;
+    private long progressIntervalMs = DEFAULT_PROGRESS_INTERVAL_MS;
+
+    private boolean buffering;
+    private boolean firstFrameRendered;
+    private long lastProgressMs = C.TIME_UNSET;
+
+    public PlayerSession(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return 原始 url, 切换清晰度后不变
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public PlayerCallback getCallback() {
+        return callback;
+    }
+
+    public void setCallback(PlayerCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @param intervalMs 进度回调的最小间隔 单位：ms
+     */
+    public void setProgressInterval(long intervalMs) {
+        progressIntervalMs = Math.max(0, intervalMs);
+    }
+
+    public synchronized void addListener(PlaybackListener listener) {
+        if (listener == null) return;
+
+        PlaybackListener[] old = listeners;
+        for (PlaybackListener l : old) {
+            if (l == listener) return;
+        }
+        PlaybackListener[] array = new PlaybackListener[old.length + 1];
+        System.arraycopy(old, 0, array, 0, old.length);
+        array[old.length] = listener;
+        listeners = array;
+    }
+
+    public synchronized void removeListener(PlaybackListener listener) {
+        PlaybackListener[] old = listeners;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] == listener) {
+                if (old.length == 1) {
+                    listeners = EMPTY;
+                } else {
+                    PlaybackListener[] array = new PlaybackListener[old.length - 1];
+                    System.arraycopy(old, 0, array, 0, i);
+                    System.arraycopy(old, i + 1, array, i, old.length - i - 1);
+                    listeners = array;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 同一 url 重新播放（eg: 出错后重试），监听保留，状态重置
+     */
+    public void restart() {
+        buffering = false;
+        firstFrameRendered = false;
+        lastProgressMs = C.TIME_UNSET;
+    }
+
+    public void dispatchPlay(PlayerView view) {
+        if (callback != null) {
+            callback.onPlay(view);
+        }
+    }
+
+    public void dispatchPause(PlayerView view) {
+        if (callback != null) {
+            callback.onPause(view);
+        }
+    }
+
+    public void dispatchFullscreenChange(boolean isFullscreen, PlayerView view) {
+        if (callback != null) {
+            callback.onFullscreenChange(isFullscreen, view);
+        }
+    }
+
+    public void dispatchMuteChange(boolean isMute, PlayerView view) {
+        if (callback != null) {
+            callback.onMuteChange(isMute, view);
+        }
+    }
+
+    public void dispatchBuffering(boolean isBuffering, PlayerView view) {
+        if (buffering == isBuffering) return;
+
+        buffering = isBuffering;
+        for (PlaybackListener listener : listeners) {
+            listener.onBufferingChange(isBuffering, view);
+        }
+    }
+
+    public void dispatchFirstFrame(PlayerView view) {
+        if (firstFrameRendered) return;
+
+        firstFrameRendered = true;
+        for (PlaybackListener listener : listeners) {
+            listener.onFirstFrame(view);
+        }
+    }
+
+    public void dispatchError(ExoPlaybackException error, PlayerView view) {
+        for (PlaybackListener listener : listeners) {
+            listener.onError(error, view);
+        }
+    }
+
+    public void dispatchProgress(long positionMs, long durationMs, PlayerView view) {
+        // 向后拖动时立即回调
+        if (lastProgressMs != C.TIME_UNSET && positionMs >= lastProgressMs
+                && positionMs - lastProgressMs < progressIntervalMs) return;
+
+        lastProgressMs = positionMs;
+        for (PlaybackListener listener : listeners) {
+            listener.onProgress(positionMs, durationMs, view);
+        }
+    }
+
+}
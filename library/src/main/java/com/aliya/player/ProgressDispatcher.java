@@ -0,0 +1,149 @@
+package com.aliya.player;
+
+import com.google.android.exoplayer2.C;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * 进度订阅分发 - 由 {@link com.aliya.player.ui.Controller} 刷新进度的 tick 驱动，
+ * 订阅者再多也只有一个定时器
+ * <p>
+ * 订阅写时复制，分发时不分配对象；会话变化（播放其它 url）时百分比节点重新计算
+ *
+ * @author a_liYa
+ * @date 2018/3/22 10:45.
+ */
+public class ProgressDispatcher {
+
+    private static final Subscription[] EMPTY = new Subscription[0];
+
+    private static volatile ProgressDispatcher sInstance;
+
+    private volatile Subscription[] subscriptions = EMPTY;
+    private WeakReference<PlayerSession> sessionRef;
+
+    private ProgressDispatcher() {
+    }
+
+    public static ProgressDispatcher get() {
+        if (sInstance == null) {
+            synchronized (ProgressDispatcher.class) {
+                if (sInstance == null) {
+                    sInstance = new ProgressDispatcher();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param listener   .
+     * @param intervalMs 进度回调的最小间隔 单位：ms
+     * @param milestones 百分比节点 [1, 99], eg: 25, 50, 75
+     */
+    public synchronized void add(ProgressListener listener, long intervalMs, int... milestones) {
+        if (listener == null) return;
+
+        remove(listener);
+        Subscription[] old = subscriptions;
+        Subscription[] array = new Subscription[old.length + 1];
+        System.arraycopy(old, 0, array, 0, old.length);
+        array[old.length] = new Subscription(listener, intervalMs, milestones);
+        subscriptions = array;
+    }
+
+    public synchronized void remove(ProgressListener listener) {
+        Subscription[] old = subscriptions;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i].listener == listener) {
+                if (old.length == 1) {
+                    subscriptions = EMPTY;
+                } else {
+                    Subscription[] array = new Subscription[old.length - 1];
+                    System.arraycopy(old, 0, array, 0, i);
+                    System.arraycopy(old, i + 1, array, i, old.length - i - 1);
+                    subscriptions = array;
+                }
+                return;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return subscriptions.length == 0;
+    }
+
+    /**
+     * 播放中每次刷新进度时调用
+     *
+     * @param session    当前播放会话
+     * @param positionMs 当前位置
+     * @param durationMs 时长
+     * @param live       true: 直播，不计算百分比节点
+     */
+    public void dispatch(PlayerSession session, long positionMs, long durationMs, boolean live) {
+        Subscription[] array = subscriptions;
+        if (array.length == 0 || session == null) return;
+
+        PlayerSession last = sessionRef != null ? sessionRef.get() : null;
+        if (last != session) {
+            sessionRef = new WeakReference<>(session);
+            for (Subscription subscription : array) {
+                subscription.reset();
+            }
+        }
+
+        int percent = -1;
+        if (!live && durationMs != C.TIME_UNSET && durationMs > 0) {
+            percent = (int) (positionMs * 100 / durationMs);
+        }
+        String url = session.getUrl();
+        for (Subscription subscription : array) {
+            subscription.dispatch(url, positionMs, durationMs, percent);
+        }
+    }
+
+    private static final class Subscription {
+
+        final ProgressListener listener;
+        final long intervalMs;
+        final int[] milestones;
+
+        long lastPositionMs = C.TIME_UNSET;
+        int nextMilestone; // milestones 中下一个未到达的下标
+
+        Subscription(ProgressListener listener, long intervalMs, int[] milestones) {
+            this.listener = listener;
+            this.intervalMs = Math.max(0, intervalMs);
+            int[] sorted = milestones != null ? milestones.clone() : new int[0];
+            Arrays.sort(sorted);
+            this.milestones = sorted;
+            reset();
+        }
+
+        void reset() {
+            lastPositionMs = C.TIME_UNSET;
+            nextMilestone = 0;
+            // 跳过无效节点
+            while (nextMilestone < milestones.length && milestones[nextMilestone] <= 0) {
+                nextMilestone++;
+            }
+        }
+
+        void dispatch(String url, long positionMs, long durationMs, int percent) {
+            // 向后拖动时立即回调
+            if (lastPositionMs == C.TIME_UNSET || positionMs < lastPositionMs
+                    || positionMs - lastPositionMs >= intervalMs) {
+                lastPositionMs = positionMs;
+                listener.onProgress(url, positionMs, durationMs);
+            }
+            // 向前拖动越过多个节点时依次回调
+            while (nextMilestone < milestones.length && milestones[nextMilestone] < 100
+                    && percent >= milestones[nextMilestone]) {
+                listener.onMilestone(url, milestones[nextMilestone++]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.aliya.player;
+
+/**
+ * 播放进度订阅，由 {@link PlayerManager#addProgressListener(ProgressListener, long, int...)} 注册，
+ * 回调在主线程，暂停时不回调
+ *
+ * @author a_liYa
+ * @date 2018/3/22 10:30.
+ */
+public interface ProgressListener {
+
+    /**
+     * 播放进度，间隔不小于订阅时指定的间隔
+     *
+     * @param url        a video url
+     * @param positionMs 当前位置 单位：ms
+     * @param durationMs 时长 单位：ms, 未知时为 {@link com.google.android.exoplayer2.C#TIME_UNSET}
+     */
+    void onProgress(String url, long positionMs, long durationMs);
+
+    /**
+     * 播放到订阅的百分比节点，每个视频每个节点只回调一次；直播不回调
+     *
+     * @param url     a video url
+     * @param percent 百分比 eg: 25、50、75
+     */
+    void onMilestone(String url, int percent);
+
+}
@@ -0,0 +1,50 @@
+package com.aliya.player;
+
+import android.text.TextUtils;
+
+import java.util.List;
+
+/**
+ * 清晰度 - 渐进式视频源的备选 url
+ *
+ * @author a_liYa
+ * @date 2018/3/9 15:40.
+ */
+public class Quality {
+
+    private String name;
+
+    private String url;
+
+    public Quality(String name, String url) {
+        this.name = name;
+        this.url = url;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * 查找 url 对应的清晰度
+     *
+     * @param qualities 清晰度列表
+     * @param url       a video url
+     * @return 没有时返回 null
+     */
+    public static Quality find(List<Quality> qualities, String url) {
+        if (qualities != null && url != null) {
+            for (Quality quality : qualities) {
+                if (quality != null && TextUtils.equals(quality.url, url)) {
+                    return quality;
+                }
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.aliya.player;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 推测的尾部请求：请求头部的同时以后缀 Range（bytes=-N）请求文件末尾，moov 在末尾时
+ * Extractor 跳到末尾直接接着读这个连接，省去一次串行的请求
+ * <p>
+ * 子线程只负责打开连接，数据在认领后由 Extractor 的加载线程读取；没有被认领时关闭连接，
+ * 多用的流量不超过 {@link #SUFFIX_BYTES}
+ *
+ * @author a_liYa
+ * @date 2018/3/29 10:20.
+ */
+final class TailRequest implements Runnable {
+
+    /**
+     * 推测请求末尾的字节数，可覆盖大多数短视频的 moov
+     */
+    static final int SUFFIX_BYTES = 512 * 1024;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final Uri uri;
+    private final String key;
+    private final HttpDataSource source;
+    private final CountDownLatch opened = new CountDownLatch(1);
+
+    // 以下由 this 同步
+    private long offset = C.POSITION_UNSET;
+    private long length;
+    private long headOpenMs;
+    private boolean claimed;
+    private boolean closed;
+
+    // 认领后由加载线程读写：从 offset 开始读到的数据
+    private byte[] data;
+    private int size;
+
+    TailRequest(Uri uri, String key, HttpDataSource source) {
+        this.uri = uri;
+        this.key = key;
+        this.source = source;
+        source.setRequestProperty("Range", "bytes=-" + SUFFIX_BYTES);
+    }
+
+    @Override
+    public void run() {
+        long offset = C.POSITION_UNSET;
+        long length = C.LENGTH_UNSET;
+        try {
+            // position 为 0、长度未知时不会再添加 Range, 使用上面的后缀 Range
+            length = source.open(new DataSpec(uri, 0, C.LENGTH_UNSET, key));
+            offset = parseOffset(source.getResponseHeaders(), length);
+        } catch (IOException | RuntimeException e) {
+            // 服务端不支持时自行请求
+        }
+        boolean close;
+        synchronized (this) {
+            close = closed || offset == C.POSITION_UNSET;
+            if (!close) {
+                this.offset = offset;
+                this.length = length;
+            }
+            closed |= close;
+        }
+        opened.countDown();
+        if (close) {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * 只接受到文件结束的 206 响应：Content-Range 为 bytes S-E/T 且 E 为 T - 1
+     *
+     * @return 尾部的起点 S, 不符合时返回 {@link C#POSITION_UNSET}
+     */
+    private static long parseOffset(Map<String, List<String>> headers, long length) {
+        List<String> values = headers != null ? headers.get("Content-Range") : null;
+        if (values == null || values.isEmpty() || length == C.LENGTH_UNSET) {
+            return C.POSITION_UNSET;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(values.get(0));
+        if (!matcher.find()) return C.POSITION_UNSET;
+
+        long first = Long.parseLong(matcher.group(1));
+        long last = Long.parseLong(matcher.group(2));
+        long total = Long.parseLong(matcher.group(3));
+        if (last != total - 1 || last - first + 1 != length) return C.POSITION_UNSET;
+        return first;
+    }
+
+    /**
+     * @param headOpenMs 头部请求打开连接的耗时，Extractor 自行请求尾部大约也要这么久
+     */
+    synchronized void setHeadOpenMs(long headOpenMs) {
+        this.headOpenMs = headOpenMs;
+    }
+
+    /**
+     * 认领连接：尚未打开时最多等待头部请求的耗时，不会比 Extractor 自行请求更慢
+     *
+     * @param position Extractor 请求的位置
+     * @return true: 已打开且包含 position, 之后由调用者读取并 {@link #close()}
+     */
+    boolean claim(long position) {
+        long waitMs;
+        synchronized (this) {
+            waitMs = headOpenMs;
+        }
+        try {
+            opened.await(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed || claimed || offset == C.POSITION_UNSET
+                    || position < offset || position >= offset + length) {
+                return false;
+            }
+            claimed = true;
+        }
+        if (length <= MoovCache.MAX_TAIL_BYTES) {
+            data = new byte[(int) length];
+        }
+        return true;
+    }
+
+    /**
+     * 放弃没有认领的请求
+     *
+     * @return true: 连接已打开，需要调用者 {@link #close()}；未打开时由子线程打开后关闭
+     */
+    synchronized boolean cancel() {
+        if (claimed || closed) return false;
+
+        closed = true;
+        return offset != C.POSITION_UNSET;
+    }
+
+    /**
+     * @return 尾部在文件中的起点，认领后有效
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return 文件长度，认领后有效
+     */
+    long getEnd() {
+        return offset + length;
+    }
+
+    int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int read = source.read(buffer, offset, readLength);
+        if (read > 0 && data != null) {
+            System.arraycopy(buffer, offset, data, size, read);
+            size += read;
+        }
+        return read;
+    }
+
+    /**
+     * @return 从起点读到的数据，未读到任何数据或尾部过大时返回 null
+     */
+    byte[] getData() {
+        if (data == null || size == 0) return null;
+
+        if (size == data.length) return data;
+
+        byte[] copy = new byte[size];
+        System.arraycopy(data, 0, copy, 0, size);
+        return copy;
+    }
+
+    void close() {
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            // no-op
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.aliya.player;
+
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据传输监听：转发给 {@link DefaultBandwidthMeter} 估算带宽，同时统计本次播放下载的字节数
+ * <p>
+ * 回调发生在加载线程
+ *
+ * @author a_liYa
+ * @date 2018/3/7 11:02.
+ */
+public class TrafficListener implements TransferListener<Object> {
+
+    private final DefaultBandwidthMeter bandwidthMeter;
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong meteredBytes = new AtomicLong();
+    private volatile boolean metered;
+
+    public TrafficListener(DefaultBandwidthMeter bandwidthMeter) {
+        this.bandwidthMeter = bandwidthMeter;
+    }
+
+    public DefaultBandwidthMeter getBandwidthMeter() {
+        return bandwidthMeter;
+    }
+
+    /**
+     * @return 累计下载字节数
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    /**
+     * 设置当前是否为计费网络，网络变化时更新
+     *
+     * @param metered true: 计费网络
+     */
+    public void setMetered(boolean metered) {
+        this.metered = metered;
+    }
+
+    /**
+     * @return 计费网络下累计下载字节数
+     */
+    public long getMeteredBytes() {
+        return meteredBytes.get();
+    }
+
+    @Override
+    public void onTransferStart(Object source, DataSpec dataSpec) {
+        if (bandwidthMeter != null) {
+            bandwidthMeter.onTransferStart(source, dataSpec);
+        }
+    }
+
+    @Override
+    public void onBytesTransferred(Object source, int bytes) {
+        bytesTransferred.addAndGet(bytes);
+        if (metered) {
+            meteredBytes.addAndGet(bytes);
+        }
+        if (bandwidthMeter != null) {
+            bandwidthMeter.onBytesTransferred(source, bytes);
+        }
+    }
+
+    @Override
+    public void onTransferEnd(Object source) {
+        if (bandwidthMeter != null) {
+            bandwidthMeter.onTransferEnd(source);
+        }
+    }
+
+}
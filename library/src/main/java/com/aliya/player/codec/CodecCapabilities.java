@@ -0,0 +1,311 @@
+package com.aliya.player.codec;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.MediaCodecInfo.CodecProfileLevel;
+import android.media.MediaCodecInfo.VideoCapabilities;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.Pair;
+
+import com.aliya.player.PlayerHelper;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 视频解码能力：首次播放时在子线程探测 H.264/H.265/VP9 的默认解码器、最高 profile/level、
+ * 最大帧像素，按 {@link Build#FINGERPRINT} 缓存到磁盘，系统升级后重新探测
+ * <p>
+ * 探测完成前不做限制。解码器初始化失败时记录，先换用其它解码器（一般为软解），
+ * 仍失败再降低清晰度上限；同一解码器在 {@link #FAILED_THRESHOLD} 个进程中失败过才持久化，
+ * 避免偶发失败（eg: 其它应用占用解码器）导致一直软解
+ *
+ * @author a_liYa
+ * @date 2018/3/26 10:30.
+ */
+public class CodecCapabilities {
+
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    static final int FAILED_THRESHOLD = 2;
+
+    private static final String PREFS_NAME = "player_codec_capabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_FAILED = "failed.";
+    private static final String SUFFIX_DECODER = ".decoder";
+    private static final String SUFFIX_PROFILE = ".profile";
+    private static final String SUFFIX_LEVEL = ".level";
+    private static final String SUFFIX_PIXELS = ".pixels";
+
+    private static final String[] PROBE_TYPES = {
+            MimeTypes.VIDEO_H264, MimeTypes.VIDEO_H265, MimeTypes.VIDEO_VP9};
+
+    private static volatile CodecCapabilities sInstance;
+
+    private SharedPreferences prefs;
+    private volatile boolean loaded;
+    // mime -> 探测结果, 加载完成后只读
+    private volatile Map<String, Entry> entries = Collections.emptyMap();
+    // 初始化失败的解码器，写时复制，播放线程读取
+    private volatile Set<String> failedDecoders = Collections.emptySet();
+    // 本进程降低的清晰度上限 单位：像素
+    private volatile int capPixels = NO_LIMIT;
+
+    private CodecCapabilities() {
+    }
+
+    public static CodecCapabilities get() {
+        if (sInstance == null) {
+            synchronized (CodecCapabilities.class) {
+                if (sInstance == null) {
+                    sInstance = new CodecCapabilities();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 在子线程加载缓存或探测，重复调用无副作用
+     *
+     * @param context .
+     */
+    public synchronized void load(Context context) {
+        if (prefs != null || context == null) return;
+
+        prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        PlayerHelper.getThreadExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                loadSync();
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private void loadSync() {
+        if (!TextUtils.equals(prefs.getString(KEY_FINGERPRINT, null), Build.FINGERPRINT)) {
+            SharedPreferences.Editor editor = prefs.edit().clear();
+            editor.putString(KEY_FINGERPRINT, Build.FINGERPRINT);
+            for (String mimeType : PROBE_TYPES) {
+                Entry entry = probe(mimeType);
+                if (entry != null) {
+                    editor.putString(mimeType + SUFFIX_DECODER, entry.decoderName)
+                            .putInt(mimeType + SUFFIX_PROFILE, entry.maxProfile)
+                            .putInt(mimeType + SUFFIX_LEVEL, entry.maxLevel)
+                            .putInt(mimeType + SUFFIX_PIXELS, entry.maxPixels);
+                }
+            }
+            editor.apply();
+        }
+
+        Map<String, Entry> map = new HashMap<>();
+        for (String mimeType : PROBE_TYPES) {
+            String decoderName = prefs.getString(mimeType + SUFFIX_DECODER, null);
+            if (decoderName != null) {
+                map.put(mimeType, new Entry(decoderName,
+                        prefs.getInt(mimeType + SUFFIX_PROFILE, 0),
+                        prefs.getInt(mimeType + SUFFIX_LEVEL, 0),
+                        prefs.getInt(mimeType + SUFFIX_PIXELS, NO_LIMIT)));
+            }
+        }
+        Set<String> failed = new HashSet<>();
+        for (Map.Entry<String, ?> e : prefs.getAll().entrySet()) {
+            if (e.getKey().startsWith(KEY_FAILED) && e.getValue() instanceof Integer
+                    && (Integer) e.getValue() >= FAILED_THRESHOLD) {
+                failed.add(e.getKey().substring(KEY_FAILED.length()));
+            }
+        }
+        synchronized (this) {
+            failed.addAll(failedDecoders);
+            failedDecoders = Collections.unmodifiableSet(failed);
+        }
+        entries = Collections.unmodifiableMap(map);
+        loaded = true;
+    }
+
+    private static Entry probe(String mimeType) {
+        try {
+            MediaCodecInfo info = MediaCodecSelector.DEFAULT.getDecoderInfo(mimeType, false);
+            if (info == null) return null;
+
+            int maxProfile = 0;
+            int maxLevel = 0;
+            if (info.capabilities != null && info.capabilities.profileLevels != null) {
+                for (CodecProfileLevel profileLevel : info.capabilities.profileLevels) {
+                    if (profileLevel.profile > maxProfile || profileLevel.profile == maxProfile
+                            && profileLevel.level > maxLevel) {
+                        maxProfile = profileLevel.profile;
+                        maxLevel = profileLevel.level;
+                    }
+                }
+            }
+            int maxPixels = NO_LIMIT;
+            if (MimeTypes.VIDEO_H264.equals(mimeType)) {
+                maxPixels = MediaCodecUtil.maxH264DecodableFrameSize();
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                    && info.capabilities != null) {
+                maxPixels = maxPixelsV21(info.capabilities);
+            }
+            return new Entry(info.name, maxProfile, maxLevel, maxPixels);
+        } catch (MediaCodecUtil.DecoderQueryException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static int maxPixelsV21(android.media.MediaCodecInfo.CodecCapabilities capabilities) {
+        VideoCapabilities video = capabilities.getVideoCapabilities();
+        if (video == null) return NO_LIMIT;
+
+        int width = video.getSupportedWidths().getUpper();
+        int height = video.getSupportedHeightsFor(width).getUpper();
+        return width * height;
+    }
+
+    /**
+     * @param mimeType eg: {@link MimeTypes#VIDEO_H264}
+     * @return 默认解码器名称，不支持或未探测时返回 null
+     */
+    public String getDecoderName(String mimeType) {
+        Entry entry = entries.get(mimeType);
+        return entry != null ? entry.decoderName : null;
+    }
+
+    /**
+     * @param mimeType eg: {@link MimeTypes#VIDEO_H264}
+     * @return 最大帧像素数，未知时返回 {@link #NO_LIMIT}
+     */
+    public int getMaxPixels(String mimeType) {
+        Entry entry = entries.get(mimeType);
+        return entry != null ? entry.maxPixels : NO_LIMIT;
+    }
+
+    /**
+     * @param mimeType eg: {@link MimeTypes#VIDEO_H264}
+     * @return 默认解码器支持的最高 profile, 见 {@link CodecProfileLevel}; 未知时返回 0
+     */
+    public int getMaxProfile(String mimeType) {
+        Entry entry = entries.get(mimeType);
+        return entry != null ? entry.maxProfile : 0;
+    }
+
+    /**
+     * @param mimeType eg: {@link MimeTypes#VIDEO_H264}
+     * @return 最高 profile 对应的最高 level, 见 {@link CodecProfileLevel}; 未知时返回 0
+     */
+    public int getMaxLevel(String mimeType) {
+        Entry entry = entries.get(mimeType);
+        return entry != null ? entry.maxLevel : 0;
+    }
+
+    /**
+     * 用于 {@link com.google.android.exoplayer2.trackselection.DefaultTrackSelector.Parameters
+     * #withMaxVideoSize(int, int)} 的宽高上限：按 H.264 能力和失败后降低的上限取较小值，
+     * 换算为同像素数 16:9 画面的长边，横竖屏视频都适用
+     *
+     * @return 单位：px, 不限制时返回 {@link #NO_LIMIT}
+     */
+    public int getMaxVideoSize() {
+        int pixels = Math.min(getMaxPixels(MimeTypes.VIDEO_H264), capPixels);
+        if (pixels == NO_LIMIT || pixels <= 0) return NO_LIMIT;
+
+        return (int) Math.sqrt(pixels * 16.0 / 9);
+    }
+
+    /**
+     * 按探测到的默认解码器能力判断，供渲染器报告给 TrackSelector, 自适应流不再选择超出能力的清晰度；
+     * 默认解码器失败过（换用其它解码器）或未探测时不判断
+     *
+     * @param format 视频格式
+     * @return true: 像素数或 profile/level 超出默认解码器的能力
+     */
+    public boolean exceedsCapabilities(Format format) {
+        if (format == null || format.sampleMimeType == null) return false;
+
+        Entry entry = entries.get(format.sampleMimeType);
+        if (entry == null || isDecoderFailed(entry.decoderName)) return false;
+
+        if (format.width > 0 && format.height > 0 && entry.maxPixels != NO_LIMIT
+                && format.width * format.height > entry.maxPixels) {
+            return true;
+        }
+        if (format.codecs == null || entry.maxProfile <= 0) return false;
+
+        Pair<Integer, Integer> profileLevel = MediaCodecUtil.getCodecProfileAndLevel(format.codecs);
+        if (profileLevel == null) return false;
+
+        // 只知道最高 profile 的最高 level, 较低的 profile 不判断 level
+        int profile = profileLevel.first;
+        return profile > entry.maxProfile
+                || profile == entry.maxProfile && profileLevel.second > entry.maxLevel;
+    }
+
+    boolean isDecoderFailed(String decoderName) {
+        return decoderName != null && failedDecoders.contains(decoderName);
+    }
+
+    Set<String> getFailedDecoders() {
+        return failedDecoders;
+    }
+
+    /**
+     * 解码器初始化失败后调用：解码器未记录过时记录，下次换用其它解码器；
+     * 否则把清晰度上限降到失败画面以下
+     *
+     * @param decoderName 失败的解码器，可为 null
+     * @param format      失败时播放的视频格式，可为 null
+     * @return true: 已调整，可以重试
+     */
+    public synchronized boolean onDecoderInitFailed(String decoderName, Format format) {
+        if (decoderName != null && !failedDecoders.contains(decoderName)) {
+            Set<String> failed = new HashSet<>(failedDecoders);
+            failed.add(decoderName);
+            failedDecoders = Collections.unmodifiableSet(failed);
+            if (prefs != null) {
+                String key = KEY_FAILED + decoderName;
+                prefs.edit().putInt(key, prefs.getInt(key, 0) + 1).apply();
+            }
+            return true;
+        }
+        if (format != null && format.width > 0 && format.height > 0) {
+            int pixels = format.width * format.height;
+            if (pixels <= capPixels) {
+                // 上限取失败画面像素数的一半，跳过相近的清晰度
+                capPixels = pixels / 2;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+
+        final String decoderName;
+        final int maxProfile;
+        final int maxLevel;
+        final int maxPixels;
+
+        Entry(String decoderName, int maxProfile, int maxLevel, int maxPixels) {
+            this.decoderName = decoderName;
+            this.maxProfile = maxProfile;
+            this.maxLevel = maxLevel;
+            this.maxPixels = maxPixels;
+        }
+    }
+
+}
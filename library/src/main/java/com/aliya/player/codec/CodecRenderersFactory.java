@@ -0,0 +1,64 @@
+package com.aliya.player.codec;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.video.MediaCodecVideoRenderer;
+import com.google.android.exoplayer2.video.VideoRendererEventListener;
+
+import java.util.ArrayList;
+
+/**
+ * 视频渲染器使用 {@link FallbackCodecSelector}，并按 {@link CodecCapabilities} 探测结果
+ * 报告超出能力的格式（H.264/H.265/VP9 各自判断），其它渲染器与默认相同
+ *
+ * @author a_liYa
+ * @date 2018/3/26 11:55.
+ */
+public class CodecRenderersFactory extends DefaultRenderersFactory {
+
+    public CodecRenderersFactory(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void buildVideoRenderers(Context context,
+                                       DrmSessionManager<FrameworkMediaCrypto> drmSessionManager,
+                                       long allowedVideoJoiningTimeMs, Handler eventHandler,
+                                       VideoRendererEventListener eventListener,
+                                       int extensionRendererMode, ArrayList<Renderer> out) {
+        out.add(new CapabilityVideoRenderer(context, allowedVideoJoiningTimeMs,
+                drmSessionManager, eventHandler, eventListener));
+    }
+
+    private static final class CapabilityVideoRenderer extends MediaCodecVideoRenderer {
+
+        CapabilityVideoRenderer(Context context, long allowedJoiningTimeMs,
+                                DrmSessionManager<FrameworkMediaCrypto> drmSessionManager,
+                                Handler eventHandler, VideoRendererEventListener eventListener) {
+            super(context, FallbackCodecSelector.INSTANCE, allowedJoiningTimeMs,
+                    drmSessionManager, false, eventHandler, eventListener,
+                    MAX_DROPPED_VIDEO_FRAME_COUNT_TO_NOTIFY);
+        }
+
+        @Override
+        protected int supportsFormat(MediaCodecSelector mediaCodecSelector, Format format)
+                throws MediaCodecUtil.DecoderQueryException {
+            int support = super.supportsFormat(mediaCodecSelector, format);
+            // 自适应选择只使用 FORMAT_HANDLED 的轨道；固定选择在都超出时仍可选择
+            if ((support & FORMAT_SUPPORT_MASK) == FORMAT_HANDLED
+                    && CodecCapabilities.get().exceedsCapabilities(format)) {
+                support = (support & ~FORMAT_SUPPORT_MASK) | FORMAT_EXCEEDS_CAPABILITIES;
+            }
+            return support;
+        }
+    }
+
+}
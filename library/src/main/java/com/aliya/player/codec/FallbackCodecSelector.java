@@ -0,0 +1,67 @@
+package com.aliya.player.codec;
+
+import android.media.MediaCodecList;
+import android.os.Build;
+
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+
+/**
+ * 解码器选择：默认解码器初始化失败过时，按系统列表顺序换用其它支持该类型的解码器
+ *
+ * @author a_liYa
+ * @date 2018/3/26 11:40.
+ */
+public final class FallbackCodecSelector implements MediaCodecSelector {
+
+    public static final FallbackCodecSelector INSTANCE = new FallbackCodecSelector();
+
+    private FallbackCodecSelector() {
+    }
+
+    @Override
+    public MediaCodecInfo getDecoderInfo(String mimeType, boolean requiresSecureDecoder)
+            throws MediaCodecUtil.DecoderQueryException {
+        MediaCodecInfo info = MediaCodecSelector.DEFAULT.getDecoderInfo(mimeType,
+                requiresSecureDecoder);
+        CodecCapabilities capabilities = CodecCapabilities.get();
+        // 加密内容只能使用安全解码器，不替换
+        if (info == null || requiresSecureDecoder || !capabilities.isDecoderFailed(info.name)) {
+            return info;
+        }
+        MediaCodecInfo fallback = findFallback(mimeType, capabilities);
+        return fallback != null ? fallback : info;
+    }
+
+    @Override
+    public MediaCodecInfo getPassthroughDecoderInfo()
+            throws MediaCodecUtil.DecoderQueryException {
+        return MediaCodecSelector.DEFAULT.getPassthroughDecoderInfo();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static MediaCodecInfo findFallback(String mimeType, CodecCapabilities capabilities) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return null;
+
+        try {
+            for (int i = 0; i < MediaCodecList.getCodecCount(); i++) {
+                android.media.MediaCodecInfo codec = MediaCodecList.getCodecInfoAt(i);
+                String name = codec.getName();
+                if (codec.isEncoder() || name.endsWith(".secure")
+                        || capabilities.isDecoderFailed(name)) continue;
+
+                for (String type : codec.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(mimeType)) {
+                        return MediaCodecInfo.newInstance(name, mimeType,
+                                codec.getCapabilitiesForType(type));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // 部分设备查询解码器列表会抛异常
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.aliya.player.download;
+
+/**
+ * 下载监听，回调在主线程
+ *
+ * @author a_liYa
+ * @date 2018/3/19 10:05.
+ */
+public interface DownloadListener {
+
+    /**
+     * @param url   a video url
+     * @param state {@link DownloadManager} STATE_*
+     */
+    void onStateChanged(String url, int state);
+
+    /**
+     * 下载进度，最多每 {@link DownloadManager#PROGRESS_INTERVAL_MS} 回调一次
+     *
+     * @param url        a video url
+     * @param downloaded 已下载，MP4 单位：字节; HLS 单位：分片个数
+     * @param total      总量，未知时为 -1
+     */
+    void onProgress(String url, long downloaded, long total);
+
+}
@@ -0,0 +1,437 @@
+package com.aliya.player.download;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.aliya.player.ContentTypeResolver;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 离线下载管理：MP4 按 Range 分块续传；HLS 逐个分片下载后改写为本地 playlist
+ * <p>
+ * 下载完成的文件由 {@link com.aliya.player.PlayerHelper#buildMediaSource(String,
+ * ContentTypeResolver.Result, com.google.android.exoplayer2.upstream.TransferListener)}
+ * 直接从本地播放。未完成的文件保留在磁盘，再次 {@link #start(String)} 时续传
+ * <p>
+ * 请求使用播放器的 {@link HttpDataSource}; 已完成的文件在初始化时于子线程建立索引，
+ * {@link #getLocalFile(String)} 不访问磁盘。删除在单独的线程中等任务停止后执行
+ *
+ * @author a_liYa
+ * @date 2018/3/19 10:12.
+ */
+public class DownloadManager {
+
+    public static final int STATE_NONE = 0;
+    public static final int STATE_QUEUED = 1;
+    public static final int STATE_DOWNLOADING = 2;
+    public static final int STATE_PAUSED = 3;
+    public static final int STATE_COMPLETED = 4;
+    public static final int STATE_FAILED = 5;
+
+    public static final long DEFAULT_QUOTA_BYTES = 500L * 1024 * 1024; // 500MB
+    public static final long PROGRESS_INTERVAL_MS = 500;
+
+    static final String SUFFIX_MP4 = ".mp4";
+    static final String SUFFIX_TMP = ".tmp";
+    static final String HLS_INDEX = "index.m3u8";
+
+    private static final String DIR_NAME = "player_download";
+    private static final int MAX_CONCURRENT = 2;
+    private static final int MAX_KEY_CACHE_SIZE = 64;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+    /**
+     * 删除时等待执行中的任务停止的最长时间，超过读取超时即可
+     */
+    private static final long STOP_TIMEOUT_MS = 30 * 1000;
+
+    private static volatile DownloadManager sInstance;
+
+    private final Map<String, DownloadTask> tasks = new HashMap<>();
+    // 删除中的 url, 与 tasks 共用锁; 删除完成前再次下载排在删除之后
+    private final Set<String> removing = new HashSet<>();
+    private final List<DownloadListener> listeners = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong usedBytes = new AtomicLong(-1);
+    // key -> 下载完成的文件
+    private final Map<String, File> completed = new ConcurrentHashMap<>();
+    private final Map<String, String> keys = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_KEY_CACHE_SIZE;
+        }
+    };
+
+    private ExecutorService executor;
+    // 单线程：建立索引、删除文件
+    private ExecutorService fileExecutor;
+    private File rootDir;
+    private HttpDataSource.Factory dataSourceFactory;
+    private volatile boolean indexed;
+    private volatile long quotaBytes = DEFAULT_QUOTA_BYTES;
+
+    private DownloadManager() {
+    }
+
+    public static DownloadManager get() {
+        if (sInstance == null) {
+            synchronized (DownloadManager.class) {
+                if (sInstance == null) {
+                    sInstance = new DownloadManager();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 初始化下载目录，使用前调用，重复调用无副作用
+     *
+     * @param context           .
+     * @param dataSourceFactory 下载使用的 DataSource, 与播放相同
+     */
+    public synchronized void init(Context context, HttpDataSource.Factory dataSourceFactory) {
+        if (rootDir != null || context == null || dataSourceFactory == null) return;
+
+        // API 19 以下写外部私有目录需要存储权限
+        File dir = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                ? context.getExternalFilesDir(DIR_NAME) : null;
+        if (dir == null) {
+            dir = new File(context.getFilesDir(), DIR_NAME);
+        }
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        rootDir = dir;
+        this.dataSourceFactory = dataSourceFactory;
+        executor = newExecutor(MAX_CONCURRENT);
+        fileExecutor = newExecutor(1);
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                buildIndex();
+            }
+        });
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 扫描下载目录，记录已完成的文件并统计占用
+     */
+    private void buildIndex() {
+        File[] files = rootDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isFile() && name.endsWith(SUFFIX_MP4)) {
+                    completed.put(name.substring(0, name.length() - SUFFIX_MP4.length()), file);
+                } else if (file.isDirectory()) {
+                    File index = new File(file, HLS_INDEX);
+                    if (index.isFile()) {
+                        completed.put(name, index);
+                    }
+                }
+            }
+        }
+        usedBytes.compareAndSet(-1, sizeOf(rootDir));
+        indexed = true;
+    }
+
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    /**
+     * @param quotaBytes 下载占用的存储上限 单位：字节
+     */
+    public void setQuotaBytes(long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+    }
+
+    public void addListener(DownloadListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(DownloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 开始或继续下载
+     *
+     * @param url a video url
+     */
+    public void start(String url) {
+        if (url == null || rootDir == null || getLocalFile(url) != null) return;
+
+        synchronized (tasks) {
+            DownloadTask task = tasks.get(url);
+            if (task != null && task.resume()) {
+                return;
+            }
+            final DownloadTask newTask = new DownloadTask(this, url, isHls(url));
+            tasks.put(url, newTask);
+            if (removing.contains(url)) { // 等文件删除后再开始
+                fileExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        executor.execute(newTask);
+                    }
+                });
+            } else {
+                executor.execute(newTask);
+            }
+        }
+    }
+
+    /**
+     * 暂停下载，已下载的部分保留
+     *
+     * @param url a video url
+     */
+    public void pause(String url) {
+        DownloadTask task;
+        synchronized (tasks) {
+            task = tasks.get(url);
+        }
+        if (task != null) {
+            task.pause();
+        }
+    }
+
+    /**
+     * 删除下载，包括已下载的文件
+     *
+     * @param url a video url
+     */
+    public void remove(final String url) {
+        if (url == null || rootDir == null) return;
+
+        final DownloadTask task;
+        synchronized (tasks) {
+            task = tasks.remove(url);
+            removing.add(url);
+        }
+        final boolean running = task != null && task.cancel();
+        final String key = keyOf(url);
+        completed.remove(key);
+        fileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // 执行中的任务停止后才删除，避免继续写入或改名
+                if (running) {
+                    task.awaitStopped(STOP_TIMEOUT_MS);
+                }
+                deleteFiles(new File(rootDir, key + SUFFIX_MP4));
+                deleteFiles(new File(rootDir, key + SUFFIX_MP4 + SUFFIX_TMP));
+                deleteFiles(new File(rootDir, key));
+                completed.remove(key);
+                synchronized (tasks) {
+                    removing.remove(url);
+                }
+                notifyState(url, STATE_NONE);
+            }
+        });
+    }
+
+    public int getState(String url) {
+        synchronized (tasks) {
+            DownloadTask task = tasks.get(url);
+            if (task != null) {
+                return task.getState();
+            }
+        }
+        return getLocalFile(url) != null ? STATE_COMPLETED : STATE_NONE;
+    }
+
+    /**
+     * 查询索引，不访问磁盘；索引建立前（初始化后很短的时间内）才检查文件
+     *
+     * @param url a video url
+     * @return 下载完成的本地文件（MP4 文件或 HLS 本地 playlist），未下载完成返回 null
+     */
+    public File getLocalFile(String url) {
+        if (url == null || rootDir == null) return null;
+
+        String key = cachedKeyOf(url);
+        if (indexed) return completed.get(key);
+
+        File file = new File(rootDir, key + SUFFIX_MP4);
+        if (file.isFile()) return file;
+
+        file = new File(new File(rootDir, key), HLS_INDEX);
+        if (file.isFile()) return file;
+
+        return null;
+    }
+
+    private String cachedKeyOf(String url) {
+        synchronized (keys) {
+            String key = keys.get(url);
+            if (key == null) {
+                key = keyOf(url);
+                keys.put(url, key);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * @return 下载占用的存储 单位：字节
+     */
+    public long getUsedBytes() {
+        long used = usedBytes.get();
+        if (used < 0 && rootDir != null) {
+            // 首次使用时统计，之后随读写增减
+            usedBytes.compareAndSet(-1, sizeOf(rootDir));
+            used = usedBytes.get();
+        }
+        return used;
+    }
+
+    File getRootDir() {
+        return rootDir;
+    }
+
+    HttpDataSource createDataSource() {
+        return dataSourceFactory.createDataSource();
+    }
+
+    /**
+     * 任务完成时调用，加入索引
+     *
+     * @param url  a video url
+     * @param file 完成的 MP4 文件或 HLS 本地 playlist
+     */
+    void onCompleted(String url, File file) {
+        completed.put(keyOf(url), file);
+    }
+
+    /**
+     * 占用存储，超出配额时返回 false 且不计入
+     */
+    boolean acquireBytes(long bytes) {
+        getUsedBytes();
+        long used = usedBytes.addAndGet(bytes);
+        if (used > quotaBytes) {
+            usedBytes.addAndGet(-bytes);
+            return false;
+        }
+        return true;
+    }
+
+    boolean hasRoomFor(long bytes) {
+        return getUsedBytes() + bytes <= quotaBytes;
+    }
+
+    void notifyState(final String url, final int state) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (DownloadListener listener : listeners.toArray(
+                        new DownloadListener[listeners.size()])) {
+                    listener.onStateChanged(url, state);
+                }
+            }
+        });
+    }
+
+    void notifyProgress(final String url, final long downloaded, final long total) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (DownloadListener listener : listeners.toArray(
+                        new DownloadListener[listeners.size()])) {
+                    listener.onProgress(url, downloaded, total);
+                }
+            }
+        });
+    }
+
+    private void deleteFiles(File file) {
+        if (!file.exists()) return;
+
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    deleteFiles(child);
+                }
+            }
+        }
+        long length = file.isFile() ? file.length() : 0;
+        if (file.delete() && usedBytes.get() >= 0) {
+            usedBytes.addAndGet(-length);
+        }
+    }
+
+    private static long sizeOf(File file) {
+        if (file.isFile()) return file.length();
+
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += sizeOf(child);
+            }
+        }
+        return size;
+    }
+
+    private static boolean isHls(String url) {
+        ContentTypeResolver.Result resolved = ContentTypeResolver.get().getCached(url);
+        if (resolved != null) {
+            return "m3u8".equals(resolved.getExtension());
+        }
+        return Util.inferContentType(Uri.parse(url)) == C.TYPE_HLS;
+    }
+
+    /**
+     * @return url 对应的文件名
+     */
+    static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            return String.valueOf(url.hashCode());
+        }
+    }
+
+}
@@ -0,0 +1,412 @@
+package com.aliya.player.download;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.aliya.player.ContentTypeResolver;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.aliya.player.download.DownloadManager.HLS_INDEX;
+import static com.aliya.player.download.DownloadManager.STATE_COMPLETED;
+import static com.aliya.player.download.DownloadManager.STATE_DOWNLOADING;
+import static com.aliya.player.download.DownloadManager.STATE_FAILED;
+import static com.aliya.player.download.DownloadManager.STATE_PAUSED;
+import static com.aliya.player.download.DownloadManager.STATE_QUEUED;
+import static com.aliya.player.download.DownloadManager.SUFFIX_MP4;
+import static com.aliya.player.download.DownloadManager.SUFFIX_TMP;
+
+/**
+ * 单个下载任务，在 {@link DownloadManager} 的线程池中执行
+ * <p>
+ * 文件先写入 .tmp, 按 {@link #CHUNK_SIZE} 分块请求 Range（服务器不支持时一次请求到结束），
+ * 暂停、失败后从 .tmp 末尾续传；HLS 的本地 playlist 在所有分片完成后写入，作为完成标记
+ *
+ * @author a_liYa
+ * @date 2018/3/19 10:40.
+ */
+class DownloadTask implements Runnable {
+
+    static final long CHUNK_SIZE = 2 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private static final Pattern URI_ATTRIBUTE = Pattern.compile("URI=\"([^\"]+)\"");
+    private static final Pattern BANDWIDTH_ATTRIBUTE = Pattern.compile("[:,]BANDWIDTH=(\\d+)");
+
+    private final DownloadManager manager;
+    private final String url;
+    private final boolean hls;
+
+    private volatile int state = STATE_QUEUED;
+    private volatile boolean paused;
+    // 已删除：停止后不再通知状态、不再生成文件
+    private volatile boolean removed;
+    private boolean running;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private long lastProgressMs;
+
+    DownloadTask(DownloadManager manager, String url, boolean hls) {
+        this.manager = manager;
+        this.url = url;
+        this.hls = hls;
+        manager.notifyState(url, STATE_QUEUED);
+    }
+
+    int getState() {
+        return state;
+    }
+
+    void pause() {
+        paused = true;
+    }
+
+    /**
+     * 取消暂停，任务还在排队或执行中时有效
+     *
+     * @return false: 任务已结束，需要重新创建
+     */
+    synchronized boolean resume() {
+        if (!removed && (state == STATE_QUEUED || state == STATE_DOWNLOADING)) {
+            paused = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 删除下载时调用：停止任务，之后不再通知状态
+     *
+     * @return true: 任务正在执行，删除文件前需要 {@link #awaitStopped(long)}
+     */
+    synchronized boolean cancel() {
+        removed = true;
+        paused = true;
+        return running;
+    }
+
+    /**
+     * @param timeoutMs 最长等待时间
+     */
+    void awaitStopped(long timeoutMs) {
+        try {
+            stopped.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (removed) {
+                stopped.countDown();
+                return;
+            }
+            running = true;
+        }
+        try {
+            download();
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private void download() {
+        String key = DownloadManager.keyOf(url);
+        while (true) {
+            synchronized (this) {
+                if (paused) {
+                    setState(STATE_PAUSED);
+                    return;
+                }
+                setState(STATE_DOWNLOADING);
+            }
+            try {
+                File file;
+                if (hls) {
+                    file = downloadHls(new File(manager.getRootDir(), key));
+                } else {
+                    file = new File(manager.getRootDir(), key + SUFFIX_MP4);
+                    downloadProgressive(file);
+                }
+                manager.onCompleted(url, file);
+                setState(STATE_COMPLETED);
+                return;
+            } catch (PausedException e) {
+                // 暂停期间可能已恢复，回到循环开始检查
+            } catch (IOException e) {
+                setState(STATE_FAILED);
+                return;
+            }
+        }
+    }
+
+    private void setState(int state) {
+        if (this.state == state || removed) return;
+
+        this.state = state;
+        manager.notifyState(url, state);
+    }
+
+    private void downloadProgressive(File target) throws IOException {
+        // 已解析过的 url 直接使用重定向后的地址
+        ContentTypeResolver.Result resolved = ContentTypeResolver.get().getCached(url);
+        fetch(resolved != null ? resolved.getUrl() : url, target, true);
+    }
+
+    /**
+     * @return 本地 playlist
+     */
+    private File downloadHls(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can't create " + dir);
+
+        String playlistUrl = url;
+        String playlist = readText(playlistUrl);
+        if (playlist.contains("#EXT-X-STREAM-INF")) { // master playlist
+            playlistUrl = resolveUrl(playlistUrl, selectVariant(playlist));
+            playlist = readText(playlistUrl);
+        }
+        if (!playlist.contains("#EXT-X-ENDLIST")) throw new IOException("Live playlist");
+
+        // 改写为本地文件名，分片保留原扩展名，ExoPlayer 按扩展名选择 Extractor
+        List<String> remotes = new ArrayList<>();
+        List<String> locals = new ArrayList<>();
+        StringBuilder local = new StringBuilder(playlist.length());
+        for (String line : playlist.split("\n")) {
+            line = line.trim();
+            if (line.startsWith("#")) {
+                Matcher matcher = URI_ATTRIBUTE.matcher(line);
+                if (matcher.find()) { // EXT-X-KEY、EXT-X-MAP
+                    String name = "res" + remotes.size() + extensionOf(matcher.group(1));
+                    remotes.add(resolveUrl(playlistUrl, matcher.group(1)));
+                    locals.add(name);
+                    line = line.substring(0, matcher.start(1)) + name
+                            + line.substring(matcher.end(1));
+                }
+            } else if (!line.isEmpty()) {
+                String name = "seg" + remotes.size() + extensionOf(line);
+                remotes.add(resolveUrl(playlistUrl, line));
+                locals.add(name);
+                line = name;
+            }
+            local.append(line).append('\n');
+        }
+
+        int total = remotes.size();
+        for (int i = 0; i < total; i++) {
+            File file = new File(dir, locals.get(i));
+            if (!file.isFile()) {
+                fetch(remotes.get(i), file, false);
+            }
+            reportProgress(i + 1, total);
+        }
+
+        byte[] bytes = local.toString().getBytes("UTF-8");
+        if (!manager.acquireBytes(bytes.length)) throw new QuotaExceededException();
+        File tmp = new File(dir, HLS_INDEX + SUFFIX_TMP);
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        checkPaused();
+        File index = new File(dir, HLS_INDEX);
+        if (!tmp.renameTo(index)) throw new IOException("Rename failed");
+        return index;
+    }
+
+    /**
+     * 分块下载到 target, 从 .tmp 已有长度续传
+     */
+    private void fetch(String fileUrl, File target, boolean progress) throws IOException {
+        File tmp = new File(target.getPath() + SUFFIX_TMP);
+        Uri uri = Uri.parse(fileUrl);
+        long downloaded = tmp.length();
+        long total = C.LENGTH_UNSET;
+        boolean chunked = true;
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        while (total == C.LENGTH_UNSET || downloaded < total) {
+            checkPaused();
+
+            long length = !chunked ? C.LENGTH_UNSET : total == C.LENGTH_UNSET ? CHUNK_SIZE
+                    : Math.min(CHUNK_SIZE, total - downloaded);
+            HttpDataSource source = manager.createDataSource();
+            try {
+                long opened;
+                try {
+                    opened = source.open(new DataSpec(uri, downloaded, length, null));
+                } catch (HttpDataSource.InvalidResponseCodeException e) {
+                    if (e.responseCode == HTTP_RANGE_NOT_SATISFIABLE) break; // 已下载完
+                    throw e;
+                }
+                if (chunked) {
+                    total = parseTotal(source.getResponseHeaders());
+                    if (total == C.LENGTH_UNSET) {
+                        // 服务器不支持 Range, DataSource 会从头读取并跳过已下载部分，改为一次读到结束
+                        chunked = false;
+                        continue;
+                    }
+                } else if (opened != C.LENGTH_UNSET) {
+                    total = downloaded + opened;
+                }
+                if (total != C.LENGTH_UNSET && !manager.hasRoomFor(total - downloaded)) {
+                    throw new QuotaExceededException();
+                }
+
+                // DataSource 按请求的长度读取，提前结束会抛出 EOFException, 最后一块按实际剩余读取
+                long remaining = chunked ? Math.min(length, total - downloaded) : C.LENGTH_UNSET;
+                OutputStream out = new FileOutputStream(tmp, true);
+                try {
+                    int read;
+                    while (remaining != 0 && (read = source.read(buffer, 0,
+                            remaining == C.LENGTH_UNSET ? buffer.length
+                                    : (int) Math.min(buffer.length, remaining)))
+                            != C.RESULT_END_OF_INPUT) {
+                        checkPaused();
+                        if (!manager.acquireBytes(read)) throw new QuotaExceededException();
+
+                        out.write(buffer, 0, read);
+                        downloaded += read;
+                        if (remaining != C.LENGTH_UNSET) {
+                            remaining -= read;
+                        }
+                        if (progress) {
+                            reportProgress(downloaded, total);
+                        }
+                    }
+                } finally {
+                    out.close();
+                }
+                if (!chunked) {
+                    if (total != C.LENGTH_UNSET && downloaded < total) {
+                        throw new IOException("Incomplete");
+                    }
+                    break;
+                }
+            } finally {
+                source.close();
+            }
+        }
+
+        checkPaused();
+        if (!tmp.renameTo(target)) throw new IOException("Rename failed");
+    }
+
+    private String readText(String textUrl) throws IOException {
+        HttpDataSource source = manager.createDataSource();
+        try {
+            source.open(new DataSpec(Uri.parse(textUrl)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = source.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            source.close();
+        }
+    }
+
+    private void checkPaused() throws PausedException {
+        if (paused) throw new PausedException();
+    }
+
+    private void reportProgress(long downloaded, long total) {
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastProgressMs >= DownloadManager.PROGRESS_INTERVAL_MS
+                || downloaded == total) {
+            lastProgressMs = now;
+            manager.notifyProgress(url, downloaded, total);
+        }
+    }
+
+    /**
+     * 选择码率最高的子 playlist
+     */
+    private static String selectVariant(String master) throws IOException {
+        String selected = null;
+        long maxBandwidth = -1;
+        long bandwidth = -1;
+        for (String line : master.split("\n")) {
+            line = line.trim();
+            if (line.startsWith("#EXT-X-STREAM-INF")) {
+                Matcher matcher = BANDWIDTH_ATTRIBUTE.matcher(line);
+                bandwidth = matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+            } else if (bandwidth >= 0 && !line.isEmpty() && !line.startsWith("#")) {
+                if (bandwidth > maxBandwidth) {
+                    maxBandwidth = bandwidth;
+                    selected = line;
+                }
+                bandwidth = -1;
+            }
+        }
+        if (selected == null) throw new IOException("No variant");
+        return selected;
+    }
+
+    private static String resolveUrl(String base, String relative) throws IOException {
+        return new URL(new URL(base), relative).toString();
+    }
+
+    private static String extensionOf(String uri) {
+        String segment = Uri.parse(uri).getLastPathSegment();
+        int index = segment != null ? segment.lastIndexOf('.') : -1;
+        return index >= 0 ? segment.substring(index) : "";
+    }
+
+    /**
+     * @param headers 响应头，取 Content-Range, eg: bytes 0-1023/4096
+     * @return 文件总长度，没有 Content-Range 或未知时返回 {@link C#LENGTH_UNSET}
+     */
+    private static long parseTotal(Map<String, List<String>> headers) {
+        if (headers == null) return C.LENGTH_UNSET;
+
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if ("Content-Range".equalsIgnoreCase(entry.getKey()) && entry.getValue() != null
+                    && !entry.getValue().isEmpty()) {
+                String contentRange = entry.getValue().get(0);
+                int index = contentRange.lastIndexOf('/');
+                return index >= 0 ? parseLong(contentRange.substring(index + 1)) : C.LENGTH_UNSET;
+            }
+        }
+        return C.LENGTH_UNSET;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return C.LENGTH_UNSET; // eg: "*"
+        }
+    }
+
+    private static final class PausedException extends IOException {
+    }
+
+    private static final class QuotaExceededException extends IOException {
+
+        QuotaExceededException() {
+            super("Download quota exceeded");
+        }
+    }
+
+}
@@ -39,11 +39,8 @@ public class GravitySensorListener implements SensorEventListener {
             float OneEightyOverPi = 57.29577957855f;
             float angle = (float) Math.atan2(-Y, X) * OneEightyOverPi;
             orientation = 90 - Math.round(angle);
-            // normalize to 0 - 359 range
-            while (orientation >= 360) {
-                orientation -= 360;
-            }
-            while (orientation < 0) {
+            // normalize to 0 - 359 range; atan2 在 [-180, 180], orientation 在 [-90, 270]
+            if (orientation < 0) {
                 orientation += 360;
             }
         }
@@ -5,6 +5,8 @@ import android.content.pm.ActivityInfo;
 import android.hardware.Sensor;
 import android.hardware.SensorManager;
 
+import com.aliya.player.utils.PerfCounters;
+
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -26,6 +28,9 @@ public class OrientationHelper {
         if (mListeners == null) {
             mListeners = new CopyOnWriteArrayList<>();
         }
+        // 每次 attach 都会注册，重复添加会导致 unregister 后传感器仍未注销
+        if (listener == null || mListeners.contains(listener)) return;
+
         boolean empty = mListeners.isEmpty();
         mListeners.add(listener);
         if (empty) {
@@ -33,6 +38,7 @@ public class OrientationHelper {
             mSensorListener = new GravitySensorListener(new OrientationAngleChangeListener());
             sm.registerListener(mSensorListener, sm.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
                     SensorManager.SENSOR_DELAY_NORMAL);
+            PerfCounters.increment(PerfCounters.SENSOR_REGISTER);
         }
     }
 
@@ -42,8 +48,10 @@ public class OrientationHelper {
         }
         boolean empty = mListeners != null ? mListeners.isEmpty() : true;
         if (empty) {
-            if (sm != null) {
+            if (sm != null && mSensorListener != null) {
                 sm.unregisterListener(mSensorListener);
+                mSensorListener = null;
+                PerfCounters.increment(PerfCounters.SENSOR_UNREGISTER);
             }
         }
     }
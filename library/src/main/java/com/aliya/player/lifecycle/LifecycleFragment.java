@@ -1,89 +1,49 @@
 package com.aliya.player.lifecycle;
 
 import android.app.Fragment;
-import android.os.Bundle;
-import android.support.annotation.Nullable;
-import android.util.Log;
 
 /**
- * 视频生命周期管理 Fragment
+ * 视频生命周期管理 Fragment, 每个宿主只添加一次
  *
  * @author a_liYa
  * @date 2017/8/16 20:49.
  */
 public class LifecycleFragment extends Fragment {
 
-    private LifecycleListener mLifecycle;
-    // 是否已经异步删除
-    private boolean isAsyncRemove;
+    private final LifecycleRegistry mRegistry = new LifecycleRegistry();
 
-    public LifecycleListener getLifecycleListener() {
-        return mLifecycle;
-    }
-
-    public void setLifecycleListener(LifecycleListener lifecycleListener) {
-        mLifecycle = lifecycleListener;
-    }
-
-    @Override
-    public void onCreate(@Nullable Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        isAsyncRemove = false;
+    public LifecycleRegistry getRegistry() {
+        return mRegistry;
     }
 
     @Override
     public void onStart() {
         super.onStart();
-        if (mLifecycle != null) {
-            mLifecycle.onStart();
-        }
+        mRegistry.onStart();
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        if (mLifecycle != null) {
-            mLifecycle.onResume();
-        }
+        mRegistry.onResume();
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        if (mLifecycle != null) {
-            mLifecycle.onPause();
-        }
+        mRegistry.onPause();
     }
 
     @Override
     public void onStop() {
         super.onStop();
-        if (mLifecycle != null) {
-            mLifecycle.onStop();
-        }
+        mRegistry.onStop();
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        mLifecycle = null;
-    }
-
-    /**
-     * 标记已经异步删除
-     */
-    public void tagAsyncRemove() {
-        mLifecycle = null;
-        isAsyncRemove = true;
-    }
-
-    /**
-     * 是否已经异步删除
-     *
-     * @return true：异步删除
-     */
-    public boolean isAsyncRemove() {
-        return isAsyncRemove;
+        mRegistry.destroy();
     }
 
-}
\ No newline at end of file
+}
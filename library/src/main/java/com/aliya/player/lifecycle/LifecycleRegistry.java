@@ -0,0 +1,102 @@
+package com.aliya.player.lifecycle;
+
+/**
+ * 生命周期分发 - 每个宿主（Activity/Fragment）一个，由观察 Fragment 持有
+ * <p>
+ * 添加、删除监听不需要 Fragment 事务；写时复制，分发时不分配对象
+ *
+ * @author a_liYa
+ * @date 2018/3/15 16:40.
+ */
+public class LifecycleRegistry implements LifecycleListener {
+
+    private static final LifecycleListener[] EMPTY = new LifecycleListener[0];
+
+    private volatile LifecycleListener[] listeners = EMPTY;
+    private boolean alive = true;
+
+    public synchronized void add(LifecycleListener listener) {
+        if (listener == null || !alive) return;
+
+        LifecycleListener[] old = listeners;
+        for (LifecycleListener l : old) {
+            if (l == listener) return;
+        }
+        LifecycleListener[] array = new LifecycleListener[old.length + 1];
+        System.arraycopy(old, 0, array, 0, old.length);
+        array[old.length] = listener;
+        listeners = array;
+    }
+
+    public synchronized void remove(LifecycleListener listener) {
+        LifecycleListener[] old = listeners;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] == listener) {
+                if (old.length == 1) {
+                    listeners = EMPTY;
+                } else {
+                    LifecycleListener[] array = new LifecycleListener[old.length - 1];
+                    System.arraycopy(old, 0, array, 0, i);
+                    System.arraycopy(old, i + 1, array, i, old.length - i - 1);
+                    listeners = array;
+                }
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return listeners.length;
+    }
+
+    /**
+     * @return false: 宿主已销毁，需要重新获取
+     */
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * 宿主销毁时调用，清空监听，避免持有 View
+     */
+    synchronized void destroy() {
+        alive = false;
+        listeners = EMPTY;
+    }
+
+    @Override
+    public void onStart() {
+        for (LifecycleListener listener : listeners) {
+            listener.onStart();
+        }
+    }
+
+    @Override
+    public void onResume() {
+        for (LifecycleListener listener : listeners) {
+            listener.onResume();
+        }
+    }
+
+    @Override
+    public void onPause() {
+        for (LifecycleListener listener : listeners) {
+            listener.onPause();
+        }
+    }
+
+    @Override
+    public void onStop() {
+        for (LifecycleListener listener : listeners) {
+            listener.onStop();
+        }
+    }
+
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        for (LifecycleListener listener : listeners) {
+            listener.onHiddenChanged(hidden);
+        }
+    }
+
+}
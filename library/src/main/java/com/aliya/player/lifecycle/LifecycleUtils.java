@@ -8,9 +8,17 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.aliya.player.R;
+import com.aliya.player.utils.PerfCounters;
+import com.aliya.player.utils.Tracer;
+
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * LifecycleUtils
+ * <p>
+ * 每个宿主（Activity/Fragment）只添加一次观察 Fragment，监听由 {@link LifecycleRegistry} 分发；
+ * 父容器对应的 registry 缓存在 View tag 中，全屏切换、attach/detach 不再产生 Fragment 事务
  *
  * @author a_liYa
  * @date 2017/8/16 20:55.
@@ -19,82 +27,93 @@ public class LifecycleUtils {
 
     public static final String FRAGMENT_TAG = "video.manager";
 
-    public static void addVideoLifecycle(View playerView, LifecycleListener listener) {
-        if (playerView == null || playerView.getParent() == null) return;
-
-        ViewGroup parent = (ViewGroup) playerView.getParent();
-        if (parent == null) return;
-
-        Object fmObject = getFragmentManager(parent);
+    // key: FragmentManager; Fragment 事务异步执行，提交后 findFragmentByTag 暂时查不到
+    private static final Map<Object, LifecycleRegistry> sRegistries = new WeakHashMap<>();
 
-        android.app.FragmentManager fm = null;
-        FragmentManager v4fm = null;
+    public static void addVideoLifecycle(View playerView, LifecycleListener listener) {
+        Tracer.begin(Tracer.LIFECYCLE_ADD);
+        try {
+            if (playerView == null || !(playerView.getParent() instanceof ViewGroup)) return;
 
-        if (fmObject == null) {
-            if (parent.getContext() instanceof Activity) {
-                fm = ((Activity) parent.getContext()).getFragmentManager();
+            LifecycleRegistry registry = obtainRegistry((ViewGroup) playerView.getParent(), true);
+            if (registry != null) {
+                registry.add(listener);
             }
-        } else if (fmObject instanceof android.app.FragmentManager) {
-            fm = (android.app.FragmentManager) fmObject;
-        } else if (fmObject instanceof FragmentManager) { // supportFragment
-            v4fm = (FragmentManager) fmObject;
+        } finally {
+            Tracer.end();
         }
+    }
 
-        if (fm != null) {
-            LifecycleFragment current = (LifecycleFragment) fm.findFragmentByTag
-                    (FRAGMENT_TAG);
-            if (current == null || current.isAsyncRemove()) {
-                current = new LifecycleFragment();
-                fm.beginTransaction().add(current, FRAGMENT_TAG).commitAllowingStateLoss();
-            }
-            current.setLifecycleListener(listener);
-        } else if (v4fm != null) {
-            LifecycleV4Fragment current = (LifecycleV4Fragment)
-                    v4fm.findFragmentByTag(FRAGMENT_TAG);
-            if (current == null || current.isAsyncRemove()) {
-                current = new LifecycleV4Fragment();
-                v4fm.beginTransaction().add(current, FRAGMENT_TAG).commitAllowingStateLoss();
+    public static void removeVideoLifecycle(View playerView, LifecycleListener listener) {
+        Tracer.begin(Tracer.LIFECYCLE_REMOVE);
+        try {
+            if (playerView == null || !(playerView.getParent() instanceof ViewGroup)) return;
+
+            LifecycleRegistry registry = obtainRegistry((ViewGroup) playerView.getParent(), false);
+            if (registry != null) {
+                registry.remove(listener);
             }
-            current.setLifecycleListener(listener);
+        } finally {
+            Tracer.end();
         }
-
     }
 
-    public static void removeVideoLifecycle(View playerView, LifecycleListener listener) {
-        if (playerView == null || playerView.getParent() == null) return;
+    /**
+     * 获取父容器所在宿主的 registry
+     *
+     * @param parent 父容器
+     * @param create true: 宿主还没有观察 Fragment 时添加
+     * @return 可能为 null
+     */
+    private static LifecycleRegistry obtainRegistry(ViewGroup parent, boolean create) {
+        Object tag = parent.getTag(R.id.player_tag_lifecycle);
+        if (tag instanceof LifecycleRegistry && ((LifecycleRegistry) tag).isAlive()) {
+            return (LifecycleRegistry) tag;
+        }
 
-        ViewGroup parent = (ViewGroup) playerView.getParent();
         Object fmObject = getFragmentManager(parent);
+        if (fmObject == null && parent.getContext() instanceof Activity) {
+            fmObject = ((Activity) parent.getContext()).getFragmentManager();
+        }
+        if (fmObject == null) return null;
 
-        android.app.FragmentManager fm = null;
-        FragmentManager v4fm = null;
+        LifecycleRegistry registry = sRegistries.get(fmObject);
+        if (registry == null || !registry.isAlive()) {
+            registry = findOrAddRegistry(fmObject, create);
+            if (registry == null) return null;
 
-        if (fmObject == null) {
-            if (parent.getContext() instanceof Activity) {
-                fm = ((Activity) parent.getContext()).getFragmentManager();
-            }
-        } else if (fmObject instanceof android.app.FragmentManager) {
-            fm = (android.app.FragmentManager) fmObject;
-        } else if (fmObject instanceof FragmentManager) { // support
-            v4fm = (FragmentManager) fmObject;
+            sRegistries.put(fmObject, registry);
         }
+        parent.setTag(R.id.player_tag_lifecycle, registry);
+        return registry;
+    }
+
+    private static LifecycleRegistry findOrAddRegistry(Object fmObject, boolean create) {
+        if (fmObject instanceof android.app.FragmentManager) {
+            android.app.FragmentManager fm = (android.app.FragmentManager) fmObject;
+            LifecycleFragment current = (LifecycleFragment) fm.findFragmentByTag(FRAGMENT_TAG);
+            if (current == null || current.isRemoving()) {
+                if (!create) return null;
 
-        if (fm != null) {
-            LifecycleFragment current = (LifecycleFragment) fm
-                    .findFragmentByTag(FRAGMENT_TAG);
-            if (current != null && current.getLifecycleListener() == listener) {
-                fm.beginTransaction().remove(current).commitAllowingStateLoss();
-                current.tagAsyncRemove();
+                current = new LifecycleFragment();
+                fm.beginTransaction().add(current, FRAGMENT_TAG).commitAllowingStateLoss();
+                PerfCounters.increment(PerfCounters.FRAGMENT_TRANSACTION);
             }
-        } else if (v4fm != null) {
+            return current.getRegistry();
+        } else if (fmObject instanceof FragmentManager) { // supportFragment
+            FragmentManager v4fm = (FragmentManager) fmObject;
             LifecycleV4Fragment current = (LifecycleV4Fragment)
                     v4fm.findFragmentByTag(FRAGMENT_TAG);
-            if (current != null && current.getLifecycleListener() == listener) {
-                v4fm.beginTransaction().remove(current).commitAllowingStateLoss();
-                current.tagAsyncRemove();
+            if (current == null || current.isRemoving()) {
+                if (!create) return null;
+
+                current = new LifecycleV4Fragment();
+                v4fm.beginTransaction().add(current, FRAGMENT_TAG).commitAllowingStateLoss();
+                PerfCounters.increment(PerfCounters.FRAGMENT_TRANSACTION);
             }
+            return current.getRegistry();
         }
-
+        return null;
     }
 
     private static Object getFragmentManager(ViewGroup parent) {
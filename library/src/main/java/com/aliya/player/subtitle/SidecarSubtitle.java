@@ -0,0 +1,180 @@
+package com.aliya.player.subtitle;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.Subtitle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 外挂字幕（SRT/WebVTT）解析结果 - 按时间索引
+ * <p>
+ * 解析时把重叠的条目展开成首尾相接的时间段，每段预先生成 {@link Cue} 列表，
+ * 查找为一次二分查找，不分配对象
+ *
+ * @author a_liYa
+ * @date 2018/3/23 10:15.
+ */
+public final class SidecarSubtitle implements Subtitle {
+
+    // 时间段起点 单位：us, eventTimesUs[i] ~ eventTimesUs[i + 1] 显示 cues[i]
+    private final long[] eventTimesUs;
+    private final List<Cue>[] cues;
+
+    private SidecarSubtitle(long[] eventTimesUs, List<Cue>[] cues) {
+        this.eventTimesUs = eventTimesUs;
+        this.cues = cues;
+    }
+
+    /**
+     * @param timeMs 播放位置 单位：ms
+     * @return 所在时间段下标，第一个时间段之前返回 -1
+     */
+    public int getIndex(long timeMs) {
+        int index = Arrays.binarySearch(eventTimesUs, timeMs * 1000);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * @param index {@link #getIndex(long)}
+     * @return 该时间段显示的 cue, 无字幕时为空列表
+     */
+    public List<Cue> getCuesAt(int index) {
+        if (index < 0 || index >= cues.length) return Collections.emptyList();
+        return cues[index];
+    }
+
+    /**
+     * @param index {@link #getIndex(long)}
+     * @return 下一次字幕变化的时间 单位：ms, 没有时返回 {@link C#TIME_UNSET}
+     */
+    public long getNextChangeMs(int index) {
+        return index + 1 < eventTimesUs.length ? eventTimesUs[index + 1] / 1000 : C.TIME_UNSET;
+    }
+
+    @Override
+    public int getNextEventTimeIndex(long timeUs) {
+        int index = Arrays.binarySearch(eventTimesUs, timeUs);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return index < eventTimesUs.length ? index : C.INDEX_UNSET;
+    }
+
+    @Override
+    public int getEventTimeCount() {
+        return eventTimesUs.length;
+    }
+
+    @Override
+    public long getEventTime(int index) {
+        return eventTimesUs[index];
+    }
+
+    @Override
+    public List<Cue> getCues(long timeUs) {
+        return getCuesAt(getIndex(timeUs / 1000));
+    }
+
+    /**
+     * 逐条添加字幕，{@link #build()} 时排序、展开重叠
+     */
+    static final class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        void add(long startMs, long endMs, String text) {
+            if (endMs > startMs && text != null && text.length() > 0) {
+                entries.add(new Entry(startMs * 1000, endMs * 1000, text));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        SidecarSubtitle build() {
+            Collections.sort(entries, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry o1, Entry o2) {
+                    return o1.startUs < o2.startUs ? -1 : (o1.startUs == o2.startUs ? 0 : 1);
+                }
+            });
+
+            long[] boundaries = new long[entries.size() * 2];
+            for (int i = 0; i < entries.size(); i++) {
+                boundaries[i * 2] = entries.get(i).startUs;
+                boundaries[i * 2 + 1] = entries.get(i).endUs;
+            }
+            Arrays.sort(boundaries);
+
+            long[] times = new long[boundaries.length];
+            List<Cue>[] segments = new List[boundaries.length];
+            List<Entry> active = new ArrayList<>();
+            List<Cue> empty = Collections.emptyList();
+            int size = 0;
+            int next = 0;
+            for (int i = 0; i < boundaries.length; i++) {
+                long timeUs = boundaries[i];
+                if (i > 0 && timeUs == boundaries[i - 1]) continue;
+
+                for (int j = active.size() - 1; j >= 0; j--) {
+                    if (active.get(j).endUs <= timeUs) {
+                        active.remove(j);
+                    }
+                }
+                while (next < entries.size() && entries.get(next).startUs <= timeUs) {
+                    active.add(entries.get(next++));
+                }
+
+                List<Cue> segment = empty;
+                if (active.size() == 1) {
+                    segment = Collections.singletonList(active.get(0).cue());
+                } else if (active.size() > 1) {
+                    List<Cue> list = new ArrayList<>(active.size());
+                    for (Entry entry : active) {
+                        list.add(entry.cue());
+                    }
+                    segment = Collections.unmodifiableList(list);
+                }
+                // 与前一段内容相同时合并
+                if (size > 0 && sameCues(segments[size - 1], segment)) continue;
+
+                times[size] = timeUs;
+                segments[size++] = segment;
+            }
+            return new SidecarSubtitle(Arrays.copyOf(times, size), Arrays.copyOf(segments, size));
+        }
+
+        private static boolean sameCues(List<Cue> a, List<Cue> b) {
+            if (a.size() != b.size()) return false;
+            for (int i = 0; i < a.size(); i++) {
+                if (a.get(i) != b.get(i)) return false;
+            }
+            return true;
+        }
+
+    }
+
+    private static final class Entry {
+
+        final long startUs;
+        final long endUs;
+        final String text;
+        Cue cue;
+
+        Entry(long startUs, long endUs, String text) {
+            this.startUs = startUs;
+            this.endUs = endUs;
+            this.text = text;
+        }
+
+        // 同一条目跨多个时间段时共用一个 Cue
+        Cue cue() {
+            if (cue == null) {
+                cue = new Cue(text);
+            }
+            return cue;
+        }
+    }
+
+}
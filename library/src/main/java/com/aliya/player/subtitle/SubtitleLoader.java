@@ -0,0 +1,246 @@
+package com.aliya.player.subtitle;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.aliya.player.MemoryGovernor;
+import com.aliya.player.utils.LatencyStats;
+import com.aliya.player.utils.Tracer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 外挂字幕加载：在子线程下载并解析，结果按 url 缓存最近 {@link #MAX_CACHE_SIZE} 个；
+ * 同一 url 加载中的重复请求合并
+ *
+ * @author a_liYa
+ * @date 2018/3/23 11:20.
+ */
+public class SubtitleLoader implements MemoryGovernor.OnTrimListener {
+
+    private static final int MAX_CACHE_SIZE = 4;
+    private static final int TIMEOUT_MS = 10000;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private static volatile SubtitleLoader sInstance;
+
+    private final Map<String, SidecarSubtitle> cache =
+            new LinkedHashMap<String, SidecarSubtitle>(8, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SidecarSubtitle> eldest) {
+                    return size() > MAX_CACHE_SIZE;
+                }
+            };
+    // 加载中的 url -> 等待的回调，只在主线程访问
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor;
+    private String userAgent;
+
+    private SubtitleLoader() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+        MemoryGovernor.get().addOnTrimListener(this);
+    }
+
+    public static SubtitleLoader get() {
+        if (sInstance == null) {
+            synchronized (SubtitleLoader.class) {
+                if (sInstance == null) {
+                    sInstance = new SubtitleLoader();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * @param url 字幕 url
+     * @return 已解析的字幕，没有时返回 null
+     */
+    public SidecarSubtitle getCached(String url) {
+        if (url == null) return null;
+
+        synchronized (cache) {
+            return cache.get(url);
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 异步加载，在主线程调用，回调在主线程；已缓存时直接回调
+     *
+     * @param url      字幕 url, 支持 http(s)、file 和本地路径
+     * @param callback .
+     */
+    public void load(final String url, Callback callback) {
+        if (TextUtils.isEmpty(url) || callback == null) return;
+
+        SidecarSubtitle cached = getCached(url);
+        if (cached != null) {
+            callback.onLoaded(url, cached);
+            return;
+        }
+        List<Callback> callbacks = pending.get(url);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<>(1);
+        callbacks.add(callback);
+        pending.put(url, callbacks);
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SidecarSubtitle subtitle = loadSync(url);
+                if (subtitle != null) {
+                    synchronized (cache) {
+                        cache.put(url, subtitle);
+                    }
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Callback> callbacks = pending.remove(url);
+                        if (callbacks == null) return;
+
+                        for (Callback callback : callbacks) {
+                            callback.onLoaded(url, subtitle);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 取消等待，加载仍会完成并缓存
+     *
+     * @param url      字幕 url
+     * @param callback {@link #load(String, Callback)} 传入的回调
+     */
+    public void cancel(String url, Callback callback) {
+        List<Callback> callbacks = pending.get(url);
+        if (callbacks != null) {
+            callbacks.remove(callback);
+        }
+    }
+
+    private SidecarSubtitle loadSync(String url) {
+        long startMs = SystemClock.elapsedRealtime();
+        Tracer.begin(Tracer.SUBTITLE_LOAD);
+        try {
+            // 先完整读取再解析，网络耗时不计入解析
+            byte[] bytes = read(url);
+            long parseStartMs = SystemClock.elapsedRealtime();
+            SidecarSubtitle subtitle;
+            Tracer.begin(Tracer.SUBTITLE_PARSE);
+            try {
+                subtitle = SubtitleParser.parse(new ByteArrayInputStream(bytes));
+            } finally {
+                Tracer.end();
+            }
+            long endMs = SystemClock.elapsedRealtime();
+            LatencyStats.get().record(LatencyStats.SUBTITLE_PARSE, endMs - parseStartMs);
+            LatencyStats.get().record(LatencyStats.SUBTITLE_LOAD, endMs - startMs);
+            return subtitle;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            Tracer.end();
+        }
+    }
+
+    private byte[] read(String url) throws IOException {
+        InputStream in = null;
+        HttpURLConnection connection = null;
+        try {
+            String scheme = Uri.parse(url).getScheme();
+            if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) {
+                connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(TIMEOUT_MS);
+                connection.setReadTimeout(TIMEOUT_MS);
+                if (userAgent != null) {
+                    connection.setRequestProperty("User-Agent", userAgent);
+                }
+                int code = connection.getResponseCode();
+                if (code >= 400) throw new IOException("Response code " + code);
+
+                in = connection.getInputStream();
+            } else {
+                in = new FileInputStream("file".equalsIgnoreCase(scheme)
+                        ? Uri.parse(url).getPath() : url);
+            }
+            int length = connection != null ? connection.getContentLength() : in.available();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    length > 0 ? length : BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // no-op
+                }
+            }
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public void onTrim(int tier) {
+        if (tier >= MemoryGovernor.TIER_MODERATE) {
+            clear();
+        }
+    }
+
+    public interface Callback {
+
+        /**
+         * @param url      字幕 url
+         * @param subtitle 解析结果，失败时为 null
+         */
+        void onLoaded(String url, SidecarSubtitle subtitle);
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.aliya.player.subtitle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * SRT/WebVTT 解析，两种格式按 "-->" 时间行统一处理：
+ * <pre>
+ * 1                                    WEBVTT
+ * 00:00:01,000 --> 00:00:04,000        00:01.000 --> 00:04.000 line:90%
+ * text                                 text
+ * </pre>
+ * 没有时间行的块（序号、WEBVTT 头、NOTE/STYLE 等）忽略；去掉 &lt;i&gt;、{\an8} 等样式标签
+ *
+ * @author a_liYa
+ * @date 2018/3/23 10:40.
+ */
+public final class SubtitleParser {
+
+    private static final String ARROW = "-->";
+
+    private SubtitleParser() {
+    }
+
+    /**
+     * 在子线程调用，按 UTF-8 读取
+     *
+     * @param in 字幕文件，不负责关闭
+     * @return 解析结果
+     * @throws IOException 读取失败
+     */
+    public static SidecarSubtitle parse(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        SidecarSubtitle.Builder builder = new SidecarSubtitle.Builder();
+        StringBuilder text = new StringBuilder();
+
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            if (first) {
+                first = false;
+                // 去掉 BOM
+                if (line.length() > 0 && line.charAt(0) == '\uFEFF') {
+                    line = line.substring(1);
+                }
+            }
+            int arrow = line.indexOf(ARROW);
+            if (arrow < 0) continue;
+
+            long startMs = parseTimestamp(line, 0, arrow);
+            long endMs = parseTimestamp(line, arrow + ARROW.length(), line.length());
+            text.setLength(0);
+            while ((line = reader.readLine()) != null && line.trim().length() > 0) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                appendStripped(text, line.trim());
+            }
+            if (startMs >= 0 && endMs >= 0) {
+                builder.add(startMs, endMs, text.toString());
+            }
+            if (line == null) break;
+        }
+        return builder.build();
+    }
+
+    /**
+     * 解析 [hh:]mm:ss[,.]mmm, 之后的 WebVTT 设置忽略
+     *
+     * @return 单位：ms, 格式错误返回 -1
+     */
+    static long parseTimestamp(String line, int start, int end) {
+        while (start < end && line.charAt(start) == ' ') start++;
+
+        long value = 0; // 当前数字
+        long seconds = 0;
+        long millis = 0;
+        int fractionDigits = -1; // 小数点之后的位数，-1 表示还在整数部分
+        boolean digits = false;
+        int i = start;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (fractionDigits < 0) {
+                    value = value * 10 + (c - '0');
+                } else if (fractionDigits < 3) {
+                    millis = millis * 10 + (c - '0');
+                    fractionDigits++;
+                }
+            } else if (c == ':' && fractionDigits < 0) {
+                seconds = (seconds + value) * 60;
+                value = 0;
+            } else if ((c == ',' || c == '.') && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (!digits) return -1;
+
+        for (; fractionDigits < 3; fractionDigits++) {
+            millis *= 10;
+        }
+        return (seconds + value) * 1000 + millis;
+    }
+
+    private static void appendStripped(StringBuilder sb, String line) {
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c == '<') {
+                int close = line.indexOf('>', i);
+                if (close > 0) {
+                    i = close;
+                    continue;
+                }
+            } else if (c == '{' && i + 1 < length && line.charAt(i + 1) == '\\') {
+                int close = line.indexOf('}', i);
+                if (close > 0) {
+                    i = close;
+                    continue;
+                }
+            } else if (c == '&') {
+                int semicolon = line.indexOf(';', i);
+                if (semicolon > 0 && semicolon - i <= 5) {
+                    char entity = entityOf(line.substring(i + 1, semicolon));
+                    if (entity != 0) {
+                        sb.append(entity);
+                        i = semicolon;
+                        continue;
+                    }
+                }
+            }
+            sb.append(c);
+        }
+    }
+
+    private static char entityOf(String name) {
+        switch (name) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "nbsp":
+                return '\u00A0';
+            case "quot":
+                return '"';
+            default:
+                return 0;
+        }
+    }
+
+}
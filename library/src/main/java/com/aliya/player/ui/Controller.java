@@ -6,20 +6,28 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.support.annotation.LayoutRes;
+import android.support.v4.view.ViewCompat;
 import android.view.View;
 
 import com.aliya.player.Control;
-import com.aliya.player.Extra;
 import com.aliya.player.PlayerListener;
+import com.aliya.player.PlayerSession;
+import com.aliya.player.ProgressDispatcher;
 import com.aliya.player.R;
 import com.aliya.player.ui.control.BottomProgressControl;
 import com.aliya.player.ui.control.BufferControl;
 import com.aliya.player.ui.control.CalcTime;
+import com.aliya.player.ui.control.DebugHudControl;
 import com.aliya.player.ui.control.ErrorControl;
+import com.aliya.player.ui.control.GestureControl;
 import com.aliya.player.ui.control.MobileNetControl;
 import com.aliya.player.ui.control.MuteControl;
 import com.aliya.player.ui.control.NavBarControl;
+import com.aliya.player.ui.control.QualityControl;
+import com.aliya.player.ui.control.SpeedControl;
+import com.aliya.player.utils.PerfCounters;
 import com.aliya.player.utils.Recorder;
+import com.aliya.player.utils.Tracer;
 import com.aliya.player.utils.Utils;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlaybackException;
@@ -30,6 +38,9 @@ import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.aliya.player.utils.Utils.findViewById;
 import static com.aliya.player.utils.Utils.setVisibilityControls;
 
@@ -41,12 +52,29 @@ import static com.aliya.player.utils.Utils.setVisibilityControls;
  */
 public class Controller {
 
+    /**
+     * 全部内置控件，按需创建
+     */
+    public static final int PROFILE_FULL = 0;
+    /**
+     * 不创建任何控件，不加载控件布局 eg: 列表自动播放的小窗
+     */
+    public static final int PROFILE_BARE = 1;
+
+    private final int profile;
+    // 应用添加的控件
+    private final List<Control> customControls = new ArrayList<>();
+
     private BufferControl bufferControl;
     private NavBarControl navBarControl;
     private ErrorControl errorControl;
     private BottomProgressControl bottomProgressControl;
     private MuteControl muteControl;
     private MobileNetControl mobileControl;
+    private GestureControl gestureControl;
+    private SpeedControl speedControl;
+    private QualityControl qualityControl;
+    private DebugHudControl debugHudControl;
 
     private PlayerView playerView;
 
@@ -55,6 +83,25 @@ public class Controller {
     private ComponentListener componentListener;
     private CalcTime calcTime;
     private NetStateChangedReceiver netStateReceiver;
+    private boolean netStateRegistered;
+    // 暂停、继续播放时通知 PlayerView 重新计算清晰度切换时机
+    private boolean lastPlayWhenReady;
+
+    // 控件显示状态：事件只改变主控件，其余控件在下一帧统一计算、应用
+    private boolean reconcilePending;
+    private boolean reconciling;
+    private boolean qualityShown;
+    // 控制栏应显示（点击显示、超时隐藏决定），被缓冲等压住时不改变，压住的控件消失后恢复
+    private boolean navBarWanted;
+    private View.OnClickListener appliedClickListener;
+
+    private final Runnable reconcileAction = new Runnable() {
+        @Override
+        public void run() {
+            reconcilePending = false;
+            reconcileVisibility();
+        }
+    };
 
     private final Runnable updateProgressAction = new Runnable() {
 
@@ -70,6 +117,12 @@ public class Controller {
             if (bottomProgressControl != null) {
                 bottomProgressControl.updateProgress();
             }
+            if (playerView != null && player.getPlayWhenReady()
+                    && player.getPlaybackState() == Player.STATE_READY) {
+                playerView.updateLiveCatchUp();
+                dispatchProgress();
+                saveProgress();
+            }
 
             // Cancel any pending updates and schedule a new one if necessary.
             stopUpdateProgress();
@@ -83,6 +136,7 @@ public class Controller {
                     delayMs = 1000;
                 }
                 if (playerView != null) {
+                    PerfCounters.increment(PerfCounters.MAIN_POST);
                     playerView.postDelayed(updateProgressAction, delayMs);
                 }
             }
@@ -90,43 +144,137 @@ public class Controller {
     };
 
     public Controller(PlayerView parentView) {
+        this(parentView, PROFILE_FULL);
+    }
+
+    public Controller(PlayerView parentView, int profile) {
         this.playerView = parentView;
+        this.profile = profile;
         componentListener = new ComponentListener();
-        navBarControl = new NavBarControl(this);
-        errorControl = new ErrorControl(this);
-        bufferControl = new BufferControl(this);
-        bottomProgressControl = new BottomProgressControl(this);
-        muteControl = new MuteControl(this);
-        mobileControl = new MobileNetControl(this);
+        if (profile != PROFILE_BARE) {
+            navBarControl = new NavBarControl(this);
+            errorControl = new ErrorControl(this);
+            bufferControl = new BufferControl(this);
+            bottomProgressControl = new BottomProgressControl(this);
+            muteControl = new MuteControl(this);
+            mobileControl = new MobileNetControl(this);
+            gestureControl = new GestureControl(this);
+            speedControl = new SpeedControl(this);
+            qualityControl = new QualityControl(this);
+        }
 
         calcTime = new CalcTime();
     }
 
+    public int getProfile() {
+        return profile;
+    }
+
     public
     @LayoutRes
     int getLayoutRes() {
-        return R.layout.module_player_layout_controller;
+        return profile == PROFILE_BARE ? 0 : R.layout.module_player_layout_controller;
     }
 
+    /**
+     * 控件布局加载后调用，布局中除底部进度条外都是 ViewStub，控件首次显示时再创建
+     */
     public void onViewCreate() {
+        if (DebugHudControl.isEnabled()) {
+            setDebugHudEnabled(true);
+        }
+        if (profile == PROFILE_BARE) return;
 
-        bufferControl.onViewCreate(findViewById(playerView, R.id.player_buffer_progress));
-        navBarControl.onViewCreate(findViewById(playerView, R.id.player_control_bar));
+        bufferControl.onViewCreate(findViewById(playerView, R.id.player_stub_buffer));
+        navBarControl.onViewCreate(findViewById(playerView, R.id.player_stub_nav_bar));
         errorControl.onViewCreate(findViewById(playerView, R.id.player_stub_play_error));
         bottomProgressControl.onViewCreate(findViewById(playerView,
                 R.id.player_bottom_progress_bar));
-        muteControl.onViewCreate(findViewById(playerView, R.id.player_ic_volume));
+        muteControl.onViewCreate(findViewById(playerView, R.id.player_stub_volume));
         mobileControl.onViewCreate(findViewById(playerView, R.id.player_stub_mobile_network));
+        gestureControl.onViewCreate(findViewById(playerView, R.id.player_stub_gesture));
+        qualityControl.onMenuViewCreate(findViewById(playerView, R.id.player_stub_quality));
 
         bufferControl.setVisibilityListener(componentListener);
         navBarControl.setVisibilityListener(componentListener);
         errorControl.setVisibilityListener(componentListener);
         mobileControl.setVisibilityListener(componentListener);
+        qualityControl.setVisibilityListener(componentListener);
 
         updateControlClickSwitch();
 
     }
 
+    /**
+     * 控制栏创建后绑定其中的倍速、清晰度按钮，并同步当前状态
+     */
+    public void onNavBarCreate() {
+        View navBar = findViewById(playerView, R.id.player_control_bar);
+        speedControl.onViewCreate(findViewById(navBar, R.id.player_speed));
+        qualityControl.onViewCreate(findViewById(navBar, R.id.player_quality));
+
+        if (player != null) {
+            navBarControl.updateIcPlayPause(player.getPlayWhenReady());
+            updatePlaybackSpeed(player.getPlaybackParameters());
+        }
+        updateIcFullscreen();
+        updateLive();
+        updateQualities();
+    }
+
+    /**
+     * 添加控件，所有 profile 都可以添加
+     *
+     * @param control 在 {@link Control#onViewCreate(View)} 中收到 PlayerView，自行添加视图
+     */
+    public void addControl(Control control) {
+        if (control == null || customControls.contains(control)) return;
+
+        customControls.add(control);
+        control.onViewCreate(playerView);
+    }
+
+    public void removeControl(Control control) {
+        if (customControls.remove(control)) {
+            control.setVisibility(false);
+        }
+    }
+
+    /**
+     * 显示／隐藏调试浮层，关闭时释放浮层，不保留定时器
+     *
+     * @param enabled true: 显示
+     */
+    public void setDebugHudEnabled(boolean enabled) {
+        if (enabled) {
+            if (debugHudControl == null) {
+                debugHudControl = new DebugHudControl(this);
+                addControl(debugHudControl);
+            }
+            debugHudControl.setVisibility(true);
+        } else if (debugHudControl != null) {
+            removeControl(debugHudControl);
+            debugHudControl.destroy();
+            debugHudControl = null;
+        }
+    }
+
+    /**
+     * @return 已创建的内置控件和添加的控件
+     */
+    public List<Control> getControls() {
+        List<Control> controls = new ArrayList<>();
+        Control[] builtIn = {bufferControl, navBarControl, errorControl, bottomProgressControl,
+                muteControl, mobileControl, gestureControl, speedControl, qualityControl};
+        for (Control control : builtIn) {
+            if (control != null) {
+                controls.add(control);
+            }
+        }
+        controls.addAll(customControls);
+        return controls;
+    }
+
     public void stopUpdateProgress() {
         if (playerView != null) {
             playerView.removeCallbacks(updateProgressAction);
@@ -134,7 +282,8 @@ public class Controller {
     }
 
     private void updateControlClickSwitch() {
-        View.OnClickListener listener = componentListener;
+        // 没有控制栏时不拦截点击，交给宿主处理
+        View.OnClickListener listener = navBarControl != null ? componentListener : null;
         if (bufferControl != null && bufferControl.isVisible()) {
             listener = null;
         }
@@ -145,26 +294,91 @@ public class Controller {
             listener = null;
         }
 
+        if (listener == appliedClickListener) return;
+
+        appliedClickListener = listener;
         if (playerView != null) {
             playerView.setOnClickListener(listener);
         }
+        if (gestureControl != null) {
+            gestureControl.setEnabled(listener != null);
+        }
+    }
+
+    /**
+     * 主控件显示状态变化后调用，同一帧内多次调用只计算、应用一次
+     */
+    private void requestReconcile() {
+        if (reconcilePending || playerView == null) return;
+
+        reconcilePending = true;
+        ViewCompat.postOnAnimation(playerView, reconcileAction);
+    }
+
+    /**
+     * 按优先级计算所有控件的目标状态，只应用有变化的控件
+     * <p>
+     * 错误、移动网络提醒 > 缓冲 > 清晰度菜单（刚显示时） > 控制栏；
+     * 提醒和清晰度菜单取消显示控制栏，缓冲只是暂时压住，结束后控制栏恢复；
+     * 底部进度条在控制栏、缓冲、提醒都不显示时显示，静音按钮跟随控制栏
+     */
+    private void reconcileVisibility() {
+        if (profile == PROFILE_BARE) return;
+
+        boolean blocking = errorControl.isVisible() || mobileControl.isVisible();
+        boolean buffer = !blocking && bufferControl.isVisible();
+        boolean quality = !blocking && qualityControl.isVisible();
+        if (blocking || (quality && qualityShown)) {
+            navBarWanted = false;
+        }
+        boolean navBar = navBarWanted && !blocking && !buffer;
+        boolean bottom = !blocking && !buffer && !navBar && !playerView.isLive();
+        qualityShown = false;
+
+        reconciling = true;
+        try {
+            applyVisibility(bufferControl, buffer);
+            applyVisibility(qualityControl, quality);
+            applyVisibility(navBarControl, navBar);
+            applyVisibility(bottomProgressControl, bottom);
+            applyVisibility(muteControl, navBar);
+        } finally {
+            reconciling = false;
+        }
+        updateControlClickSwitch();
+    }
+
+    private static void applyVisibility(Control control, boolean isVisible) {
+        if (control != null && control.isVisible() != isVisible) {
+            control.setVisibility(isVisible);
+            PerfCounters.increment(PerfCounters.CONTROL_RELAYOUT);
+        }
     }
 
     public void setPlayer(SimpleExoPlayer player) {
-        if (this.player != player) {
-            if (this.player != null) {
-                this.player.removeListener(componentListener);
-            }
-            this.player = player;
-            unregisterNetStateChange();
-            if (player != null) {
-                setVisibilityControls(false, bufferControl, errorControl, mobileControl);
-                player.addListener(componentListener);
-                if (muteControl != null) {
-                    muteControl.updateVolume();
+        Tracer.begin(Tracer.CONTROLLER_SET_PLAYER);
+        try {
+            if (this.player != player) {
+                if (this.player != null) {
+                    this.player.removeListener(componentListener);
+                }
+                this.player = player;
+                unregisterNetStateChange();
+                if (player != null) {
+                    setVisibilityControls(false, bufferControl, errorControl, mobileControl);
+                    player.addListener(componentListener);
+                    lastPlayWhenReady = player.getPlayWhenReady();
+                    if (muteControl != null) {
+                        muteControl.updateVolume();
+                    }
+                    updatePlaybackSpeed(player.getPlaybackParameters());
+                    registerNetStateChange();
+                    updateLive();
                 }
-                registerNetStateChange();
+                updateQualities();
             }
+        } finally {
+            Tracer.end();
         }
     }
 
@@ -176,22 +390,107 @@ public class Controller {
         return playerView;
     }
 
+    /**
+     * @return 当前播放会话，可能为 null
+     */
+    public PlayerSession getSession() {
+        return playerView != null ? playerView.getSession() : null;
+    }
+
+    /**
+     * 用户点击播放／暂停
+     *
+     * @param play true : 播放
+     */
+    public void dispatchPlayPause(boolean play) {
+        PlayerSession session = getSession();
+        if (session != null) {
+            if (play) {
+                session.dispatchPlay(playerView);
+            } else {
+                session.dispatchPause(playerView);
+            }
+        }
+    }
+
+    /**
+     * 用户点击全屏／取消全屏，在切换之前回调
+     *
+     * @param isFullscreen true : 切到全屏
+     */
+    public void dispatchFullscreenChange(boolean isFullscreen) {
+        PlayerSession session = getSession();
+        if (session != null) {
+            session.dispatchFullscreenChange(isFullscreen, playerView);
+        }
+    }
+
+    public void dispatchMuteChange(boolean isMute) {
+        PlayerSession session = getSession();
+        if (session != null) {
+            session.dispatchMuteChange(isMute, playerView);
+        }
+    }
+
+    /**
+     * 全屏状态已切换，通知所在容器的 {@link PlayerListener}
+     *
+     * @param isFullscreen true : 全屏
+     */
+    public void dispatchChangeFullScreen(boolean isFullscreen) {
+        PlayerListener listener = playerView != null ? playerView.getPlayerListener() : null;
+        if (listener != null) {
+            listener.onChangeFullScreen(isFullscreen);
+        }
+    }
+
+    /**
+     * 播放中由进度 tick 调用，暂停、缓冲时不回调
+     */
+    private void dispatchProgress() {
+        PlayerSession session = getSession();
+        if (session == null) return;
+
+        long positionMs = player.getCurrentPosition();
+        long durationMs = player.getDuration();
+        session.dispatchProgress(positionMs, durationMs, playerView);
+        ProgressDispatcher.get().dispatch(session, positionMs, durationMs, playerView.isLive());
+    }
+
+    void onRenderedFirstFrame() {
+        PlayerSession session = getSession();
+        if (session != null) {
+            session.dispatchFirstFrame(playerView);
+        }
+    }
+
     public void seekTo(long positionMs) {
         if (player != null) {
             player.seekTo(positionMs);
         }
     }
 
+    /**
+     * 停止、出错时调用：记录进度并立即落盘
+     */
     public void cacheProgress() {
-        if (player == null
+        saveProgress();
+        Recorder.get().flush();
+    }
+
+    /**
+     * 记录进度，播放中由进度 tick 调用，{@link Recorder} 按 url 合并后批量落盘
+     */
+    private void saveProgress() {
+        if (player == null || playerView.isLive()
                 || player.getCurrentPosition() == C.TIME_UNSET
                 || player.getDuration() == C.TIME_UNSET) return;
 
         if (Math.abs(player.getDuration() - player.getCurrentPosition()) < 1000) {
-            Recorder.get().removeCacheProgress(Extra.getExtraUrl(playerView));
+            Recorder.get().removeCacheProgress(playerView.getRecordKey());
         } else {
             Recorder.get()
-                    .putCacheProgress(Extra.getExtraUrl(playerView), player.getCurrentPosition());
+                    .putCacheProgress(playerView.getRecordKey(), player.getCurrentPosition());
         }
 
     }
@@ -202,34 +501,81 @@ public class Controller {
      * @param synced 被同步的对象
      */
     public void syncRegime(Controller synced) {
-        if (synced == null || this == synced) return;
+        Tracer.begin(Tracer.CONTROLLER_SYNC_REGIME);
+        try {
+            if (synced == null || this == synced) return;
 
-        if (bufferControl != null && synced.bufferControl != null) {
-            bufferControl.setVisibility(synced.bufferControl.isVisible());
-        }
+            if (bufferControl != null && synced.bufferControl != null) {
+                bufferControl.setVisibility(synced.bufferControl.isVisible());
+            }
 
-        if (navBarControl != null && synced.navBarControl != null) {
-            navBarControl.setVisibility(synced.navBarControl.isVisible());
-            if (player != null) {
-                navBarControl.updateIcPlayPause(player.getPlayWhenReady());
+            if (navBarControl != null && synced.navBarControl != null) {
+                navBarControl.setVisibility(synced.navBarControl.isVisible());
+                navBarWanted = synced.navBarWanted;
+                if (player != null) {
+                    navBarControl.updateIcPlayPause(player.getPlayWhenReady());
+                }
             }
-        }
 
-        if (errorControl != null && synced.errorControl != null) {
-            errorControl.setVisibility(synced.errorControl.isVisible());
-        }
+            if (errorControl != null && synced.errorControl != null) {
+                errorControl.setVisibility(synced.errorControl.isVisible());
+            }
 
-        if (mobileControl != null) {
-            mobileControl.syncRegime(synced.mobileControl);
+            if (mobileControl != null) {
+                mobileControl.syncRegime(synced.mobileControl);
+            }
+
+            updateProgressAction.run();
+
+            updateIcFullscreen();
+            requestReconcile();
+
+            networkType = synced.networkType;
+        } finally {
+            Tracer.end();
         }
+    }
 
-        updateProgressAction.run();
+    private void updatePlaybackSpeed(PlaybackParameters parameters) {
+        float speed = parameters != null ? parameters.speed : 1f;
+        calcTime.setSpeed(speed);
+        if (speedControl != null) {
+            speedControl.updateSpeed(speed);
+        }
+    }
 
-        updateIcFullscreen();
-        updateControlClickSwitch();
+    public void updateQualities() {
+        if (qualityControl != null) {
+            qualityControl.updateQualities();
+        }
+    }
 
-        networkType = synced.networkType;
+    /**
+     * 直播时隐藏点播专用的控件：进度条、时长、倍速、拖动手势
+     */
+    public void updateLive() {
+        boolean live = playerView != null && playerView.isLive();
+        if (navBarControl != null) {
+            navBarControl.setLive(live);
+        }
+        if (bottomProgressControl != null) {
+            bottomProgressControl.setLive(live);
+        }
+        if (speedControl != null) {
+            speedControl.setVisibility(!live);
+        }
+        if (gestureControl != null) {
+            gestureControl.setSeekEnabled(!live);
+        }
+    }
 
+    /**
+     * 静音状态变化后更新图标
+     */
+    public void updateMute() {
+        if (muteControl != null) {
+            muteControl.updateVolume();
+        }
     }
 
     public void updateIcFullscreen() {
@@ -242,24 +588,35 @@ public class Controller {
         return calcTime;
     }
 
+    public GestureControl getGestureControl() {
+        return gestureControl;
+    }
+
     private void registerNetStateChange() {
         IntentFilter filter = new IntentFilter();
         filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
         if (netStateReceiver == null) {
             netStateReceiver = new NetStateChangedReceiver();
         }
-        if (getContext() != null) {
+        if (getContext() != null && !netStateRegistered) {
             getContext().registerReceiver(netStateReceiver, filter);
+            netStateRegistered = true;
+            PerfCounters.increment(PerfCounters.RECEIVER_REGISTER);
         }
     }
 
     private void unregisterNetStateChange() {
         if (netStateReceiver != null) {
-            try {
-                if (getContext() != null) {
-                    getContext().unregisterReceiver(netStateReceiver);
+            // 未注册时不再调用，避免每次 setPlayer(null) 都抛出、捕获异常
+            if (netStateRegistered) {
+                netStateRegistered = false;
+                try {
+                    if (getContext() != null) {
+                        getContext().unregisterReceiver(netStateReceiver);
+                        PerfCounters.increment(PerfCounters.RECEIVER_UNREGISTER);
+                    }
+                } catch (Exception e) {
                 }
-            } catch (Exception e) {
             }
             networkType = -1;
         }
@@ -294,19 +651,29 @@ public class Controller {
 
         @Override
         public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            PlayerSession session = getSession();
+            if (session != null) {
+                session.dispatchBuffering(playbackState == Player.STATE_BUFFERING, playerView);
+            }
             if (playbackState == Player.STATE_BUFFERING) { // 缓冲
                 stopUpdateProgress();
-                if (!mobileControl.isVisible()) {
+                if (bufferControl != null && !mobileControl.isVisible()) {
                     bufferControl.setVisibility(true);
                 }
             } else if (playbackState == Player.STATE_READY) { // 播放
                 updateProgressAction.run();
-                bufferControl.setVisibility(false);
+                if (bufferControl != null) {
+                    bufferControl.setVisibility(false);
+                }
+                if (playWhenReady && playerView != null) {
+                    playerView.onPlaybackStarted();
+                }
             } else if (playbackState == Player.STATE_ENDED) { // 播完毕
                 if (playerView != null) {
                     playerView.stop();
-                    errorControl.showPlayEnded();
-                    updateControlClickSwitch();
+                    if (errorControl != null) {
+                        errorControl.showPlayEnded();
+                    }
                     PlayerListener listener = playerView.getPlayerListener();
                     if (listener != null) {
                         listener.playEnded();
@@ -317,13 +684,21 @@ public class Controller {
             if (!playWhenReady) { // 停止播放
                 stopUpdateProgress();
             }
+            if (playerView != null && playWhenReady != lastPlayWhenReady) {
+                playerView.onPlayWhenReadyChanged();
+            }
+            lastPlayWhenReady = playWhenReady;
 
             if (playerView != null) {
                 playerView.setKeepScreenOn(playWhenReady);
+                playerView.updateAudioFocus();
             }
 
-            navBarControl.updateIcPlayPause(playWhenReady);
-            updateControlClickSwitch();
+            if (navBarControl != null) {
+                navBarControl.updateIcPlayPause(playWhenReady);
+            }
+            requestReconcile();
+            PerfCounters.increment(PerfCounters.PLAYER_STATE_CHANGE);
         }
 
         @Override
@@ -335,15 +710,29 @@ public class Controller {
             if (navBarControl != null) {
                 navBarControl.updateProgress();
             }
+            if (playerView != null) {
+                playerView.onPositionDiscontinuity();
+            }
         }
 
         @Override
         public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
-            // Do nothing.
+            updatePlaybackSpeed(playbackParameters);
+            // 按新的速度重新计算刷新周期
+            if (player != null && player.getPlayWhenReady()
+                    && player.getPlaybackState() == Player.STATE_READY) {
+                updateProgressAction.run();
+            }
+            if (navBarControl != null && navBarControl.isVisible()) {
+                navBarControl.hideAfterTimeout();
+            }
         }
 
         @Override
         public void onTimelineChanged(Timeline timeline, Object manifest) {
+            if (playerView != null) {
+                playerView.updateLive(timeline);
+            }
             if (navBarControl != null) {
                 navBarControl.updateProgress();
             }
@@ -356,16 +745,22 @@ public class Controller {
 
         @Override
         public void onTracksChanged(TrackGroupArray tracks, TrackSelectionArray selections) {
-            // Do nothing. 切换视频源
+            // 切换视频源
+            updateQualities();
         }
 
         @Override
         public void onPlayerError(ExoPlaybackException error) {
             cacheProgress();
+            if (playerView != null && playerView.recoverFromDecoderError(error)) return;
+
+            PlayerSession session = getSession();
+            if (session != null) {
+                session.dispatchError(error, playerView);
+            }
             if (errorControl != null) {
                 errorControl.setVisibility(true);
             }
-            updateControlClickSwitch();
 
             if (playerView != null) {
                 playerView.stop();
@@ -383,37 +778,16 @@ public class Controller {
 
         @Override
         public void onVisibilityChange(Control control, boolean isVisible) {
-            if (isVisible) {
-                if (control == bufferControl) {
-                    setVisibilityControls(false, navBarControl, bottomProgressControl);
-                } else if (control == errorControl) {
-                    setVisibilityControls(false, navBarControl, bufferControl,
-                            bottomProgressControl);
-                } else if (control == navBarControl) {
-                    setVisibilityControls(false, bottomProgressControl);
-                    setVisibilityControls(true, muteControl);
-                } else if (control == mobileControl) {
-                    setVisibilityControls(false, navBarControl, bufferControl,
-                            bottomProgressControl);
-                }
-            } else {
-                if (control == errorControl || control == mobileControl) {
-                    updateControlClickSwitch();
-                } else if (control == navBarControl) {
-                    if (!errorControl.isVisible() && !bufferControl.isVisible()) {
-                        setVisibilityControls(true, bottomProgressControl);
-                    }
-                    setVisibilityControls(false, muteControl);
-                } else if (control == bufferControl) {
-                    if (!navBarControl.isVisible()) {
-                        setVisibilityControls(true, bottomProgressControl);
-                    }
-                } else if (control == errorControl) {
-                    if (!navBarControl.isVisible()) {
-                        setVisibilityControls(true, bottomProgressControl);
-                    }
-                }
+            if (reconciling) return;
+
+            if (control == navBarControl) {
+                navBarWanted = isVisible;
+            } else if (control == qualityControl && isVisible) {
+                qualityShown = true;
             }
+            // 点击是否切换控制栏立即生效，其余控件在下一帧统一计算
+            updateControlClickSwitch();
+            requestReconcile();
         }
     }
 
@@ -428,6 +802,9 @@ public class Controller {
         public void onReceive(Context context, Intent intent) {
             switch (intent.getAction()) {
                 case ConnectivityManager.CONNECTIVITY_ACTION:
+                    if (playerView != null) { // 省流量策略跟随网络即时切换
+                        playerView.updateDataSaver();
+                    }
                     int type = intent.getIntExtra(ConnectivityManager.EXTRA_NETWORK_TYPE, -1);
                     if (type != networkType) {
                         if (type == ConnectivityManager.TYPE_MOBILE) {
@@ -2,7 +2,7 @@ package com.aliya.player.ui;
 
 import android.content.Context;
 import android.graphics.Color;
-import android.net.Uri;
+import android.os.SystemClock;
 import android.support.annotation.AttrRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -10,30 +10,61 @@ import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.view.SurfaceView;
+import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
 import android.widget.FrameLayout;
+import android.widget.Toast;
 
+import com.aliya.player.AudioFocusHelper;
+import com.aliya.player.BackgroundAudioService;
+import com.aliya.player.ContentTypeResolver;
+import com.aliya.player.DataSaver;
+import com.aliya.player.Extra;
 import com.aliya.player.FullscreenActivity;
+import com.aliya.player.MemoryGovernor;
 import com.aliya.player.PlayerHelper;
 import com.aliya.player.PlayerLifecycleImpl;
 import com.aliya.player.PlayerListener;
+import com.aliya.player.PlayerManager;
+import com.aliya.player.PlayerSession;
+import com.aliya.player.PlayerLoadControl;
+import com.aliya.player.Quality;
 import com.aliya.player.R;
+import com.aliya.player.TrafficListener;
+import com.aliya.player.codec.CodecCapabilities;
+import com.aliya.player.download.DownloadManager;
 import com.aliya.player.lifecycle.LifecycleUtils;
+import com.aliya.player.subtitle.SidecarSubtitle;
+import com.aliya.player.subtitle.SubtitleLoader;
 import com.aliya.player.ui.widget.AspectRatioFrameLayout;
+import com.aliya.player.ui.widget.SubtitleView;
+import com.aliya.player.utils.LatencyStats;
+import com.aliya.player.utils.PerfCounters;
 import com.aliya.player.utils.Recorder;
-import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.aliya.player.utils.SizeClassStats;
+import com.aliya.player.utils.Tracer;
+import com.aliya.player.utils.Utils;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
-import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.TextRenderer;
 import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 
-import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
@@ -54,18 +85,105 @@ public class PlayerView extends FrameLayout {
     private boolean fullscreen;
 
     private SimpleExoPlayer player;
+    private DefaultTrackSelector trackSelector;
+    private PlayerLoadControl loadControl;
+    private TrafficListener trafficListener;
+    private SizeClassMeter sizeClassMeter;
     private Controller controller;
     private PlayerHelper helper;
     private ComponentListener componentListener;
-    private SoftReference<FrameLayout> backupParentSoft;
+    private WeakReference<FrameLayout> backupParentRef; // 不持有列表中的父容器
+    private List<Quality> qualities;
+    private Standby standby;
+    private boolean backgroundAudio;
+    private boolean live;
+    private PendingPrepare pendingPrepare;
+    private long liveTargetLatencyMs = C.TIME_UNSET;
+    private final Timeline.Window window = new Timeline.Window();
+    private String startingName;
+    private long startingAtMs;
     private ExecutorService service;
+    private PlayerSession session;
+    // 外挂字幕，设置后才创建
+    private SubtitleSync subtitleSync;
+    private SubtitleView subtitleView;
+    private AudioFocusHelper audioFocusHelper;
+    // 其它应用短暂出声，音量降低
+    private boolean ducked;
+    // 静音起播时禁用音频渲染器，取消静音时恢复
+    private boolean audioRendererOff;
+    private boolean audible;
+    private int decoderRetries;
+
+    // 静音对所有视频生效
+    private static boolean sMute;
+    // 依附时从父容器读取一次，全屏切换、播放结束时直接使用
+    private PlayerListener playerListener;
 
     public PlayerLifecycleImpl playerLifecycle;
 
+    public static final float MIN_PLAYBACK_SPEED = 0.5f;
+    public static final float MAX_PLAYBACK_SPEED = 3f;
+
+    /**
+     * 非全屏时每 dp 最多使用的像素数，高密度屏上的小窗口不需要按物理像素选择清晰度
+     */
+    private static final float MAX_PIXELS_PER_DP = 2f;
+
+    /**
+     * 切换清晰度时，备用 player 预加载的超前时长，当前 player 播放到该位置时切换；
+     * 备用 player 就绪时已错过该位置则加倍超前时长重新对齐，不超过 {@link #MAX_STANDBY_LEAD_MS}
+     */
+    private static final long STANDBY_LEAD_MS = 1500;
+    private static final long MAX_STANDBY_LEAD_MS = 12 * 1000;
+    /**
+     * 备用 player 与当前位置相差不超过该值时切换
+     */
+    private static final long STANDBY_SWAP_TOLERANCE_MS = 100;
+
+    /**
+     * 直播缓冲上限，保持贴近直播边缘
+     */
+    private static final long LIVE_MAX_BUFFER_MS = 10 * 1000;
+    /**
+     * 直播追帧速度
+     */
+    private static final float LIVE_CATCH_UP_SPEED = 1.05f;
+    /**
+     * 延时超过起播延时该值后开始追帧
+     */
+    private static final long LIVE_CATCH_UP_THRESHOLD_MS = 3000;
+    /**
+     * 延时超过起播延时该值后（eg: 长时间暂停）直接跳到直播边缘
+     */
+    private static final long LIVE_SEEK_THRESHOLD_MS = 30 * 1000;
+    /**
+     * 外挂字幕两次刷新的最小间隔
+     */
+    private static final long MIN_SUBTITLE_DELAY_MS = 16;
+    /**
+     * 同一视频解码器初始化失败后的最多重试次数
+     */
+    private static final int MAX_DECODER_RETRIES = 2;
+    /**
+     * 续播位置小于该值时从头播放，省去一次 seek
+     */
+    private static final long MIN_RESUME_MS = 1000;
+
     public PlayerView(@NonNull Context context) {
         this(context, null);
     }
 
+    /**
+     * @param context .
+     * @param profile {@link Controller#PROFILE_FULL} or {@link Controller#PROFILE_BARE}
+     */
+    public PlayerView(@NonNull Context context, int profile) {
+        super(context);
+
+        init(context, profile);
+    }
+
     public PlayerView(@NonNull Context context, @Nullable AttributeSet attrs) {
         this(context, attrs, 0);
     }
@@ -74,13 +192,13 @@ public class PlayerView extends FrameLayout {
             defStyleAttr) {
         super(context, attrs, defStyleAttr);
 
-        init(context);
+        init(context, Controller.PROFILE_FULL);
     }
 
-    private void init(Context context) {
+    private void init(Context context, int profile) {
         setBackgroundColor(Color.BLACK);
         playerLifecycle = new PlayerLifecycleImpl(this);
-        controller = new Controller(this);
+        controller = new Controller(this, profile);
 
         componentListener = new ComponentListener();
         setDescendantFocusability(FOCUS_AFTER_DESCENDANTS);
@@ -90,6 +208,7 @@ public class PlayerView extends FrameLayout {
         LayoutParams lp = new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
         lp.gravity = Gravity.CENTER;
         addView(contentFrame, lp);
+        contentFrame.addOnLayoutChangeListener(componentListener);
 
         // 2、add surfaceView to video view
         surfaceView = new SurfaceView(context);
@@ -97,9 +216,20 @@ public class PlayerView extends FrameLayout {
 
         if (controller != null) {
             // 3、 add controller views
-            inflate(context, controller.getLayoutRes(), this);
-
-            controller.onViewCreate();
+            boolean bare = profile == Controller.PROFILE_BARE;
+            Tracer.begin(bare ? Tracer.INFLATE_BARE : Tracer.INFLATE_FULL);
+            try {
+                if (controller.getLayoutRes() != 0) {
+                    inflate(context, controller.getLayoutRes(), this);
+                }
+                controller.onViewCreate();
+            } finally {
+                Tracer.end();
+            }
+            if (PerfCounters.isEnabled()) { // 遍历 View 树，只在计数开启时统计
+                PerfCounters.add(bare ? PerfCounters.VIEWS_BARE : PerfCounters.VIEWS_FULL,
+                        Utils.countViews(this));
+            }
         }
         service = PlayerHelper.getThreadExecutor();
     }
@@ -108,48 +238,683 @@ public class PlayerView extends FrameLayout {
         this.helper = helper;
     }
 
+    /**
+     * @param helper 出声播放时申请音频焦点，为 null 时不管理
+     */
+    public void setAudioFocusHelper(AudioFocusHelper helper) {
+        this.audioFocusHelper = helper;
+    }
+
     public void replay() {
         if (!TextUtils.isEmpty(mUrl)) play(mUrl);
     }
 
     public void play(String url) {
-        mUrl = url;
+        play(url, C.TIME_UNSET);
+    }
 
-        // 1. Create a default TrackSelector
-        // 数据传输相关，传输速度、传输监听等
-        DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
+    /**
+     * @param url        a video url
+     * @param positionMs 起播位置，{@link C#TIME_UNSET} 时按记录的进度续播
+     */
+    private void play(String url, long positionMs) {
+        Tracer.begin(Tracer.VIEW_PLAY);
+        try {
+            mUrl = url;
+            // 会话按记录 key 区分，切换清晰度、解码失败重试后重播不会结束会话
+            String key = getRecordKey();
+            if (session == null || !TextUtils.equals(session.getUrl(), key)) {
+                session = new PlayerSession(key);
+                setSubtitleUrl(null);
+                decoderRetries = 0;
+            } else {
+                session.restart();
+            }
+            if (getParent() instanceof View) {
+                session.setCallback(PlayerManager.getPlayerCallback((View) getParent()));
+            }
+            // 先按 url 判断，时间线就绪后再确认
+            live = Utils.isLive(url);
+            liveTargetLatencyMs = C.TIME_UNSET;
+            markStarting(LatencyStats.COLD_START);
+            if (Quality.find(qualities, url) == null) {
+                qualities = null;
+            }
+
+            // 1. Create a default TrackSelector
+            // 数据传输相关，传输速度、传输监听等
+            DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
+            DefaultTrackSelector trackSelector = newTrackSelector(bandwidthMeter);
+
+            // 2. Create the mPlayer
+            PlayerLoadControl loadControl = new PlayerLoadControl();
+            SimpleExoPlayer player = helper.newPlayer(trackSelector, loadControl);
+            PerfCounters.increment(PerfCounters.PLAYER_CREATE);
+
+            this.trackSelector = trackSelector;
+            this.loadControl = loadControl;
+            this.trafficListener = new TrafficListener(bandwidthMeter);
+            this.sizeClassMeter = new SizeClassMeter();
+            // 静音自动播放不创建音频解码器
+            audioRendererOff = sMute;
+            setPlayer(player);
+            // 按当前播放区域尺寸限制清晰度
+            updateViewportConstraint(contentFrame.getWidth(), contentFrame.getHeight());
+            updateDataSaver();
+
+            // 3. 开始播放，准备完成后自动开始
+            player.setPlayWhenReady(true);
+
+            // url 只是猜测（点播 HLS 也是 .m3u8），不据此跳过恢复；直播不记录进度，也就不会 seek
+            float speed = Recorder.get().getPlaybackSpeed(getRecordKey());
+            if (speed != 1f) {
+                player.setPlaybackParameters(new PlaybackParameters(speed, 1f));
+            }
+
+            // 4. 在首次加载前 seek, 直接从续播位置前的关键帧开始请求，不会重复下载；
+            // 磁盘中的进度尚未加载完成时，加载后再 seek 并准备
+            if (positionMs == C.TIME_UNSET) {
+                final SimpleExoPlayer target = player;
+                final String playUrl = url;
+                Recorder.get().whenLoaded(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (target != PlayerView.this.player) return; // 已停止或切换
+
+                        resume(target);
+                        prepare(target, playUrl);
+                    }
+                });
+            } else {
+                if (positionMs > 0) {
+                    player.seekTo(positionMs);
+                }
+                prepare(player, url);
+            }
+        } finally {
+            Tracer.end();
+        }
+    }
+
+    /**
+     * 准备播放. 无扩展名的 url 先解析类型，避免逐个 Extractor 嗅探和类型误判
+     */
+    private void prepare(SimpleExoPlayer player, String url) {
+        ContentTypeResolver resolver = ContentTypeResolver.get();
+        ContentTypeResolver.Result resolved = resolver.getCached(url);
+        if (resolved != null || !ContentTypeResolver.needsResolve(url)
+                || DownloadManager.get().getLocalFile(url) != null) {
+            player.prepare(helper.buildMediaSource(url, resolved, trafficListener));
+        } else {
+            pendingPrepare = new PendingPrepare(helper, player, trafficListener);
+            resolver.resolve(url, pendingPrepare);
+        }
+    }
+
+    /**
+     * 按记录的进度续播；已 seek 超过 {@link #MIN_RESUME_MS} 时不再跳转
+     */
+    private void resume(SimpleExoPlayer target) {
+        if (target.getCurrentPosition() >= MIN_RESUME_MS) return;
+
+        long progress = Recorder.get().getCacheProgress(getRecordKey());
+        if (progress >= MIN_RESUME_MS) {
+            target.seekTo(progress);
+        }
+    }
+
+    /**
+     * 标记开始起播，到渲染出首帧时记录耗时到 {@link LatencyStats}
+     *
+     * @param name 耗时名称 eg: {@link LatencyStats#COLD_START}
+     */
+    public void markStarting(String name) {
+        startingName = name;
+        startingAtMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @return true: 画面 Surface 仍然有效，恢复播放时不需要重新渲染首帧
+     */
+    public boolean isVideoSurfaceValid() {
+        if (surfaceView instanceof SurfaceView) {
+            return ((SurfaceView) surfaceView).getHolder().getSurface().isValid();
+        }
+        return surfaceView instanceof TextureView && ((TextureView) surfaceView).isAvailable();
+    }
+
+    /**
+     * 开始播放（就绪且 playWhenReady）时由 Controller 回调
+     */
+    void onPlaybackStarted() {
+        decoderRetries = 0;
+    }
+
+    /**
+     * 解码器初始化失败时，换用其它解码器或降低清晰度上限后从出错的位置重新播放；
+     * 重播 post 到下一次消息循环，不在 player 的回调中释放 player
+     *
+     * @param error 播放错误
+     * @return true: 已重试，不需要显示错误
+     */
+    boolean recoverFromDecoderError(ExoPlaybackException error) {
+        if (error.type != ExoPlaybackException.TYPE_RENDERER || player == null
+                || decoderRetries >= MAX_DECODER_RETRIES) return false;
+
+        Exception cause = error.getRendererException();
+        if (!(cause instanceof MediaCodecRenderer.DecoderInitializationException)) return false;
+
+        String decoderName = ((MediaCodecRenderer.DecoderInitializationException) cause)
+                .decoderName;
+        if (!CodecCapabilities.get().onDecoderInitFailed(decoderName, getSelectedVideoFormat())) {
+            return false;
+        }
+        decoderRetries++;
+        final SimpleExoPlayer failed = player;
+        // 直播回到直播边缘
+        final long positionMs = isLive() ? C.TIME_UNSET : player.getCurrentPosition();
+        PerfCounters.increment(PerfCounters.MAIN_POST);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                // 期间已停止或播放了其它视频
+                if (player != failed) return;
+
+                String url = mUrl;
+                stop(true);
+                play(url, positionMs);
+                if (backgroundAudio) { // 通知栏按新的 player 刷新
+                    BackgroundAudioService.start(PlayerView.this);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return 当前选中的视频格式，没有时返回 null
+     */
+    private Format getSelectedVideoFormat() {
+        TrackSelectionArray selections = player.getCurrentTrackSelections();
+        for (int i = 0; i < selections.length; i++) {
+            TrackSelection selection = selections.get(i);
+            if (selection != null && player.getRendererType(i) == C.TRACK_TYPE_VIDEO) {
+                return selection.getSelectedFormat();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按解码能力限制视频宽高
+     */
+    private static DefaultTrackSelector newTrackSelector(DefaultBandwidthMeter bandwidthMeter) {
         TrackSelection.Factory videoTrackSelectionFactory =
                 new AdaptiveTrackSelection.Factory(bandwidthMeter);
-        DefaultTrackSelector trackSelector =
-                new DefaultTrackSelector(videoTrackSelectionFactory);
+        DefaultTrackSelector selector = new DefaultTrackSelector(videoTrackSelectionFactory);
+        int maxSize = CodecCapabilities.get().getMaxVideoSize();
+        if (maxSize != CodecCapabilities.NO_LIMIT) {
+            selector.setParameters(selector.getParameters().withMaxVideoSize(maxSize, maxSize));
+        }
+        return selector;
+    }
+
+    /**
+     * 记录进度、倍速等使用的 key，切换清晰度后仍使用原始 url
+     */
+    String getRecordKey() {
+        String key = Extra.getExtraUrl(this);
+        return key != null ? key : mUrl;
+    }
+
+    /**
+     * 设置渐进式视频的备选清晰度，需在 {@link #play(String)} 之后调用
+     *
+     * @param qualities 清晰度列表，其中之一应为当前播放的 url
+     */
+    public void setQualities(List<Quality> qualities) {
+        this.qualities = qualities;
+        if (controller != null) {
+            controller.updateQualities();
+        }
+    }
+
+    public List<Quality> getQualities() {
+        return qualities;
+    }
+
+    /**
+     * 设置外挂字幕（SRT/WebVTT），需在 {@link #play(String)} 之后调用，播放其它 url 时清除；
+     * 在子线程加载解析，按 url 缓存
+     *
+     * @param url 字幕 url, null 时清除
+     */
+    public void setSubtitleUrl(String url) {
+        if (subtitleSync != null ? TextUtils.equals(subtitleSync.url, url) : url == null) return;
+
+        if (subtitleSync != null) {
+            SubtitleLoader.get().cancel(subtitleSync.url, subtitleSync);
+            subtitleSync.attach(null);
+            subtitleSync = null;
+        }
+        if (subtitleView != null) {
+            subtitleView.clear();
+        }
+        if (!TextUtils.isEmpty(url)) {
+            subtitleSync = new SubtitleSync(url);
+            SubtitleLoader.get().load(url, subtitleSync);
+        }
+    }
 
-        // 2. Create the mPlayer
-        SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(getContext(), trackSelector);
+    public String getSubtitleUrl() {
+        return subtitleSync != null ? subtitleSync.url : null;
+    }
 
-        setPlayer(player);
+    /**
+     * @return 字幕 View, 首次调用时创建，位于视频之上、控件之下
+     */
+    public SubtitleView getSubtitleView() {
+        if (subtitleView == null) {
+            subtitleView = new SubtitleView(getContext());
+            LayoutParams lp = new LayoutParams(MATCH_PARENT, LayoutParams.WRAP_CONTENT,
+                    Gravity.BOTTOM);
+            lp.bottomMargin = Utils.dp2px(getContext(), 24);
+            addView(subtitleView, indexOfChild(contentFrame) + 1, lp);
+        }
+        return subtitleView;
+    }
 
-        MediaSource videoSource = helper.buildMediaSource(Uri.parse(url), null, bandwidthMeter);
+    /**
+     * 切换清晰度：备用 player 预加载新 url 到当前位置之后，当前 player 播放到该位置时无缝切换
+     *
+     * @param url 新清晰度的 url
+     */
+    public void switchQuality(String url) {
+        if (player == null || TextUtils.isEmpty(url) || TextUtils.equals(url, mUrl)) return;
+
+        releaseStandby();
+
+        DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
+        DefaultTrackSelector selector = newTrackSelector(bandwidthMeter);
+        PlayerLoadControl standbyLoadControl = new PlayerLoadControl();
+        SimpleExoPlayer standbyPlayer = helper.newPlayer(selector, standbyLoadControl);
+        PerfCounters.increment(PerfCounters.PLAYER_CREATE);
+        standby = new Standby(url, standbyPlayer, selector, standbyLoadControl,
+                new TrafficListener(bandwidthMeter), new TextureView(getContext()));
+
+        // 备用画面放在当前画面之下，先解码出首帧，切换时移除当前画面即可显示，没有黑屏
+        contentFrame.addView(standby.videoView, 0, new LayoutParams(MATCH_PARENT, MATCH_PARENT));
+        standbyPlayer.setVideoTextureView(standby.videoView);
+
+        standby.traffic.setMetered(DataSaver.isMetered(getContext()));
+        standbyPlayer.setVolume(player.getVolume());
+        setRendererDisabled(standbyPlayer, selector, C.TRACK_TYPE_AUDIO, audioRendererOff);
+        standbyPlayer.setPlaybackParameters(player.getPlaybackParameters());
+        standbyPlayer.addListener(standby);
+        standbyPlayer.setPlayWhenReady(false);
+
+        // 与起播相同，无扩展名的 url 先解析类型再 prepare
+        ContentTypeResolver resolver = ContentTypeResolver.get();
+        ContentTypeResolver.Result resolved = resolver.getCached(url);
+        if (resolved != null || !ContentTypeResolver.needsResolve(url)
+                || DownloadManager.get().getLocalFile(url) != null) {
+            standby.prepare(resolved);
+        } else {
+            resolver.resolve(url, standby);
+        }
+    }
 
-        // 3. 准备播放.
-        player.prepare(videoSource);
+    /**
+     * 当前 player 拖动进度后，备用 player 重新对齐
+     */
+    void onPositionDiscontinuity() {
+        if (standby != null) {
+            standby.retarget();
+        }
+    }
 
-        // 4. 开始播放.
-        player.setPlayWhenReady(true);
+    /**
+     * 当前 player 暂停、继续播放时，重新计算备用 player 的切换时机，刷新后台播放通知
+     */
+    void onPlayWhenReadyChanged() {
+        if (standby != null) {
+            standby.run();
+        }
+        if (backgroundAudio) { // 刷新通知栏的播放/暂停按钮
+            BackgroundAudioService.start(this);
+        }
+    }
 
-        int progress = Recorder.get().getCacheProgress(url);
-        if (progress != Recorder.NO_VALUE && progress > 0) {
-            player.seekTo(progress);
+    private void releaseStandby() {
+        if (standby != null) {
+            removeCallbacks(standby);
+            standby.player.removeListener(standby);
+            standby.player.clearVideoTextureView(standby.videoView);
+            contentFrame.removeView(standby.videoView);
+            service.execute(new ReleaseRunnable(standby.player));
+            standby = null;
         }
     }
 
-    public PlayerListener getPlayerListener() {
-        if (getParent() instanceof View) {
-            Object tag = ((View) getParent()).getTag(R.id.player_tag_listener);
-            if (tag instanceof PlayerListener) {
-                return (PlayerListener) tag;
+    /**
+     * 备用 player 已就绪，交换
+     */
+    private void swapStandby() {
+        Standby ready = standby;
+        standby = null;
+        if (ready == null) return;
+
+        ready.player.removeListener(ready);
+        if (player == null) {
+            ready.player.clearVideoTextureView(ready.videoView);
+            contentFrame.removeView(ready.videoView);
+            service.execute(new ReleaseRunnable(ready.player));
+            return;
+        }
+
+        SimpleExoPlayer old = player;
+        boolean playWhenReady = old.getPlayWhenReady();
+        int sizeClass = SizeClassStats.CLASS_1080;
+        if (sizeClassMeter != null) {
+            sizeClassMeter.flush(old, trafficListener);
+            sizeClass = sizeClassMeter.sizeClass;
+        }
+
+        trackSelector = ready.selector;
+        loadControl = ready.loadControl;
+        trafficListener = ready.traffic;
+        sizeClassMeter = new SizeClassMeter();
+        sizeClassMeter.sizeClass = sizeClass;
+        mUrl = ready.url;
+
+        // 备用 player 已在备用画面上解码出首帧，画面直接接管，不重新设置 Surface
+        clearVideoView(old, surfaceView);
+        contentFrame.removeView(surfaceView);
+        surfaceView = ready.videoView;
+        setPlayer(ready.player, false);
+        updateViewportConstraint(contentFrame.getWidth(), contentFrame.getHeight());
+        updateDataSaver();
+        ready.player.setPlayWhenReady(playWhenReady);
+
+        // 必须在 #clearVideoSurfaceView 之后调用，解决异步带来的ANR
+        service.execute(new ReleaseRunnable(old));
+    }
+
+    /**
+     * 等待类型解析完成后 prepare; player 切换到其它 PlayerView 时随之转移，停止时取消
+     */
+    private static final class PendingPrepare implements ContentTypeResolver.Callback {
+
+        final PlayerHelper helper;
+        final SimpleExoPlayer player;
+        final TrafficListener traffic;
+        boolean cancelled;
+
+        PendingPrepare(PlayerHelper helper, SimpleExoPlayer player, TrafficListener traffic) {
+            this.helper = helper;
+            this.player = player;
+            this.traffic = traffic;
+        }
+
+        @Override
+        public void onResolved(String url, ContentTypeResolver.Result result) {
+            if (cancelled) return;
+
+            cancelled = true;
+            player.prepare(helper.buildMediaSource(url, result, traffic));
+        }
+    }
+
+    /**
+     * 切换清晰度时预加载的备用 player
+     */
+    private final class Standby implements Player.EventListener, Runnable,
+            ContentTypeResolver.Callback {
+
+        final String url;
+        final SimpleExoPlayer player;
+        final DefaultTrackSelector selector;
+        final PlayerLoadControl loadControl;
+        final TrafficListener traffic;
+        final TextureView videoView;
+        long positionMs;
+        long leadMs = STANDBY_LEAD_MS;
+        boolean ready;
+
+        Standby(String url, SimpleExoPlayer player, DefaultTrackSelector selector,
+                PlayerLoadControl loadControl, TrafficListener traffic, TextureView videoView) {
+            this.url = url;
+            this.player = player;
+            this.selector = selector;
+            this.loadControl = loadControl;
+            this.traffic = traffic;
+            this.videoView = videoView;
+        }
+
+        void prepare(ContentTypeResolver.Result resolved) {
+            player.prepare(helper.buildMediaSource(url, resolved, traffic));
+            retarget();
+        }
+
+        @Override
+        public void onResolved(String url, ContentTypeResolver.Result result) {
+            if (standby == this) {
+                prepare(result);
             }
         }
-        return null;
+
+        /**
+         * 对齐到当前 player: 暂停时对齐当前位置，播放时超前 {@link #leadMs}
+         */
+        void retarget() {
+            SimpleExoPlayer current = PlayerView.this.player;
+            if (current == null) return;
+
+            removeCallbacks(this);
+            ready = false;
+            positionMs = current.getCurrentPosition();
+            if (current.getPlayWhenReady()) {
+                positionMs += (long) (leadMs * getPlaybackSpeed());
+            }
+            player.seekTo(positionMs);
+        }
+
+        /**
+         * 就绪后判断切换时机：到达对齐位置时切换，未到时延时，已错过时重新对齐
+         */
+        @Override
+        public void run() {
+            SimpleExoPlayer current = PlayerView.this.player;
+            if (standby != this || !ready || current == null) return;
+
+            removeCallbacks(this);
+            long remainingMs = positionMs - current.getCurrentPosition();
+            if (Math.abs(remainingMs) <= STANDBY_SWAP_TOLERANCE_MS) {
+                swapStandby();
+            } else if (!current.getPlayWhenReady()) {
+                retarget();
+            } else if (remainingMs > 0) {
+                PerfCounters.increment(PerfCounters.MAIN_POST);
+                postDelayed(this, (long) (remainingMs / getPlaybackSpeed()));
+            } else {
+                leadMs = Math.min(leadMs * 2, MAX_STANDBY_LEAD_MS);
+                retarget();
+            }
+        }
+
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            if (playbackState != Player.STATE_READY || ready || standby != this) return;
+
+            ready = true;
+            run();
+        }
+
+        @Override
+        public void onPlayerError(ExoPlaybackException error) {
+            if (standby == this) {
+                releaseStandby();
+                Toast.makeText(getContext(), R.string.player_quality_switch_failed,
+                        Toast.LENGTH_SHORT).show();
+                if (controller != null) {
+                    controller.updateQualities();
+                }
+            }
+        }
+
+        @Override
+        public void onTimelineChanged(Timeline timeline, Object manifest) {
+        }
+
+        @Override
+        public void onTracksChanged(TrackGroupArray trackGroups,
+                                    TrackSelectionArray trackSelections) {
+        }
+
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+        }
+
+        @Override
+        public void onRepeatModeChanged(int repeatMode) {
+        }
+
+        @Override
+        public void onPositionDiscontinuity() {
+        }
+
+        @Override
+        public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+        }
+
+    }
+
+    /**
+     * 外挂字幕同步：只在字幕变化的时间点刷新，暂停时不刷新；拖动、倍速变化时重新计算
+     */
+    private final class SubtitleSync implements SubtitleLoader.Callback, Player.EventListener,
+            Runnable {
+
+        final String url;
+        SidecarSubtitle subtitle;
+        SimpleExoPlayer attached;
+        int index = C.INDEX_UNSET;
+
+        SubtitleSync(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public void onLoaded(String url, SidecarSubtitle subtitle) {
+            if (subtitleSync != this || subtitle == null) return;
+
+            this.subtitle = subtitle;
+            if (subtitleView != null) {
+                subtitleView.clear();
+            }
+            attach(player);
+        }
+
+        /**
+         * @param player null 时解除
+         */
+        void attach(SimpleExoPlayer player) {
+            if (attached == player) return;
+
+            if (attached != null) {
+                attached.removeListener(this);
+                removeCallbacks(this);
+                attached = null;
+                index = C.INDEX_UNSET;
+                if (subtitleView != null) {
+                    subtitleView.clear();
+                }
+            }
+            if (player != null && subtitle != null) {
+                attached = player;
+                player.addListener(this);
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (attached == null) return;
+
+            removeCallbacks(this);
+            Tracer.begin(Tracer.SUBTITLE_LOOKUP);
+            try {
+                long positionMs = attached.getCurrentPosition();
+                int newIndex = subtitle.getIndex(positionMs);
+                if (newIndex != index) {
+                    index = newIndex;
+                    List<Cue> cues = subtitle.getCuesAt(newIndex);
+                    if (subtitleView != null || !cues.isEmpty()) {
+                        getSubtitleView().onCues(cues);
+                    }
+                }
+                if (!attached.getPlayWhenReady()
+                        || attached.getPlaybackState() != Player.STATE_READY) return;
+
+                long nextMs = subtitle.getNextChangeMs(newIndex);
+                if (nextMs == C.TIME_UNSET) return;
+
+                float speed = attached.getPlaybackParameters().speed;
+                long delayMs = (long) ((nextMs - positionMs) / speed);
+                PerfCounters.increment(PerfCounters.MAIN_POST);
+                postDelayed(this, Math.max(MIN_SUBTITLE_DELAY_MS, delayMs));
+            } finally {
+                Tracer.end();
+            }
+        }
+
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            run();
+        }
+
+        @Override
+        public void onPositionDiscontinuity() {
+            run();
+        }
+
+        @Override
+        public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+            run();
+        }
+
+        @Override
+        public void onTimelineChanged(Timeline timeline, Object manifest) {
+        }
+
+        @Override
+        public void onTracksChanged(TrackGroupArray trackGroups,
+                                    TrackSelectionArray trackSelections) {
+        }
+
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+        }
+
+        @Override
+        public void onRepeatModeChanged(int repeatMode) {
+        }
+
+        @Override
+        public void onPlayerError(ExoPlaybackException error) {
+        }
+
+    }
+
+    public PlayerListener getPlayerListener() {
+        return playerListener;
+    }
+
+    /**
+     * @return 当前播放会话，未播放过时为 null
+     */
+    public PlayerSession getSession() {
+        return session;
     }
 
     public String getUrl() {
@@ -157,58 +922,484 @@ public class PlayerView extends FrameLayout {
     }
 
     public void setPlayer(SimpleExoPlayer player) {
-        if (this.player == player) {
+        setPlayer(player, true);
+    }
+
+    /**
+     * @param attachVideo false: player 已经在 surfaceView 上输出画面（eg: 切换清晰度）
+     */
+    private void setPlayer(SimpleExoPlayer player, boolean attachVideo) {
+        Tracer.begin(Tracer.VIEW_SET_PLAYER);
+        try {
+            if (this.player == player) {
+                return;
+            }
+
+            if (this.player != null) {
+                this.player.removeTextOutput(componentListener);
+                this.player.removeVideoListener(componentListener);
+
+                if (attachVideo) {
+                    clearVideoView(this.player, surfaceView);
+                }
+            }
+
+            this.player = player;
+
+            controller.setPlayer(player);
+            if (subtitleSync != null) {
+                subtitleSync.attach(player);
+            }
+            applyVolume();
+            updateAudioFocus();
+
+            if (player == null) { // player 已转交给其它 PlayerView
+                releaseStandby();
+                session = null;
+                trackSelector = null;
+                loadControl = null;
+                trafficListener = null;
+                sizeClassMeter = null;
+            }
+
+            if (player != null) {
+
+                if (attachVideo) {
+                    setVideoView(player, surfaceView);
+                }
+
+                player.addVideoListener(componentListener);
+                player.addTextOutput(componentListener);
+            }
+        } finally {
+            Tracer.end();
+        }
+    }
+
+    public SimpleExoPlayer getPlayer() {
+        return player;
+    }
+
+    private static void setVideoView(SimpleExoPlayer player, View view) {
+        if (view instanceof SurfaceView) {
+            player.setVideoSurfaceView((SurfaceView) view);
+        } else if (view instanceof TextureView) {
+            player.setVideoTextureView((TextureView) view);
+        }
+    }
+
+    private static void clearVideoView(SimpleExoPlayer player, View view) {
+        if (view instanceof SurfaceView) {
+            player.clearVideoSurfaceView((SurfaceView) view);
+        } else if (view instanceof TextureView) {
+            player.clearVideoTextureView((TextureView) view);
+        }
+    }
+
+    public Controller getController() {
+        return controller;
+    }
+
+    public int getControlProfile() {
+        return controller.getProfile();
+    }
+
+    /**
+     * 设置播放速度，音调保持不变，并按 url 记录
+     *
+     * @param speed 播放速度 [{@link #MIN_PLAYBACK_SPEED}, {@link #MAX_PLAYBACK_SPEED}]
+     */
+    public void setPlaybackSpeed(float speed) {
+        speed = Math.max(MIN_PLAYBACK_SPEED, Math.min(MAX_PLAYBACK_SPEED, speed));
+        if (player != null) {
+            // pitch 为 1 时，ExoPlayer 会对音频做变速不变调处理
+            player.setPlaybackParameters(new PlaybackParameters(speed, 1f));
+        }
+        Recorder.get().putPlaybackSpeed(getRecordKey(), speed);
+    }
+
+    public float getPlaybackSpeed() {
+        if (player != null) {
+            PlaybackParameters parameters = player.getPlaybackParameters();
+            if (parameters != null) {
+                return parameters.speed;
+            }
+        }
+        return 1f;
+    }
+
+    public DefaultTrackSelector getTrackSelector() {
+        return trackSelector;
+    }
+
+    public TrafficListener getTrafficListener() {
+        return trafficListener;
+    }
+
+    public PlayerLoadControl getLoadControl() {
+        return loadControl;
+    }
+
+    /**
+     * 按 {@link DataSaver} 和当前网络调整码率上限、缓冲上限、视频轨道，网络变化时调用
+     */
+    public void updateDataSaver() {
+        if (player == null || trackSelector == null) return;
+
+        DataSaver saver = DataSaver.get();
+        boolean active = saver.isActive(getContext());
+
+        int maxBitrate = active ? saver.getMaxVideoBitrate() : Integer.MAX_VALUE;
+        DefaultTrackSelector.Parameters parameters = trackSelector.getParameters();
+        if (parameters.maxVideoBitrate != maxBitrate) {
+            trackSelector.setParameters(parameters.withMaxVideoBitrate(maxBitrate));
+        }
+        updateBufferLimit();
+        updateVideoRenderer();
+        if (trafficListener != null) {
+            trafficListener.setMetered(DataSaver.isMetered(getContext()));
+        }
+    }
+
+    /**
+     * 缓冲上限取 {@link DataSaver}、直播、{@link MemoryGovernor} 中较小者
+     */
+    private void updateBufferLimit() {
+        if (loadControl == null) return;
+
+        DataSaver saver = DataSaver.get();
+        long maxBufferMs = saver.isActive(getContext()) ? saver.getMaxBufferMs() : C.TIME_UNSET;
+        if (live && (maxBufferMs == C.TIME_UNSET || LIVE_MAX_BUFFER_MS < maxBufferMs)) {
+            maxBufferMs = LIVE_MAX_BUFFER_MS;
+        }
+        long trimBufferMs = MemoryGovernor.get().getMaxBufferMs();
+        if (trimBufferMs != C.TIME_UNSET
+                && (maxBufferMs == C.TIME_UNSET || trimBufferMs < maxBufferMs)) {
+            maxBufferMs = trimBufferMs;
+        }
+        loadControl.setMaxBufferMs(maxBufferMs);
+    }
+
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * 时间线变化时确认是否为直播：动态窗口，或者不可 seek 且时长未知（eg: FLV）
+     *
+     * @param timeline .
+     */
+    public void updateLive(Timeline timeline) {
+        if (player == null || timeline == null || timeline.isEmpty()) return;
+
+        timeline.getWindow(player.getCurrentWindowIndex(), window);
+        boolean live = window.isDynamic
+                || (!window.isSeekable && window.durationUs == C.TIME_UNSET);
+        if (this.live != live) {
+            this.live = live;
+            liveTargetLatencyMs = C.TIME_UNSET;
+            updateBufferLimit();
+            if (controller != null) {
+                controller.updateLive();
+            }
+        }
+    }
+
+    /**
+     * @return 直播播放位置距直播边缘的延时 单位：ms; 非直播返回 {@link C#TIME_UNSET}
+     */
+    public long getLiveLatencyMs() {
+        if (!live || player == null) return C.TIME_UNSET;
+
+        // HLS 等动态窗口以窗口末尾为边缘；FLV 时长未知，以已缓冲位置为边缘
+        long duration = player.getDuration();
+        long edge = duration != C.TIME_UNSET ? duration : player.getBufferedPosition();
+        return Math.max(0, edge - player.getCurrentPosition());
+    }
+
+    /**
+     * 直播追帧，播放中由 Controller 刷新进度时调用：以起播时的延时为目标，落后时略微加速
+     */
+    void updateLiveCatchUp() {
+        long latencyMs = getLiveLatencyMs();
+        if (latencyMs == C.TIME_UNSET) return;
+
+        LatencyStats.get().record(LatencyStats.LIVE_EDGE, latencyMs);
+        if (liveTargetLatencyMs == C.TIME_UNSET) {
+            liveTargetLatencyMs = latencyMs;
             return;
         }
 
-        if (this.player != null) {
-            this.player.removeTextOutput(componentListener);
-            this.player.removeVideoListener(componentListener);
+        if (latencyMs > liveTargetLatencyMs + LIVE_SEEK_THRESHOLD_MS
+                && player.isCurrentWindowSeekable()) {
+            player.seekToDefaultPosition();
+            return;
+        }
+
+        float speed = getPlaybackSpeed();
+        float targetSpeed = speed;
+        if (latencyMs > liveTargetLatencyMs + LIVE_CATCH_UP_THRESHOLD_MS) {
+            targetSpeed = LIVE_CATCH_UP_SPEED;
+        } else if (latencyMs <= liveTargetLatencyMs) {
+            targetSpeed = 1f;
+        }
+        if (targetSpeed != speed) {
+            player.setPlaybackParameters(new PlaybackParameters(targetSpeed, 1f));
+        }
+    }
+
+    /**
+     * 内存紧张时释放资源
+     *
+     * @param tier {@link MemoryGovernor} TIER_*
+     */
+    public void onTrimMemory(int tier) {
+        if (tier >= MemoryGovernor.TIER_LIGHT && standby != null) {
+            releaseStandby();
+            MemoryGovernor.get().countReleasedPlayer();
+        }
+        if (tier >= MemoryGovernor.TIER_MODERATE && playerLifecycle.isRetained()) {
+            playerLifecycle.releaseIfRetained();
+            MemoryGovernor.get().countReleasedPlayer();
+        }
+        updateBufferLimit();
+    }
+
+    /**
+     * 后台只播放音频：禁用视频渲染器，释放视频解码器，自适应流不再下载视频分片；
+     * 同时启动前台服务保持进程优先级
+     *
+     * @param backgroundAudio true: 进入后台音频模式; false: 恢复视频
+     */
+    public void setBackgroundAudio(boolean backgroundAudio) {
+        if (this.backgroundAudio == backgroundAudio) return;
+
+        this.backgroundAudio = backgroundAudio;
+        if (backgroundAudio) {
+            BackgroundAudioService.start(this);
+        } else {
+            BackgroundAudioService.stop(getContext());
+        }
+        updateVideoRenderer();
+    }
+
+    public boolean isBackgroundAudio() {
+        return backgroundAudio;
+    }
+
+    /**
+     * 静音对之后播放的视频同样生效；静音起播时音频渲染器禁用，不创建音频解码器。
+     * 取消静音时恢复渲染器，会重新选择轨道并创建音频解码器，渐进式视频从当前位置重新缓冲
+     *
+     * @param mute true: 静音
+     */
+    public void setMute(boolean mute) {
+        sMute = mute;
+        if (!mute) {
+            audioRendererOff = false;
+        }
+        applyVolume();
+        updateAudioFocus();
+        if (controller != null) {
+            controller.updateMute();
+        }
+    }
+
+    public boolean isMute() {
+        return sMute;
+    }
+
+    /**
+     * 还没有 PlayerView 时设置静音，之后的视频按此起播
+     *
+     * @param mute true: 静音
+     */
+    public static void setDefaultMute(boolean mute) {
+        sMute = mute;
+    }
+
+    /**
+     * 由 {@link AudioFocusHelper} 调用，其它应用短暂出声时降低音量
+     *
+     * @param ducked true: 降低音量
+     */
+    public void setDucked(boolean ducked) {
+        if (this.ducked == ducked) return;
+
+        this.ducked = ducked;
+        applyVolume();
+    }
+
+    private void applyVolume() {
+        if (player == null) return;
+
+        player.setVolume(sMute ? 0f : ducked ? AudioFocusHelper.DUCK_VOLUME : 1f);
+        if (trackSelector != null) {
+            setRendererDisabled(C.TRACK_TYPE_AUDIO, sMute && audioRendererOff);
+        }
+    }
+
+    /**
+     * 出声状态变化时申请／释放音频焦点，播放状态变化时由 Controller 调用
+     */
+    void updateAudioFocus() {
+        if (audioFocusHelper == null) return;
+
+        if (player == null) {
+            audible = false;
+            audioFocusHelper.abandon(this);
+            return;
+        }
+        int state = player.getPlaybackState();
+        boolean audible = !sMute && player.getPlayWhenReady()
+                && (state == Player.STATE_READY || state == Player.STATE_BUFFERING);
+        if (this.audible != audible) {
+            this.audible = audible;
+            audioFocusHelper.onAudibleChanged(this, audible);
+        }
+    }
+
+    /**
+     * @return true: 视频渲染器已禁用
+     */
+    public boolean isVideoRendererDisabled() {
+        if (player == null || trackSelector == null) return false;
 
-            if (surfaceView instanceof SurfaceView) {
-                this.player.clearVideoSurfaceView((SurfaceView) surfaceView);
+        for (int i = 0; i < player.getRendererCount(); i++) {
+            if (player.getRendererType(i) == C.TRACK_TYPE_VIDEO
+                    && !trackSelector.getRendererDisabled(i)) {
+                return false;
             }
         }
+        return true;
+    }
 
-        this.player = player;
+    /**
+     * 后台音频模式，或省流量模式只播放音频时禁用视频渲染器
+     */
+    private void updateVideoRenderer() {
+        if (player == null || trackSelector == null) return;
 
-        controller.setPlayer(player);
+        DataSaver saver = DataSaver.get();
+        setRendererDisabled(C.TRACK_TYPE_VIDEO, backgroundAudio
+                || saver.isAudioOnly() && saver.isActive(getContext()));
+    }
 
-        if (player != null) {
+    /**
+     * 禁用/启用指定类型的渲染器，禁用后不再解码，自适应流也不再下载该轨道
+     *
+     * @param trackType 轨道类型 eg: {@link C#TRACK_TYPE_VIDEO}
+     * @param disabled  true: 禁用
+     */
+    private void setRendererDisabled(int trackType, boolean disabled) {
+        setRendererDisabled(player, trackSelector, trackType, disabled);
+    }
 
-            if (surfaceView instanceof SurfaceView) {
-                player.setVideoSurfaceView((SurfaceView) surfaceView);
+    private static void setRendererDisabled(SimpleExoPlayer player, DefaultTrackSelector selector,
+                                            int trackType, boolean disabled) {
+        for (int i = 0; i < player.getRendererCount(); i++) {
+            if (player.getRendererType(i) == trackType
+                    && selector.getRendererDisabled(i) != disabled) {
+                selector.setRendererDisabled(i, disabled);
             }
+        }
+    }
 
-            player.addVideoListener(componentListener);
-            player.addTextOutput(componentListener);
+    /**
+     * 按播放区域尺寸限制视频清晰度，非全屏时按 {@link #MAX_PIXELS_PER_DP} 折算
+     *
+     * @param width  播放区域宽 单位：px
+     * @param height 播放区域高 单位：px
+     */
+    private void updateViewportConstraint(int width, int height) {
+        if (player == null || trackSelector == null || width <= 0 || height <= 0) return;
+
+        if (!fullscreen) {
+            float density = getResources().getDisplayMetrics().density;
+            if (density > MAX_PIXELS_PER_DP) {
+                width = (int) (width * MAX_PIXELS_PER_DP / density);
+                height = (int) (height * MAX_PIXELS_PER_DP / density);
+            }
         }
+        DefaultTrackSelector.Parameters parameters = trackSelector.getParameters();
+        if (parameters.viewportWidth == width && parameters.viewportHeight == height) return;
+
+        sizeClassMeter.onSizeClassChanged(SizeClassStats.sizeClassOf(width, height), player,
+                trafficListener);
+        trackSelector.setParameters(parameters.withViewportSize(width, height, false));
     }
 
-    public SimpleExoPlayer getPlayer() {
-        return player;
+    /**
+     * 取消尺寸限制，切换全屏时先放开，全屏布局完成后再按屏幕尺寸限制
+     */
+    private void relaxViewportConstraint() {
+        if (player == null || trackSelector == null) return;
+
+        sizeClassMeter.onSizeClassChanged(SizeClassStats.CLASS_1080, player, trafficListener);
+        trackSelector.setParameters(trackSelector.getParameters()
+                .withoutViewportSizeConstraints());
     }
 
     /**
      * 停止播放，并释放player
      */
     public void stop() {
-        if (player != null) {
-            if (controller != null) {
-                controller.cacheProgress();
-                controller.setPlayer(null);
-            }
+        stop(false);
+    }
 
-            player.removeTextOutput(componentListener);
-            player.removeVideoListener(componentListener);
-            if (surfaceView instanceof SurfaceView) {
-                player.clearVideoSurfaceView((SurfaceView) surfaceView);
+    /**
+     * @param keepBackgroundAudio true: 保留后台音频状态，用于同一视频重新播放
+     */
+    private void stop(boolean keepBackgroundAudio) {
+        Tracer.begin(Tracer.VIEW_STOP);
+        try {
+            if (!keepBackgroundAudio) {
+                setBackgroundAudio(false);
             }
+            startingName = null;
+            if (player != null) {
+                if (pendingPrepare != null) {
+                    pendingPrepare.cancelled = true;
+                    pendingPrepare = null;
+                }
+                if (controller != null) {
+                    controller.cacheProgress();
+                    controller.setPlayer(null);
+                }
+                if (sizeClassMeter != null) {
+                    sizeClassMeter.flush(player, trafficListener);
+                    sizeClassMeter = null;
+                }
+                DecoderCounters audioCounters = PerfCounters.isEnabled()
+                        ? player.getAudioDecoderCounters() : null;
+                if (audioCounters != null) {
+                    audioCounters.ensureUpdated();
+                    PerfCounters.add(PerfCounters.AUDIO_DECODER_INIT,
+                            audioCounters.decoderInitCount);
+                }
+                releaseStandby();
+                trackSelector = null;
+                loadControl = null;
+                trafficListener = null;
+
+                player.removeTextOutput(componentListener);
+                player.removeVideoListener(componentListener);
+                clearVideoView(player, surfaceView);
+                if (subtitleSync != null) {
+                    subtitleSync.attach(null);
+                }
+                if (subtitleView != null) {
+                    subtitleView.clear();
+                }
 
-            // 必须在 #clearVideoSurfaceView 之后调用，解决异步带来的ANR
-            service.execute(new ReleaseRunnable(player));
+                // 必须在 #clearVideoSurfaceView 之后调用，解决异步带来的ANR
+                service.execute(new ReleaseRunnable(player));
 
-            player = null;
+                player = null;
+                updateAudioFocus();
+            }
+        } finally {
+            Tracer.end();
         }
     }
 
@@ -229,6 +1420,7 @@ public class PlayerView extends FrameLayout {
             if (mInnerPlayer != null) {
                 try {
                     mInnerPlayer.release();
+                    PerfCounters.increment(PerfCounters.PLAYER_RELEASE);
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
@@ -261,9 +1453,25 @@ public class PlayerView extends FrameLayout {
         if (controller != null && synced != null) {
             fullscreen = synced.fullscreen;
             mUrl = synced.mUrl;
-            backupParentSoft = synced.backupParentSoft;
+            backupParentRef = synced.backupParentRef;
+            qualities = synced.qualities;
+            trackSelector = synced.trackSelector;
+            loadControl = synced.loadControl;
+            trafficListener = synced.trafficListener;
+            sizeClassMeter = synced.sizeClassMeter;
+            backgroundAudio = synced.backgroundAudio;
+            ducked = synced.ducked;
+            audioRendererOff = synced.audioRendererOff;
+            if (audioFocusHelper == null) {
+                audioFocusHelper = synced.audioFocusHelper;
+            }
+            live = synced.live;
+            pendingPrepare = synced.pendingPrepare;
+            liveTargetLatencyMs = synced.liveTargetLatencyMs;
+            session = synced.session;
+            setSubtitleUrl(synced.getSubtitleUrl());
             controller.syncRegime(synced.controller);
-            playerLifecycle.setLifecycleFollowFlag(synced.playerLifecycle.isLifecycleFollowFlag());
+            playerLifecycle.syncRegime(synced.playerLifecycle);
             setKeepScreenOn(synced.getKeepScreenOn());
         }
     }
@@ -281,36 +1489,35 @@ public class PlayerView extends FrameLayout {
         LifecycleUtils.removeVideoLifecycle(this, playerLifecycle);
         ViewParent parent = getParent();
         if (parent instanceof FrameLayout) {
-            backupParentSoft = new SoftReference<>((FrameLayout) parent);
+            backupParentRef = new WeakReference<>((FrameLayout) parent);
         }
+        relaxViewportConstraint();
         FullscreenActivity.startActivity(helper.getContext(), mUrl);
-        PlayerListener listener = getPlayerListener();
-        if (listener != null) {
-            listener.onChangeFullScreen(true);
-        }
+        controller.dispatchChangeFullScreen(true);
     }
 
     public void exitFullscreen() {
         fullscreen = false;
         LifecycleUtils.removeVideoLifecycle(this, playerLifecycle);
-        PlayerListener listener = getPlayerListener();
-        if (listener != null) {
-            listener.onChangeFullScreen(false);
-        }
+        controller.dispatchChangeFullScreen(false);
         FrameLayout backup;
-        if (backupParentSoft != null && (backup = backupParentSoft.get()) != null) {
+        if (backupParentRef != null && (backup = backupParentRef.get()) != null) {
+            updateViewportConstraint(backup.getWidth(), backup.getHeight());
             if (getParent() instanceof ViewGroup) {
                 ((ViewGroup) getParent()).removeView(this);
                 backup.addView(this, MATCH_PARENT, MATCH_PARENT);
 
             }
         }
-        backupParentSoft = null;
+        backupParentRef = null;
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        Object tag = getParent() instanceof View
+                ? ((View) getParent()).getTag(R.id.player_tag_listener) : null;
+        playerListener = tag instanceof PlayerListener ? (PlayerListener) tag : null;
         controller.updateIcFullscreen();
         LifecycleUtils.addVideoLifecycle(this, playerLifecycle);
     }
@@ -318,19 +1525,75 @@ public class PlayerView extends FrameLayout {
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        playerListener = null;
         fullscreen = false;
         LifecycleUtils.removeVideoLifecycle(this, playerLifecycle);
     }
 
+    /**
+     * 按尺寸档位分段统计：档位变化或停止播放时，把这一段的增量记录到 {@link SizeClassStats}
+     */
+    private static final class SizeClassMeter {
+
+        private int sizeClass = SizeClassStats.CLASS_1080;
+        private long startMs = SystemClock.elapsedRealtime();
+        private long bytes;
+        private long rendered;
+        private long dropped;
+
+        void onSizeClassChanged(int newSizeClass, SimpleExoPlayer player,
+                                TrafficListener trafficListener) {
+            if (sizeClass != newSizeClass) {
+                flush(player, trafficListener);
+                sizeClass = newSizeClass;
+            }
+        }
+
+        void flush(SimpleExoPlayer player, TrafficListener trafficListener) {
+            long nowMs = SystemClock.elapsedRealtime();
+            long totalBytes = trafficListener != null ? trafficListener.getBytesTransferred() : 0;
+            long totalRendered = 0;
+            long totalDropped = 0;
+            DecoderCounters counters = player != null ? player.getVideoDecoderCounters() : null;
+            if (counters != null) {
+                counters.ensureUpdated();
+                totalRendered = counters.renderedOutputBufferCount;
+                totalDropped = counters.droppedOutputBufferCount;
+            }
+            // 解码器重新初始化时计数会归零
+            if (totalRendered < rendered || totalDropped < dropped) {
+                rendered = dropped = 0;
+            }
+            SizeClassStats.get().record(sizeClass, totalBytes - bytes, totalRendered - rendered,
+                    totalDropped - dropped, nowMs - startMs);
+            startMs = nowMs;
+            bytes = totalBytes;
+            rendered = totalRendered;
+            dropped = totalDropped;
+        }
+
+    }
+
     private final class ComponentListener implements SimpleExoPlayer.VideoListener,
-            TextRenderer.Output {
+            TextRenderer.Output, View.OnLayoutChangeListener {
+
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom, int
+                oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+                updateViewportConstraint(right - left, bottom - top);
+            }
+        }
 
         // TextRenderer.Output implementation
         @Override
         public void onCues(List<Cue> cues) {
-//            if (subtitleView != null) {
-//                subtitleView.onCues(cues);
-//            }
+            // 有外挂字幕时忽略流内字幕
+            if (subtitleSync != null && subtitleSync.subtitle != null) return;
+
+            if (subtitleView != null || (cues != null && !cues.isEmpty())) {
+                getSubtitleView().onCues(cues);
+            }
         }
 
         // SimpleExoPlayer.VideoListener implementation
@@ -345,6 +1608,14 @@ public class PlayerView extends FrameLayout {
 
         @Override
         public void onRenderedFirstFrame() {
+            if (startingName != null) {
+                LatencyStats.get().record(startingName,
+                        SystemClock.elapsedRealtime() - startingAtMs);
+                startingName = null;
+            }
+            if (controller != null) {
+                controller.onRenderedFirstFrame();
+            }
 //            if (shutterView != null) {
 //                shutterView.setVisibility(INVISIBLE);
 //            }
@@ -14,6 +14,7 @@ import com.aliya.player.ui.Controller;
 public class BottomProgressControl extends AbsControl {
 
     private ProgressBar mProgressBar;
+    private boolean live;
 
     public BottomProgressControl(Controller controller) {
         super(controller);
@@ -34,13 +35,25 @@ public class BottomProgressControl extends AbsControl {
     @Override
     public void setVisibility(boolean isVisible) {
         if (mProgressBar != null) {
-            mProgressBar.setVisibility(isVisible ? View.VISIBLE : View.INVISIBLE);
+            mProgressBar.setVisibility(isVisible && !live ? View.VISIBLE : View.INVISIBLE);
             updateProgress();
         }
     }
 
+    /**
+     * 直播时不显示进度
+     *
+     * @param live true: 直播
+     */
+    public void setLive(boolean live) {
+        this.live = live;
+        if (live && mProgressBar != null) {
+            mProgressBar.setVisibility(View.INVISIBLE);
+        }
+    }
+
     public void updateProgress() {
-        if (mProgressBar == null) return;
+        if (mProgressBar == null || live) return;
 
         CalcTime calcTime = controller.getCalcTime();
 
@@ -1,8 +1,10 @@
 package com.aliya.player.ui.control;
 
 import android.view.View;
+import android.view.ViewStub;
 import android.widget.ProgressBar;
 
+import com.aliya.player.R;
 import com.aliya.player.ui.Controller;
 
 /**
@@ -13,6 +15,7 @@ import com.aliya.player.ui.Controller;
  */
 public class BufferControl extends AbsControl {
 
+    private ViewStub viewStub;
     private ProgressBar bufferProgress;
 
     public BufferControl(Controller controller) {
@@ -21,8 +24,12 @@ public class BufferControl extends AbsControl {
 
     @Override
     public void onViewCreate(View view) {
-        if (view instanceof ProgressBar)
+        if (view instanceof ViewStub) { // 首次缓冲时再创建
+            viewStub = (ViewStub) view;
+            viewStub.setLayoutResource(R.layout.module_player_layout_buffer);
+        } else if (view instanceof ProgressBar) {
             bufferProgress = (ProgressBar) view;
+        }
     }
 
     @Override
@@ -33,6 +40,11 @@ public class BufferControl extends AbsControl {
 
     @Override
     public void setVisibility(boolean isVisible) {
+        if (isVisible && bufferProgress == null && viewStub != null) {
+            bufferProgress = (ProgressBar) viewStub.inflate();
+            viewStub = null;
+            bufferProgress.setVisibility(View.INVISIBLE);
+        }
         if (bufferProgress != null) {
             boolean oldVisible = isVisible();
             if (isVisible) {
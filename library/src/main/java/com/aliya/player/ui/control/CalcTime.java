@@ -14,6 +14,13 @@ public final class CalcTime {
     long position = 0;
     long bufferedPosition = 0;
     long duration = 0;
+    float speed = 1f;
+
+    // 格式化结果按秒缓存，同一秒内多次刷新不再创建字符串
+    private long positionSecond = Long.MIN_VALUE;
+    private String positionText;
+    private long durationSecond = Long.MIN_VALUE;
+    private String durationText;
 
     public CalcTime() {
     }
@@ -32,35 +39,74 @@ public final class CalcTime {
     }
 
     public int calcProgress(int max) {
-        if (duration == 0 ) {
-            return 0;
-        }
-        return (int) (max * position / duration + 0.5f);
+        return calcProgress(max, position);
+    }
+
+    /**
+     * 计算指定位置对应的进度
+     *
+     * @param max        进度最大值
+     * @param positionMs 指定位置 单位：ms
+     * @return 进度
+     */
+    public int calcProgress(int max, long positionMs) {
+        return ratio(max, positionMs);
     }
 
     public int calcSecondaryProgress(int max) {
+        return ratio(max, bufferedPosition);
+    }
+
+    private int ratio(int max, long positionMs) {
         if (duration == 0) {
             return 0;
         }
-        return (int) (max * bufferedPosition / duration + 0.5f);
+        return (int) (max * positionMs / duration + 0.5f);
     }
 
     public String formatPosition() {
-        return Utils.formatTime(position);
+        long second = secondOf(position);
+        if (second != positionSecond || positionText == null) {
+            positionSecond = second;
+            positionText = Utils.formatTime(position);
+        }
+        return positionText;
     }
 
     public String formatDuration() {
-        return Utils.formatTime(duration);
+        long second = secondOf(duration);
+        if (second != durationSecond || durationText == null) {
+            durationSecond = second;
+            durationText = Utils.formatTime(duration);
+        }
+        return durationText;
+    }
+
+    /**
+     * 与 {@link Utils#formatTime(long)} 的取整一致，负数统一为 -1
+     */
+    private static long secondOf(long timeMs) {
+        return timeMs < 0 ? -1 : (timeMs + 500) / 1000;
+    }
+
+    /**
+     * 设置播放速度，进度以媒体时间计算，刷新周期需要换算为实际时间
+     *
+     * @param speed 播放速度
+     */
+    public void setSpeed(float speed) {
+        this.speed = speed > 0 ? speed : 1f;
     }
 
     /**
      * 计算同步周期时长 预防进度1s更新延迟问题
      *
-     * @return delayMs
+     * @return delayMs 实际时间
      */
     public long calcSyncPeriod() {
         long delayMs = 1000 - (position % 1000);
-        return delayMs < 200 ? delayMs + 200 : delayMs;
+        delayMs = delayMs < 200 ? delayMs + 200 : delayMs;
+        return (long) (delayMs / speed);
     }
 
 }
@@ -0,0 +1,188 @@
+package com.aliya.player.ui.control;
+
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import com.aliya.player.TrafficListener;
+import com.aliya.player.ui.Controller;
+import com.aliya.player.ui.PlayerView;
+import com.aliya.player.utils.Utils;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+
+/**
+ * 调试浮层 - Control，显示码率、超前缓冲、丢帧数、下载速度
+ * <p>
+ * 只在 {@link #setEnabled(boolean)} 开启后由 Controller 创建，关闭时没有任何对象和定时器；
+ * 显示时每 {@link #SAMPLE_INTERVAL_MS} 采样一次
+ *
+ * @author a_liYa
+ * @date 2018/3/22 16:20.
+ */
+public class DebugHudControl extends AbsControl {
+
+    public static final long SAMPLE_INTERVAL_MS = 1000;
+
+    private static volatile boolean sEnabled;
+
+    private ViewGroup parent;
+    private TextView tvHud;
+
+    private final StringBuilder sb = new StringBuilder(128);
+    private TrafficListener lastTraffic;
+    private long lastBytes;
+    private long lastSampleMs;
+
+    private final Runnable sampleAction = new Runnable() {
+        @Override
+        public void run() {
+            sample();
+            if (tvHud != null && tvHud.getVisibility() == View.VISIBLE) {
+                tvHud.postDelayed(this, SAMPLE_INTERVAL_MS);
+            }
+        }
+    };
+
+    public DebugHudControl(Controller controller) {
+        super(controller);
+    }
+
+    /**
+     * 开启／关闭调试浮层，对之后创建的 PlayerView 有效；
+     * 已有的 PlayerView 通过 {@link Controller#setDebugHudEnabled(boolean)} 切换
+     *
+     * @param enabled true: 开启
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    @Override
+    public void onViewCreate(View view) {
+        if (view instanceof ViewGroup) {
+            parent = (ViewGroup) view;
+        }
+    }
+
+    @Override
+    public boolean isVisible() {
+        return tvHud != null && tvHud.getVisibility() == View.VISIBLE;
+    }
+
+    @Override
+    public void setVisibility(boolean isVisible) {
+        if (isVisible && tvHud == null && parent != null) {
+            tvHud = new TextView(parent.getContext());
+            tvHud.setTextColor(Color.WHITE);
+            tvHud.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+            tvHud.setBackgroundColor(0x99000000);
+            int padding = Utils.dp2px(parent.getContext(), 4);
+            tvHud.setPadding(padding, padding, padding, padding);
+            FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT,
+                    Gravity.TOP | Gravity.LEFT);
+            parent.addView(tvHud, lp);
+        }
+        if (tvHud == null) return;
+
+        tvHud.removeCallbacks(sampleAction);
+        if (isVisible) {
+            tvHud.setVisibility(View.VISIBLE);
+            sampleAction.run();
+        } else {
+            tvHud.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * 从父容器中删除，关闭时调用
+     */
+    public void destroy() {
+        if (tvHud != null) {
+            tvHud.removeCallbacks(sampleAction);
+            if (tvHud.getParent() instanceof ViewGroup) {
+                ((ViewGroup) tvHud.getParent()).removeView(tvHud);
+            }
+            tvHud = null;
+        }
+    }
+
+    private void sample() {
+        if (tvHud == null) return;
+
+        sb.setLength(0);
+        SimpleExoPlayer player = getPlayer();
+        PlayerView playerView = getPlayerView();
+        if (player == null || playerView == null) {
+            tvHud.setText("idle");
+            return;
+        }
+
+        Format format = player.getVideoFormat();
+        sb.append("video ");
+        if (format != null) {
+            sb.append(format.width).append('x').append(format.height);
+            if (format.bitrate != Format.NO_VALUE) {
+                sb.append(' ').append(format.bitrate / 1000).append("kbps");
+            }
+        } else {
+            sb.append('-');
+        }
+
+        long position = player.getCurrentPosition();
+        long buffered = player.getBufferedPosition();
+        sb.append("\nbuffer ");
+        if (position != C.TIME_UNSET && buffered != C.TIME_UNSET) {
+            sb.append(Math.max(0, buffered - position)).append("ms");
+        } else {
+            sb.append('-');
+        }
+
+        DecoderCounters counters = player.getVideoDecoderCounters();
+        sb.append("\ndropped ");
+        if (counters != null) {
+            counters.ensureUpdated();
+            sb.append(counters.droppedOutputBufferCount)
+                    .append('/').append(counters.renderedOutputBufferCount);
+        } else {
+            sb.append('-');
+        }
+
+        // 按两次采样间下载的字节数计算，切换 player 后重新开始
+        TrafficListener traffic = playerView.getTrafficListener();
+        long nowMs = SystemClock.elapsedRealtime();
+        sb.append("\nspeed ");
+        if (traffic != null && traffic == lastTraffic && nowMs > lastSampleMs) {
+            long bytes = traffic.getBytesTransferred();
+            Utils.formatSpeed(sb, (bytes - lastBytes) * 1000 / (nowMs - lastSampleMs));
+            lastBytes = bytes;
+        } else {
+            sb.append('-');
+            lastBytes = traffic != null ? traffic.getBytesTransferred() : 0;
+        }
+        lastTraffic = traffic;
+        lastSampleMs = nowMs;
+        if (traffic != null && traffic.getBandwidthMeter() != null) {
+            long estimate = traffic.getBandwidthMeter().getBitrateEstimate();
+            if (estimate > 0) {
+                sb.append(" est ").append(estimate / 1000).append("kbps");
+            }
+        }
+
+        sb.append("\nrate x").append(player.getPlaybackParameters().speed);
+        tvHud.setText(sb.toString());
+    }
+
+}
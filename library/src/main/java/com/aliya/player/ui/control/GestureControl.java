@@ -0,0 +1,427 @@
+package com.aliya.player.ui.control;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.media.AudioManager;
+import android.provider.Settings;
+import android.support.v4.view.ViewCompat;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewStub;
+import android.view.WindowManager;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import com.aliya.player.R;
+import com.aliya.player.ui.Controller;
+import com.aliya.player.ui.PlayerView;
+import com.aliya.player.utils.Utils;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+
+/**
+ * 手势 - Control
+ * <p>
+ * 横向拖动：快进/快退；纵向拖动：左半屏调节亮度，右半屏调节音量；双击：左半屏快退10s，右半屏快进10s
+ * <p>
+ * 触摸事件只记录目标值，提示层与音量、亮度在下一帧统一更新，每帧最多一次，move 事件中不创建对象
+ *
+ * @author a_liYa
+ * @date 2018/3/2 10:16.
+ */
+public class GestureControl extends AbsControl implements View.OnTouchListener {
+
+    private ViewStub viewStub;
+    private View rootView;
+    private TextView tvGesture;
+    private ProgressBar progressBar;
+
+    private GestureDetector gestureDetector;
+    private AudioManager audioManager;
+
+    private boolean enabled = true;
+    private boolean seekEnabled = true;
+    private boolean fullscreenOnly = true;
+
+    private int mode = MODE_NONE;
+    private float startValue;
+    private float targetValue;
+    private long startPosition;
+    private long targetPosition;
+    private long seekPosition = -1;
+    private boolean frameScheduled;
+
+    private String volumeLabel;
+    private String brightnessLabel;
+    private final StringBuilder textBuilder = new StringBuilder(24);
+    private char[] textChars = new char[24];
+
+    private static final int MODE_NONE = 0;
+    private static final int MODE_SCRUB = 1;
+    private static final int MODE_VOLUME = 2;
+    private static final int MODE_BRIGHTNESS = 3;
+
+    public static final int DOUBLE_TAP_SEEK_MS = 10 * 1000;
+    private static final long MAX_SCRUB_RANGE_MS = 2 * 60 * 1000; // 全宽拖动对应的最大时长
+    private static final long SEEK_DELAY_MS = 400; // 连续双击合并为一次seek
+    private static final long HIDE_DELAY_MS = 500;
+
+    private final Runnable frameAction = new Runnable() {
+        @Override
+        public void run() {
+            frameScheduled = false;
+            applyFrame();
+        }
+    };
+
+    private final Runnable seekAction = new Runnable() {
+        @Override
+        public void run() {
+            if (seekPosition >= 0) {
+                controller.seekTo(seekPosition);
+                seekPosition = -1;
+            }
+        }
+    };
+
+    private final Runnable hideAction = new Runnable() {
+        @Override
+        public void run() {
+            setVisibility(false);
+        }
+    };
+
+    public GestureControl(Controller controller) {
+        super(controller);
+    }
+
+    @Override
+    public void onViewCreate(View view) {
+        if (view instanceof ViewStub) {
+            viewStub = (ViewStub) view;
+            viewStub.setLayoutResource(R.layout.module_player_layout_gesture);
+        }
+        PlayerView playerView = getPlayerView();
+        if (playerView != null) {
+            Context context = playerView.getContext();
+            gestureDetector = new GestureDetector(context, new GestureListener());
+            audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+            volumeLabel = context.getString(R.string.player_gesture_volume);
+            brightnessLabel = context.getString(R.string.player_gesture_brightness);
+            playerView.setOnTouchListener(this);
+        }
+    }
+
+    @Override
+    public boolean isVisible() {
+        return rootView != null && rootView.getVisibility() == View.VISIBLE;
+    }
+
+    @Override
+    public void setVisibility(boolean isVisible) {
+        if (isVisible) {
+            show();
+        } else if (rootView != null) {
+            rootView.removeCallbacks(hideAction);
+            rootView.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * 设置手势是否可用，有遮挡提示（缓冲、错误、移动网络）时不可用
+     *
+     * @param enabled true: 可用
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            cancelGesture();
+        }
+    }
+
+    /**
+     * 设置是否响应拖动、双击快进快退，直播时不可用
+     *
+     * @param seekEnabled true: 可用
+     */
+    public void setSeekEnabled(boolean seekEnabled) {
+        this.seekEnabled = seekEnabled;
+    }
+
+    /**
+     * 设置是否只在全屏时响应手势，默认 true; 列表中纵向拖动会和列表滑动冲突
+     *
+     * @param fullscreenOnly true: 只在全屏时响应
+     */
+    public void setFullscreenOnly(boolean fullscreenOnly) {
+        this.fullscreenOnly = fullscreenOnly;
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        if (!isGestureAvailable()) {
+            return false; // 交由 View 自身处理点击
+        }
+        boolean handled = gestureDetector.onTouchEvent(event);
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            finishGesture();
+        }
+        return handled || mode != MODE_NONE;
+    }
+
+    private boolean isGestureAvailable() {
+        PlayerView playerView = getPlayerView();
+        return enabled && gestureDetector != null && getPlayer() != null && playerView != null
+                && (!fullscreenOnly || playerView.isFullscreen());
+    }
+
+    private void finishGesture() {
+        if (mode == MODE_SCRUB) {
+            scheduleSeek(targetPosition, 0);
+        }
+        if (mode != MODE_NONE) {
+            mode = MODE_NONE;
+            if (rootView != null) {
+                rootView.removeCallbacks(hideAction);
+                rootView.postDelayed(hideAction, HIDE_DELAY_MS);
+            }
+        }
+    }
+
+    private void cancelGesture() {
+        mode = MODE_NONE;
+        seekPosition = -1;
+        PlayerView playerView = getPlayerView();
+        if (playerView != null) {
+            playerView.removeCallbacks(seekAction);
+        }
+        setVisibility(false);
+    }
+
+    /**
+     * seek 调度，延时内的多次请求合并为一次
+     *
+     * @param positionMs 目标位置
+     * @param delayMs    延时
+     */
+    private void scheduleSeek(long positionMs, long delayMs) {
+        PlayerView playerView = getPlayerView();
+        if (playerView == null) return;
+
+        seekPosition = positionMs;
+        playerView.removeCallbacks(seekAction);
+        if (delayMs > 0) {
+            playerView.postDelayed(seekAction, delayMs);
+        } else {
+            seekAction.run();
+        }
+    }
+
+    private void startMode(int newMode, float value) {
+        mode = newMode;
+        startValue = value;
+        targetValue = value;
+    }
+
+    /**
+     * 请求下一帧更新，同一帧内多次请求只执行一次
+     */
+    private void requestFrame() {
+        if (!frameScheduled) {
+            PlayerView playerView = getPlayerView();
+            if (playerView != null) {
+                frameScheduled = true;
+                ViewCompat.postOnAnimation(playerView, frameAction);
+            }
+        }
+    }
+
+    private void applyFrame() {
+        if (mode == MODE_NONE && seekPosition < 0) return; // 手势已结束
+
+        show();
+        if (rootView == null) return;
+
+        textBuilder.setLength(0);
+        int progress = 0;
+        switch (mode) {
+            case MODE_SCRUB:
+                CalcTime calcTime = controller.getCalcTime();
+                Utils.formatTime(textBuilder, targetPosition).append(" / ");
+                Utils.formatTime(textBuilder, calcTime.duration);
+                progress = calcTime.calcProgress(progressBar.getMax(), targetPosition);
+                break;
+            case MODE_VOLUME:
+                int maxVolume = audioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
+                int volume = Math.round(targetValue * maxVolume);
+                if (volume != audioManager.getStreamVolume(AudioManager.STREAM_MUSIC)) {
+                    audioManager.setStreamVolume(AudioManager.STREAM_MUSIC, volume, 0);
+                }
+                textBuilder.append(volumeLabel).append(Math.round(targetValue * 100)).append('%');
+                progress = Math.round(targetValue * progressBar.getMax());
+                break;
+            case MODE_BRIGHTNESS:
+                Activity activity = getActivity();
+                if (activity != null) {
+                    WindowManager.LayoutParams lp = activity.getWindow().getAttributes();
+                    lp.screenBrightness = Math.max(0.01f, targetValue);
+                    activity.getWindow().setAttributes(lp);
+                }
+                textBuilder.append(brightnessLabel).append(Math.round(targetValue * 100))
+                        .append('%');
+                progress = Math.round(targetValue * progressBar.getMax());
+                break;
+            default: // 双击快进/快退
+                if (seekPosition < 0) return;
+                CalcTime time = controller.getCalcTime();
+                Utils.formatTime(textBuilder, seekPosition).append(" / ");
+                Utils.formatTime(textBuilder, time.duration);
+                progress = time.calcProgress(progressBar.getMax(), seekPosition);
+                rootView.postDelayed(hideAction, SEEK_DELAY_MS + HIDE_DELAY_MS);
+                break;
+        }
+
+        int length = textBuilder.length();
+        if (textChars.length < length) {
+            textChars = new char[length];
+        }
+        textBuilder.getChars(0, length, textChars, 0);
+        tvGesture.setText(textChars, 0, length);
+        progressBar.setProgress(progress);
+    }
+
+    private void show() {
+        if (rootView == null) {
+            if (viewStub != null) {
+                rootView = viewStub.inflate();
+                viewStub = null;
+                tvGesture = (TextView) rootView.findViewById(R.id.player_tv_gesture);
+                progressBar = (ProgressBar) rootView.findViewById(R.id.player_gesture_progress);
+            }
+        }
+        if (rootView != null) {
+            rootView.removeCallbacks(hideAction);
+            rootView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    private float getCurrentBrightness(Activity activity) {
+        float brightness = activity.getWindow().getAttributes().screenBrightness;
+        if (brightness < 0) { // 跟随系统
+            try {
+                brightness = Settings.System.getInt(activity.getContentResolver(),
+                        Settings.System.SCREEN_BRIGHTNESS) / 255f;
+            } catch (Settings.SettingNotFoundException e) {
+                brightness = 0.5f;
+            }
+        }
+        return brightness;
+    }
+
+    /**
+     * PlayerView 使用的是 ApplicationContext, 从父容器中获取 Activity
+     */
+    private Activity getActivity() {
+        View parent = getParentView();
+        Context context = parent != null ? parent.getContext() : null;
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return (Activity) context;
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    private static float clamp(float value) {
+        return value < 0 ? 0 : (value > 1 ? 1 : value);
+    }
+
+    private final class GestureListener extends GestureDetector.SimpleOnGestureListener {
+
+        @Override
+        public boolean onDown(MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onSingleTapConfirmed(MotionEvent e) {
+            PlayerView playerView = getPlayerView();
+            return playerView != null && playerView.performClick();
+        }
+
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            SimpleExoPlayer player = getPlayer();
+            PlayerView playerView = getPlayerView();
+            if (player == null || playerView == null || !seekEnabled) return false;
+
+            controller.getCalcTime().calcTime(player);
+            long base = seekPosition >= 0 ? seekPosition : controller.getCalcTime().position;
+            long offset = e.getX() < playerView.getWidth() / 2 ? -DOUBLE_TAP_SEEK_MS
+                    : DOUBLE_TAP_SEEK_MS;
+            long duration = controller.getCalcTime().duration;
+            long target = Math.max(0, base + offset);
+            if (duration > 0) {
+                target = Math.min(target, duration);
+            }
+            scheduleSeek(target, SEEK_DELAY_MS);
+            requestFrame();
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float
+                distanceY) {
+            PlayerView playerView = getPlayerView();
+            if (playerView == null || e1 == null) return false;
+
+            int width = playerView.getWidth();
+            int height = playerView.getHeight();
+            if (width == 0 || height == 0) return false;
+
+            float dx = e2.getX() - e1.getX();
+            float dy = e2.getY() - e1.getY();
+
+            if (mode == MODE_NONE) {
+                if (Math.abs(dx) > Math.abs(dy)) {
+                    if (!seekEnabled) return false;
+                    CalcTime calcTime = controller.getCalcTime();
+                    calcTime.calcTime(getPlayer());
+                    if (calcTime.duration <= 0) return false;
+                    startPosition = calcTime.position;
+                    targetPosition = startPosition;
+                    mode = MODE_SCRUB;
+                } else if (e1.getX() > width / 2) {
+                    int max = audioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
+                    startMode(MODE_VOLUME, max == 0 ? 0
+                            : audioManager.getStreamVolume(AudioManager.STREAM_MUSIC) / (float)
+                            max);
+                } else {
+                    Activity activity = getActivity();
+                    if (activity == null) return false;
+                    startMode(MODE_BRIGHTNESS, getCurrentBrightness(activity));
+                }
+            }
+
+            switch (mode) {
+                case MODE_SCRUB:
+                    long duration = controller.getCalcTime().duration;
+                    long range = Math.min(duration, MAX_SCRUB_RANGE_MS);
+                    long target = startPosition + (long) (dx * range / width);
+                    targetPosition = Math.max(0, Math.min(target, duration));
+                    break;
+                case MODE_VOLUME:
+                case MODE_BRIGHTNESS:
+                    targetValue = clamp(startValue - dy / height);
+                    break;
+            }
+            requestFrame();
+            return true;
+        }
+
+    }
+
+}
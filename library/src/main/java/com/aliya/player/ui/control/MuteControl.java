@@ -1,12 +1,12 @@
 package com.aliya.player.ui.control;
 
 import android.view.View;
+import android.view.ViewStub;
 import android.widget.ImageView;
 
-import com.aliya.player.PlayerCallback;
-import com.aliya.player.PlayerManager;
 import com.aliya.player.R;
 import com.aliya.player.ui.Controller;
+import com.aliya.player.ui.PlayerView;
 
 /**
  * 静音 - 控制器
@@ -16,17 +16,19 @@ import com.aliya.player.ui.Controller;
  */
 public class MuteControl extends AbsControl implements View.OnClickListener {
 
+    ViewStub viewStub;
     ImageView iv;
 
-    protected static boolean isMute = false;
-
     public MuteControl(Controller controller) {
         super(controller);
     }
 
     @Override
     public void onViewCreate(View view) {
-        if (view instanceof ImageView) {
+        if (view instanceof ViewStub) { // 跟随控制栏，首次显示时再创建
+            viewStub = (ViewStub) view;
+            viewStub.setLayoutResource(R.layout.module_player_layout_volume);
+        } else if (view instanceof ImageView) {
             iv = (ImageView) view;
             iv.setOnClickListener(this);
             updateVolume();
@@ -40,6 +42,11 @@ public class MuteControl extends AbsControl implements View.OnClickListener {
 
     @Override
     public void setVisibility(boolean isVisible) {
+        if (isVisible && iv == null && viewStub != null) {
+            ViewStub stub = viewStub;
+            viewStub = null;
+            onViewCreate(stub.inflate());
+        }
         if (iv != null) {
             iv.setVisibility(isVisible ? View.VISIBLE : View.INVISIBLE);
         }
@@ -47,23 +54,23 @@ public class MuteControl extends AbsControl implements View.OnClickListener {
 
     @Override
     public void onClick(View view) {
-        if (view == iv) {
+        PlayerView playerView = getPlayerView();
+        if (view == iv && playerView != null) {
             if (getPlayer() != null) {
-                isMute = !isMute;
-                updateVolume();
-                PlayerCallback callback = PlayerManager.getPlayerCallback(getParentView());
-                if (callback != null) {
-                    callback.onMuteChange(isMute, getPlayerView());
-                }
+                playerView.setMute(!playerView.isMute());
+                controller.dispatchMuteChange(playerView.isMute());
             }
         }
     }
 
+    /**
+     * 按当前静音状态更新图标，音量由 {@link PlayerView#setMute(boolean)} 设置
+     */
     public void updateVolume() {
-        if (getPlayer() != null) {
-            getPlayer().setVolume(isMute ? 0f : 1f);
+        PlayerView playerView = getPlayerView();
+        if (iv != null && playerView != null) {
+            iv.setImageResource(playerView.isMute() ? R.mipmap.module_player_controls_ic_mute
+                    : R.mipmap.module_player_controls_ic_volume);
         }
-        iv.setImageResource(isMute ? R.mipmap.module_player_controls_ic_mute
-                : R.mipmap.module_player_controls_ic_volume);
     }
 }
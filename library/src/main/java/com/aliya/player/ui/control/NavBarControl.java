@@ -1,16 +1,17 @@
 package com.aliya.player.ui.control;
 
 import android.os.SystemClock;
+import android.support.v4.view.ViewCompat;
 import android.view.View;
+import android.view.ViewStub;
 import android.widget.ImageView;
 import android.widget.SeekBar;
 import android.widget.TextView;
 
-import com.aliya.player.PlayerCallback;
-import com.aliya.player.PlayerManager;
 import com.aliya.player.R;
 import com.aliya.player.ui.Controller;
 import com.aliya.player.ui.PlayerView;
+import com.aliya.player.utils.PerfCounters;
 import com.aliya.player.utils.Utils;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Player;
@@ -36,13 +37,17 @@ public class NavBarControl extends AbsControl {
 
     private TextView tvDuration;
 
+    private View durationDivider;
+
     private ImageView ivFullscreen;
 
     private View rootView;
+    private ViewStub viewStub;
 
     private int showTimeoutMs;
     private long hideAtMs;
     private boolean isAttachedToWindow;
+    private boolean live;
 
     private ComponentListener componentListener;
 
@@ -62,6 +67,11 @@ public class NavBarControl extends AbsControl {
     }
 
     public void onViewCreate(View view) {
+        if (view instanceof ViewStub) { // 首次显示时再创建
+            viewStub = (ViewStub) view;
+            viewStub.setLayoutResource(R.layout.module_player_layout_nav_bar);
+            return;
+        }
 
         if (rootView != null) {
             rootView.removeOnAttachStateChangeListener(componentListener);
@@ -75,6 +85,7 @@ public class NavBarControl extends AbsControl {
         seekBar = findViewById(rootView, R.id.player_seek_bar);
         tvPosition = findViewById(rootView, R.id.player_position);
         tvDuration = findViewById(rootView, R.id.player_duration);
+        durationDivider = findViewById(rootView, R.id.player_duration_divider);
         ivFullscreen = findViewById(rootView, R.id.player_full_screen);
 
         if (ivPause != null) {
@@ -86,10 +97,43 @@ public class NavBarControl extends AbsControl {
         if (seekBar != null) {
             seekBar.setOnSeekBarChangeListener(componentListener);
         }
+        isAttachedToWindow = ViewCompat.isAttachedToWindow(rootView);
+        if (live) {
+            applyLive();
+        }
+
+    }
+
+    /**
+     * 直播时隐藏进度条、时长，不能拖动
+     *
+     * @param live true: 直播
+     */
+    public void setLive(boolean live) {
+        if (this.live == live) return;
+
+        this.live = live;
+        applyLive();
+    }
 
+    private void applyLive() {
+        if (seekBar != null) {
+            seekBar.setVisibility(live ? View.INVISIBLE : VISIBLE);
+        }
+        if (tvDuration != null) {
+            tvDuration.setVisibility(live ? GONE : VISIBLE);
+        }
+        if (durationDivider != null) {
+            durationDivider.setVisibility(live ? GONE : VISIBLE);
+        }
+        if (live && tvPosition != null) {
+            tvPosition.setText(R.string.player_live);
+        }
+        updateProgress();
     }
 
     public void updateProgress() {
+        if (live) return;
 
         CalcTime calcTime = controller.getCalcTime();
 
@@ -138,6 +182,8 @@ public class NavBarControl extends AbsControl {
     }
 
     public void hideAfterTimeout() {
+        if (rootView == null) return;
+
         rootView.removeCallbacks(hideAction);
 
         if (getPlayer() != null && !getPlayer().getPlayWhenReady()) {
@@ -145,6 +191,7 @@ public class NavBarControl extends AbsControl {
         } else if (showTimeoutMs > 0) {
             hideAtMs = SystemClock.uptimeMillis() + showTimeoutMs;
             if (isAttachedToWindow) {
+                PerfCounters.increment(PerfCounters.MAIN_POST);
                 rootView.postDelayed(hideAction, showTimeoutMs);
             }
         } else {
@@ -154,6 +201,14 @@ public class NavBarControl extends AbsControl {
 
     @Override
     public void setVisibility(boolean isVisible) {
+        if (isVisible && rootView == null && viewStub != null) {
+            ViewStub stub = viewStub;
+            viewStub = null;
+            View view = stub.inflate();
+            view.setVisibility(GONE);
+            onViewCreate(view);
+            controller.onNavBarCreate();
+        }
         if (rootView != null) {
             boolean oldVisible = isVisible();
             rootView.setVisibility(isVisible ? VISIBLE : GONE);
@@ -178,7 +233,7 @@ public class NavBarControl extends AbsControl {
      * @return true表示切换为显示; false表示切换为隐藏
      */
     public boolean switchVisibility() {
-        if (rootView == null) return false;
+        if (rootView == null && viewStub == null) return false;
 
         setVisibility(!isVisible());
 
@@ -187,7 +242,7 @@ public class NavBarControl extends AbsControl {
 
     @Override
     public boolean isVisible() {
-        return rootView.getVisibility() == VISIBLE;
+        return rootView != null && rootView.getVisibility() == VISIBLE;
     }
 
     private final class ComponentListener implements View.OnClickListener,
@@ -203,21 +258,11 @@ public class NavBarControl extends AbsControl {
                     boolean playWhenReady = player.getPlayWhenReady();
                     player.setPlayWhenReady(!playWhenReady);
 
-                    PlayerCallback callback = PlayerManager.getPlayerCallback(getParentView());
-                    if (callback != null) {
-                        if (playWhenReady) { // true -> false
-                            callback.onPause(getPlayerView());
-                        } else { // false -> true
-                            callback.onPlay(getPlayerView());
-                        }
-                    }
+                    controller.dispatchPlayPause(!playWhenReady);
                 } else if (v.getId() == R.id.player_full_screen) {
                     PlayerView playerView = getPlayerView();
                     if (playerView != null) {
-                        PlayerCallback callback = PlayerManager.getPlayerCallback(getParentView());
-                        if (callback != null) {
-                            callback.onFullscreenChange(!playerView.isFullscreen(), playerView);
-                        }
+                        controller.dispatchFullscreenChange(!playerView.isFullscreen());
                         playerView.switchFullScreen();
                     }
                 }
@@ -260,6 +305,7 @@ public class NavBarControl extends AbsControl {
                 if (delayMs <= 0) {
                     setVisibility(false);
                 } else {
+                    PerfCounters.increment(PerfCounters.MAIN_POST);
                     rootView.postDelayed(hideAction, delayMs);
                 }
             }
@@ -0,0 +1,263 @@
+package com.aliya.player.ui.control;
+
+import android.graphics.Color;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.aliya.player.Quality;
+import com.aliya.player.R;
+import com.aliya.player.ui.Controller;
+import com.aliya.player.ui.PlayerView;
+import com.aliya.player.utils.Utils;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 清晰度 - Control
+ * <p>
+ * 自适应流（HLS/DASH）列出视频轨道，选择后从下一个分片开始切换；
+ * 渐进式视频列出 {@link PlayerView#setQualities(List)} 设置的备选 url，由 PlayerView 预加载后无缝切换
+ *
+ * @author a_liYa
+ * @date 2018/3/9 16:05.
+ */
+public class QualityControl extends AbsControl implements View.OnClickListener {
+
+    private TextView tvQuality;
+    private ViewStub viewStub;
+    private View menuView;
+    private LinearLayout listView;
+
+    private final List<String> labels = new ArrayList<>();
+    // 自适应流：选项对应的视频轨道，-1 表示自动
+    private final List<Integer> trackIndices = new ArrayList<>();
+    private int rendererIndex = C.INDEX_UNSET;
+    private TrackGroupArray trackGroups;
+    private List<Quality> qualities;
+
+    public QualityControl(Controller controller) {
+        super(controller);
+    }
+
+    @Override
+    public void onViewCreate(View view) {
+        if (view instanceof TextView) {
+            tvQuality = (TextView) view;
+            tvQuality.setOnClickListener(this);
+        }
+    }
+
+    public void onMenuViewCreate(View view) {
+        if (view instanceof ViewStub) {
+            viewStub = (ViewStub) view;
+            viewStub.setLayoutResource(R.layout.module_player_layout_quality);
+        }
+    }
+
+    @Override
+    public boolean isVisible() {
+        return menuView != null && menuView.getVisibility() == View.VISIBLE;
+    }
+
+    @Override
+    public void setVisibility(boolean isVisible) {
+        boolean oldVisible = isVisible();
+        if (isVisible) {
+            showMenu();
+        } else if (menuView != null) {
+            menuView.setVisibility(View.GONE);
+        }
+        if (oldVisible != isVisible()) {
+            if (visibilityListener != null) {
+                visibilityListener.onVisibilityChange(this, isVisible);
+            }
+        }
+    }
+
+    /**
+     * 更新可选清晰度，轨道变化、url 变化时调用
+     */
+    public void updateQualities() {
+        labels.clear();
+        trackIndices.clear();
+        rendererIndex = C.INDEX_UNSET;
+        trackGroups = null;
+        qualities = null;
+
+        PlayerView playerView = getPlayerView();
+        SimpleExoPlayer player = getPlayer();
+        if (playerView == null || player == null) {
+            updateLabel();
+            return;
+        }
+
+        if (playerView.getQualities() != null && playerView.getQualities().size() > 1) {
+            qualities = playerView.getQualities();
+            for (Quality quality : qualities) {
+                labels.add(quality.getName());
+            }
+        } else {
+            collectVideoTracks(player, playerView.getTrackSelector());
+        }
+        updateLabel();
+    }
+
+    private void collectVideoTracks(SimpleExoPlayer player, DefaultTrackSelector selector) {
+        MappingTrackSelector.MappedTrackInfo info = selector != null
+                ? selector.getCurrentMappedTrackInfo() : null;
+        if (info == null) return;
+
+        for (int i = 0; i < info.length; i++) {
+            if (player.getRendererType(i) != C.TRACK_TYPE_VIDEO) continue;
+
+            TrackGroupArray groups = info.getTrackGroups(i);
+            if (groups.length == 0) continue;
+
+            // 自适应流的视频轨道在同一个 TrackGroup 中
+            TrackGroup group = groups.get(0);
+            for (int t = 0; t < group.length; t++) {
+                if (info.getTrackFormatSupport(i, 0, t) == RendererCapabilities.FORMAT_HANDLED) {
+                    trackIndices.add(t);
+                    labels.add(formatLabel(group.getFormat(t)));
+                }
+            }
+            if (trackIndices.size() > 1) {
+                rendererIndex = i;
+                trackGroups = groups;
+                trackIndices.add(0, -1);
+                labels.add(0, getContext().getString(R.string.player_quality_auto));
+            } else {
+                trackIndices.clear();
+                labels.clear();
+            }
+            break;
+        }
+    }
+
+    private static String formatLabel(Format format) {
+        if (format.height != Format.NO_VALUE) {
+            return format.height + "P";
+        }
+        return format.bitrate / 1000 + "K";
+    }
+
+    /**
+     * @return 当前选中的选项
+     */
+    private int getSelectedIndex() {
+        PlayerView playerView = getPlayerView();
+        if (playerView == null) return -1;
+
+        if (qualities != null) {
+            return qualities.indexOf(Quality.find(qualities, playerView.getUrl()));
+        }
+        DefaultTrackSelector selector = playerView.getTrackSelector();
+        if (selector != null && trackGroups != null) {
+            MappingTrackSelector.SelectionOverride override =
+                    selector.getSelectionOverride(rendererIndex, trackGroups);
+            if (override == null) {
+                return 0; // 自动
+            }
+            if (override.length > 0) {
+                return trackIndices.indexOf(override.tracks[0]);
+            }
+        }
+        return -1;
+    }
+
+    private void updateLabel() {
+        if (tvQuality == null) return;
+
+        if (labels.size() > 1) {
+            int selected = getSelectedIndex();
+            tvQuality.setText(selected >= 0 ? labels.get(selected)
+                    : getContext().getString(R.string.player_quality));
+            tvQuality.setVisibility(View.VISIBLE);
+        } else {
+            tvQuality.setVisibility(View.GONE);
+            setVisibility(false);
+        }
+    }
+
+    private void select(int index) {
+        PlayerView playerView = getPlayerView();
+        if (playerView == null || index < 0 || index >= labels.size()) return;
+
+        if (qualities != null) {
+            playerView.switchQuality(qualities.get(index).getUrl());
+        } else {
+            DefaultTrackSelector selector = playerView.getTrackSelector();
+            if (selector == null || trackGroups == null) return;
+
+            int track = trackIndices.get(index);
+            if (track < 0) {
+                selector.clearSelectionOverrides(rendererIndex);
+            } else {
+                // 固定轨道，已缓冲的数据继续播放，从下一个分片开始使用新轨道
+                selector.setSelectionOverride(rendererIndex, trackGroups,
+                        new MappingTrackSelector.SelectionOverride(
+                                new FixedTrackSelection.Factory(), 0, track));
+            }
+        }
+        updateLabel();
+    }
+
+    private void showMenu() {
+        if (labels.size() < 2) return;
+
+        if (menuView == null) {
+            if (viewStub != null) {
+                menuView = viewStub.inflate();
+                viewStub = null;
+                menuView.setOnClickListener(this);
+                listView = (LinearLayout) menuView.findViewById(R.id.player_quality_list);
+            }
+        }
+        if (menuView == null) return;
+
+        listView.removeAllViews();
+        int selected = getSelectedIndex();
+        int padding = Utils.dp2px(getContext(), 10);
+        for (int i = 0; i < labels.size(); i++) {
+            TextView item = new TextView(getContext());
+            item.setText(labels.get(i));
+            item.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
+            item.setTextColor(i == selected ? Color.parseColor("#f44b50") : Color.WHITE);
+            item.setGravity(Gravity.CENTER);
+            item.setPadding(padding, padding, padding, padding);
+            item.setTag(i);
+            item.setOnClickListener(this);
+            listView.addView(item, ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT);
+        }
+        menuView.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onClick(View v) {
+        if (v == tvQuality) {
+            setVisibility(!isVisible());
+        } else if (v == menuView) {
+            setVisibility(false);
+        } else if (v.getTag() instanceof Integer) {
+            setVisibility(false);
+            select((Integer) v.getTag());
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.aliya.player.ui.control;
+
+import android.view.View;
+import android.widget.TextView;
+
+import com.aliya.player.ui.Controller;
+import com.aliya.player.ui.PlayerView;
+
+import java.util.Locale;
+
+/**
+ * 播放速度 - Control，点击依次切换倍速
+ *
+ * @author a_liYa
+ * @date 2018/3/5 14:20.
+ */
+public class SpeedControl extends AbsControl implements View.OnClickListener {
+
+    private TextView tvSpeed;
+    private float labelSpeed = Float.NaN;
+
+    static final float[] SPEEDS = {0.5f, 0.75f, 1f, 1.25f, 1.5f, 2f, 3f};
+    /**
+     * 与 {@link #SPEEDS} 一一对应
+     */
+    static final String[] LABELS = {"0.5X", "0.75X", "1X", "1.25X", "1.5X", "2X", "3X"};
+
+    public SpeedControl(Controller controller) {
+        super(controller);
+    }
+
+    @Override
+    public void onViewCreate(View view) {
+        if (view instanceof TextView) {
+            tvSpeed = (TextView) view;
+            tvSpeed.setOnClickListener(this);
+            labelSpeed = Float.NaN;
+        }
+    }
+
+    @Override
+    public boolean isVisible() {
+        return tvSpeed != null && tvSpeed.getVisibility() == View.VISIBLE;
+    }
+
+    @Override
+    public void setVisibility(boolean isVisible) {
+        if (tvSpeed != null) {
+            tvSpeed.setVisibility(isVisible ? View.VISIBLE : View.GONE);
+        }
+    }
+
+    public void updateSpeed(float speed) {
+        if (tvSpeed != null && speed != labelSpeed) {
+            labelSpeed = speed;
+            tvSpeed.setText(labelOf(speed));
+        }
+    }
+
+    @Override
+    public void onClick(View v) {
+        PlayerView playerView = getPlayerView();
+        if (playerView != null && getPlayer() != null) {
+            playerView.setPlaybackSpeed(nextSpeed(playerView.getPlaybackSpeed()));
+        }
+    }
+
+    /**
+     * 预设倍速使用固定文案；其它倍速（eg: 直播追帧）保留两位小数
+     */
+    static String labelOf(float speed) {
+        for (int i = 0; i < SPEEDS.length; i++) {
+            if (SPEEDS[i] == speed) {
+                return LABELS[i];
+            }
+        }
+        return String.format(Locale.US, "%.2fX", speed);
+    }
+
+    private static float nextSpeed(float speed) {
+        for (float s : SPEEDS) {
+            if (s > speed) {
+                return s;
+            }
+        }
+        return SPEEDS[0];
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.aliya.player.ui.widget;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.widget.TextView;
+
+import com.google.android.exoplayer2.text.Cue;
+
+import java.util.List;
+
+/**
+ * 字幕 View - 外挂字幕和流内字幕共用；内容不变时不 setText, 不触发重新布局
+ *
+ * @author a_liYa
+ * @date 2018/3/23 14:05.
+ */
+public class SubtitleView extends TextView {
+
+    private List<Cue> cues;
+    private final StringBuilder sb = new StringBuilder();
+
+    public SubtitleView(Context context) {
+        this(context, null);
+    }
+
+    public SubtitleView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        setGravity(Gravity.CENTER);
+        setTextColor(Color.WHITE);
+        setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        setShadowLayer(2, 1, 1, Color.BLACK);
+        setVisibility(GONE);
+    }
+
+    /**
+     * @param cues 当前显示的 cue, 为空时隐藏
+     */
+    public void onCues(List<Cue> cues) {
+        if (sameCues(this.cues, cues)) return;
+
+        this.cues = cues;
+        sb.setLength(0);
+        if (cues != null) {
+            for (Cue cue : cues) {
+                if (cue.text == null) continue;
+
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                sb.append(cue.text);
+            }
+        }
+        if (sb.length() == 0) {
+            setVisibility(GONE);
+        } else {
+            setText(sb.toString());
+            setVisibility(VISIBLE);
+        }
+    }
+
+    public void clear() {
+        onCues(null);
+    }
+
+    /**
+     * 外挂字幕每段复用同一 Cue 对象；流内字幕每次回调新建对象，按文本比较
+     */
+    private static boolean sameCues(List<Cue> a, List<Cue> b) {
+        if (a == b) return true;
+
+        int sizeA = a != null ? a.size() : 0;
+        int sizeB = b != null ? b.size() : 0;
+        if (sizeA != sizeB) return false;
+
+        for (int i = 0; i < sizeA; i++) {
+            Cue cueA = a.get(i);
+            Cue cueB = b.get(i);
+            if (cueA == cueB) continue;
+
+            if (cueA.text == null ? cueB.text != null
+                    : cueB.text == null || !cueA.text.toString().equals(cueB.text.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.aliya.player.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 耗时统计 - 按名称汇总次数、平均值、最大值
+ * <p>
+ * eg: 冷启动与热恢复到渲染出首帧的耗时对比
+ *
+ * @author a_liYa
+ * @date 2018/3/14 15:12.
+ */
+public class LatencyStats {
+
+    /**
+     * 新建 player 到渲染出首帧
+     */
+    public static final String COLD_START = "cold_start";
+    /**
+     * 暂停保留的 player 从恢复（onResume、重新显示）到渲染出首帧；
+     * 恢复时画面仍在（Surface 未销毁）不记录
+     */
+    public static final String WARM_RESUME = "warm_resume";
+    /**
+     * 直播播放位置距直播边缘的延时，播放中每次刷新进度时采样
+     */
+    public static final String LIVE_EDGE = "live_edge";
+    /**
+     * 无扩展名 url 解析视频类型的耗时
+     */
+    public static final String RESOLVE = "resolve";
+    /**
+     * 外挂字幕下载并解析的耗时
+     */
+    public static final String SUBTITLE_LOAD = "subtitle_load";
+    /**
+     * 外挂字幕解析的耗时，不含下载
+     */
+    public static final String SUBTITLE_PARSE = "subtitle_parse";
+
+    private static volatile LatencyStats sInstance;
+
+    private final Map<String, long[]> entries = new LinkedHashMap<>();
+
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MAX = 2;
+
+    private LatencyStats() {
+    }
+
+    public static LatencyStats get() {
+        if (sInstance == null) {
+            synchronized (LatencyStats.class) {
+                if (sInstance == null) {
+                    sInstance = new LatencyStats();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    public synchronized void record(String name, long latencyMs) {
+        if (name == null || latencyMs < 0) return;
+
+        long[] entry = entries.get(name);
+        if (entry == null) {
+            entries.put(name, entry = new long[3]);
+        }
+        entry[COUNT]++;
+        entry[TOTAL] += latencyMs;
+        entry[MAX] = Math.max(entry[MAX], latencyMs);
+    }
+
+    /**
+     * @param name 名称
+     * @return 平均耗时 单位：ms; 没有记录时返回 -1
+     */
+    public synchronized long getAverage(String name) {
+        long[] entry = entries.get(name);
+        return entry == null || entry[COUNT] == 0 ? -1 : entry[TOTAL] / entry[COUNT];
+    }
+
+    public synchronized void reset() {
+        entries.clear();
+    }
+
+    /**
+     * @return 每个名称一行：次数、平均值、最大值
+     */
+    public synchronized String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> e : entries.entrySet()) {
+            long[] entry = e.getValue();
+            sb.append(e.getKey())
+                    .append(" count=").append(entry[COUNT])
+                    .append(" avg=").append(entry[TOTAL] / Math.max(1, entry[COUNT])).append("ms")
+                    .append(" max=").append(entry[MAX]).append("ms")
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.aliya.player.utils;
+
+import com.aliya.player.BuildConfig;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 性能计数：按场景统计广播/传感器注册、主线程 post、Fragment 事务、player 创建释放等次数
+ * <p>
+ * 场景开始时 {@link #reset()}，结束后用 {@link #checkBudgets()} 与预算对比，超出即为回退。
+ * 只在 debug 构建中计数，release 中各调用直接返回；测试中用 {@link #setEnabled(boolean)} 打开
+ *
+ * @author a_liYa
+ * @date 2018/3/20 11:20.
+ */
+public class PerfCounters {
+
+    public static final String RECEIVER_REGISTER = "receiver_register";
+    public static final String RECEIVER_UNREGISTER = "receiver_unregister";
+    public static final String SENSOR_REGISTER = "sensor_register";
+    public static final String SENSOR_UNREGISTER = "sensor_unregister";
+    public static final String MAIN_POST = "main_post";
+    public static final String FRAGMENT_TRANSACTION = "fragment_transaction";
+    public static final String PLAYER_CREATE = "player_create";
+    public static final String PLAYER_RELEASE = "player_release";
+    public static final String PLAYER_STATE_CHANGE = "player_state_change";
+    /**
+     * 控件显示状态实际变化次数，与 {@link #PLAYER_STATE_CHANGE} 之比即每次状态变化的重新布局数
+     */
+    public static final String CONTROL_RELAYOUT = "control_relayout";
+    /**
+     * PlayerView 创建时的 View 个数，按 profile 区分
+     */
+    public static final String VIEWS_FULL = "views_full";
+    public static final String VIEWS_BARE = "views_bare";
+    /**
+     * 释放 player 时累计音频解码器初始化次数，静音起播时应为 0
+     */
+    public static final String AUDIO_DECODER_INIT = "audio_decoder_init";
+    /**
+     * MP4 起播时推测请求尾部的次数，Extractor 跳到末尾时接着读尾部请求、从缓存读取的次数
+     */
+    public static final String MOOV_PREFETCH = "moov_prefetch";
+    public static final String MOOV_TAIL_HIT = "moov_tail_hit";
+    public static final String MOOV_CACHE_HIT = "moov_cache_hit";
+    /**
+     * 播放进度批量落盘的次数，播放中约每 {@link Recorder#FLUSH_INTERVAL_MS} 一次
+     */
+    public static final String PROGRESS_FLUSH = "progress_flush";
+
+    private static final Map<String, long[]> counts = new LinkedHashMap<>();
+    private static final Map<String, Long> budgets = new LinkedHashMap<>();
+
+    private static volatile boolean sEnabled = BuildConfig.DEBUG;
+
+    private PerfCounters() {
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static void increment(String name) {
+        if (!sEnabled) return;
+
+        synchronized (counts) {
+            long[] count = counts.get(name);
+            if (count == null) {
+                counts.put(name, count = new long[1]);
+            }
+            count[0]++;
+        }
+    }
+
+    public static void add(String name, long delta) {
+        if (!sEnabled) return;
+
+        synchronized (counts) {
+            long[] count = counts.get(name);
+            if (count == null) {
+                counts.put(name, count = new long[1]);
+            }
+            count[0] += delta;
+        }
+    }
+
+    public static long get(String name) {
+        synchronized (counts) {
+            long[] count = counts.get(name);
+            return count != null ? count[0] : 0;
+        }
+    }
+
+    /**
+     * 清空计数，预算保留
+     */
+    public static void reset() {
+        synchronized (counts) {
+            counts.clear();
+        }
+    }
+
+    /**
+     * 设置单个场景内的次数上限
+     *
+     * @param name   计数名称
+     * @param budget 上限
+     */
+    public static void setBudget(String name, long budget) {
+        synchronized (counts) {
+            budgets.put(name, budget);
+        }
+    }
+
+    /**
+     * @return 超出预算的计数，eg: "main_post=12 budget=8"; 没有超出时为空
+     */
+    public static List<String> checkBudgets() {
+        List<String> violations = new ArrayList<>();
+        synchronized (counts) {
+            for (Map.Entry<String, Long> e : budgets.entrySet()) {
+                long count = get(e.getKey());
+                if (count > e.getValue()) {
+                    violations.add(e.getKey() + "=" + count + " budget=" + e.getValue());
+                }
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * @return 每个计数一行 name=count
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (counts) {
+            for (Map.Entry<String, long[]> e : counts.entrySet()) {
+                sb.append(e.getKey()).append('=').append(e.getValue()[0]).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -1,9 +1,24 @@
 package com.aliya.player.utils;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.LruCache;
 
+import com.aliya.player.PlayerHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 记录数据 - 视频相关
+ * <p>
+ * 播放进度同时持久化：播放中的进度按 url 合并，约每 {@link #FLUSH_INTERVAL_MS} 批量写入磁盘一次，
+ * 停止、出错时立即写入，进程被杀后仍能续播
  *
  * @author a_liYa
  * @date 2017/8/13 21:04.
@@ -11,13 +26,28 @@ import android.util.LruCache;
 public class Recorder {
 
     public static final int NO_VALUE = 0;
+    /**
+     * 播放中进度落盘的最小间隔 单位：ms
+     */
+    public static final long FLUSH_INTERVAL_MS = 5000;
     private static final int DEFAULT_CACHE_MAX_SIZE = 100; // 默认缓存 max size
+    private static final String PREFS_NAME = "player_progress";
 
     private static volatile Recorder sInstance;
 
     private Recorder(int maxSize) {
-        this.lruProgress = new LruCache<>(maxSize);
+        this.lruProgress = new LruCache<String, Long>(maxSize) {
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Long oldValue,
+                                        Long newValue) {
+                // 超出容量被淘汰的同时从磁盘删除；内存紧张时的裁剪不删除
+                if (evicted) {
+                    markDirty(key, null);
+                }
+            }
+        };
         this.lruAllow = new LruCache<>(maxSize);
+        this.lruSpeed = new LruCache<>(maxSize);
     }
 
     public static Recorder get() {
@@ -41,25 +71,144 @@ public class Recorder {
      * 缓存视频进度
      */
     private LruCache<String, Long> lruProgress; // 最近最少（Least Recently Used）
+    /**
+     * 待落盘的进度，同一 url 只保留最新值；value 为 null 表示删除
+     */
+    private final Map<String, Long> pendingProgress = new HashMap<>();
+    private volatile SharedPreferences prefs;
+    private boolean loading;
+    private long lastFlushMs;
+    /**
+     * 加载完成后在主线程执行，见 {@link #whenLoaded(Runnable)}
+     */
+    private final List<Runnable> loadedCallbacks = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
-    public void putCacheProgress(String key, long position) {
+    /**
+     * 在子线程加载磁盘中的进度，加载完成前的记录在完成后一起落盘；重复调用无副作用
+     *
+     * @param context .
+     */
+    public synchronized void load(Context context) {
+        if (loading || context == null) return;
+
+        loading = true;
+        final Context appContext = context.getApplicationContext();
+        PlayerHelper.getThreadExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                loadSync(appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+            }
+        });
+    }
+
+    private void loadSync(SharedPreferences prefs) {
+        // 读取磁盘不持有锁，播放中记录、查询进度不被阻塞
+        Map<String, ?> all = prefs.getAll();
+        List<Runnable> callbacks;
+        synchronized (this) {
+            for (Map.Entry<String, ?> e : all.entrySet()) {
+                // 合并不能挤出内存中的记录，否则被淘汰的会从磁盘删除；放不下的仍从磁盘读取
+                if (lruProgress.size() >= lruProgress.maxSize()) break;
+
+                String key = e.getKey();
+                // 本进程已更新或删除的以内存为准
+                if (e.getValue() instanceof Long && lruProgress.get(key) == null
+                        && !pendingProgress.containsKey(key)) {
+                    lruProgress.put(key, (Long) e.getValue());
+                }
+            }
+            this.prefs = prefs;
+            flush();
+            callbacks = new ArrayList<>(loadedCallbacks);
+            loadedCallbacks.clear();
+        }
+        for (Runnable callback : callbacks) {
+            mainHandler.post(callback);
+        }
+    }
+
+    /**
+     * 磁盘中的进度可用后执行：已加载或没有调用 {@link #load(Context)} 时立即执行，
+     * 否则加载完成后 post 到主线程执行（eg: 加载完成前起播，之后再续播）
+     *
+     * @param callback .
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (this) {
+            if (loading && prefs == null) {
+                loadedCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * 记录进度，与之前未落盘的记录合并，距上次落盘超过 {@link #FLUSH_INTERVAL_MS} 时批量落盘
+     *
+     * @param key      a video url
+     * @param position 单位：ms
+     */
+    public synchronized void putCacheProgress(String key, long position) {
         if (key != null && position > 0) {
-            lruProgress.put(key, Long.valueOf(position));
+            Long value = Long.valueOf(position);
+            lruProgress.put(key, value);
+            markDirty(key, value);
+            if (SystemClock.elapsedRealtime() - lastFlushMs >= FLUSH_INTERVAL_MS) {
+                flush();
+            }
         }
     }
 
-    public void removeCacheProgress(String key) {
+    public synchronized void removeCacheProgress(String key) {
         if (key != null) {
             lruProgress.remove(key);
+            markDirty(key, null);
         }
     }
 
-    public int getCacheProgress(String key) {
+    /**
+     * @param key a video url
+     * @return 进度 单位：ms, 没有记录时返回 {@link #NO_VALUE}
+     */
+    public synchronized long getCacheProgress(String key) {
+        if (key == null) return NO_VALUE;
+
         Long value = lruProgress.get(key);
-        if (value != null) {
-            return value.intValue();
+        if (value == null) {
+            // 内存紧张时被裁剪，从未落盘的记录或磁盘读取
+            if (pendingProgress.containsKey(key)) {
+                value = pendingProgress.get(key);
+            } else if (prefs != null) {
+                return prefs.getLong(key, NO_VALUE);
+            }
+        }
+        return value != null ? value.longValue() : NO_VALUE;
+    }
+
+    private synchronized void markDirty(String key, Long value) {
+        pendingProgress.put(key, value);
+    }
+
+    /**
+     * 把合并后的进度一次写入磁盘，磁盘未加载完成时等加载后写入
+     */
+    public synchronized void flush() {
+        lastFlushMs = SystemClock.elapsedRealtime();
+        if (prefs == null || pendingProgress.isEmpty()) return;
+
+        SharedPreferences.Editor editor = prefs.edit();
+        for (Map.Entry<String, Long> e : pendingProgress.entrySet()) {
+            if (e.getValue() != null) {
+                editor.putLong(e.getKey(), e.getValue());
+            } else {
+                editor.remove(e.getKey());
+            }
         }
-        return NO_VALUE;
+        editor.apply();
+        pendingProgress.clear();
+        PerfCounters.increment(PerfCounters.PROGRESS_FLUSH);
     }
 
     /**
@@ -87,4 +236,59 @@ public class Recorder {
         return url != null && lruAllow.get(url) == Boolean.TRUE;
     }
 
+    /**
+     * 缓存播放速度
+     */
+    private LruCache<String, Float> lruSpeed;
+
+    /**
+     * 记录播放速度，1倍速时删除记录
+     *
+     * @param url   a video url
+     * @param speed 播放速度
+     */
+    public void putPlaybackSpeed(String url, float speed) {
+        if (url == null) return;
+        if (speed == 1f) {
+            lruSpeed.remove(url);
+        } else {
+            lruSpeed.put(url, Float.valueOf(speed));
+        }
+    }
+
+    /**
+     * 获取记录的播放速度
+     *
+     * @param url a video url
+     * @return 播放速度，没有记录时返回 1f
+     */
+    public float getPlaybackSpeed(String url) {
+        Float value = url != null ? lruSpeed.get(url) : null;
+        return value != null ? value.floatValue() : 1f;
+    }
+
+    /**
+     * 内存紧张时裁剪缓存，只保留最近使用的记录；进度记录保留较多，裁剪掉的仍可从磁盘读取
+     */
+    public void trimMemory() {
+        flush();
+        trimToSize(lruProgress, lruProgress.maxSize() / 2);
+        trimToSize(lruAllow, lruAllow.maxSize() / 4);
+        trimToSize(lruSpeed, lruSpeed.maxSize() / 4);
+    }
+
+    /**
+     * {@link LruCache#trimToSize(int)} API 17 才公开，这里按 snapshot 的访问顺序删除
+     */
+    private static <K, V> void trimToSize(LruCache<K, V> cache, int maxSize) {
+        int remove = cache.size() - maxSize;
+        if (remove <= 0) return;
+
+        // snapshot 按最近最少使用排序
+        for (Map.Entry<K, V> entry : cache.snapshot().entrySet()) {
+            if (remove-- <= 0) break;
+            cache.remove(entry.getKey());
+        }
+    }
+
 }
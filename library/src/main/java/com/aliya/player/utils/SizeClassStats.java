@@ -0,0 +1,107 @@
+package com.aliya.player.utils;
+
+/**
+ * 按播放区域尺寸档位统计：下载字节数、解码渲染帧数、丢帧数
+ * <p>
+ * 用于对比按 View 尺寸限制清晰度前后的解码压力和流量
+ *
+ * @author a_liYa
+ * @date 2018/3/7 11:20.
+ */
+public class SizeClassStats {
+
+    public static final int CLASS_240 = 0;
+    public static final int CLASS_360 = 1;
+    public static final int CLASS_480 = 2;
+    public static final int CLASS_720 = 3;
+    public static final int CLASS_1080 = 4; // 1080 及以上，不限制
+
+    private static final int[] MAX_SHORT_SIDE = {240, 360, 480, 720, Integer.MAX_VALUE};
+    private static final String[] NAMES = {"240p", "360p", "480p", "720p", "1080p+"};
+
+    private static volatile SizeClassStats sInstance;
+
+    private final long[] bytes = new long[NAMES.length];
+    private final long[] renderedFrames = new long[NAMES.length];
+    private final long[] droppedFrames = new long[NAMES.length];
+    private final long[] playingMs = new long[NAMES.length];
+
+    private SizeClassStats() {
+    }
+
+    public static SizeClassStats get() {
+        if (sInstance == null) {
+            synchronized (SizeClassStats.class) {
+                if (sInstance == null) {
+                    sInstance = new SizeClassStats();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 计算尺寸档位
+     *
+     * @param width  宽 单位：px
+     * @param height 高 单位：px
+     * @return 档位 {@link #CLASS_240} ~ {@link #CLASS_1080}
+     */
+    public static int sizeClassOf(int width, int height) {
+        int shortSide = Math.min(width, height);
+        for (int i = 0; i < MAX_SHORT_SIDE.length; i++) {
+            if (shortSide <= MAX_SHORT_SIDE[i]) {
+                return i;
+            }
+        }
+        return CLASS_1080;
+    }
+
+    public synchronized void record(int sizeClass, long bytes, long rendered, long dropped,
+                                    long playingMs) {
+        if (sizeClass < 0 || sizeClass >= NAMES.length) return;
+
+        this.bytes[sizeClass] += Math.max(0, bytes);
+        this.renderedFrames[sizeClass] += Math.max(0, rendered);
+        this.droppedFrames[sizeClass] += Math.max(0, dropped);
+        this.playingMs[sizeClass] += Math.max(0, playingMs);
+    }
+
+    public synchronized long getBytes(int sizeClass) {
+        return bytes[sizeClass];
+    }
+
+    public synchronized long getRenderedFrames(int sizeClass) {
+        return renderedFrames[sizeClass];
+    }
+
+    public synchronized long getDroppedFrames(int sizeClass) {
+        return droppedFrames[sizeClass];
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < NAMES.length; i++) {
+            bytes[i] = renderedFrames[i] = droppedFrames[i] = playingMs[i] = 0;
+        }
+    }
+
+    /**
+     * @return 每个档位一行：字节数、帧率、丢帧数
+     */
+    public synchronized String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++) {
+            if (playingMs[i] == 0 && bytes[i] == 0) continue;
+            long seconds = Math.max(1, playingMs[i] / 1000);
+            sb.append(NAMES[i])
+                    .append(" bytes=").append(bytes[i])
+                    .append(" (").append(bytes[i] / seconds).append("B/s)")
+                    .append(" rendered=").append(renderedFrames[i])
+                    .append(" (").append(renderedFrames[i] / seconds).append("fps)")
+                    .append(" dropped=").append(droppedFrames[i])
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.aliya.player.utils;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 主线程耗时分段 - systrace 中显示为 section，开启计时后按名称汇总 p50/p95/p99
+ * <p>
+ * begin/end 必须成对出现在同一线程，一般用 try/finally 包裹；API 18 以下 systrace 为空操作
+ *
+ * @author a_liYa
+ * @date 2018/3/21 10:05.
+ */
+public class Tracer {
+
+    public static final String MANAGER_PLAY = "PlayerManager.play";
+    public static final String VIEW_PLAY = "PlayerView.play";
+    public static final String VIEW_STOP = "PlayerView.stop";
+    public static final String VIEW_SET_PLAYER = "PlayerView.setPlayer";
+    public static final String BUILD_MEDIA_SOURCE = "PlayerHelper.buildMediaSource";
+    public static final String CONTROLLER_SET_PLAYER = "Controller.setPlayer";
+    public static final String CONTROLLER_SYNC_REGIME = "Controller.syncRegime";
+    public static final String LIFECYCLE_ADD = "LifecycleUtils.add";
+    public static final String LIFECYCLE_REMOVE = "LifecycleUtils.remove";
+    public static final String INFLATE_FULL = "PlayerView.inflate.full";
+    public static final String INFLATE_BARE = "PlayerView.inflate.bare";
+    public static final String SUBTITLE_LOAD = "SubtitleLoader.load";
+    public static final String SUBTITLE_PARSE = "SubtitleLoader.parse";
+    public static final String SUBTITLE_LOOKUP = "PlayerView.syncSubtitle";
+
+    private static final boolean TRACE_SUPPORTED =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+    private static final int MAX_DEPTH = 16;
+    // 开始时未开启计时的层级，结束时不记录
+    private static final long UNTIMED = -1;
+    // 每个名称保留最近的样本数
+    private static final int SAMPLE_SIZE = 256;
+
+    private static final Map<String, Samples> sSamples = new LinkedHashMap<>();
+
+    private static final ThreadLocal<Stack> sStack = new ThreadLocal<Stack>() {
+        @Override
+        protected Stack initialValue() {
+            return new Stack();
+        }
+    };
+
+    private static volatile boolean sTimingEnabled;
+
+    private Tracer() {
+    }
+
+    /**
+     * 开启后记录每段耗时，关闭时只有 systrace section
+     *
+     * @param enabled true: 开启
+     */
+    public static void setTimingEnabled(boolean enabled) {
+        sTimingEnabled = enabled;
+    }
+
+    public static boolean isTimingEnabled() {
+        return sTimingEnabled;
+    }
+
+    public static void begin(String name) {
+        if (TRACE_SUPPORTED) {
+            Trace.beginSection(name);
+        }
+        // 始终入栈，计时开关在成对的 begin/end 之间变化时不会错位
+        sStack.get().push(name, sTimingEnabled ? System.nanoTime() : UNTIMED);
+    }
+
+    public static void end() {
+        if (TRACE_SUPPORTED) {
+            Trace.endSection();
+        }
+        Stack stack = sStack.get();
+        if (stack.depth > 0) {
+            stack.depth--;
+            // 超出 MAX_DEPTH 的层级未记录
+            if (stack.depth < MAX_DEPTH && sTimingEnabled
+                    && stack.starts[stack.depth] != UNTIMED) {
+                record(stack.names[stack.depth],
+                        (System.nanoTime() - stack.starts[stack.depth]) / 1000);
+            }
+        }
+    }
+
+    /**
+     * @param name       名称
+     * @param percentile 百分位 eg: 95
+     * @return 耗时 单位：μs; 没有记录时返回 -1
+     */
+    public static long getPercentile(String name, int percentile) {
+        long[] sorted;
+        synchronized (sSamples) {
+            Samples samples = sSamples.get(name);
+            if (samples == null || samples.count == 0) return -1;
+
+            sorted = samples.sorted();
+        }
+        return percentileOf(sorted, percentile);
+    }
+
+    public static void reset() {
+        synchronized (sSamples) {
+            sSamples.clear();
+        }
+    }
+
+    /**
+     * @return 每个名称一行：次数、p50、p95、p99、最大值
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (sSamples) {
+            for (Map.Entry<String, Samples> e : sSamples.entrySet()) {
+                Samples samples = e.getValue();
+                if (samples.count == 0) continue;
+
+                long[] sorted = samples.sorted();
+                sb.append(e.getKey())
+                        .append(" count=").append(samples.count)
+                        .append(" p50=").append(percentileOf(sorted, 50)).append("us")
+                        .append(" p95=").append(percentileOf(sorted, 95)).append("us")
+                        .append(" p99=").append(percentileOf(sorted, 99)).append("us")
+                        .append(" max=").append(samples.max).append("us")
+                        .append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void record(String name, long durationUs) {
+        synchronized (sSamples) {
+            Samples samples = sSamples.get(name);
+            if (samples == null) {
+                sSamples.put(name, samples = new Samples());
+            }
+            samples.add(durationUs);
+        }
+    }
+
+    private static long percentileOf(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static class Stack {
+        final String[] names = new String[MAX_DEPTH];
+        final long[] starts = new long[MAX_DEPTH];
+        int depth;
+
+        void push(String name, long startNs) {
+            if (depth < MAX_DEPTH) {
+                names[depth] = name;
+                starts[depth] = startNs;
+            }
+            depth++;
+        }
+    }
+
+    /**
+     * 环形缓冲，记录时不分配内存
+     */
+    private static class Samples {
+        final long[] values = new long[SAMPLE_SIZE];
+        long count;
+        long max;
+
+        void add(long value) {
+            values[(int) (count % SAMPLE_SIZE)] = value;
+            count++;
+            max = Math.max(max, value);
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, (int) Math.min(count, SAMPLE_SIZE));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+}
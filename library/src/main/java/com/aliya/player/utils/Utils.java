@@ -6,6 +6,7 @@ import android.net.NetworkInfo;
 import android.support.annotation.IdRes;
 import android.text.TextUtils;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.aliya.player.Control;
@@ -28,16 +29,25 @@ public class Utils {
      * @return 格式化
      */
     public static String formatSpeed(int speed) {
-        long fileSize = (long) speed;
-        String showSize = "";
-        if (fileSize >= 0 && fileSize < 1024) {
-            showSize = fileSize + "B/s";
-        } else if (fileSize >= 1024 && fileSize < (1024 * 1024)) {
-            showSize = Long.toString(fileSize / 1024) + "KB/s";
-        } else if (fileSize >= (1024 * 1024) && fileSize < (1024 * 1024 * 1024)) {
-            showSize = Long.toString(fileSize / (1024 * 1024)) + "MB/s";
+        return formatSpeed(new StringBuilder(12), speed).toString();
+    }
+
+    /**
+     * 下载速度格式化显示，追加到 sb 中（用于高频刷新）
+     *
+     * @param sb    追加的目标
+     * @param speed 网速 单位：Byte/s
+     * @return sb
+     */
+    public static StringBuilder formatSpeed(StringBuilder sb, long speed) {
+        if (speed >= 0 && speed < 1024) {
+            sb.append(speed).append("B/s");
+        } else if (speed >= 1024 && speed < (1024 * 1024)) {
+            sb.append(speed / 1024).append("KB/s");
+        } else if (speed >= (1024 * 1024) && speed < (1024 * 1024 * 1024)) {
+            sb.append(speed / (1024 * 1024)).append("MB/s");
         }
-        return showSize;
+        return sb;
     }
 
     /**
@@ -50,12 +60,37 @@ public class Utils {
         if (timeMs < 0) {
             return "--:--";
         }
+        // String.format 每次解析格式串，开销较大
+        return formatTime(new StringBuilder(8), timeMs).toString();
+    }
+
+    /**
+     * 时长格式化显示，追加到 sb 中，不创建临时对象（用于高频刷新）
+     *
+     * @param sb     追加的目标
+     * @param timeMs 时长 单位：ms
+     * @return sb
+     */
+    public static StringBuilder formatTime(StringBuilder sb, long timeMs) {
+        if (timeMs < 0) {
+            return sb.append("--:--");
+        }
         int totalSeconds = (int) ((timeMs + 500) / 1000);
         int seconds = totalSeconds % 60;
         int minutes = (totalSeconds / 60) % 60;
         int hours = totalSeconds / 3600;
-        return hours > 0 ? String.format("%02d:%02d:%02d", hours, minutes, seconds) : String
-                .format("%02d:%02d", minutes, seconds);
+        if (hours > 0) {
+            appendTwoDigits(sb, hours).append(':');
+        }
+        appendTwoDigits(sb, minutes).append(':');
+        return appendTwoDigits(sb, seconds);
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        if (value < 10) {
+            sb.append('0');
+        }
+        return sb.append(value);
     }
 
     /**
@@ -65,12 +100,20 @@ public class Utils {
      * @return 格式化
      */
     public static String formatSize(int size) {
-        NumberFormat numberFormat = NumberFormat.getNumberInstance();
-        numberFormat.setMaximumFractionDigits(2); // 最多保留两位小数
-        numberFormat.setRoundingMode(RoundingMode.HALF_UP); // 四舍五入
-        return numberFormat.format(size / (1024 * 1024f));
+        return sSizeFormat.get().format(size / (1024 * 1024f));
     }
 
+    // NumberFormat 创建开销大且非线程安全，每个线程缓存一个
+    private static final ThreadLocal<NumberFormat> sSizeFormat = new ThreadLocal<NumberFormat>() {
+        @Override
+        protected NumberFormat initialValue() {
+            NumberFormat numberFormat = NumberFormat.getNumberInstance();
+            numberFormat.setMaximumFractionDigits(2); // 最多保留两位小数
+            numberFormat.setRoundingMode(RoundingMode.HALF_UP); // 四舍五入
+            return numberFormat;
+        }
+    };
+
     /**
      * dp转换px
      *
@@ -156,6 +199,20 @@ public class Utils {
         return null;
     }
 
+    /**
+     * @return view 及其所有子 View 的个数
+     */
+    public static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+
     public static void setText(TextView tv, String text) {
         if (tv == null) return;
         if (!TextUtils.equals(tv.getText(), text)) {
@@ -166,7 +223,9 @@ public class Utils {
     public static void setVisibilityControls(boolean isVisible, Control... controls) {
         if (controls != null) {
             for (Control control : controls) {
-                control.setVisibility(isVisible);
+                if (control != null) {
+                    control.setVisibility(isVisible);
+                }
             }
         }
     }
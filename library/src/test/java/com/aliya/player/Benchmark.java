@@ -0,0 +1,124 @@
+package com.aliya.player;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 简易 JVM 基准：先预热，再分多轮计时取中位数；结果以 JSON 写入
+ * {@link #OUTPUT_DIR_PROPERTY} 指定的目录（build.gradle 中配置为 build/benchmark-results），
+ * 每个基准一个文件，便于 CI 在版本间对比
+ *
+ * @author a_liYa
+ * @date 2018/3/26 10:20.
+ */
+public final class Benchmark {
+
+    public static final String OUTPUT_DIR_PROPERTY = "benchmark.outputDir";
+
+    private static final String DEFAULT_OUTPUT_DIR = "build/benchmark-results";
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * 被测操作把结果写到这里，避免被 JIT 当作无用代码消除
+     */
+    public static volatile Object sink;
+
+    private final String name;
+    private final List<Result> results = new ArrayList<>();
+
+    public Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param label      测量项名称
+     * @param iterations 每轮执行次数
+     * @param op         被测操作
+     * @return 测量结果
+     */
+    public Result measure(String label, int iterations, Runnable op) {
+        return measure(label, WARMUP_ITERATIONS, iterations, op);
+    }
+
+    /**
+     * @param label      测量项名称
+     * @param warmup     预热次数，涉及 IO 的操作使用较小的值
+     * @param iterations 每轮执行次数
+     * @param op         被测操作
+     * @return 测量结果
+     */
+    public Result measure(String label, int warmup, int iterations, Runnable op) {
+        for (int i = 0; i < warmup; i++) {
+            op.run();
+        }
+        long[] rounds = new long[ROUNDS];
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                op.run();
+            }
+            rounds[r] = (System.nanoTime() - start) / iterations;
+        }
+        Arrays.sort(rounds);
+        Result result = new Result(label, iterations, rounds[ROUNDS / 2], rounds[0]);
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * 写入 &lt;outputDir&gt;/&lt;name&gt;.json
+     *
+     * @return 结果文件
+     * @throws IOException .
+     */
+    public File write() throws IOException {
+        File dir = new File(System.getProperty(OUTPUT_DIR_PROPERTY, DEFAULT_OUTPUT_DIR));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\"benchmark\":\"").append(name).append("\",\"unit\":\"ns/op\",\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"name\":\"").append(result.name)
+                    .append("\",\"iterations\":").append(result.iterations)
+                    .append(",\"median\":").append(result.medianNs)
+                    .append(",\"min\":").append(result.minNs)
+                    .append('}');
+        }
+        json.append("]}\n");
+
+        File file = new File(dir, name + ".json");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    public static final class Result {
+
+        public final String name;
+        public final int iterations;
+        public final long medianNs;
+        public final long minNs;
+
+        Result(String name, int iterations, long medianNs, long minNs) {
+            this.name = name;
+            this.iterations = iterations;
+            this.medianNs = medianNs;
+            this.minNs = minNs;
+        }
+    }
+
+}
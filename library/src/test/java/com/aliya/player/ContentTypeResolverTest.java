@@ -0,0 +1,206 @@
+package com.aliya.player;
+
+import com.aliya.player.harness.FakeClock;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link ContentTypeResolver} 对本地 HTTP 服务的解析：类型判断、失败缓存、超时上限，
+ * 以及解析耗时（起播前的等待）的基准
+ *
+ * @author a_liYa
+ * @date 2018/3/27 16:00.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ContentTypeResolverTest {
+
+    private static final long WAIT_MS = 10 * 1000;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private static final Benchmark sBenchmark = new Benchmark("ContentTypeResolver");
+
+    private MockWebServer server;
+    private ContentTypeResolver resolver;
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/hls")) {
+                    return new MockResponse()
+                            .setHeader("Content-Type", "application/vnd.apple.mpegurl");
+                } else if (path.startsWith("/redirect")) {
+                    return new MockResponse().setResponseCode(302)
+                            .setHeader("Location", "/video/stream.m3u8");
+                } else if (path.startsWith("/video/stream.m3u8")) {
+                    return new MockResponse().setHeader("Content-Type", "text/plain");
+                } else if (path.startsWith("/nohead")) {
+                    return "HEAD".equals(request.getMethod())
+                            ? new MockResponse().setResponseCode(405)
+                            : new MockResponse().setResponseCode(206)
+                            .setHeader("Content-Type", "video/mp4").setBody("0");
+                } else if (path.startsWith("/hang")) {
+                    return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+                }
+                return new MockResponse().setResponseCode(500);
+            }
+        });
+        server.start();
+        resolver = ContentTypeResolver.get();
+        resolver.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void resolvesByContentType() {
+        ContentTypeResolver.Result result = resolve(url("/hls/1"));
+        assertNotNull(result);
+        assertEquals("m3u8", result.getExtension());
+        assertNotNull(resolver.getCached(url("/hls/1")));
+    }
+
+    @Test
+    public void followsRedirectAndUsesFinalUrl() {
+        ContentTypeResolver.Result result = resolve(url("/redirect/1"));
+        assertNotNull(result);
+        assertEquals(url("/video/stream.m3u8"), result.getUrl());
+        assertEquals("m3u8", result.getExtension());
+    }
+
+    @Test
+    public void fallsBackToRangeGetWithoutHead() throws Exception {
+        ContentTypeResolver.Result result = resolve(url("/nohead/1"));
+        assertNotNull(result);
+        assertNull(result.getExtension());
+        assertEquals("HEAD", server.takeRequest().getMethod());
+        RecordedRequest get = server.takeRequest();
+        assertEquals("GET", get.getMethod());
+        assertEquals("bytes=0-0", get.getHeader("Range"));
+    }
+
+    @Test
+    public void failureIsCachedWithoutNewRequests() {
+        String url = url("/missing/1");
+        assertNull(resolve(url));
+        int requests = server.getRequestCount();
+        assertTrue(resolver.isFailedRecently(url));
+
+        // 最近失败过：同步回调，不再请求
+        final ContentTypeResolver.Result[] delivered = {null};
+        final boolean[] called = {false};
+        resolver.resolve(url, new ContentTypeResolver.Callback() {
+            @Override
+            public void onResolved(String url, ContentTypeResolver.Result result) {
+                called[0] = true;
+                delivered[0] = result;
+            }
+        });
+        assertTrue(called[0]);
+        assertNull(delivered[0]);
+        assertEquals(requests, server.getRequestCount());
+    }
+
+    @Test
+    public void slowServerIsCappedAtMaxResolve() {
+        final int[] calls = {0};
+        resolver.resolve(url("/hang/1"), new ContentTypeResolver.Callback() {
+            @Override
+            public void onResolved(String url, ContentTypeResolver.Result result) {
+                calls[0]++;
+                assertNull(result);
+            }
+        });
+        new FakeClock().advance(ContentTypeResolver.MAX_RESOLVE_MS - FakeClock.FRAME_MS);
+        assertEquals(0, calls[0]);
+        new FakeClock().advance(FakeClock.FRAME_MS);
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void benchmarkResolve() {
+        measure("resolve.head", "/hls/");
+        measure("resolve.head_to_get", "/nohead/");
+        measure("resolve.redirect", "/redirect/");
+    }
+
+    private void measure(String label, final String path) {
+        sBenchmark.measure(label, WARMUP, ITERATIONS, new Runnable() {
+            int index;
+
+            @Override
+            public void run() {
+                resolver.clear();
+                if (resolve(url(path + index++)) == null) {
+                    fail("Resolve failed: " + path);
+                }
+            }
+        });
+    }
+
+    private String url(String path) {
+        return server.url(path).toString();
+    }
+
+    /**
+     * 解析在子线程执行，回调 post 到主线程；这里等待回调，不推进测试时钟
+     */
+    private ContentTypeResolver.Result resolve(String url) {
+        final ContentTypeResolver.Result[] delivered = {null};
+        final boolean[] called = {false};
+        resolver.resolve(url, new ContentTypeResolver.Callback() {
+            @Override
+            public void onResolved(String url, ContentTypeResolver.Result result) {
+                called[0] = true;
+                delivered[0] = result;
+            }
+        });
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!called[0]) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Resolve did not complete: " + url);
+            }
+            ShadowLooper.idleMainLooper();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+        return delivered[0];
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.aliya.player;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link FastStartDataSource} 对本地 HTTP 服务按 Mp4Extractor 的顺序读取 moov 在末尾的 MP4:
+ * 头部 → 末尾 moov → 回到 mdat 的第一个 sample; 每个请求有固定的往返延迟，
+ * 基准比较读到第一个 sample 的耗时
+ *
+ * @author a_liYa
+ * @date 2018/3/29 11:10.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class FastStartDataSourceTest {
+
+    private static final long RTT_MS = 30;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final int FTYP_SIZE = 24;
+    private static final int MDAT_SIZE = 1024 * 1024;
+    private static final int MOOV_SIZE = 100 * 1024;
+    private static final int FIRST_SAMPLE_BYTES = 32 * 1024;
+    // mdat 在前：ftyp, mdat, moov
+    private static final byte[] MOOV_AT_END = fixture(false);
+    // 快速起播：ftyp, moov, mdat
+    private static final byte[] FAST_START = fixture(true);
+
+    private static final Benchmark sBenchmark = new Benchmark("FastStart");
+
+    private MockWebServer server;
+    private final List<String> ranges = new ArrayList<>();
+    private HttpDataSource.Factory factory;
+    private int keyIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String range = request.getHeader("Range");
+                synchronized (ranges) {
+                    ranges.add(range);
+                }
+                byte[] body = request.getPath().startsWith("/faststart") ? FAST_START
+                        : MOOV_AT_END;
+                return ranged(body, range).setHeadersDelay(RTT_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        factory = new DefaultHttpDataSourceFactory("player-test");
+        MoovCache.get().clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void moovIsReadFromSpeculativeRequest() throws Exception {
+        Uri uri = uri("/moovatend/a.mp4");
+        readLikeExtractor(newSource(true), uri, MOOV_AT_END);
+
+        // 头部、推测的尾部、回到 mdat; Extractor 跳到末尾时没有再请求
+        List<String> ranges = ranges();
+        assertEquals(3, ranges.size());
+        assertTrue(ranges.contains("bytes=-" + TailRequest.SUFFIX_BYTES));
+        assertFalse(ranges.contains("bytes=" + moovOffset(MOOV_AT_END) + "-"));
+    }
+
+    @Test
+    public void replayReadsMoovFromCache() throws Exception {
+        Uri uri = uri("/moovatend/replay.mp4");
+        readLikeExtractor(newSource(true), uri, MOOV_AT_END);
+        synchronized (ranges) {
+            ranges.clear();
+        }
+
+        readLikeExtractor(newSource(true), uri, MOOV_AT_END);
+        // 只有头部和 mdat, 不再推测
+        assertEquals(2, ranges().size());
+        assertFalse(ranges().contains("bytes=-" + TailRequest.SUFFIX_BYTES));
+    }
+
+    @Test
+    public void fastStartFileCancelsSpeculation() throws Exception {
+        Uri uri = uri("/faststart/a.mp4");
+        DataSource source = newSource(true);
+        source.open(new DataSpec(uri, 0, C.LENGTH_UNSET, null));
+        read(source, FTYP_SIZE + 8);
+        // 读到 moov 头即取消，不留给之后的请求
+        assertNull(MoovCache.get().takeTail(uri.toString()));
+        source.close();
+    }
+
+    @Test
+    public void prefetchNotAllowedRequestsSerially() throws Exception {
+        Uri uri = uri("/moovatend/saver.mp4");
+        readLikeExtractor(newSource(false), uri, MOOV_AT_END);
+
+        List<String> ranges = ranges();
+        assertEquals(3, ranges.size());
+        assertFalse(ranges.contains("bytes=-" + TailRequest.SUFFIX_BYTES));
+        assertTrue(ranges.contains("bytes=" + moovOffset(MOOV_AT_END) + "-"));
+    }
+
+    @Test
+    public void timeToFirstSample() throws Exception {
+        Benchmark.Result serial = measure("first_sample.serial", false, false);
+        Benchmark.Result speculative = measure("first_sample.speculative", true, false);
+        measure("first_sample.cached", true, true);
+
+        // 尾部请求与头部并行，省去约一次往返
+        assertTrue(speculative.medianNs + " >= " + serial.medianNs,
+                speculative.medianNs < serial.medianNs);
+    }
+
+    private Benchmark.Result measure(String label, final boolean prefetch, final boolean cached)
+            throws IOException {
+        final Uri cachedUri = uri("/moovatend/cached.mp4");
+        if (cached) {
+            readLikeExtractor(newSource(true), cachedUri, MOOV_AT_END);
+        }
+        return sBenchmark.measure(label, 2, 5, new Runnable() {
+            @Override
+            public void run() {
+                Uri uri = cached ? cachedUri : uri("/moovatend/" + label() + ".mp4");
+                try {
+                    readLikeExtractor(newSource(prefetch), uri, MOOV_AT_END);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 与 Mp4Extractor 相同的请求顺序：读 ftyp 与 mdat 头，跳到 moov 读到文件结束，
+     * 再跳回 mdat 读第一个 sample
+     */
+    private static void readLikeExtractor(DataSource source, Uri uri, byte[] expected)
+            throws IOException {
+        int moovOffset = moovOffset(expected);
+
+        source.open(new DataSpec(uri, 0, C.LENGTH_UNSET, null));
+        byte[] head = read(source, FTYP_SIZE + 8);
+        source.close();
+        assertArrayEquals(Arrays.copyOf(expected, head.length), head);
+
+        source.open(new DataSpec(uri, moovOffset, C.LENGTH_UNSET, null));
+        byte[] moov = read(source, Integer.MAX_VALUE);
+        source.close();
+        assertArrayEquals(Arrays.copyOfRange(expected, moovOffset, expected.length), moov);
+
+        source.open(new DataSpec(uri, FTYP_SIZE + 8, C.LENGTH_UNSET, null));
+        byte[] sample = read(source, FIRST_SAMPLE_BYTES);
+        source.close();
+        assertArrayEquals(Arrays.copyOfRange(expected, FTYP_SIZE + 8,
+                FTYP_SIZE + 8 + FIRST_SAMPLE_BYTES), sample);
+    }
+
+    private static byte[] read(DataSource source, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        while (out.size() < length) {
+            int read = source.read(buffer, 0, Math.min(buffer.length, length - out.size()));
+            if (read == C.RESULT_END_OF_INPUT) break;
+
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private DataSource newSource(boolean prefetch) {
+        return new FastStartDataSource(factory.createDataSource(), factory, prefetch);
+    }
+
+    private Uri uri(String path) {
+        return Uri.parse(server.url(path).toString());
+    }
+
+    private String label() {
+        return "k" + keyIndex++;
+    }
+
+    private List<String> ranges() {
+        synchronized (ranges) {
+            return new ArrayList<>(ranges);
+        }
+    }
+
+    private static int moovOffset(byte[] file) {
+        return file == MOOV_AT_END ? FTYP_SIZE + 8 + MDAT_SIZE : FTYP_SIZE;
+    }
+
+    private static byte[] fixture(boolean fastStart) {
+        byte[] file = new byte[FTYP_SIZE + 8 + MDAT_SIZE + 8 + MOOV_SIZE];
+        new Random(fastStart ? 1 : 2).nextBytes(file);
+        int offset = box(file, 0, FTYP_SIZE, "ftyp");
+        if (fastStart) {
+            box(file, box(file, offset, 8 + MOOV_SIZE, "moov"), 8 + MDAT_SIZE, "mdat");
+        } else {
+            box(file, box(file, offset, 8 + MDAT_SIZE, "mdat"), 8 + MOOV_SIZE, "moov");
+        }
+        return file;
+    }
+
+    /**
+     * 写入 box 头，返回下一个 box 的起点
+     */
+    private static int box(byte[] file, int offset, int size, String type) {
+        file[offset] = (byte) (size >>> 24);
+        file[offset + 1] = (byte) (size >>> 16);
+        file[offset + 2] = (byte) (size >>> 8);
+        file[offset + 3] = (byte) size;
+        for (int i = 0; i < 4; i++) {
+            file[offset + 4 + i] = (byte) type.charAt(i);
+        }
+        return offset + size;
+    }
+
+    /**
+     * 支持 bytes=S-、bytes=S-E 与后缀 bytes=-N
+     */
+    private static MockResponse ranged(byte[] body, String range) {
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+        if (matcher == null || !matcher.matches()) {
+            return new MockResponse().setBody(new Buffer().write(body));
+        }
+        int start;
+        int end;
+        if (matcher.group(1).isEmpty()) {
+            start = Math.max(0, body.length - Integer.parseInt(matcher.group(2)));
+            end = body.length - 1;
+        } else {
+            start = Integer.parseInt(matcher.group(1));
+            end = matcher.group(2).isEmpty() ? body.length - 1
+                    : Math.min(Integer.parseInt(matcher.group(2)), body.length - 1);
+        }
+        return new MockResponse().setResponseCode(206)
+                .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + body.length)
+                .setBody(new Buffer().write(body, start, end - start + 1));
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.aliya.player;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.dash.DashMediaSource;
+import com.google.android.exoplayer2.source.hls.HlsMediaSource;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PlayerHelper#buildMediaSource(Uri, String, com.google.android.exoplayer2.upstream.TransferListener)}
+ * 的基准，每次起播、切换清晰度都会创建
+ *
+ * @author a_liYa
+ * @date 2018/3/26 11:40.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlayerHelperBenchmarkTest {
+
+    private static final int ITERATIONS = 20000;
+
+    private static final Benchmark sBenchmark = new Benchmark("PlayerHelper");
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void buildMediaSource() {
+        final PlayerHelper helper = new PlayerHelper();
+        final Uri mp4 = Uri.parse("http://example.com/video/a.mp4");
+        final Uri hls = Uri.parse("http://example.com/live/index.m3u8");
+        final Uri dash = Uri.parse("http://example.com/video/manifest.mpd");
+
+        assertTrue(helper.buildMediaSource(mp4, null, null) instanceof ExtractorMediaSource);
+        assertTrue(helper.buildMediaSource(hls, null, null) instanceof HlsMediaSource);
+        assertTrue(helper.buildMediaSource(dash, null, null) instanceof DashMediaSource);
+
+        measure(helper, "buildMediaSource.mp4", mp4);
+        measure(helper, "buildMediaSource.hls", hls);
+        measure(helper, "buildMediaSource.dash", dash);
+    }
+
+    private static void measure(final PlayerHelper helper, String label, final Uri uri) {
+        sBenchmark.measure(label, ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                MediaSource source = helper.buildMediaSource(uri, null, null);
+                Benchmark.sink = source;
+            }
+        });
+    }
+
+}
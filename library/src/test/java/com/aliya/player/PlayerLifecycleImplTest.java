@@ -0,0 +1,106 @@
+package com.aliya.player;
+
+import android.app.Fragment;
+import android.content.Intent;
+
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.lifecycle.LifecycleUtils;
+import com.aliya.player.ui.PlayerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowApplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PlayerLifecycleImpl#POLICY_BACKGROUND_AUDIO}: onStop 时只保留音频，隐藏时不进入后台播放
+ *
+ * @author a_liYa
+ * @date 2018/3/27 15:10.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlayerLifecycleImplTest {
+
+    private static final String URL = "http://example.com/video/background.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+
+    private PlayerHarness harness;
+    private FakePlayer player;
+    private PlayerView playerView;
+
+    @Before
+    public void setUp() {
+        harness = PlayerHarness.create();
+        player = harness.play(URL);
+        harness.manager.setLifecyclePolicy(PlayerLifecycleImpl.POLICY_BACKGROUND_AUDIO,
+                PlayerLifecycleImpl.DEFAULT_GRACE_PERIOD_MS);
+        harness.ready(player, DURATION_MS);
+        playerView = harness.manager.getPlayerView();
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+    }
+
+    @Test
+    public void stopKeepsAudioAndDisablesVideoRenderer() {
+        harness.host.pause();
+        assertFalse(playerView.isBackgroundAudio());
+        assertFalse(playerView.isVideoRendererDisabled());
+
+        harness.host.stop();
+        assertTrue(playerView.isBackgroundAudio());
+        assertTrue(playerView.isVideoRendererDisabled());
+        assertTrue(player.getPlayer().getPlayWhenReady());
+        assertFalse(player.isReleased());
+
+        Intent service = ShadowApplication.getInstance().getNextStartedService();
+        assertNotNull(service);
+        assertEquals(BackgroundAudioService.class.getName(),
+                service.getComponent().getClassName());
+
+        harness.host.restart().resume();
+        assertFalse(playerView.isBackgroundAudio());
+        assertFalse(playerView.isVideoRendererDisabled());
+        assertTrue(player.getPlayer().getPlayWhenReady());
+    }
+
+    @Test
+    public void notificationPlayPauseTogglesPlayer() {
+        harness.host.pause().stop();
+
+        Robolectric.buildService(BackgroundAudioService.class,
+                new Intent("com.aliya.player.action.PLAY_PAUSE")).create().startCommand(0, 1);
+        assertFalse(player.getPlayer().getPlayWhenReady());
+        assertTrue(playerView.isBackgroundAudio());
+
+        Robolectric.buildService(BackgroundAudioService.class,
+                new Intent("com.aliya.player.action.STOP")).create().startCommand(0, 2);
+        assertFalse(playerView.isBackgroundAudio());
+        assertTrue(player.isReleased());
+    }
+
+    @Test
+    public void hiddenInForegroundStopsInsteadOfBackgroundAudio() {
+        Fragment fragment = harness.activity.getFragmentManager()
+                .findFragmentByTag(LifecycleUtils.FRAGMENT_TAG);
+        assertNotNull(fragment);
+
+        harness.activity.getFragmentManager().beginTransaction().hide(fragment).commitNow();
+        assertFalse(playerView.isBackgroundAudio());
+        assertTrue(player.isReleased());
+    }
+
+}
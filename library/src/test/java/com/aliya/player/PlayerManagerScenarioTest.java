@@ -0,0 +1,220 @@
+package com.aliya.player;
+
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.Uri;
+
+import com.aliya.player.harness.FakeClock;
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.harness.Scenario;
+import com.aliya.player.ui.PlayerView;
+import com.aliya.player.utils.LatencyStats;
+import com.aliya.player.utils.PerfCounters;
+import com.google.android.exoplayer2.Player;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowApplication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PlayerManager} 主要流程的场景预算：起播、播放中刷新、全屏往返、释放。
+ * 计数超出预算即失败，结果写入 build/benchmark-results/scenario-*.json;
+ * 另有本地文件 play → 首帧回调的耗时基准（解码由替身 player 代替，只含本库主线程的开销）
+ *
+ * @author a_liYa
+ * @date 2018/3/27 11:10.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlayerManagerScenarioTest {
+
+    private static final String URL = "http://example.com/video/scenario.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+    private static final long PLAY_MS = 10 * 1000;
+
+    private static final Benchmark sBenchmark = new Benchmark("PlayerStart");
+
+    private PlayerHarness harness;
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Before
+    public void setUp() {
+        harness = PlayerHarness.create();
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+    }
+
+    @Test
+    public void coldPlay() throws Exception {
+        Scenario scenario = new Scenario("cold_play")
+                .budget(PerfCounters.PLAYER_CREATE, 1)
+                .budget(PerfCounters.RECEIVER_REGISTER, 1)
+                .budget(PerfCounters.SENSOR_REGISTER, 1)
+                .budget(PerfCounters.FRAGMENT_TRANSACTION, 1)
+                // 进度约每秒刷新一次，另有控件自动隐藏
+                .budget(PerfCounters.MAIN_POST, PLAY_MS / 1000 * 2 + 4)
+                .begin();
+        FakePlayer player = harness.play(URL + "?cold");
+        harness.ready(player, DURATION_MS);
+        harness.clock.advance(PLAY_MS);
+        scenario.end();
+
+        assertEquals(1, player.getPrepareCount());
+        assertTrue(player.hasVideoOutput());
+        assertTrue(player.getPlayer().getPlayWhenReady());
+        assertTrue(player.getPlayer().getCurrentPosition() >= PLAY_MS - FakeClock.FRAME_MS);
+    }
+
+    @Test
+    public void playToFirstFrameLocalFile() throws Exception {
+        final String[] urls = {localFile("a.mp4"), localFile("b.mp4")};
+        LatencyStats.get().reset();
+        // 首次起播等待进度加载，之后的起播直接准备
+        harness.ready(harness.play(urls[0]), DURATION_MS);
+
+        // 同一容器内交替播放两个本地文件：停止上一个、创建 player、准备、首帧回调
+        sBenchmark.measure("play_to_first_frame.local_file", 20, 50, new Runnable() {
+            int index;
+
+            @Override
+            public void run() {
+                harness.manager.play(harness.parent, urls[++index & 1]);
+                harness.clock.idle();
+                FakePlayer player = harness.current();
+                player.setDuration(DURATION_MS);
+                player.setPlaybackState(Player.STATE_READY);
+                player.renderFirstFrame();
+                harness.clock.idle();
+            }
+        });
+
+        FakePlayer player = harness.current();
+        assertEquals(1, player.getPrepareCount());
+        assertTrue(player.hasVideoOutput());
+        // 首帧回调走到了起播耗时的记录
+        assertTrue(LatencyStats.get().getAverage(LatencyStats.COLD_START) >= 0);
+    }
+
+    private static String localFile(String name) throws IOException {
+        File file = new File(RuntimeEnvironment.application.getFilesDir(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[1024]);
+        } finally {
+            out.close();
+        }
+        return Uri.fromFile(file).toString();
+    }
+
+    @Test
+    public void steadyPlayback() throws Exception {
+        FakePlayer player = harness.play(URL + "?steady");
+        harness.ready(player, DURATION_MS);
+        harness.clock.advance(1000);
+
+        // 播放中只有进度刷新，不应创建、注册任何东西
+        Scenario scenario = new Scenario("steady_playback")
+                .budget(PerfCounters.PLAYER_CREATE, 0)
+                .budget(PerfCounters.RECEIVER_REGISTER, 0)
+                .budget(PerfCounters.SENSOR_REGISTER, 0)
+                .budget(PerfCounters.FRAGMENT_TRANSACTION, 0)
+                .budget(PerfCounters.PLAYER_STATE_CHANGE, 0)
+                .budget(PerfCounters.MAIN_POST, PLAY_MS / 1000 * 2 + 2)
+                // 分配量写入结果，与基线运行对比
+                .begin();
+        harness.clock.advance(PLAY_MS);
+        scenario.end();
+    }
+
+    @Test
+    public void fullscreenRoundTrip() throws Exception {
+        FakePlayer player = harness.play(URL + "?fullscreen");
+        harness.ready(player, DURATION_MS);
+        harness.clock.advance(1000);
+        PlayerView inline = harness.manager.getPlayerView();
+
+        Scenario scenario = new Scenario("fullscreen_round_trip")
+                .budget(PerfCounters.PLAYER_CREATE, 0)
+                .budget(PerfCounters.PLAYER_RELEASE, 0)
+                // 全屏页面的宿主添加一次观察 Fragment, 回到列表时复用原宿主的
+                .budget(PerfCounters.FRAGMENT_TRANSACTION, 1)
+                .budget(PerfCounters.RECEIVER_REGISTER, 2)
+                .budget(PerfCounters.MAIN_POST, 12)
+                .begin();
+
+        // play → smoothSwitchView
+        inline.startFullScreen();
+        Intent intent = ShadowApplication.getInstance().getNextStartedActivity();
+        assertNotNull(intent);
+        ActivityController<FullscreenActivity> fullscreen =
+                Robolectric.buildActivity(FullscreenActivity.class, intent).setup();
+        harness.clock.advance(FakeClock.FRAME_MS);
+
+        PlayerView fullscreenView = harness.manager.getPlayerView();
+        assertNotSame(inline, fullscreenView);
+        assertSame(player.getPlayer(), fullscreenView.getPlayer());
+        assertNull(inline.getPlayer());
+
+        // exitFullscreen
+        fullscreen.get().onBackPressed();
+        fullscreen.pause().stop().destroy();
+        harness.clock.advance(1000);
+        scenario.end();
+
+        assertSame(harness.parent, fullscreenView.getParent());
+        assertSame(player.getPlayer(), fullscreenView.getPlayer());
+        assertEquals(1, harness.helper.getPlayers().size());
+        assertEquals(1, player.getPrepareCount());
+        assertFalse(player.isReleased());
+    }
+
+    @Test
+    public void releaseUnregistersReceivers() throws Exception {
+        Scenario scenario = new Scenario("play_release")
+                .budget(PerfCounters.PLAYER_CREATE, 1)
+                .budget(PerfCounters.PLAYER_RELEASE, 1)
+                .begin();
+        FakePlayer player = harness.play(URL + "?release");
+        harness.ready(player, DURATION_MS);
+        harness.clock.advance(1000);
+        harness.release();
+        scenario.end();
+
+        assertTrue(player.isReleased());
+        assertEquals(PerfCounters.get(PerfCounters.RECEIVER_REGISTER),
+                PerfCounters.get(PerfCounters.RECEIVER_UNREGISTER));
+        for (ShadowApplication.Wrapper wrapper
+                : ShadowApplication.getInstance().getRegisteredReceivers()) {
+            assertFalse(wrapper.intentFilter.hasAction(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.aliya.player;
+
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.ui.PlayerView;
+import com.aliya.player.utils.LatencyStats;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PlayerLifecycleImpl#POLICY_PAUSE}: onPause 时保留 player, 宽限期内恢复不重新加载，
+ * 宽限期结束、onStop 或内存紧张时释放；基准比较保留后恢复与重新起播的主线程耗时
+ *
+ * @author a_liYa
+ * @date 2018/3/29 18:30.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlayerPausePolicyTest {
+
+    private static final String URL = "http://example.com/video/pause.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+    private static final long GRACE_PERIOD_MS = 5000;
+
+    private static final Benchmark sBenchmark = new Benchmark("PlayerResume");
+
+    private PlayerHarness harness;
+    private FakePlayer player;
+    private PlayerView playerView;
+
+    @Before
+    public void setUp() {
+        LatencyStats.get().reset();
+        harness = PlayerHarness.create();
+        player = harness.play(URL);
+        harness.manager.setLifecyclePolicy(PlayerLifecycleImpl.POLICY_PAUSE, GRACE_PERIOD_MS);
+        harness.ready(player, DURATION_MS);
+        playerView = harness.manager.getPlayerView();
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void releasesAfterGracePeriod() {
+        harness.host.pause();
+        assertFalse(player.isReleased());
+        assertFalse(player.getPlayer().getPlayWhenReady());
+        assertTrue(playerView.playerLifecycle.isRetained());
+
+        harness.clock.advance(GRACE_PERIOD_MS - 1000);
+        assertFalse(player.isReleased());
+        harness.clock.advance(1000);
+        assertTrue(player.isReleased());
+        assertFalse(playerView.playerLifecycle.isRetained());
+    }
+
+    @Test
+    public void resumeBeforeExpiryKeepsPlayer() {
+        harness.host.pause();
+        harness.clock.advance(GRACE_PERIOD_MS / 2);
+        harness.host.resume();
+        assertTrue(player.getPlayer().getPlayWhenReady());
+        assertFalse(playerView.playerLifecycle.isRetained());
+
+        // 宽限期的释放已取消
+        harness.clock.advance(GRACE_PERIOD_MS * 2);
+        assertFalse(player.isReleased());
+        assertEquals(1, player.getPrepareCount());
+    }
+
+    @Test
+    public void stopReleases() {
+        harness.host.pause();
+        assertFalse(player.isReleased());
+        harness.host.stop();
+        assertTrue(player.isReleased());
+    }
+
+    @Test
+    public void userPausedRetainedPlayerIsReleasedUnderMemoryPressure() {
+        // 用户先暂停，恢复时不会继续播放，但 player 同样被保留
+        player.getPlayer().setPlayWhenReady(false);
+        harness.host.pause();
+        assertFalse(playerView.playerLifecycle.isPausedByLifecycle());
+        assertTrue(playerView.playerLifecycle.isRetained());
+
+        MemoryGovernor.get().trim(MemoryGovernor.TIER_MODERATE);
+        assertTrue(player.isReleased());
+
+        harness.clock.advance(MemoryGovernor.RECOVER_MS);
+        assertEquals(MemoryGovernor.TIER_NONE, MemoryGovernor.get().getTier());
+        MemoryGovernor.get().reset();
+    }
+
+    @Test
+    public void warmResumeIsCheaperThanColdStart() {
+        Benchmark.Result warm = sBenchmark.measure("resume_to_first_frame.warm", 20, 50,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        harness.host.pause();
+                        harness.host.resume();
+                        player.renderFirstFrame();
+                        harness.clock.idle();
+                    }
+                });
+        assertFalse(player.isReleased());
+        assertEquals(1, player.getPrepareCount());
+
+        Benchmark.Result cold = sBenchmark.measure("resume_to_first_frame.cold", 20, 50,
+                new Runnable() {
+                    private int index;
+
+                    @Override
+                    public void run() {
+                        // 释放后重新起播：创建 player、准备、缓冲到首帧
+                        harness.host.pause();
+                        harness.host.stop();
+                        harness.host.restart();
+                        harness.host.resume();
+                        FakePlayer restarted = harness.play(URL + "?cold=" + index++);
+                        harness.ready(restarted, DURATION_MS);
+                    }
+                });
+
+        // 两种恢复都记录了到首帧的耗时
+        assertTrue(LatencyStats.get().getAverage(LatencyStats.WARM_RESUME) >= 0);
+        assertTrue(LatencyStats.get().getAverage(LatencyStats.COLD_START) >= 0);
+        assertTrue(warm.medianNs + " >= " + cold.medianNs, warm.medianNs < cold.medianNs);
+    }
+
+}
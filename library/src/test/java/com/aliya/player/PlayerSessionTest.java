@@ -0,0 +1,102 @@
+package com.aliya.player;
+
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.ui.PlayerView;
+import com.google.android.exoplayer2.ExoPlaybackException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link PlayerSession} 按原始 url 区分：同一视频换 url 重播（清晰度、重试）保留会话和监听
+ *
+ * @author a_liYa
+ * @date 2018/3/28 10:40.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlayerSessionTest {
+
+    private static final String URL = "http://example.com/video/session.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+
+    private PlayerHarness harness;
+    private int firstFrames;
+
+    private final PlaybackListener listener = new PlaybackListener() {
+        @Override
+        public void onBufferingChange(boolean isBuffering, PlayerView view) {
+        }
+
+        @Override
+        public void onFirstFrame(PlayerView view) {
+            firstFrames++;
+        }
+
+        @Override
+        public void onError(ExoPlaybackException error, PlayerView view) {
+        }
+
+        @Override
+        public void onProgress(long positionMs, long durationMs, PlayerView view) {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        harness = PlayerHarness.create();
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+    }
+
+    @Test
+    public void otherQualityOfSameVideoKeepsSession() {
+        FakePlayer player = harness.play(URL + "?sd");
+        harness.ready(player, DURATION_MS);
+        PlayerSession session = harness.manager.getSession();
+        assertNotNull(session);
+        assertEquals(URL + "?sd", session.getUrl());
+        session.addListener(listener);
+        assertEquals(0, firstFrames);
+
+        // 切换清晰度后重播：Extra url 仍是原始 url
+        PlayerView view = harness.manager.getPlayerView();
+        view.stop();
+        view.play(URL + "?hd");
+        harness.clock.idle();
+        harness.ready(harness.current(), DURATION_MS);
+
+        assertSame(session, harness.manager.getSession());
+        assertEquals(URL + "?sd", session.getUrl());
+        assertEquals(1, firstFrames);
+    }
+
+    @Test
+    public void otherVideoStartsNewSession() {
+        FakePlayer player = harness.play(URL + "?first");
+        harness.ready(player, DURATION_MS);
+        PlayerSession first = harness.manager.getSession();
+        first.addListener(listener);
+
+        player = harness.play(URL + "?second");
+        harness.ready(player, DURATION_MS);
+
+        assertNotSame(first, harness.manager.getSession());
+        assertEquals(URL + "?second", harness.manager.getSession().getUrl());
+        assertEquals(0, firstFrames);
+    }
+
+}
@@ -0,0 +1,285 @@
+package com.aliya.player.download;
+
+import com.aliya.player.BuildConfig;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link DownloadManager} 对本地 HTTP 服务的端到端下载：分块 Range、服务器忽略 Range、
+ * HLS 改写、下载中删除
+ *
+ * @author a_liYa
+ * @date 2018/3/27 18:20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class DownloadManagerTest {
+
+    private static final long WAIT_MS = 30 * 1000;
+    private static final String USER_AGENT = "player-test";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    // 两个完整分块加一个不足一块的尾部
+    private static final byte[] BODY = randomBytes((int) (2 * DownloadTask.CHUNK_SIZE + 123));
+    private static final byte[] SEGMENT = randomBytes(64 * 1024);
+    private static final String PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:10\n"
+            + "#EXTINF:10,\nseg/a.ts\n"
+            + "#EXTINF:10,\nseg/b.ts\n"
+            + "#EXT-X-ENDLIST\n";
+
+    private MockWebServer server;
+    private DownloadManager manager;
+    private final List<String> states = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/range")) {
+                    return ranged(BODY, request.getHeader("Range"));
+                } else if (path.startsWith("/norange")) {
+                    return new MockResponse().setBody(new Buffer().write(BODY));
+                } else if (path.startsWith("/slow")) {
+                    return ranged(BODY, request.getHeader("Range"))
+                            .throttleBody(16 * 1024, 50, TimeUnit.MILLISECONDS);
+                } else if (path.startsWith("/hls/index.m3u8")) {
+                    return new MockResponse().setBody(PLAYLIST);
+                } else if (path.startsWith("/hls/seg/")) {
+                    return new MockResponse().setBody(new Buffer().write(SEGMENT));
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+
+        // 每个测试使用新的下载目录
+        ReflectionHelpers.setStaticField(DownloadManager.class, "sInstance", null);
+        manager = DownloadManager.get();
+        manager.init(RuntimeEnvironment.application, new DefaultHttpDataSourceFactory(USER_AGENT));
+        manager.addListener(new DownloadListener() {
+            @Override
+            public void onStateChanged(String url, int state) {
+                states.add(url + "#" + state);
+            }
+
+            @Override
+            public void onProgress(String url, long downloaded, long total) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void downloadsInRangeChunks() throws Exception {
+        String url = url("/range/a.mp4");
+        manager.start(url);
+        awaitState(url, DownloadManager.STATE_COMPLETED);
+
+        File file = manager.getLocalFile(url);
+        assertNotNull(file);
+        assertArrayEquals(BODY, readBytes(file));
+        assertEquals(DownloadManager.STATE_COMPLETED, manager.getState(url));
+
+        // 三块：最后一块按实际剩余长度请求，使用播放的 DataSource（相同的 User-Agent）
+        assertEquals(3, server.getRequestCount());
+        for (int i = 0; i < 3; i++) {
+            RecordedRequest request = server.takeRequest();
+            assertEquals(USER_AGENT, request.getHeader("User-Agent"));
+            assertTrue(request.getHeader("Range").startsWith(
+                    "bytes=" + i * DownloadTask.CHUNK_SIZE + "-"));
+        }
+    }
+
+    @Test
+    public void fileSmallerThanChunk() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return ranged(SEGMENT, request.getHeader("Range"));
+            }
+        });
+        String url = url("/small/a.mp4");
+        manager.start(url);
+        awaitState(url, DownloadManager.STATE_COMPLETED);
+
+        assertArrayEquals(SEGMENT, readBytes(manager.getLocalFile(url)));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void serverIgnoringRangeDownloadsWholeFile() throws Exception {
+        String url = url("/norange/a.mp4");
+        manager.start(url);
+        awaitState(url, DownloadManager.STATE_COMPLETED);
+
+        assertArrayEquals(BODY, readBytes(manager.getLocalFile(url)));
+    }
+
+    @Test
+    public void hlsPlaylistIsRewrittenToLocalSegments() throws Exception {
+        String url = url("/hls/index.m3u8");
+        manager.start(url);
+        awaitState(url, DownloadManager.STATE_COMPLETED);
+
+        File index = manager.getLocalFile(url);
+        assertNotNull(index);
+        assertEquals(DownloadManager.HLS_INDEX, index.getName());
+        String local = new String(readBytes(index), "UTF-8");
+        assertTrue(local.contains("\nseg0.ts\n"));
+        assertTrue(local.contains("\nseg1.ts\n"));
+        assertFalse(local.contains("seg/a.ts"));
+        assertArrayEquals(SEGMENT, readBytes(new File(index.getParentFile(), "seg0.ts")));
+        assertArrayEquals(SEGMENT, readBytes(new File(index.getParentFile(), "seg1.ts")));
+    }
+
+    @Test
+    public void removeWhileDownloadingDeletesAfterTaskStops() throws Exception {
+        String url = url("/slow/a.mp4");
+        manager.start(url);
+        awaitState(url, DownloadManager.STATE_DOWNLOADING);
+        File tmp = new File(manager.getRootDir(),
+                DownloadManager.keyOf(url) + DownloadManager.SUFFIX_MP4 + DownloadManager.SUFFIX_TMP);
+        awaitFile(tmp);
+
+        manager.remove(url);
+        awaitState(url, DownloadManager.STATE_NONE);
+
+        // 任务停止后才删除，不会再有写入或改名
+        Thread.sleep(300);
+        assertEquals(Collections.<String>emptyList(), Arrays.asList(list(manager.getRootDir())));
+        assertNull(manager.getLocalFile(url));
+        assertEquals(DownloadManager.STATE_NONE, manager.getState(url));
+    }
+
+    private String url(String path) {
+        return server.url(path).toString();
+    }
+
+    /**
+     * 按 Range 返回 206 与 Content-Range, 没有 Range 时返回完整内容
+     */
+    private static MockResponse ranged(byte[] body, String range) {
+        Matcher matcher = range != null ? RANGE.matcher(range) : null;
+        if (matcher == null || !matcher.matches()) {
+            return new MockResponse().setBody(new Buffer().write(body));
+        }
+        int start = Integer.parseInt(matcher.group(1));
+        int end = matcher.group(2).isEmpty() ? body.length - 1
+                : Math.min(Integer.parseInt(matcher.group(2)), body.length - 1);
+        if (start >= body.length) {
+            return new MockResponse().setResponseCode(416)
+                    .setHeader("Content-Range", "bytes */" + body.length);
+        }
+        return new MockResponse().setResponseCode(206)
+                .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + body.length)
+                .setBody(new Buffer().write(body, start, end - start + 1));
+    }
+
+    /**
+     * 下载在子线程执行，状态回调 post 到主线程；这里等待回调
+     */
+    private void awaitState(String url, int state) {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!states.contains(url + "#" + state)) {
+            if (states.contains(url + "#" + DownloadManager.STATE_FAILED)) {
+                fail("Download failed: " + url);
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("State " + state + " not reached: " + url + " " + states);
+            }
+            ShadowLooper.idleMainLooper();
+            sleep();
+        }
+    }
+
+    private static void awaitFile(File file) {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (file.length() == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Nothing written: " + file);
+            }
+            sleep();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail("Interrupted");
+        }
+    }
+
+    private static String[] list(File dir) {
+        String[] names = dir.list();
+        return names != null ? names : new String[0];
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+}
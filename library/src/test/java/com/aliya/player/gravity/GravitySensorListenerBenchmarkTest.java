@@ -0,0 +1,85 @@
+package com.aliya.player.gravity;
+
+import android.hardware.SensorEvent;
+
+import com.aliya.player.Benchmark;
+import com.aliya.player.BuildConfig;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link GravitySensorListener#onSensorChanged(SensorEvent)} 的基准，重力传感器回调频率很高
+ *
+ * @author a_liYa
+ * @date 2018/3/26 11:25.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class GravitySensorListenerBenchmarkTest {
+
+    private static final int ITERATIONS = 100000;
+
+    private static final Benchmark sBenchmark = new Benchmark("GravitySensorListener");
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void onSensorChanged() {
+        final int[] angle = new int[1];
+        final GravitySensorListener listener = new GravitySensorListener(
+                new GravitySensorListener.OrientationAngleChangeListener() {
+                    @Override
+                    public void onOrientationAngleChange(int orientation) {
+                        angle[0] = orientation;
+                    }
+                });
+        final SensorEvent event = newSensorEvent();
+
+        // 竖直握持
+        setValues(event, 0f, 9.8f, 0f);
+        listener.onSensorChanged(event);
+        assertEquals(0, angle[0]);
+        // 向左横置
+        setValues(event, 9.8f, 0f, 0f);
+        listener.onSensorChanged(event);
+        assertEquals(270, angle[0]);
+        // 平放，角度不可信
+        setValues(event, 0f, 0f, 9.8f);
+        listener.onSensorChanged(event);
+        assertEquals(GravitySensorListener.ORIENTATION_UNKNOWN, angle[0]);
+
+        sBenchmark.measure("onSensorChanged", ITERATIONS, new Runnable() {
+            float x;
+
+            @Override
+            public void run() {
+                x = x > 9.8f ? -9.8f : x + 0.01f;
+                setValues(event, x, 9.8f - Math.abs(x), 0.5f);
+                listener.onSensorChanged(event);
+            }
+        });
+        Benchmark.sink = angle[0];
+    }
+
+    private static SensorEvent newSensorEvent() {
+        return ReflectionHelpers.callConstructor(SensorEvent.class,
+                ReflectionHelpers.ClassParameter.from(int.class, 3));
+    }
+
+    private static void setValues(SensorEvent event, float x, float y, float z) {
+        event.values[0] = x;
+        event.values[1] = y;
+        event.values[2] = z;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.aliya.player.harness;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 测试时钟：按帧推进主线程时间（{@link android.os.SystemClock} 随之推进）并执行到期的 post,
+ * 同时推进所有 {@link FakePlayer} 的播放位置
+ *
+ * @author a_liYa
+ * @date 2018/3/27 10:05.
+ */
+public final class FakeClock {
+
+    public static final long FRAME_MS = 16;
+
+    private final List<FakePlayer> players = new CopyOnWriteArrayList<>();
+
+    void attach(FakePlayer player) {
+        players.add(player);
+    }
+
+    /**
+     * 执行已到期的主线程任务，不推进时间
+     */
+    public void idle() {
+        ShadowLooper.idleMainLooper();
+    }
+
+    /**
+     * @param ms 推进的时长
+     */
+    public void advance(long ms) {
+        while (ms > 0) {
+            long step = Math.min(FRAME_MS, ms);
+            for (FakePlayer player : players) {
+                player.advance(step);
+            }
+            ShadowLooper.idleMainLooper(step);
+            ms -= step;
+        }
+    }
+
+}
@@ -0,0 +1,343 @@
+package com.aliya.player.harness;
+
+import android.view.SurfaceView;
+import android.view.TextureView;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 不解码、不加载的 {@link SimpleExoPlayer} 替身：状态、位置由测试通过 {@link FakeClock} 驱动，
+ * 回调与真实 player 一致地分发给监听者
+ * <p>
+ * 没有声明的方法按 Mockito 默认值返回；渲染器固定为 [视频, 音频]。
+ * 与真实 player 一样监听 {@link TrackSelector} 失效，重新选择轨道时新启用的渲染器计一次解码器创建
+ *
+ * @author a_liYa
+ * @date 2018/3/27 09:40.
+ */
+public final class FakePlayer implements Answer<Object> {
+
+    public static final int VIDEO_RENDERER = 0;
+    public static final int AUDIO_RENDERER = 1;
+
+    private final SimpleExoPlayer player;
+    private final DefaultTrackSelector selector;
+    private final List<Player.EventListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<SimpleExoPlayer.VideoListener> videoListeners =
+            new CopyOnWriteArrayList<>();
+
+    private int playbackState = Player.STATE_IDLE;
+    private boolean playWhenReady;
+    private long positionMs;
+    private long durationMs = C.TIME_UNSET;
+    private PlaybackParameters parameters = PlaybackParameters.DEFAULT;
+    private float volume = 1f;
+    private Object videoView;
+    private MediaSource mediaSource;
+    private Timeline timeline = Timeline.EMPTY;
+    private int prepareCount;
+    private long preparePositionMs = C.TIME_UNSET;
+    private int trackSelectionCount;
+    private boolean prepared;
+    private final boolean[] rendererEnabled = new boolean[2];
+    private boolean released;
+
+    /**
+     * 释放时读取；渲染器启用时 decoderInitCount 加一
+     */
+    public final DecoderCounters videoCounters = new DecoderCounters();
+    public final DecoderCounters audioCounters = new DecoderCounters();
+
+    public FakePlayer() {
+        this(null);
+    }
+
+    /**
+     * @param trackSelector 渲染器的禁用状态从中读取，null 时全部启用
+     */
+    public FakePlayer(TrackSelector trackSelector) {
+        player = Mockito.mock(SimpleExoPlayer.class, this);
+        selector = trackSelector instanceof DefaultTrackSelector
+                ? (DefaultTrackSelector) trackSelector : null;
+        if (trackSelector != null) {
+            trackSelector.init(new TrackSelector.InvalidationListener() {
+                @Override
+                public void onTrackSelectionsInvalidated() {
+                    selectTracks();
+                }
+            });
+        }
+    }
+
+    public SimpleExoPlayer getPlayer() {
+        return player;
+    }
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        switch (invocation.getMethod().getName()) {
+            case "addListener":
+                listeners.add((Player.EventListener) args[0]);
+                return null;
+            case "removeListener":
+                listeners.remove(args[0]);
+                return null;
+            case "addVideoListener":
+                videoListeners.add((SimpleExoPlayer.VideoListener) args[0]);
+                return null;
+            case "removeVideoListener":
+                videoListeners.remove(args[0]);
+                return null;
+            case "setVideoSurfaceView":
+            case "setVideoTextureView":
+                videoView = args[0];
+                return null;
+            case "clearVideoSurfaceView":
+            case "clearVideoTextureView":
+                if (videoView == args[0]) {
+                    videoView = null;
+                }
+                return null;
+            case "prepare":
+                mediaSource = (MediaSource) args[0];
+                prepareCount++;
+                preparePositionMs = positionMs;
+                prepared = true;
+                releaseRenderers();
+                selectTracks();
+                setPlaybackState(Player.STATE_BUFFERING);
+                return null;
+            case "stop":
+                prepared = false;
+                releaseRenderers();
+                setPlaybackState(Player.STATE_IDLE);
+                return null;
+            case "release":
+                released = true;
+                playbackState = Player.STATE_IDLE;
+                listeners.clear();
+                videoListeners.clear();
+                return null;
+            case "setPlayWhenReady":
+                if (playWhenReady != (Boolean) args[0]) {
+                    playWhenReady = (Boolean) args[0];
+                    dispatchStateChanged();
+                }
+                return null;
+            case "getPlayWhenReady":
+                return playWhenReady;
+            case "getPlaybackState":
+                return playbackState;
+            case "seekTo":
+                positionMs = (Long) args[args.length - 1];
+                dispatchPositionDiscontinuity();
+                return null;
+            case "seekToDefaultPosition":
+                positionMs = 0;
+                dispatchPositionDiscontinuity();
+                return null;
+            case "getCurrentPosition":
+            case "getContentPosition":
+                return positionMs;
+            case "getBufferedPosition":
+                return durationMs == C.TIME_UNSET ? positionMs : durationMs;
+            case "getDuration":
+                return durationMs;
+            case "getBufferedPercentage":
+                return durationMs > 0 ? 100 : 0;
+            case "setPlaybackParameters":
+                parameters = args[0] != null ? (PlaybackParameters) args[0]
+                        : PlaybackParameters.DEFAULT;
+                for (Player.EventListener listener : listeners) {
+                    listener.onPlaybackParametersChanged(parameters);
+                }
+                return null;
+            case "getPlaybackParameters":
+                return parameters;
+            case "setVolume":
+                volume = (Float) args[0];
+                return null;
+            case "getVolume":
+                return volume;
+            case "getRendererCount":
+                return 2;
+            case "getRendererType":
+                return (Integer) args[0] == VIDEO_RENDERER ? C.TRACK_TYPE_VIDEO
+                        : C.TRACK_TYPE_AUDIO;
+            case "getVideoDecoderCounters":
+                return videoCounters;
+            case "getAudioDecoderCounters":
+                return audioCounters;
+            case "getCurrentTimeline":
+                return timeline;
+            case "getCurrentTrackGroups":
+                return TrackGroupArray.EMPTY;
+            case "getCurrentTrackSelections":
+                return new TrackSelectionArray();
+            case "getCurrentWindowIndex":
+            case "getCurrentPeriodIndex":
+                return 0;
+            case "isCurrentWindowSeekable":
+                return true;
+            case "isCurrentWindowDynamic":
+            case "isLoading":
+                return false;
+            default:
+                return Mockito.RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+
+    /**
+     * 播放中（READY 且 playWhenReady）按播放速度推进位置，到达时长时结束
+     *
+     * @param elapsedMs 实际经过的时间
+     */
+    void advance(long elapsedMs) {
+        if (released || !playWhenReady || playbackState != Player.STATE_READY) return;
+
+        positionMs += (long) (elapsedMs * parameters.speed);
+        if (durationMs != C.TIME_UNSET && positionMs >= durationMs) {
+            positionMs = durationMs;
+            setPlaybackState(Player.STATE_ENDED);
+        }
+    }
+
+    public void setPlaybackState(int state) {
+        if (playbackState != state) {
+            playbackState = state;
+            dispatchStateChanged();
+        }
+    }
+
+    public void setDuration(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * 直播窗口滑动时位置相对窗口起点变化，不产生 discontinuity
+     */
+    public void setPosition(long positionMs) {
+        this.positionMs = positionMs;
+    }
+
+    /**
+     * 模拟 MediaSource 刷新时间线 eg: 直播列表刷新
+     */
+    public void setTimeline(Timeline timeline, Object manifest) {
+        this.timeline = timeline;
+        for (Player.EventListener listener : listeners) {
+            listener.onTimelineChanged(timeline, manifest);
+        }
+    }
+
+    /**
+     * 模拟解码出首帧
+     */
+    public void renderFirstFrame() {
+        for (SimpleExoPlayer.VideoListener listener : videoListeners) {
+            listener.onRenderedFirstFrame();
+        }
+    }
+
+    public void dispatchError(ExoPlaybackException error) {
+        playbackState = Player.STATE_IDLE;
+        for (Player.EventListener listener : listeners) {
+            listener.onPlayerError(error);
+        }
+    }
+
+    public Object getVideoView() {
+        return videoView;
+    }
+
+    public boolean hasVideoOutput() {
+        return videoView instanceof SurfaceView || videoView instanceof TextureView;
+    }
+
+    public MediaSource getMediaSource() {
+        return mediaSource;
+    }
+
+    public int getPrepareCount() {
+        return prepareCount;
+    }
+
+    /**
+     * @return 最近一次 prepare 时的位置，续播的 seek 应在此之前
+     */
+    public long getPreparePositionMs() {
+        return preparePositionMs;
+    }
+
+    /**
+     * @return 选择轨道的次数，包括 prepare 和每次 TrackSelector 失效
+     */
+    public int getTrackSelectionCount() {
+        return trackSelectionCount;
+    }
+
+    public boolean isRendererEnabled(int index) {
+        return rendererEnabled[index];
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    public int getListenerCount() {
+        return listeners.size();
+    }
+
+    /**
+     * 准备后才选择轨道；新启用的渲染器创建解码器，禁用的释放
+     */
+    private void selectTracks() {
+        if (released || !prepared) return;
+
+        trackSelectionCount++;
+        for (int i = 0; i < rendererEnabled.length; i++) {
+            boolean enabled = selector == null || !selector.getRendererDisabled(i);
+            if (enabled && !rendererEnabled[i]) {
+                (i == VIDEO_RENDERER ? videoCounters : audioCounters).decoderInitCount++;
+            }
+            rendererEnabled[i] = enabled;
+        }
+    }
+
+    private void releaseRenderers() {
+        rendererEnabled[VIDEO_RENDERER] = false;
+        rendererEnabled[AUDIO_RENDERER] = false;
+    }
+
+    private void dispatchStateChanged() {
+        for (Player.EventListener listener : listeners) {
+            listener.onPlayerStateChanged(playWhenReady, playbackState);
+        }
+    }
+
+    private void dispatchPositionDiscontinuity() {
+        for (Player.EventListener listener : listeners) {
+            listener.onPositionDiscontinuity();
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.aliya.player.harness;
+
+import com.aliya.player.PlayerHelper;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 创建 {@link FakePlayer} 的 {@link PlayerHelper}，按创建顺序记录
+ *
+ * @author a_liYa
+ * @date 2018/3/27 10:15.
+ */
+public final class FakePlayerHelper extends PlayerHelper {
+
+    private final FakeClock clock;
+    private final List<FakePlayer> players = new ArrayList<>();
+
+    public FakePlayerHelper(FakeClock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public SimpleExoPlayer newPlayer(TrackSelector trackSelector, LoadControl loadControl) {
+        FakePlayer player = new FakePlayer(trackSelector);
+        players.add(player);
+        clock.attach(player);
+        return player.getPlayer();
+    }
+
+    public List<FakePlayer> getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return 最近创建的 player
+     */
+    public FakePlayer lastPlayer() {
+        return players.isEmpty() ? null : players.get(players.size() - 1);
+    }
+
+    /**
+     * @param player {@link com.aliya.player.ui.PlayerView#getPlayer()}
+     * @return 对应的替身，没有时返回 null
+     */
+    public FakePlayer find(SimpleExoPlayer player) {
+        for (FakePlayer fake : players) {
+            if (fake.getPlayer() == player) {
+                return fake;
+            }
+        }
+        return null;
+    }
+
+}
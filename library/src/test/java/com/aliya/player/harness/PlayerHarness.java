@@ -0,0 +1,148 @@
+package com.aliya.player.harness;
+
+import android.app.Activity;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.v4.app.FragmentActivity;
+import android.widget.FrameLayout;
+
+import com.aliya.player.MemoryGovernor;
+import com.aliya.player.PlayerHelper;
+import com.aliya.player.PlayerManager;
+import com.aliya.player.ui.PlayerView;
+import com.google.android.exoplayer2.Player;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.shadows.ShadowNetworkInfo;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 无设备运行 {@link PlayerManager} 流程：宿主 Activity、替身 player、测试时钟和网络状态
+ * <p>
+ * PlayerManager 是单例，每次创建都重置，并替换为创建 {@link FakePlayer} 的 helper
+ *
+ * @author a_liYa
+ * @date 2018/3/27 10:50.
+ */
+public final class PlayerHarness {
+
+    public final FakeClock clock = new FakeClock();
+    public final FakePlayerHelper helper = new FakePlayerHelper(clock);
+    public final PlayerManager manager;
+    /**
+     * 驱动宿主生命周期 eg: host.pause().stop()
+     */
+    public final ActivityController<FragmentActivity> host;
+    public final Activity activity;
+    public final FrameLayout parent;
+
+    private PlayerHarness() {
+        unregister(ReflectionHelpers.<PlayerManager>getStaticField(PlayerManager.class,
+                "sInstance"));
+        ReflectionHelpers.setStaticField(PlayerManager.class, "sInstance", null);
+        manager = PlayerManager.get();
+        ReflectionHelpers.setField(manager, "mHelper", helper);
+
+        setNetwork(ConnectivityManager.TYPE_WIFI);
+        host = Robolectric.buildActivity(FragmentActivity.class).setup();
+        activity = host.get();
+        parent = new FrameLayout(activity);
+        activity.setContentView(parent);
+    }
+
+    public static PlayerHarness create() {
+        return new PlayerHarness();
+    }
+
+    /**
+     * @param type {@link ConnectivityManager#TYPE_WIFI} 或 {@link ConnectivityManager#TYPE_MOBILE}
+     */
+    public static void setNetwork(int type) {
+        ConnectivityManager cm = (ConnectivityManager) RuntimeEnvironment.application
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        Shadows.shadowOf(cm).setActiveNetworkInfo(ShadowNetworkInfo.newInstance(
+                NetworkInfo.DetailedState.CONNECTED, type, 0, true, true));
+    }
+
+    /**
+     * 在 {@link #parent} 中播放，等待进度加载完成（首次起播在此之后准备），执行完 post 的任务
+     *
+     * @param url a video url
+     * @return 播放使用的 player
+     */
+    public FakePlayer play(String url) {
+        return play(parent, url);
+    }
+
+    public FakePlayer play(FrameLayout container, String url) {
+        manager.play(container, url);
+        awaitThreadExecutor();
+        clock.idle();
+        return current();
+    }
+
+    /**
+     * 进度、解码器能力在单线程的 {@link PlayerHelper#getThreadExecutor()} 中加载，
+     * 排在其后的任务完成即加载完成
+     */
+    public static void awaitThreadExecutor() {
+        try {
+            PlayerHelper.getThreadExecutor().submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            }).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * 模拟加载完成：时长已知、可以播放、解码出首帧
+     *
+     * @param player     .
+     * @param durationMs 时长
+     */
+    public void ready(FakePlayer player, long durationMs) {
+        player.setDuration(durationMs);
+        player.setPlaybackState(Player.STATE_READY);
+        player.renderFirstFrame();
+        clock.idle();
+    }
+
+    /**
+     * @return 当前 PlayerView 的 player 替身
+     */
+    public FakePlayer current() {
+        PlayerView view = manager.getPlayerView();
+        return view != null ? helper.find(view.getPlayer()) : null;
+    }
+
+    /**
+     * 释放播放器，并把 manager 从 {@link MemoryGovernor} 的静态监听中移除，
+     * 之后的测试不会再收到裁剪回调
+     */
+    public void release() {
+        PlayerView view = manager.getPlayerView();
+        if (view != null) {
+            view.release();
+        }
+        clock.idle();
+        unregister(manager);
+    }
+
+    private static void unregister(PlayerManager manager) {
+        if (manager != null) {
+            MemoryGovernor.get().removeOnTrimListener(manager);
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.aliya.player.harness;
+
+import com.aliya.player.Benchmark;
+import com.aliya.player.utils.PerfCounters;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.fail;
+
+/**
+ * 一个场景的计数与预算：{@link #begin()} 清空 {@link PerfCounters} 并开始统计当前线程的分配，
+ * {@link #end()} 把结果写入 JSON（与 {@link Benchmark} 同一目录），超出预算时测试失败
+ * <p>
+ * 分配量没有固定预算，受 JVM 与 Robolectric 影响；指定 {@link #BASELINE_DIR_PROPERTY}
+ * （一次实际运行写出的结果目录）时，超出基线 {@link #ALLOCATION_TOLERANCE} 视为回退
+ *
+ * @author a_liYa
+ * @date 2018/3/27 10:30.
+ */
+public final class Scenario {
+
+    public static final String BASELINE_DIR_PROPERTY = "benchmark.baselineDir";
+    /**
+     * 相对基线允许的分配增长
+     */
+    public static final float ALLOCATION_TOLERANCE = 0.25f;
+
+    private static final Pattern ALLOCATED = Pattern.compile("\"allocated_bytes\":(-?\\d+)");
+
+    private final String name;
+    private final Map<String, Long> budgets = new LinkedHashMap<>();
+    private boolean wasEnabled;
+    private long startAllocated;
+
+    public Scenario(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param counter {@link PerfCounters} 中的计数名称
+     * @param max     场景内的次数上限
+     * @return this
+     */
+    public Scenario budget(String counter, long max) {
+        budgets.put(counter, max);
+        return this;
+    }
+
+    /**
+     * 只写入结果，不设上限
+     *
+     * @param counter {@link PerfCounters} 中的计数名称
+     * @return this
+     */
+    public Scenario record(String counter) {
+        budgets.put(counter, -1L);
+        return this;
+    }
+
+    public Scenario begin() {
+        wasEnabled = PerfCounters.isEnabled();
+        PerfCounters.setEnabled(true);
+        PerfCounters.reset();
+        startAllocated = allocatedBytes();
+        return this;
+    }
+
+    /**
+     * 检查预算并写出结果，恢复 {@link #begin()} 之前的统计开关
+     */
+    public void end() throws IOException {
+        long allocated = startAllocated >= 0 ? allocatedBytes() - startAllocated : -1;
+        try {
+            List<String> violations = new ArrayList<>();
+            for (Map.Entry<String, Long> e : budgets.entrySet()) {
+                long count = PerfCounters.get(e.getKey());
+                if (e.getValue() >= 0 && count > e.getValue()) {
+                    violations.add(e.getKey() + "=" + count + " budget=" + e.getValue());
+                }
+            }
+            long baseline = readBaseline();
+            if (allocated >= 0 && baseline > 0
+                    && allocated > baseline * (1 + ALLOCATION_TOLERANCE)) {
+                violations.add("allocated_bytes=" + allocated + " baseline=" + baseline);
+            }
+            write(allocated);
+
+            if (!violations.isEmpty()) {
+                fail(name + " over budget " + violations + "\n" + PerfCounters.dump());
+            }
+        } finally {
+            PerfCounters.setEnabled(wasEnabled);
+        }
+    }
+
+    /**
+     * @return 基线结果中的分配字节数，未指定基线或没有该场景时返回 -1
+     */
+    private long readBaseline() throws IOException {
+        String dir = System.getProperty(BASELINE_DIR_PROPERTY);
+        if (dir == null || dir.isEmpty()) return -1;
+
+        File file = new File(dir, fileName());
+        if (!file.isFile()) return -1;
+
+        StringBuilder json = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                json.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        Matcher matcher = ALLOCATED.matcher(json);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private void write(long allocated) throws IOException {
+        File dir = new File(System.getProperty(Benchmark.OUTPUT_DIR_PROPERTY,
+                "build/benchmark-results"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\"scenario\":\"").append(name).append("\",\"allocated_bytes\":")
+                .append(allocated).append(",\"counters\":{");
+        boolean first = true;
+        for (String counter : budgets.keySet()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(counter).append("\":").append(PerfCounters.get(counter));
+        }
+        json.append("}}\n");
+
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(dir, fileName())), "UTF-8");
+        try {
+            writer.write(json.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private String fileName() {
+        return "scenario-" + name + ".json";
+    }
+
+    /**
+     * @return 当前线程累计分配的字节数，JVM 不支持时返回 -1
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.aliya.player.lifecycle;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.aliya.player.BuildConfig;
+import com.aliya.player.utils.PerfCounters;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link LifecycleUtils} 每个宿主只提交一次 Fragment 事务，全屏往返复用已有的 registry
+ *
+ * @author a_liYa
+ * @date 2018/3/27 14:20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class LifecycleUtilsTest {
+
+    private static final int ROUND_TRIPS = 3;
+
+    private ActivityController<Activity> listHost;
+    private ActivityController<Activity> fullscreenHost;
+    private FrameLayout listParent;
+    private FrameLayout fullscreenParent;
+    private View playerView;
+
+    @Before
+    public void setUp() {
+        PerfCounters.setEnabled(true);
+        PerfCounters.reset();
+        listHost = Robolectric.buildActivity(Activity.class).setup();
+        fullscreenHost = Robolectric.buildActivity(Activity.class).setup();
+        listParent = new FrameLayout(listHost.get());
+        fullscreenParent = new FrameLayout(fullscreenHost.get());
+        listHost.get().setContentView(listParent);
+        fullscreenHost.get().setContentView(fullscreenParent);
+        playerView = new View(listHost.get());
+    }
+
+    @Test
+    public void fullscreenRoundTripsCommitOncePerHost() {
+        RecordingListener listener = new RecordingListener();
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            moveTo(fullscreenParent, listener);
+            moveTo(listParent, listener);
+        }
+
+        assertEquals(2, PerfCounters.get(PerfCounters.FRAGMENT_TRANSACTION));
+    }
+
+    @Test
+    public void removedListenerStopsReceivingEvents() {
+        RecordingListener listener = new RecordingListener();
+        moveTo(listParent, listener);
+
+        listHost.pause();
+        assertEquals(1, listener.pauses);
+
+        LifecycleUtils.removeVideoLifecycle(playerView, listener);
+        listHost.resume().pause();
+        assertEquals(1, listener.pauses);
+    }
+
+    /**
+     * 与 PlayerView 全屏切换一致：从旧父容器删除时移除监听，添加到新父容器后重新监听
+     */
+    private void moveTo(FrameLayout parent, LifecycleListener listener) {
+        if (playerView.getParent() instanceof FrameLayout) {
+            LifecycleUtils.removeVideoLifecycle(playerView, listener);
+            ((FrameLayout) playerView.getParent()).removeView(playerView);
+        }
+        parent.addView(playerView);
+        LifecycleUtils.addVideoLifecycle(playerView, listener);
+        // Fragment 事务在主线程异步执行
+        ShadowLooper.idleMainLooper();
+    }
+
+    private static final class RecordingListener implements LifecycleListener {
+
+        int pauses;
+
+        @Override
+        public void onStart() {
+        }
+
+        @Override
+        public void onResume() {
+        }
+
+        @Override
+        public void onPause() {
+            pauses++;
+        }
+
+        @Override
+        public void onStop() {
+        }
+
+        @Override
+        public void onHiddenChanged(boolean hidden) {
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.aliya.player.subtitle;
+
+import com.aliya.player.BuildConfig;
+import com.aliya.player.PlayerHelper;
+import com.aliya.player.utils.LatencyStats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link SubtitleLoader} 从本地 HTTP 服务加载：使用播放的 User-Agent，下载与解析分别计时
+ *
+ * @author a_liYa
+ * @date 2018/3/28 14:40.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SubtitleLoaderTest {
+
+    private static final long WAIT_MS = 10 * 1000;
+    private static final String SRT = "1\n00:00:01,000 --> 00:00:04,000\nhello\n\n";
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        SubtitleLoader.get().clear();
+        LatencyStats.get().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void usesPlayerUserAgentAndTimesParseSeparately() throws Exception {
+        PlayerHelper helper = new PlayerHelper();
+        helper.setContext(RuntimeEnvironment.application);
+        server.enqueue(new MockResponse().setBody(SRT));
+
+        SidecarSubtitle subtitle = load(server.url("/subtitle/a.srt").toString());
+        assertNotNull(subtitle);
+        assertEquals("hello", subtitle.getCuesAt(subtitle.getIndex(2000)).get(0).text.toString());
+
+        assertEquals(helper.getUserAgent(), server.takeRequest().getHeader("User-Agent"));
+        assertTrue(LatencyStats.get().getAverage(LatencyStats.SUBTITLE_LOAD) >= 0);
+        assertTrue(LatencyStats.get().getAverage(LatencyStats.SUBTITLE_PARSE) >= 0);
+    }
+
+    @Test
+    public void failedResponseIsNotTimed() {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        assertNull(load(server.url("/subtitle/missing.srt").toString()));
+        assertEquals(-1, LatencyStats.get().getAverage(LatencyStats.SUBTITLE_LOAD));
+        assertEquals(-1, LatencyStats.get().getAverage(LatencyStats.SUBTITLE_PARSE));
+    }
+
+    /**
+     * 加载在子线程执行，回调 post 到主线程；这里等待回调
+     */
+    private static SidecarSubtitle load(String url) {
+        final SidecarSubtitle[] delivered = {null};
+        final boolean[] called = {false};
+        SubtitleLoader.get().load(url, new SubtitleLoader.Callback() {
+            @Override
+            public void onLoaded(String url, SidecarSubtitle subtitle) {
+                called[0] = true;
+                delivered[0] = subtitle;
+            }
+        });
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!called[0]) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Load did not complete: " + url);
+            }
+            ShadowLooper.idleMainLooper();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+        return delivered[0];
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.aliya.player.subtitle;
+
+import com.aliya.player.Benchmark;
+import com.aliya.player.BuildConfig;
+import com.google.android.exoplayer2.text.Cue;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SubtitleParser} 解析两小时字幕、{@link SidecarSubtitle} 按播放位置查找的基准
+ *
+ * @author a_liYa
+ * @date 2018/3/28 14:10.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SubtitleParserBenchmarkTest {
+
+    private static final long DURATION_MS = 2 * 60 * 60 * 1000;
+    // 每 3s 一条，显示 2.5s
+    private static final long CUE_INTERVAL_MS = 3000;
+    private static final long CUE_DURATION_MS = 2500;
+    private static final int CUE_COUNT = (int) (DURATION_MS / CUE_INTERVAL_MS);
+
+    private static final int PARSE_WARMUP = 20;
+    private static final int PARSE_ITERATIONS = 10;
+    private static final int LOOKUP_ITERATIONS = 200000;
+
+    private static final Benchmark sBenchmark = new Benchmark("SubtitleParser");
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void parseTwoHourSrt() throws Exception {
+        byte[] srt = generate(false);
+        SidecarSubtitle subtitle = SubtitleParser.parse(new ByteArrayInputStream(srt));
+        verify(subtitle);
+        measureParse("parse.srt_2h", srt);
+    }
+
+    @Test
+    public void parseTwoHourVtt() throws Exception {
+        byte[] vtt = generate(true);
+        SidecarSubtitle subtitle = SubtitleParser.parse(new ByteArrayInputStream(vtt));
+        verify(subtitle);
+        measureParse("parse.vtt_2h", vtt);
+    }
+
+    @Test
+    public void lookupDuringPlayback() throws Exception {
+        final SidecarSubtitle subtitle =
+                SubtitleParser.parse(new ByteArrayInputStream(generate(false)));
+
+        // 播放中按进度刷新（约每帧一次）
+        sBenchmark.measure("getIndex.sequential", LOOKUP_ITERATIONS, new Runnable() {
+            long positionMs;
+
+            @Override
+            public void run() {
+                positionMs = (positionMs + 16) % DURATION_MS;
+                Benchmark.sink = subtitle.getCuesAt(subtitle.getIndex(positionMs));
+            }
+        });
+        // 拖动进度
+        final long[] seeks = new long[1024];
+        Random random = new Random(1);
+        for (int i = 0; i < seeks.length; i++) {
+            seeks[i] = (long) (random.nextDouble() * DURATION_MS);
+        }
+        sBenchmark.measure("getIndex.seek", LOOKUP_ITERATIONS, new Runnable() {
+            int index;
+
+            @Override
+            public void run() {
+                long positionMs = seeks[index++ & (seeks.length - 1)];
+                Benchmark.sink = subtitle.getCuesAt(subtitle.getIndex(positionMs));
+            }
+        });
+    }
+
+    private static void measureParse(String label, final byte[] bytes) {
+        sBenchmark.measure(label, PARSE_WARMUP, PARSE_ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Benchmark.sink = SubtitleParser.parse(new ByteArrayInputStream(bytes));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+    }
+
+    private static void verify(SidecarSubtitle subtitle) {
+        // 每条一个显示段、一个间隔段
+        assertTrue(subtitle.getEventTimeCount() >= CUE_COUNT * 2 - 1);
+        for (int i : new int[]{0, 1, CUE_COUNT / 2, CUE_COUNT - 1}) {
+            long startMs = i * CUE_INTERVAL_MS;
+            List<Cue> cues = subtitle.getCuesAt(subtitle.getIndex(startMs + 100));
+            assertEquals(1, cues.size());
+            assertEquals(text(i).replace("<i>", "").replace("</i>", ""),
+                    cues.get(0).text.toString());
+            assertTrue(subtitle.getCuesAt(
+                    subtitle.getIndex(startMs + CUE_DURATION_MS + 100)).isEmpty());
+        }
+    }
+
+    private static byte[] generate(boolean vtt) throws IOException {
+        StringBuilder sb = new StringBuilder(CUE_COUNT * 80);
+        if (vtt) {
+            sb.append("WEBVTT\n\n");
+        }
+        for (int i = 0; i < CUE_COUNT; i++) {
+            long startMs = i * CUE_INTERVAL_MS;
+            if (!vtt) {
+                sb.append(i + 1).append('\n');
+            }
+            sb.append(timestamp(startMs, vtt)).append(" --> ")
+                    .append(timestamp(startMs + CUE_DURATION_MS, vtt)).append('\n')
+                    .append(text(i)).append("\n\n");
+        }
+        return sb.toString().getBytes("UTF-8");
+    }
+
+    private static String text(int i) {
+        return "第 " + i + " 句字幕\n<i>second line " + i + "</i>";
+    }
+
+    private static String timestamp(long ms, boolean vtt) {
+        return String.format(Locale.US, vtt ? "%02d:%02d:%02d.%03d" : "%02d:%02d:%02d,%03d",
+                ms / 3600000, ms / 60000 % 60, ms / 1000 % 60, ms % 1000);
+    }
+
+}
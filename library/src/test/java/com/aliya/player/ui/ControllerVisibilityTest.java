@@ -0,0 +1,110 @@
+package com.aliya.player.ui;
+
+import com.aliya.player.BuildConfig;
+import com.aliya.player.Control;
+import com.aliya.player.harness.FakeClock;
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.ui.control.BufferControl;
+import com.aliya.player.ui.control.NavBarControl;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Player;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Controller} 控件显示状态：点击切换立即生效，控制栏被缓冲压住后恢复，被错误取消
+ *
+ * @author a_liYa
+ * @date 2018/3/28 11:30.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ControllerVisibilityTest {
+
+    private static final String URL = "http://example.com/video/controller.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+
+    private PlayerHarness harness;
+    private FakePlayer player;
+    private PlayerView view;
+    private NavBarControl navBar;
+    private BufferControl buffer;
+
+    @Before
+    public void setUp() {
+        harness = PlayerHarness.create();
+        player = harness.play(URL + "?" + System.nanoTime());
+        harness.ready(player, DURATION_MS);
+        view = harness.manager.getPlayerView();
+        navBar = find(NavBarControl.class);
+        buffer = find(BufferControl.class);
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+    }
+
+    @Test
+    public void clickTogglesNavBar() {
+        assertFalse(navBar.isVisible());
+        assertTrue(view.performClick());
+        assertTrue(navBar.isVisible());
+        harness.clock.advance(FakeClock.FRAME_MS);
+        assertTrue(navBar.isVisible());
+
+        assertTrue(view.performClick());
+        assertFalse(navBar.isVisible());
+    }
+
+    @Test
+    public void navBarReturnsAfterBuffering() {
+        view.performClick();
+        harness.clock.advance(FakeClock.FRAME_MS);
+
+        player.setPlaybackState(Player.STATE_BUFFERING);
+        // 缓冲时点击不再切换控制栏，不等下一帧
+        assertTrue(buffer.isVisible());
+        assertFalse(view.hasOnClickListeners());
+        harness.clock.advance(FakeClock.FRAME_MS);
+        assertFalse(navBar.isVisible());
+
+        player.setPlaybackState(Player.STATE_READY);
+        assertFalse(buffer.isVisible());
+        harness.clock.advance(FakeClock.FRAME_MS);
+        assertTrue(navBar.isVisible());
+    }
+
+    @Test
+    public void errorDisablesClickImmediatelyAndCancelsNavBar() {
+        view.performClick();
+        harness.clock.advance(FakeClock.FRAME_MS);
+        assertTrue(view.hasOnClickListeners());
+
+        player.dispatchError(ExoPlaybackException.createForSource(new IOException("test")));
+        assertFalse(view.hasOnClickListeners());
+        harness.clock.advance(FakeClock.FRAME_MS);
+        assertFalse(navBar.isVisible());
+    }
+
+    private <T extends Control> T find(Class<T> type) {
+        for (Control control : view.getController().getControls()) {
+            if (type.isInstance(control)) {
+                return type.cast(control);
+            }
+        }
+        throw new AssertionError("No " + type.getSimpleName());
+    }
+
+}
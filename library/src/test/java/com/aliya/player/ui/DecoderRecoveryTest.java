@@ -0,0 +1,110 @@
+package com.aliya.player.ui;
+
+import com.aliya.player.BuildConfig;
+import com.aliya.player.harness.FakeClock;
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 解码器初始化失败后的重播：不在 player 回调中重建，从出错的位置继续，保留后台音频
+ *
+ * @author a_liYa
+ * @date 2018/3/28 17:30.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class DecoderRecoveryTest {
+
+    private static final String URL = "http://example.com/video/recovery.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+    // 小于续播的最小进度，只有显式 seek 才能回到这里
+    private static final long PLAY_MS = 25 * FakeClock.FRAME_MS;
+
+    private PlayerHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = PlayerHarness.create();
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+    }
+
+    @Test
+    public void restartIsPostedAndResumesAtErrorPosition() {
+        FakePlayer failed = harness.play(URL + "?position");
+        harness.ready(failed, DURATION_MS);
+        harness.clock.advance(PLAY_MS);
+        long positionMs = failed.getPlayer().getCurrentPosition();
+        assertTrue(positionMs > 0);
+
+        failed.dispatchError(decoderInitError());
+        // 回调中不释放、不重建
+        assertFalse(failed.isReleased());
+        assertEquals(1, harness.helper.getPlayers().size());
+
+        harness.clock.idle();
+        FakePlayer restarted = harness.current();
+        assertNotSame(failed, restarted);
+        assertTrue(failed.isReleased());
+        assertEquals(1, restarted.getPrepareCount());
+        assertEquals(positionMs, restarted.getPlayer().getCurrentPosition());
+    }
+
+    @Test
+    public void restartKeepsBackgroundAudio() {
+        FakePlayer failed = harness.play(URL + "?background");
+        harness.ready(failed, DURATION_MS);
+        PlayerView view = harness.manager.getPlayerView();
+        view.setBackgroundAudio(true);
+
+        failed.dispatchError(decoderInitError());
+        harness.clock.idle();
+
+        assertSame(view, harness.manager.getPlayerView());
+        assertNotSame(failed, harness.current());
+        assertTrue(view.isBackgroundAudio());
+        assertTrue(view.isVideoRendererDisabled());
+    }
+
+    @Test
+    public void stopBeforeRestartCancelsIt() {
+        FakePlayer failed = harness.play(URL + "?cancel");
+        harness.ready(failed, DURATION_MS);
+
+        failed.dispatchError(decoderInitError());
+        harness.manager.getPlayerView().stop();
+        harness.clock.idle();
+
+        assertEquals(1, harness.helper.getPlayers().size());
+    }
+
+    private static ExoPlaybackException decoderInitError() {
+        Format format = Format.createVideoSampleFormat(null, MimeTypes.VIDEO_H264, null,
+                Format.NO_VALUE, Format.NO_VALUE, 1920, 1080, Format.NO_VALUE, null, null);
+        // 每次使用新的解码器名称，CodecCapabilities 才会允许换解码器重试
+        return ExoPlaybackException.createForRenderer(
+                new MediaCodecRenderer.DecoderInitializationException(format, null, false,
+                        "OMX.test.decoder." + System.nanoTime()), FakePlayer.VIDEO_RENDERER);
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.aliya.player.ui;
+
+import com.aliya.player.BuildConfig;
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.utils.LatencyStats;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 直播延时与追帧：本地 HTTP 服务提供滑动窗口的 HLS 列表，由真实的 HlsMediaSource 加载、
+ * 刷新时间线，替身 player 按时间线推进位置
+ *
+ * @author a_liYa
+ * @date 2018/3/29 17:10.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class LiveLatencyTest {
+
+    private static final long WAIT_MS = 10 * 1000;
+    private static final int SEGMENT_MS = 2000;
+    private static final int WINDOW_SEGMENTS = 5;
+    private static final long STEP_MS = 100;
+    // HlsMediaSource 从倒数第三个分片开始播放
+    private static final long START_LATENCY_MS = 3 * SEGMENT_MS;
+
+    private MockWebServer server;
+    // 每次请求列表，窗口向后滑动一个分片，与刷新间隔（一个分片时长）一致
+    private final AtomicInteger requests = new AtomicInteger();
+    private PlayerHarness harness;
+    private FakePlayer player;
+    private MediaSource source;
+    private int refreshes;
+    private long windowStartMs = C.TIME_UNSET;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(playlist(requests.getAndIncrement()));
+            }
+        });
+        server.start();
+        LatencyStats.get().reset();
+
+        harness = PlayerHarness.create();
+        player = harness.play(server.url("/live/index.m3u8").toString());
+        source = player.getMediaSource();
+        source.prepareSource(player.getPlayer(), true, new MediaSource.Listener() {
+            @Override
+            public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+                refresh(timeline, manifest);
+            }
+        });
+        awaitRefreshes();
+        player.setPlaybackState(Player.STATE_READY);
+        player.renderFirstFrame();
+        harness.clock.idle();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        source.releaseSource();
+        harness.release();
+        server.shutdown();
+    }
+
+    @Test
+    public void latencyStaysNearStartWhileKeepingUp() {
+        PlayerView view = harness.manager.getPlayerView();
+        assertTrue(view.isLive());
+
+        advance(20 * 1000);
+        // 边缘随列表刷新跳动一个分片
+        long latencyMs = view.getLiveLatencyMs();
+        assertTrue("latency " + latencyMs, latencyMs >= START_LATENCY_MS - SEGMENT_MS
+                && latencyMs <= START_LATENCY_MS + SEGMENT_MS);
+        assertEquals(1f, view.getPlaybackSpeed(), 0f);
+
+        long averageMs = LatencyStats.get().getAverage(LatencyStats.LIVE_EDGE);
+        assertTrue("average " + averageMs, averageMs >= START_LATENCY_MS - SEGMENT_MS
+                && averageMs <= START_LATENCY_MS + SEGMENT_MS);
+    }
+
+    @Test
+    public void catchesUpAfterStall() {
+        PlayerView view = harness.manager.getPlayerView();
+        advance(4000);
+
+        // 卡顿 6s, 边缘继续前进
+        player.setPlaybackState(Player.STATE_BUFFERING);
+        advance(6000);
+        player.setPlaybackState(Player.STATE_READY);
+        advance(1000);
+        assertTrue(view.getLiveLatencyMs() > START_LATENCY_MS + 3000);
+        assertTrue(view.getPlaybackSpeed() > 1f);
+
+        // 加速播放追回到起播延时后恢复原速
+        long deadline = 300 * 1000;
+        while (view.getPlaybackSpeed() > 1f) {
+            if ((deadline -= SEGMENT_MS) < 0) fail("Did not catch up: " + view.getLiveLatencyMs());
+            advance(SEGMENT_MS);
+        }
+        assertTrue(view.getLiveLatencyMs() <= START_LATENCY_MS + SEGMENT_MS);
+        assertEquals(Player.STATE_READY, player.getPlayer().getPlaybackState());
+    }
+
+    /**
+     * 按小步推进时钟，每步等待触发的列表刷新完成
+     */
+    private void advance(long ms) {
+        for (long elapsed = 0; elapsed < ms; elapsed += STEP_MS) {
+            harness.clock.advance(STEP_MS);
+            awaitRefreshes();
+        }
+    }
+
+    /**
+     * 列表在加载线程请求，结果 post 到主线程；每次请求窗口都滑动，都会刷新时间线
+     */
+    private void awaitRefreshes() {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (refreshes < requests.get() || refreshes == 0) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Playlist refresh did not complete");
+            }
+            ShadowLooper.idleMainLooper();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+
+    /**
+     * 与 ExoPlayer 一致：首次从默认位置开始；窗口滑动时，相对窗口起点的位置随之减小
+     */
+    private void refresh(Timeline timeline, Object manifest) {
+        refreshes++;
+        Timeline.Window window = timeline.getWindow(0, new Timeline.Window());
+        long startMs = window.positionInFirstPeriodUs / 1000;
+        if (windowStartMs == C.TIME_UNSET) {
+            player.setPosition(window.defaultPositionUs / 1000);
+        } else {
+            player.setPosition(Math.max(0,
+                    player.getPlayer().getCurrentPosition() - (startMs - windowStartMs)));
+        }
+        windowStartMs = startMs;
+        player.setDuration(window.durationUs / 1000);
+        player.setTimeline(timeline, manifest);
+    }
+
+    private static String playlist(int sequence) {
+        StringBuilder sb = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n")
+                .append("#EXT-X-TARGETDURATION:").append(SEGMENT_MS / 1000).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:").append(sequence).append('\n');
+        for (int i = sequence; i < sequence + WINDOW_SEGMENTS; i++) {
+            sb.append(String.format(Locale.US, "#EXTINF:%.3f,\n", SEGMENT_MS / 1000f))
+                    .append("seg").append(i).append(".ts\n");
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.aliya.player.ui;
+
+import com.aliya.player.BuildConfig;
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.harness.Scenario;
+import com.aliya.player.utils.PerfCounters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 静音起播不创建音频解码器；取消静音重新选择轨道并创建一次，播放中静音只改音量
+ *
+ * @author a_liYa
+ * @date 2018/3/28 16:20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlayerViewMuteTest {
+
+    private static final String URL = "http://example.com/video/mute.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+
+    private PlayerHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = PlayerHarness.create();
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+        harness.manager.setMute(false);
+    }
+
+    @Test
+    public void mutedAutoplayCreatesNoAudioDecoder() throws Exception {
+        harness.manager.setMute(true);
+        Scenario scenario = new Scenario("muted_autoplay")
+                .budget(PerfCounters.AUDIO_DECODER_INIT, 0)
+                .begin();
+        FakePlayer player = harness.play(URL + "?muted");
+        harness.ready(player, DURATION_MS);
+        harness.clock.advance(5000);
+
+        assertFalse(player.isRendererEnabled(FakePlayer.AUDIO_RENDERER));
+        assertTrue(player.isRendererEnabled(FakePlayer.VIDEO_RENDERER));
+        assertEquals(0f, player.getPlayer().getVolume(), 0f);
+        harness.release();
+        scenario.end();
+
+        assertEquals(0, player.audioCounters.decoderInitCount);
+        assertEquals(1, player.videoCounters.decoderInitCount);
+    }
+
+    @Test
+    public void unmuteReselectsAndCreatesAudioDecoderOnce() {
+        harness.manager.setMute(true);
+        FakePlayer player = harness.play(URL + "?unmute");
+        harness.ready(player, DURATION_MS);
+        int selections = player.getTrackSelectionCount();
+
+        harness.manager.setMute(false);
+        assertTrue(player.isRendererEnabled(FakePlayer.AUDIO_RENDERER));
+        assertEquals(1, player.audioCounters.decoderInitCount);
+        assertEquals(selections + 1, player.getTrackSelectionCount());
+        assertEquals(1f, player.getPlayer().getVolume(), 0f);
+
+        // 之后再静音只改音量，解码器保留
+        harness.manager.setMute(true);
+        harness.manager.setMute(false);
+        assertEquals(1, player.audioCounters.decoderInitCount);
+        assertEquals(selections + 1, player.getTrackSelectionCount());
+        assertEquals(1, player.getPrepareCount());
+    }
+
+    @Test
+    public void muteDuringPlaybackKeepsDecoder() {
+        FakePlayer player = harness.play(URL + "?playing");
+        harness.ready(player, DURATION_MS);
+        assertEquals(1, player.audioCounters.decoderInitCount);
+        int selections = player.getTrackSelectionCount();
+
+        harness.manager.setMute(true);
+        assertEquals(0f, player.getPlayer().getVolume(), 0f);
+        assertTrue(player.isRendererEnabled(FakePlayer.AUDIO_RENDERER));
+        assertEquals(selections, player.getTrackSelectionCount());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.aliya.player.ui;
+
+import android.app.Activity;
+import android.support.v4.app.FragmentActivity;
+
+import com.aliya.player.Benchmark;
+import com.aliya.player.BuildConfig;
+import com.aliya.player.harness.Scenario;
+import com.aliya.player.utils.PerfCounters;
+import com.aliya.player.utils.Utils;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Controller#PROFILE_FULL} 与 {@link Controller#PROFILE_BARE} 创建 PlayerView 的耗时
+ * 与 View 个数：耗时写入基准结果，View 个数写入场景结果
+ *
+ * @author a_liYa
+ * @date 2018/3/29 19:40.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlayerViewProfileTest {
+
+    private static final Benchmark sBenchmark = new Benchmark("PlayerViewInflate");
+
+    private Activity activity;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(FragmentActivity.class).setup().get();
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void bareInflatesFewerViewsFaster() throws Exception {
+        Benchmark.Result full = sBenchmark.measure("inflate.full", 20, 50,
+                inflate(Controller.PROFILE_FULL));
+        Benchmark.Result bare = sBenchmark.measure("inflate.bare", 20, 50,
+                inflate(Controller.PROFILE_BARE));
+
+        int fullViews = countViews("inflate_full", Controller.PROFILE_FULL,
+                PerfCounters.VIEWS_FULL);
+        int bareViews = countViews("inflate_bare", Controller.PROFILE_BARE,
+                PerfCounters.VIEWS_BARE);
+
+        assertTrue(bareViews + " >= " + fullViews, bareViews < fullViews);
+        assertTrue(bare.medianNs + " >= " + full.medianNs, bare.medianNs < full.medianNs);
+    }
+
+    private Runnable inflate(final int profile) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                Benchmark.sink = new PlayerView(activity, profile);
+            }
+        };
+    }
+
+    /**
+     * 创建一次，场景结果记录构造时统计的 View 个数
+     */
+    private int countViews(String name, int profile, String counter) throws Exception {
+        Scenario scenario = new Scenario(name).record(counter).begin();
+        PlayerView view = new PlayerView(activity, profile);
+        long counted = PerfCounters.get(counter);
+        scenario.end();
+
+        int views = Utils.countViews(view);
+        assertEquals(views, counted);
+        return views;
+    }
+
+}
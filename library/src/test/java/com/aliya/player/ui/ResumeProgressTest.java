@@ -0,0 +1,165 @@
+package com.aliya.player.ui;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.aliya.player.BuildConfig;
+import com.aliya.player.PlayerHelper;
+import com.aliya.player.harness.FakePlayer;
+import com.aliya.player.harness.PlayerHarness;
+import com.aliya.player.utils.Recorder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 续播：磁盘中的进度加载完成后才准备并在此之前 seek; 进度按记录 key（原始 url）保存，
+ * 播放中批量落盘，进程被杀后仍能续播
+ *
+ * @author a_liYa
+ * @date 2018/3/29 15:20.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ResumeProgressTest {
+
+    private static final String URL = "http://example.com/video/resume.mp4";
+    private static final String KILLED_URL = "http://example.com/video/killed.mp4";
+    private static final long DURATION_MS = 60 * 1000;
+    private static final long SAVED_MS = 20 * 1000;
+
+    private PlayerHarness harness;
+
+    @Before
+    public void setUp() {
+        // 每个测试使用新的 Recorder, 从磁盘重新加载
+        ReflectionHelpers.setStaticField(Recorder.class, "sInstance", null);
+        prefs().edit().clear().putLong(URL, SAVED_MS).commit();
+        harness = PlayerHarness.create();
+    }
+
+    @After
+    public void tearDown() {
+        harness.release();
+        ReflectionHelpers.setStaticField(Recorder.class, "sInstance", null);
+    }
+
+    @Test
+    public void firstPlayPreparesAfterLoadAtSavedPosition() throws Exception {
+        CountDownLatch gate = blockThreadExecutor();
+        FakePlayer player = playWithoutWaiting(URL);
+        // 进度未加载完成前不准备，不会从 0 开始加载
+        assertEquals(0, player.getPrepareCount());
+
+        gate.countDown();
+        PlayerHarness.awaitThreadExecutor();
+        harness.clock.idle();
+        assertEquals(1, player.getPrepareCount());
+        assertEquals(SAVED_MS, player.getPreparePositionMs());
+        assertEquals(SAVED_MS, player.getPlayer().getCurrentPosition());
+    }
+
+    @Test
+    public void resumesBeforePrepareWhenLoaded() throws Exception {
+        Recorder.get().load(RuntimeEnvironment.application);
+        PlayerHarness.awaitThreadExecutor();
+
+        FakePlayer player = harness.play(URL);
+        assertEquals(SAVED_MS, player.getPreparePositionMs());
+        assertEquals(SAVED_MS, player.getPlayer().getCurrentPosition());
+    }
+
+    @Test
+    public void seekBeforeLoadIsKept() throws Exception {
+        CountDownLatch gate = blockThreadExecutor();
+        FakePlayer player = playWithoutWaiting(URL);
+        player.getPlayer().seekTo(5000);
+
+        gate.countDown();
+        PlayerHarness.awaitThreadExecutor();
+        harness.clock.idle();
+        assertEquals(5000, player.getPreparePositionMs());
+        assertEquals(5000, player.getPlayer().getCurrentPosition());
+    }
+
+    @Test
+    public void progressIsSavedUnderRecordKey() throws Exception {
+        FakePlayer player = harness.play(URL);
+        harness.ready(player, DURATION_MS);
+        harness.clock.advance(3000);
+        long positionMs = player.getPlayer().getCurrentPosition();
+
+        harness.manager.getPlayerView().stop();
+        assertEquals(positionMs, Recorder.get().getCacheProgress(URL));
+    }
+
+    @Test
+    public void restoresAfterKillWithoutStop() throws Exception {
+        FakePlayer player = harness.play(KILLED_URL);
+        harness.ready(player, DURATION_MS);
+        harness.clock.advance(2 * Recorder.FLUSH_INTERVAL_MS + 1000);
+        long killedAtMs = player.getPlayer().getCurrentPosition();
+
+        // 播放中按 tick 记录、批量落盘，最多落后一个落盘间隔
+        long flushedMs = prefs().getLong(KILLED_URL, Recorder.NO_VALUE);
+        assertTrue(flushedMs > 0);
+        assertTrue(flushedMs <= killedAtMs);
+        assertTrue(flushedMs >= killedAtMs - Recorder.FLUSH_INTERVAL_MS - 1000);
+
+        // 进程被杀：不调用 stop, 内存中的记录和待执行的任务全部丢失
+        PlayerHarness killed = harness;
+        ShadowLooper.getShadowMainLooper().getScheduler().reset();
+        ReflectionHelpers.setStaticField(Recorder.class, "sInstance", null);
+
+        harness = PlayerHarness.create();
+        FakePlayer restored = harness.play(KILLED_URL);
+        assertEquals(flushedMs, restored.getPreparePositionMs());
+        assertEquals(flushedMs, restored.getPlayer().getCurrentPosition());
+        killed.release();
+    }
+
+    /**
+     * 不等待进度加载，用于在加载完成前操作
+     */
+    private FakePlayer playWithoutWaiting(String url) {
+        harness.manager.play(harness.parent, url);
+        harness.clock.idle();
+        return harness.current();
+    }
+
+    private static SharedPreferences prefs() {
+        return RuntimeEnvironment.application.getSharedPreferences("player_progress",
+                Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 加载在单线程的 {@link PlayerHelper#getThreadExecutor()} 中执行，先占住线程使加载排在其后
+     */
+    private static CountDownLatch blockThreadExecutor() {
+        final CountDownLatch gate = new CountDownLatch(1);
+        PlayerHelper.getThreadExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return gate;
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.aliya.player.ui.control;
+
+import com.aliya.player.Benchmark;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link CalcTime} 的基准，控制层每次刷新进度都会调用
+ *
+ * @author a_liYa
+ * @date 2018/3/26 10:55.
+ */
+public class CalcTimeBenchmarkTest {
+
+    private static final int ITERATIONS = 100000;
+    private static final int MAX = 1000;
+
+    private static final Benchmark sBenchmark = new Benchmark("CalcTime");
+
+    private CalcTime calcTime;
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Before
+    public void setUp() {
+        calcTime = new CalcTime();
+        calcTime.duration = 3000;
+        calcTime.bufferedPosition = 1500;
+    }
+
+    @Test
+    public void calcProgress() {
+        // 进度取整规则保持不变
+        assertEquals(999, calcTime.calcProgress(MAX, 2999));
+        assertEquals(500, calcTime.calcSecondaryProgress(MAX));
+        calcTime.duration = 0;
+        assertEquals(0, calcTime.calcProgress(MAX, 2999));
+        calcTime.duration = 2 * 60 * 60 * 1000;
+
+        sBenchmark.measure("calcProgress", ITERATIONS, new Runnable() {
+            long position;
+
+            @Override
+            public void run() {
+                Benchmark.sink = calcTime.calcProgress(MAX, position += 16);
+            }
+        });
+    }
+
+    @Test
+    public void formatPosition() {
+        calcTime.position = 1000;
+        String text = calcTime.formatPosition();
+        calcTime.position = 1200;
+        // 同一秒内不重新格式化
+        assertSame(text, calcTime.formatPosition());
+        calcTime.position = 2000;
+        assertEquals("00:02", calcTime.formatPosition());
+
+        // 每 16ms 刷新一次，接近实际的按帧刷新
+        sBenchmark.measure("formatPosition", ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                calcTime.position += 16;
+                Benchmark.sink = calcTime.formatPosition();
+            }
+        });
+    }
+
+    @Test
+    public void calcSyncPeriod() {
+        calcTime.setSpeed(2f);
+        calcTime.position = 500;
+        assertEquals(250, calcTime.calcSyncPeriod());
+
+        sBenchmark.measure("calcSyncPeriod", ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                calcTime.position += 16;
+                Benchmark.sink = calcTime.calcSyncPeriod();
+            }
+        });
+    }
+
+}
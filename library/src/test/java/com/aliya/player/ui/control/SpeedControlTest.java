@@ -0,0 +1,34 @@
+package com.aliya.player.ui.control;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link SpeedControl} 的倍速文案：预设倍速复用固定文案，与 SPEEDS 一一对应
+ *
+ * @author a_liYa
+ * @date 2018/3/29 20:10.
+ */
+public class SpeedControlTest {
+
+    @Test
+    public void labelsMatchSpeeds() {
+        assertEquals(SpeedControl.SPEEDS.length, SpeedControl.LABELS.length);
+        for (int i = 0; i < SpeedControl.SPEEDS.length; i++) {
+            String expected = new BigDecimal(Float.toString(SpeedControl.SPEEDS[i]))
+                    .stripTrailingZeros().toPlainString() + "X";
+            assertEquals(expected, SpeedControl.LABELS[i]);
+            assertSame(SpeedControl.LABELS[i], SpeedControl.labelOf(SpeedControl.SPEEDS[i]));
+        }
+    }
+
+    @Test
+    public void otherSpeedsKeepTwoDecimals() {
+        assertEquals("1.05X", SpeedControl.labelOf(1.05f));
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.aliya.player.utils;
+
+import com.aliya.player.Benchmark;
+import com.aliya.player.BuildConfig;
+import com.aliya.player.PlayerHelper;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link Recorder} 进度读写的基准，播放中每次刷新进度都会写入
+ *
+ * @author a_liYa
+ * @date 2018/3/26 11:10.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class RecorderBenchmarkTest {
+
+    private static final int ITERATIONS = 50000;
+    private static final int KEYS = 100;
+
+    private static final Benchmark sBenchmark = new Benchmark("Recorder");
+    private static final String[] sKeys = new String[KEYS];
+
+    @BeforeClass
+    public static void setUpClass() {
+        for (int i = 0; i < KEYS; i++) {
+            sKeys[i] = "http://example.com/video/" + i + ".mp4";
+        }
+    }
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void putAndGetProgress() throws Exception {
+        final Recorder recorder = Recorder.get();
+        recorder.load(RuntimeEnvironment.application);
+        awaitThreadExecutor();
+
+        recorder.putCacheProgress(sKeys[0], 12345);
+        assertEquals(12345, recorder.getCacheProgress(sKeys[0]));
+
+        sBenchmark.measure("putCacheProgress", ITERATIONS, new Runnable() {
+            int index;
+            long position;
+
+            @Override
+            public void run() {
+                recorder.putCacheProgress(sKeys[index++ % KEYS], position += 16);
+            }
+        });
+        sBenchmark.measure("getCacheProgress", ITERATIONS, new Runnable() {
+            int index;
+
+            @Override
+            public void run() {
+                Benchmark.sink = recorder.getCacheProgress(sKeys[index++ % KEYS]);
+            }
+        });
+        sBenchmark.measure("flush", ITERATIONS / 10, new Runnable() {
+            int index;
+            long position;
+
+            @Override
+            public void run() {
+                recorder.putCacheProgress(sKeys[index++ % KEYS], position += 16);
+                recorder.flush();
+            }
+        });
+    }
+
+    @Test
+    public void playbackSpeed() {
+        final Recorder recorder = Recorder.get();
+        recorder.putPlaybackSpeed(sKeys[0], 1.5f);
+        assertEquals(1.5f, recorder.getPlaybackSpeed(sKeys[0]), 0f);
+
+        sBenchmark.measure("getPlaybackSpeed", ITERATIONS, new Runnable() {
+            int index;
+
+            @Override
+            public void run() {
+                Benchmark.sink = recorder.getPlaybackSpeed(sKeys[index++ % KEYS]);
+            }
+        });
+    }
+
+    /**
+     * 加载在单线程的 {@link PlayerHelper#getThreadExecutor()} 中执行，排在其后的任务完成即加载完成
+     */
+    private static void awaitThreadExecutor() throws Exception {
+        PlayerHelper.getThreadExecutor().submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }).get();
+    }
+
+}
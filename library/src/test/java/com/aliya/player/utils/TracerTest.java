@@ -0,0 +1,86 @@
+package com.aliya.player.utils;
+
+import com.aliya.player.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Tracer} 的 begin/end 配对：计时开关在分段中途变化时，结束的仍是对应的分段
+ *
+ * @author a_liYa
+ * @date 2018/3/28 10:00.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TracerTest {
+
+    private static final String OUTER = "outer";
+    private static final String INNER = "inner";
+    private static final long SLEEP_MS = 20;
+
+    @Before
+    public void setUp() {
+        Tracer.reset();
+    }
+
+    @After
+    public void tearDown() {
+        Tracer.setTimingEnabled(false);
+        Tracer.reset();
+    }
+
+    @Test
+    public void recordsNestedSections() throws Exception {
+        Tracer.setTimingEnabled(true);
+        Tracer.begin(OUTER);
+        Tracer.begin(INNER);
+        Tracer.end();
+        Thread.sleep(SLEEP_MS);
+        Tracer.end();
+
+        assertTrue(Tracer.getPercentile(INNER, 50) >= 0);
+        assertTrue(Tracer.getPercentile(OUTER, 50) >= SLEEP_MS * 1000);
+    }
+
+    @Test
+    public void enablingMidSectionDoesNotMisattribute() throws Exception {
+        Tracer.setTimingEnabled(true);
+        Tracer.begin(OUTER);
+        Tracer.setTimingEnabled(false);
+        Tracer.begin(INNER);
+        Tracer.setTimingEnabled(true);
+        Tracer.end(); // INNER 开始时未计时，不记录
+        Thread.sleep(SLEEP_MS);
+        Tracer.end();
+
+        assertEquals(-1, Tracer.getPercentile(INNER, 50));
+        // OUTER 在自己的 end 时记录，而不是 INNER 的 end
+        assertTrue(Tracer.getPercentile(OUTER, 50) >= SLEEP_MS * 1000);
+    }
+
+    @Test
+    public void disablingMidSectionKeepsStackBalanced() throws Exception {
+        Tracer.setTimingEnabled(true);
+        Tracer.begin(OUTER);
+        Tracer.setTimingEnabled(false);
+        Tracer.end();
+        assertEquals(-1, Tracer.getPercentile(OUTER, 50));
+
+        // 之前的分段已出栈，新的分段按自己的时长记录
+        Tracer.setTimingEnabled(true);
+        Tracer.begin(INNER);
+        Tracer.end();
+        Tracer.end(); // 多余的 end 不影响
+        assertTrue(Tracer.getPercentile(INNER, 50) < SLEEP_MS * 1000);
+        assertEquals(-1, Tracer.getPercentile(OUTER, 50));
+    }
+
+}
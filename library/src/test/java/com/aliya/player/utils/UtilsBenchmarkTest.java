@@ -0,0 +1,88 @@
+package com.aliya.player.utils;
+
+import com.aliya.player.Benchmark;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link Utils} 格式化方法的基准，进度、网速每秒刷新多次
+ *
+ * @author a_liYa
+ * @date 2018/3/26 10:40.
+ */
+public class UtilsBenchmarkTest {
+
+    private static final int ITERATIONS = 100000;
+
+    private static final Benchmark sBenchmark = new Benchmark("Utils");
+
+    @AfterClass
+    public static void writeResults() throws Exception {
+        sBenchmark.write();
+    }
+
+    @Test
+    public void formatTime() {
+        assertEquals("00:00", Utils.formatTime(0));
+        assertEquals("01:40", Utils.formatTime(99500));
+        assertEquals("01:01:01", Utils.formatTime(3661000));
+        assertEquals("--:--", Utils.formatTime(-1));
+
+        sBenchmark.measure("formatTime", ITERATIONS, new Runnable() {
+            long timeMs;
+
+            @Override
+            public void run() {
+                Benchmark.sink = Utils.formatTime(timeMs += 1000);
+            }
+        });
+    }
+
+    @Test
+    public void formatTimeAppend() {
+        final StringBuilder sb = new StringBuilder(8);
+        assertEquals("01:01:01", Utils.formatTime(sb, 3661000).toString());
+
+        sBenchmark.measure("formatTimeAppend", ITERATIONS, new Runnable() {
+            long timeMs;
+
+            @Override
+            public void run() {
+                sb.setLength(0);
+                Benchmark.sink = Utils.formatTime(sb, timeMs += 1000);
+            }
+        });
+    }
+
+    @Test
+    public void formatSpeed() {
+        assertEquals("512B/s", Utils.formatSpeed(512));
+        assertEquals("2KB/s", Utils.formatSpeed(2048));
+        assertEquals("3MB/s", Utils.formatSpeed(3 * 1024 * 1024));
+
+        sBenchmark.measure("formatSpeed", ITERATIONS, new Runnable() {
+            int speed;
+
+            @Override
+            public void run() {
+                Benchmark.sink = Utils.formatSpeed(speed += 997);
+            }
+        });
+    }
+
+    @Test
+    public void formatSize() {
+        sBenchmark.measure("formatSize", ITERATIONS, new Runnable() {
+            int size;
+
+            @Override
+            public void run() {
+                Benchmark.sink = Utils.formatSize(size += 12345);
+            }
+        });
+    }
+
+}